@@ -2,9 +2,10 @@ package com.amongus.bot.commands;
 
 import com.amongus.bot.core.AmongUsBot;
 import com.amongus.bot.core.SessionManager;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.utils.CallbackCodec;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Message;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 /**
  * Base class for bot commands.
@@ -26,11 +27,7 @@ public abstract class BaseCommand implements Command {
     }
 
     protected void execute(SendMessage sendMessage) {
-        try {
-            bot.execute(sendMessage);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        bot.sendMessageSafe(sendMessage);
     }
 
     /**
@@ -43,11 +40,7 @@ public abstract class BaseCommand implements Command {
         SendMessage sendMessage = new SendMessage();
         sendMessage.setChatId(chatId);
         sendMessage.setText(message);
-        try {
-            bot.execute(sendMessage);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        bot.sendMessageSafe(sendMessage);
     }
 
     /**
@@ -61,11 +54,21 @@ public abstract class BaseCommand implements Command {
         sendMessage.setChatId(message.getChatId());
         sendMessage.setReplyToMessageId(message.getMessageId());
         sendMessage.setText(replyText);
-        try {
-            bot.execute(sendMessage);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        bot.sendMessageSafe(sendMessage);
+    }
+
+    /**
+     * Encodes the callback data of a lobby button, bound to the lobby's current epoch.
+     */
+    protected String callback(String lobbyCode, CallbackAction action, long... arguments) {
+        return CallbackCodec.encode(action, sessionManager.getCallbackEpoch(lobbyCode, action.getScope()), arguments);
+    }
+
+    /**
+     * Checks if a command was sent in a group chat rather than to the bot directly.
+     */
+    protected boolean isGroupChat(Message message) {
+        return message.isGroupMessage() || message.isSuperGroupMessage();
     }
 
     /**
@@ -3,7 +3,7 @@ package com.amongus.bot.commands;
 import com.amongus.bot.core.AmongUsBot;
 import com.amongus.bot.core.SessionManager;
 import com.amongus.bot.game.lobby.GameLobby;
-import com.amongus.bot.models.Config;
+import com.amongus.bot.models.CallbackAction;
 import com.amongus.bot.models.Player;
 import com.amongus.bot.utils.SecurityManager;
 import org.slf4j.Logger;
@@ -56,12 +56,31 @@ public class CreateCommand extends BaseCommand {
             return;
         }
 
+        // В группе может быть только одно лобби
+        String groupChatId = isGroupChat(message) ? message.getChatId().toString() : null;
+        if (groupChatId != null) {
+            Optional<String> groupLobby = sessionManager.getLobbyCodeForGroup(groupChatId);
+            if (groupLobby.isPresent()) {
+                bot.sendTextMessageSafe(groupChatId, "❌ В этой группе уже есть лобби *" + groupLobby.get() + "*. " +
+                        "Присоединяйтесь к нему командой /join");
+                return;
+            }
+        }
+
         // Обновляем активность игрока
         player.updateActivity();
 
         // Создаем новое лобби
         String lobbyCode = sessionManager.createLobby(player, bot);
 
+        // Лобби, созданное в группе, привязывается к ней: общие события игры публикуются там один раз,
+        // а роли, задания и кнопки по-прежнему приходят в личные сообщения
+        if (groupChatId != null && sessionManager.bindGroupChat(lobbyCode, groupChatId)) {
+            bot.sendTextMessageSafe(groupChatId, "🎮 " + player.getDisplayName() + " создал(а) лобби *" + lobbyCode + "*!\n\n" +
+                    "Присоединяйтесь командой /join прямо в этой группе. Общие события игры будут приходить сюда, " +
+                    "а роль и задания — в личные сообщения от бота.");
+        }
+
         // Создаем клавиатуру с кнопками "Готов" и "Настройки"
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
@@ -69,14 +88,14 @@ public class CreateCommand extends BaseCommand {
         List<InlineKeyboardButton> readyRow = new ArrayList<>();
         InlineKeyboardButton readyButton = new InlineKeyboardButton();
         readyButton.setText("Готов");
-        readyButton.setCallbackData("ready");
+        readyButton.setCallbackData(callback(lobbyCode, CallbackAction.READY));
         readyRow.add(readyButton);
         keyboard.add(readyRow);
 
         List<InlineKeyboardButton> settingsRow = new ArrayList<>();
         InlineKeyboardButton settingsButton = new InlineKeyboardButton();
         settingsButton.setText("⚙️ Настройки");
-        settingsButton.setCallbackData("settings");
+        settingsButton.setCallbackData(callback(lobbyCode, CallbackAction.SETTINGS));
         settingsRow.add(settingsButton);
         keyboard.add(settingsRow);
 
@@ -98,52 +117,7 @@ public class CreateCommand extends BaseCommand {
         sessionManager.updatePlayerChatId(player.getUserId(), chatId);
 
         // Отправляем сообщение со статусом владельцу лобби
-        Optional<GameLobby> lobbyOpt = sessionManager.getLobbyByCode(lobbyCode);
-        if (lobbyOpt.isPresent()) {
-            GameLobby lobby = lobbyOpt.get();
-
-            // Строим текст со статусом игроков
-            StringBuilder statusSB = new StringBuilder();
-            statusSB.append("👥 *Игроки* (").append(lobby.getPlayers().size()).append("/").append(Config.MAX_PLAYERS).append("):\n");
-
-            // Добавляем только владельца (он единственный в лобби на этом этапе)
-            for (Player p : lobby.getPlayers()) {
-                String readyStatus = p.isReady() ? "✅" : "⬜";
-                String ownerLabel = lobby.isOwner(p.getUserId()) ? " 👑" : "";
-                statusSB.append(readyStatus).append(" ")
-                        .append(p.getDisplayName())
-                        .append(ownerLabel)
-                        .append("\n");
-            }
-
-            // Создаем клавиатуру с кнопками
-            InlineKeyboardMarkup statusMarkup = new InlineKeyboardMarkup();
-            List<List<InlineKeyboardButton>> statusKeyboard = new ArrayList<>();
-
-            // Кнопка "Готов"
-            List<InlineKeyboardButton> statusReadyRow = new ArrayList<>();
-            InlineKeyboardButton statusReadyButton = new InlineKeyboardButton();
-            statusReadyButton.setText("Готов");
-            statusReadyButton.setCallbackData("ready");
-            statusReadyRow.add(statusReadyButton);
-            statusKeyboard.add(statusReadyRow);
-
-            // Кнопка настроек для владельца
-            List<InlineKeyboardButton> statusSettingsRow = new ArrayList<>();
-            InlineKeyboardButton statusSettingsButton = new InlineKeyboardButton();
-            statusSettingsButton.setText("⚙️ Настройки");
-            statusSettingsButton.setCallbackData("settings");
-            statusSettingsRow.add(statusSettingsButton);
-            statusKeyboard.add(statusSettingsRow);
-
-            statusMarkup.setKeyboard(statusKeyboard);
-
-            // Отправляем сообщение со статусом и сохраняем его ID
-            Integer statusMessageId = bot.sendMessageWithReturnIdSafe(chatId, statusSB.toString(), statusMarkup);
-            if (statusMessageId != null) {
-                lobby.setStatusMessageId(player.getUserId(), statusMessageId);
-            }
-        }
+        bot.getLobbyStatusBoard().show(lobbyCode, player.getUserId(), chatId);
 
         // Логируем создание лобби
         log.info("Создано новое лобби с кодом {} игроком {}", lobbyCode, player.getDisplayName());
@@ -60,8 +60,13 @@ public class EndGameCommand extends BaseCommand {
 
             // Завершаем игру
             try {
-                // Предполагаем, что метод endGame существует в SessionManager
-                sessionManager.endGame(lobby.getLobbyCode(), bot);
+                if (!sessionManager.endGame(lobby.getLobbyCode(), bot)) {
+                    SendMessage sendMessage = new SendMessage();
+                    sendMessage.setChatId(chatId);
+                    sendMessage.setText("❌ В этом лобби нет запущенной игры.");
+                    execute(sendMessage);
+                    return;
+                }
 
                 // Отправляем подтверждение администратору
                 SendMessage sendMessage = new SendMessage();
@@ -2,29 +2,24 @@ package com.amongus.bot.commands;
 
 import com.amongus.bot.core.AmongUsBot;
 import com.amongus.bot.core.SessionManager;
-import com.amongus.bot.game.lobby.GameLobby;
-import com.amongus.bot.models.Config;
+import com.amongus.bot.core.UpdateDispatcher;
 import com.amongus.bot.models.Player;
 import com.amongus.bot.utils.SecurityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.User;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
 
 /**
  * Command that allows a player to join an existing game lobby.
  */
 public class JoinCommand extends BaseCommand {
     private static final Logger log = LoggerFactory.getLogger(JoinCommand.class);
+
+    // Start parameter of the link that joins a lobby from a private chat, followed by the lobby code
+    static final String LINK_PREFIX = "join-";
+
     private final SecurityManager securityManager;
 
     public JoinCommand(AmongUsBot bot, SessionManager sessionManager, SecurityManager securityManager) {
@@ -47,6 +42,14 @@ public class JoinCommand extends BaseCommand {
         String chatId = String.valueOf(message.getFrom().getId());
         User telegramUser = message.getFrom();
 
+        // "/join CODE" is dispatched to the mailbox of the lobby being joined, see UpdateDispatcher
+        boolean inLobbyMailbox = !args.isEmpty();
+
+        // В группе без кода присоединяемся к лобби этой группы
+        if (args.isEmpty() && isGroupChat(message)) {
+            args = sessionManager.getLobbyCodeForGroup(message.getChatId().toString()).orElse("");
+        }
+
         if (args.isEmpty()) {
             SendMessage sendMessage = new SendMessage();
             sendMessage.setChatId(chatId);
@@ -56,21 +59,52 @@ public class JoinCommand extends BaseCommand {
         }
 
         String lobbyCode = args.toUpperCase();
-        Player player = Player.fromTelegramUser(telegramUser);
+        if (isGroupChat(message) && !sessionManager.hasPrivateChat(telegramUser.getId())) {
+            // Роли и задания приходят в личные сообщения, а бот не может написать первым
+            SendMessage sendMessage = new SendMessage();
+            sendMessage.setChatId(message.getChatId().toString());
+            sendMessage.setText(telegramUser.getFirstName() + ", я пока не могу писать вам в личные сообщения, " +
+                    "а туда приходят роли и задания.\n" +
+                    "Откройте ссылку и нажмите «Start», чтобы присоединиться к лобби " + lobbyCode + ":\n" +
+                    "https://t.me/" + bot.getBotUsername() + "?start=" + LINK_PREFIX + lobbyCode);
+            execute(sendMessage);
+            return;
+        }
+
+        join(lobbyCode, Player.fromTelegramUser(telegramUser), chatId, inLobbyMailbox);
+    }
+
+    /**
+     * Joins the lobby of a join link, opened by the player in a private chat with the bot.
+     * The link arrives as /start in the mailbox of the player, so the join moves to the lobby.
+     */
+    void joinFromLink(Message message, String lobbyCode) {
+        User telegramUser = message.getFrom();
+        join(lobbyCode.toUpperCase(), Player.fromTelegramUser(telegramUser),
+                String.valueOf(telegramUser.getId()), false);
+    }
+
+    /**
+     * Joins a lobby in its mailbox. A player still in another lobby leaves it first in the mailbox
+     * of that lobby, so each lobby is only ever changed in order with its own updates.
+     */
+    private void join(String lobbyCode, Player player, String chatId, boolean inLobbyMailbox) {
+        UpdateDispatcher dispatcher = bot.getUpdateDispatcher();
+        String previousCode = sessionManager.getLobbyCodeForPlayer(player.getUserId()).orElse(null);
+        if (previousCode != null && !previousCode.equals(lobbyCode)) {
+            dispatcher.submitToLobby(previousCode, () -> {
+                sessionManager.removePlayerFromLobby(player.getUserId(), previousCode);
+                dispatcher.submitToLobby(lobbyCode, () -> join(lobbyCode, player, chatId, true));
+            });
+            return;
+        }
+        if (!inLobbyMailbox) {
+            dispatcher.submitToLobby(lobbyCode, () -> join(lobbyCode, player, chatId, true));
+            return;
+        }
 
         boolean joined = sessionManager.joinLobby(lobbyCode, player);
         if (joined) {
-            // Создаем клавиатуру с кнопкой "Готов"
-            InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-            List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-            List<InlineKeyboardButton> row = new ArrayList<>();
-            InlineKeyboardButton readyButton = new InlineKeyboardButton();
-            readyButton.setText("Готов");
-            readyButton.setCallbackData("ready");
-            row.add(readyButton);
-            keyboard.add(row);
-            markup.setKeyboard(keyboard);
-
             // Отправляем приветственное сообщение
             SendMessage welcomeMessage = new SendMessage();
             welcomeMessage.setChatId(chatId);
@@ -81,37 +115,8 @@ public class JoinCommand extends BaseCommand {
             // Сохраняем ID чата игрока
             sessionManager.updatePlayerChatId(player.getUserId(), chatId);
 
-            // Отправляем статус игроков с кнопкой
-            Optional<GameLobby> lobbyOpt = sessionManager.getLobbyByCode(lobbyCode);
-            if (lobbyOpt.isPresent()) {
-                GameLobby lobby = lobbyOpt.get();
-
-                // Создаем и отправляем сообщение со статусом для нового игрока
-                StringBuilder statusBuilder = new StringBuilder();
-                statusBuilder.append("👥 *Игроки* (").append(lobby.getPlayers().size()).append("/").append(Config.MAX_PLAYERS).append("):\n");
-                for (Player p : lobby.getPlayers()) {
-                    String readyStatus = p.isReady() ? "✅" : "⬜";
-                    String ownerLabel = lobby.isOwner(p.getUserId()) ? " 👑" : "";
-                    statusBuilder.append(readyStatus).append(" ")
-                            .append(p.getDisplayName())
-                            .append(ownerLabel)
-                            .append("\n");
-                }
-
-                // Отправляем сообщение со статусом и сохраняем его ID
-                Integer statusMessageId = bot.sendMessageWithReturnIdSafe(chatId, statusBuilder.toString(), markup);
-                if (statusMessageId != null) {
-                    lobby.setStatusMessageId(player.getUserId(), statusMessageId);
-                }
-
-                // Обновляем статус для всех игроков в лобби
-                for (Player p : lobby.getPlayers()) {
-                    // Не обновляем статус для присоединившегося игрока, так как мы только что отправили ему сообщение
-                    if (p.getUserId() != player.getUserId()) {
-                        updatePlayerStatus(lobby, p);
-                    }
-                }
-            }
+            // Отправляем статус игроков с кнопкой; остальным игрокам статус обновится сам
+            bot.getLobbyStatusBoard().show(lobbyCode, player.getUserId(), chatId);
         } else {
             // Отправляем сообщение об ошибке, если не удалось присоединиться
             SendMessage sendMessage = new SendMessage();
@@ -121,101 +126,4 @@ public class JoinCommand extends BaseCommand {
             execute(sendMessage);
         }
     }
-
-    /**
-     * Обновляет статус игрока в лобби
-     */
-    private void updatePlayerStatus(GameLobby lobby, Player player) {
-        String chatId = sessionManager.getPlayerChatId(player.getUserId());
-        if (chatId == null) {
-            return;
-        }
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("👥 *Игроки* (").append(lobby.getPlayers().size()).append("/").append(Config.MAX_PLAYERS).append("):\n");
-        for (Player p : lobby.getPlayers()) {
-            String readyStatus = p.isReady() ? "✅" : "⬜";
-            String ownerLabel = lobby.isOwner(p.getUserId()) ? " 👑" : "";
-            sb.append(readyStatus).append(" ")
-                    .append(p.getDisplayName())
-                    .append(ownerLabel)
-                    .append("\n");
-        }
-
-        // Получаем текущий ID сообщения из лобби
-        Integer statusMessageId = lobby.getStatusMessageId(player.getUserId());
-
-        // Создаем клавиатуру
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-
-        // Кнопка "Готов" если игрок не готов
-        if (!player.isReady()) {
-            List<InlineKeyboardButton> readyRow = new ArrayList<>();
-            InlineKeyboardButton readyButton = new InlineKeyboardButton();
-            readyButton.setText("Готов");
-            readyButton.setCallbackData("ready");
-            readyRow.add(readyButton);
-            keyboard.add(readyRow);
-        }
-
-        // Если игрок - владелец, добавляем кнопки настроек и запуска игры
-        if (lobby.isOwner(player.getUserId())) {
-            // Кнопка настроек
-            List<InlineKeyboardButton> settingsRow = new ArrayList<>();
-            InlineKeyboardButton settingsButton = new InlineKeyboardButton();
-            settingsButton.setText("⚙️ Настройки");
-            settingsButton.setCallbackData("settings");
-            settingsRow.add(settingsButton);
-            keyboard.add(settingsRow);
-
-            // Кнопка запуска игры
-            List<InlineKeyboardButton> startGameRow = new ArrayList<>();
-            InlineKeyboardButton startGameButton = new InlineKeyboardButton();
-            startGameButton.setText("🚀 Начать игру");
-            startGameButton.setCallbackData("start_game");
-            startGameRow.add(startGameButton);
-            keyboard.add(startGameRow);
-        }
-
-        markup.setKeyboard(keyboard);
-
-        // Если ни одна кнопка не добавлена, установим null для клавиатуры
-        if (keyboard.isEmpty()) {
-            markup = null;
-        }
-
-        try {
-            if (statusMessageId != null) {
-                // Редактируем существующее сообщение
-                try {
-                    EditMessageText editMessage = new EditMessageText();
-                    editMessage.setChatId(chatId);
-                    editMessage.setMessageId(statusMessageId);
-                    editMessage.setText(sb.toString());
-                    editMessage.enableMarkdown(true);
-                    editMessage.setReplyMarkup(markup);
-                    bot.execute(editMessage);
-                } catch (TelegramApiException e) {
-                    // Если редактирование не удалось, отправляем новое сообщение
-                    Integer newMessageId = markup != null
-                            ? bot.sendMessageWithReturnIdSafe(chatId, sb.toString(), markup)
-                            : bot.sendTextMessageWithReturnIdSafe(chatId, sb.toString());
-                    if (newMessageId != null) {
-                        lobby.setStatusMessageId(player.getUserId(), newMessageId);
-                    }
-                }
-            } else {
-                // Отправляем новое сообщение и сохраняем его ID
-                Integer newMessageId = markup != null
-                        ? bot.sendMessageWithReturnIdSafe(chatId, sb.toString(), markup)
-                        : bot.sendTextMessageWithReturnIdSafe(chatId, sb.toString());
-                if (newMessageId != null) {
-                    lobby.setStatusMessageId(player.getUserId(), newMessageId);
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error updating player status: " + e.getMessage(), e);
-        }
-    }
 }
@@ -54,13 +54,21 @@ public class KickCommand extends BaseCommand {
             if (lobby.isOwner(player.getUserId())) {
                 String username = args.startsWith("@") ? args.substring(1) : args;
 
-                // Здесь должна быть логика поиска и исключения игрока
-                // Псевдокод для примера:
-                // boolean kicked = sessionManager.kickPlayerFromLobby(username, lobby.getLobbyCode());
+                Optional<Player> kicked = sessionManager.kickPlayerFromLobby(username, lobby.getLobbyCode());
 
                 SendMessage sendMessage = new SendMessage();
                 sendMessage.setChatId(chatId);
-                sendMessage.setText("✅ Игрок с именем @" + username + " исключен из лобби.");
+                if (kicked.isPresent()) {
+                    sendMessage.setText("✅ Игрок с именем @" + username + " исключен из лобби.");
+
+                    // Уведомляем исключенного игрока
+                    long kickedChatId = kicked.get().getChatId();
+                    if (kickedChatId != 0) {
+                        sendMessage(kickedChatId, "❌ Вы были исключены из лобби " + lobby.getLobbyCode() + ".");
+                    }
+                } else {
+                    sendMessage.setText("❌ Игрок с именем @" + username + " не найден в лобби.");
+                }
                 execute(sendMessage);
             } else {
                 SendMessage sendMessage = new SendMessage();
@@ -11,13 +11,18 @@ import org.telegram.telegrambots.meta.api.objects.Message;
  */
 public class StartCommand extends BaseCommand {
     private final SecurityManager securityManager;
+    private final JoinCommand joinCommand;
 
     /**
      * Creates a new start command.
+     *
+     * @param joinCommand Joins the lobby of a join link
      */
-    public StartCommand(AmongUsBot bot, SessionManager sessionManager, SecurityManager securityManager) {
+    public StartCommand(AmongUsBot bot, SessionManager sessionManager, SecurityManager securityManager,
+                        JoinCommand joinCommand) {
         super(bot, sessionManager);
         this.securityManager = securityManager;
+        this.joinCommand = joinCommand;
     }
 
     @Override
@@ -32,6 +37,12 @@ public class StartCommand extends BaseCommand {
 
     @Override
     public void execute(Message message, String args) {
+        // Пришли по ссылке из группы: сразу присоединяемся к лобби
+        if (message.isUserMessage() && args.startsWith(JoinCommand.LINK_PREFIX)) {
+            joinCommand.joinFromLink(message, args.substring(JoinCommand.LINK_PREFIX.length()));
+            return;
+        }
+
         SendMessage sendMessage = new SendMessage();
         sendMessage.setChatId(message.getChatId().toString());
         sendMessage.setText("Добро пожаловать в игру Among Us для дачи!\n\n" +
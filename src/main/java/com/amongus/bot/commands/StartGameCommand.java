@@ -1,6 +1,7 @@
 package com.amongus.bot.commands;
 
 import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.core.LobbyPhase;
 import com.amongus.bot.core.SessionManager;
 import com.amongus.bot.game.lobby.GameLobby;
 import com.amongus.bot.models.Config;
@@ -52,6 +53,14 @@ public class StartGameCommand extends BaseCommand {
                     return;
                 }
 
+                if (sessionManager.getLobbyPhase(lobby.getLobbyCode()) != LobbyPhase.LOBBY) {
+                    SendMessage sendMessage = new SendMessage();
+                    sendMessage.setChatId(chatId);
+                    sendMessage.setText("❌ Игра уже запущена!");
+                    execute(sendMessage);
+                    return;
+                }
+
                 SendMessage sendMessage = new SendMessage();
                 sendMessage.setChatId(chatId);
                 sendMessage.setText("🚀 Игра запускается принудительно...");
@@ -0,0 +1,70 @@
+package com.amongus.bot.commands;
+
+import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.core.SessionManager;
+import com.amongus.bot.core.SpectatorFeed;
+import com.amongus.bot.game.states.GameSession;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.util.Optional;
+
+/**
+ * Command that lets anyone follow a game through the spectator channel.
+ * Instead of replaying the game it replies with a short summary of it.
+ */
+public class WatchCommand extends BaseCommand {
+
+    public WatchCommand(AmongUsBot bot, SessionManager sessionManager) {
+        super(bot, sessionManager);
+    }
+
+    @Override
+    public String getName() {
+        return "watch";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Shows a summary of a game and where to watch it.";
+    }
+
+    @Override
+    public void execute(Message message, String args) {
+        String chatId = message.getChatId().toString();
+        SpectatorFeed spectatorFeed = bot.getSpectatorFeed();
+
+        if (!spectatorFeed.isEnabled()) {
+            reply(chatId, "❌ Трансляция игр не настроена.");
+            return;
+        }
+        if (args.isEmpty()) {
+            reply(chatId, "Пожалуйста, укажите код лобби:\n/watch XXXXX");
+            return;
+        }
+
+        String lobbyCode = args.toUpperCase();
+        Optional<GameSession> sessionOpt = sessionManager.getSessionByLobbyCode(lobbyCode);
+        if (!sessionOpt.isPresent()) {
+            reply(chatId, "❌ Игра с кодом *" + lobbyCode + "* не найдена.");
+            return;
+        }
+
+        StringBuilder text = new StringBuilder(spectatorFeed.summarize(sessionOpt.get()));
+        String link = spectatorFeed.getChannelLink();
+        text.append("\n\n📺 Дальше следите за игрой в канале трансляций");
+        if (link != null) {
+            // Подчёркивания в имени канала иначе ломают разметку
+            text.append(": ").append(link.replace("_", "\\_"));
+        }
+        reply(chatId, text.toString());
+    }
+
+    private void reply(String chatId, String text) {
+        SendMessage sendMessage = new SendMessage();
+        sendMessage.setChatId(chatId);
+        sendMessage.setText(text);
+        sendMessage.enableMarkdown(true);
+        execute(sendMessage);
+    }
+}
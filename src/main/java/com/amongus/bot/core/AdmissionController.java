@@ -0,0 +1,116 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.utils.ConcurrentLongMap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides per user whether an incoming update is handled at all, before it reaches the dispatcher.
+ * Every user has a token bucket kept as a single "theoretical arrival time" (the generic cell
+ * rate algorithm), so admitting an update is one map lookup and one compare-and-set without locks.
+ * A user over the limit gets at most one notice per notice interval; all other rejected updates
+ * are dropped without any further work.
+ * <p>
+ * Limiters of users who have been quiet long enough for their bucket to refill are dropped by
+ * {@link #evictIdle()}. A user whose limiter is dropped while an update is being admitted at
+ * worst gets one extra update through.
+ */
+public class AdmissionController {
+
+    /**
+     * The outcome of admitting an update.
+     */
+    public enum Decision {
+        ADMITTED,
+        // Rejected without telling the user, who has already been told recently
+        REJECTED,
+        // Rejected, and the user should be told to slow down
+        REJECTED_NOTIFY
+    }
+
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final long noticeIntervalNanos;
+
+    private final ConcurrentLongMap<Limiter> limiters = new ConcurrentLongMap<>();
+
+    /**
+     * Creates an admission controller.
+     *
+     * @param updatesPerSecond   The sustained number of updates a user may send per second
+     * @param burst              The number of updates a user may send at once after being idle
+     * @param noticeIntervalSecs The minimum time between two notices to the same user
+     */
+    public AdmissionController(double updatesPerSecond, int burst, long noticeIntervalSecs) {
+        if (updatesPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / updatesPerSecond);
+        this.toleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.noticeIntervalNanos = TimeUnit.SECONDS.toNanos(noticeIntervalSecs);
+    }
+
+    /**
+     * Admits or rejects an update of a user.
+     */
+    public Decision admit(long userId) {
+        long now = System.nanoTime();
+        Limiter limiter = limiters.get(userId);
+        if (limiter == null) {
+            limiter = limiters.computeIfAbsent(userId, id -> new Limiter(now));
+        }
+
+        AtomicLong arrival = limiter.theoreticalArrival;
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, now) + emissionIntervalNanos;
+            if (next - now > toleranceNanos + emissionIntervalNanos) {
+                return limiter.claimNotice(now, noticeIntervalNanos) ? Decision.REJECTED_NOTIFY : Decision.REJECTED;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return Decision.ADMITTED;
+            }
+        }
+    }
+
+    /**
+     * Drops the limiters of users whose bucket has refilled completely.
+     *
+     * @return The number of dropped limiters
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        return limiters.removeIf((userId, limiter) -> limiter.theoreticalArrival.get() - now <= 0);
+    }
+
+    /**
+     * Gets the number of users currently tracked.
+     */
+    public int getTrackedUserCount() {
+        return limiters.size();
+    }
+
+    /**
+     * Rate state of one user.
+     */
+    private static final class Limiter {
+        // The time at which the bucket would be full again if no more updates came
+        private final AtomicLong theoreticalArrival;
+        private final AtomicLong nextNotice;
+
+        Limiter(long now) {
+            // A new user starts with a full bucket
+            this.theoreticalArrival = new AtomicLong(now);
+            this.nextNotice = new AtomicLong(now);
+        }
+
+        /**
+         * Claims the right to send the user a notice, at most once per interval.
+         */
+        boolean claimNotice(long now, long intervalNanos) {
+            long allowedAt = nextNotice.get();
+            return now - allowedAt >= 0 && nextNotice.compareAndSet(allowedAt, now + intervalNanos);
+        }
+    }
+}
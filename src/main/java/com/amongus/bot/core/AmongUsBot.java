@@ -9,18 +9,27 @@ import com.amongus.bot.utils.SecurityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.pinnedmessages.PinChatMessage;
+import org.telegram.telegrambots.meta.api.methods.pinnedmessages.UnpinChatMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.io.Serializable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,7 +37,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class AmongUsBot extends TelegramLongPollingBot {
     private static final Logger log = LoggerFactory.getLogger(AmongUsBot.class);
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    private final WheelTimer timer = new WheelTimer(Config.TIMER_TICK_MILLIS, Config.TIMER_WHEEL_SIZE);
     
     private final CommandHandler commandHandler;
     private final CallbackQueryHandler callbackQueryHandler;
@@ -36,17 +45,155 @@ public class AmongUsBot extends TelegramLongPollingBot {
     private final PhotoHandler photoHandler;
     private final SessionManager sessionManager;
     private final SecurityManager securityManager;
+    private final UpdateDispatcher updateDispatcher;
+    private final OutboundQueue outboundQueue;
+    private final Broadcaster broadcaster;
+    private final BotMetrics metrics;
+    private final GameClock gameClock;
+    private final LobbyStatusBoard lobbyStatusBoard;
+    private final GameHud gameHud;
+    private final MeetingBoard meetingBoard;
+    private final ChatRelay chatRelay;
+    private final SpectatorFeed spectatorFeed;
+    private final SessionJournal sessionJournal;
+    private final MessageOutbox outbox;
+    private final AdmissionController admissionController = new AdmissionController(
+            Config.ADMISSION_UPDATES_PER_SECOND, Config.ADMISSION_BURST, Config.ADMISSION_NOTICE_INTERVAL_SECONDS);
+    
+    // Pending deletions of temporary messages by owner (lobby code)
+    private final Map<String, Set<TemporaryMessage>> temporaryMessages = new ConcurrentHashMap<>();
     
     public AmongUsBot() {
-        this.securityManager = new SecurityManager();
+        this.outboundQueue = new OutboundQueue(this, Config.OUTBOUND_SENDER_THREADS);
+        this.broadcaster = new Broadcaster(outboundQueue);
+        this.securityManager = new SecurityManager(timer);
         this.sessionManager = new SessionManager();
+        this.sessionJournal = SessionJournal.open(Config.JOURNAL_DIRECTORY, Config.JOURNAL_SEGMENT_BYTES);
+        sessionManager.setJournal(sessionJournal);
+        this.outbox = MessageOutbox.open(Config.OUTBOX_DIRECTORY, Config.OUTBOX_SEGMENT_BYTES);
+        outbox.setSender(this::sendFromOutbox);
         this.commandHandler = new CommandHandler(this, sessionManager, securityManager);
         this.callbackQueryHandler = new CallbackQueryHandler(this, sessionManager, securityManager);
         this.messageHandler = new MessageHandler(this, sessionManager, securityManager);
         this.photoHandler = new PhotoHandler(this, sessionManager, securityManager);
+        this.metrics = new BotMetrics();
+        this.updateDispatcher = new UpdateDispatcher(sessionManager, this::processUpdate, Config.UPDATE_WORKER_THREADS,
+                metrics);
+        this.gameClock = new GameClock(this, updateDispatcher, timer, metrics);
+        sessionManager.setDispatcher(updateDispatcher);
+        if (Config.HIBERNATE_IDLE_LOBBY_MINUTES > 0) {
+            sessionManager.enableHibernation(this, Config.HIBERNATE_IDLE_LOBBY_MINUTES);
+        }
+        sessionManager.setGameClock(gameClock);
+        sessionManager.addLobbyRemovalListener(gameClock::cancel);
+        this.lobbyStatusBoard = new LobbyStatusBoard(this, sessionManager, updateDispatcher, timer,
+                Config.LOBBY_STATUS_DEBOUNCE_MILLIS);
+        sessionManager.addMembershipListener(lobbyStatusBoard::invalidate);
+        sessionManager.addLobbyRemovalListener(lobbyStatusBoard::forget);
+        this.gameHud = new GameHud(this, sessionManager, updateDispatcher, timer,
+                Config.GAME_HUD_REFRESH_MILLIS, Config.GAME_HUD_COUNTDOWN_STEP_SECONDS);
+        sessionManager.addLobbyRemovalListener(gameHud::forget);
+        this.meetingBoard = new MeetingBoard(this, updateDispatcher, timer,
+                Config.MEETING_BOARD_REFRESH_MILLIS, Config.MEETING_BOARD_COUNTDOWN_STEP_SECONDS);
+        sessionManager.addLobbyRemovalListener(meetingBoard::forget);
+        this.chatRelay = new ChatRelay(this, updateDispatcher, timer, Config.CHAT_RELAY_WINDOW_MILLIS);
+        sessionManager.addLobbyRemovalListener(chatRelay::forget);
+        this.spectatorFeed = new SpectatorFeed(this, Config.SPECTATOR_CHANNEL_ID, Config.SPECTATOR_PROGRESS_STEP_PERCENT);
+        sessionManager.addLobbyRemovalListener(spectatorFeed::forget);
+        
+        metrics.registerGauge("lobbies", sessionManager::getLobbyCount);
+        metrics.registerGauge("lobbies.hibernated", sessionManager::getHibernatedLobbyCount);
+        metrics.registerGauge("hibernation.offheap.bytes", sessionManager::getHibernatedBytes);
+        metrics.registerGauge("dispatcher.mailboxes", updateDispatcher::getActiveMailboxCount);
+        metrics.registerGauge("outbound.chats", outboundQueue::getTrackedChatCount);
+        metrics.registerGauge("outbound.edits.submitted", outboundQueue::getEditsSubmitted);
+        metrics.registerGauge("outbound.edits.saved",
+                () -> outboundQueue.getEditsCoalesced() + outboundQueue.getEditsSuppressed());
+        metrics.registerGauge("outbound.edits.coalesced_permille", () -> {
+            long submitted = outboundQueue.getEditsSubmitted();
+            long saved = outboundQueue.getEditsCoalesced() + outboundQueue.getEditsSuppressed();
+            return submitted == 0 ? 0 : saved * 1000 / submitted;
+        });
+        metrics.registerGauge("timer.pending", timer::getPendingCount);
+        metrics.registerGauge("admission.users", admissionController::getTrackedUserCount);
+        metrics.registerGauge("confirmations.size", securityManager.getConfirmationCodes()::size);
+        metrics.registerGauge("confirmations.expired", securityManager.getConfirmationCodes()::getExpiredCount);
+        metrics.registerGauge("confirmations.evicted", securityManager.getConfirmationCodes()::getEvictedCount);
+        timer.scheduleAtFixedRate(metrics::logSnapshot,
+                Config.METRICS_LOG_INTERVAL_SECONDS, Config.METRICS_LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        
+        // Messages that were meant to disappear must not outlive their lobby
+        sessionManager.addLobbyRemovalListener(this::flushTemporaryMessages);
+        // Sabotage timeouts and anything else still pending for the lobby
+        sessionManager.addLobbyRemovalListener(timer::cancelAll);
+        
+        timer.scheduleAtFixedRate(admissionController::evictIdle,
+                Config.ADMISSION_EVICTION_INTERVAL_SECONDS, Config.ADMISSION_EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
         
         // Schedule periodic tasks like checking game timeouts, etc.
-        scheduler.scheduleAtFixedRate(sessionManager::cleanupInactiveSessions, 10, 5, TimeUnit.MINUTES);
+        timer.scheduleAtFixedRate(sessionManager::cleanupInactiveSessions,
+                Config.IDLE_SWEEP_INTERVAL_SECONDS, Config.IDLE_SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        
+        // Last, since resumed games need everything above
+        restoreFromJournal();
+        restoreOutbox();
+    }
+    
+    /**
+     * Sends the outbox entries the previous run did not get to and schedules the deletions it left pending.
+     */
+    private void restoreOutbox() {
+        if (!outbox.isEnabled()) {
+            return;
+        }
+        int resent = 0;
+        List<MessageOutbox.Entry> pending = outbox.replay();
+        for (MessageOutbox.Entry entry : pending) {
+            if (entry.getMessageId() == 0) {
+                sendFromOutbox(entry);
+                resent++;
+            } else {
+                scheduleDeletion(entry, Math.max(0, entry.getDeleteAtMillis() - System.currentTimeMillis()));
+            }
+        }
+        log.info("Resent {} messages from the outbox and rescheduled {} deletions", resent, pending.size() - resent);
+        
+        metrics.registerGauge("outbox.pending", outbox::getPendingCount);
+        metrics.registerGauge("outbox.commits", outbox::getCommits);
+        metrics.registerGauge("outbox.entries", outbox::getEntriesCommitted);
+        metrics.registerGauge("outbox.failed", outbox::getRecordsFailed);
+        timer.scheduleAtFixedRate(outbox::requestCompaction,
+                Config.JOURNAL_SNAPSHOT_CHECK_SECONDS, Config.JOURNAL_SNAPSHOT_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Rebuilds lobbies and games from the newest snapshot and the journal after it, resumes the
+     * games, replaces both with a snapshot of the restored state and starts recording. The time
+     * the rebuilding took is kept as the "recovery.millis" metric; resuming only queues messages.
+     */
+    private void restoreFromJournal() {
+        if (!sessionJournal.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        JournalReplayer replayer = new JournalReplayer(this, sessionManager);
+        replayer.replay(sessionJournal);
+        long recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Restored {} lobbies in {} ms", sessionManager.getLobbyCount(), recoveryMillis);
+        replayer.resumeGames();
+
+        // No updates are handled yet, so the lobbies can be copied without their mailboxes
+        sessionJournal.snapshot(sessionManager, null);
+        sessionJournal.start();
+        
+        metrics.registerGauge("recovery.millis", () -> recoveryMillis);
+        metrics.registerGauge("journal.records", sessionJournal::getRecordsWritten);
+        metrics.registerGauge("journal.failed", sessionJournal::getRecordsFailed);
+        metrics.registerGauge("snapshot.bytes", sessionJournal::getLastSnapshotBytes);
+        timer.scheduleAtFixedRate(sessionJournal::requestSync,
+                Config.JOURNAL_SYNC_INTERVAL_MILLIS, Config.JOURNAL_SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(() -> sessionJournal.requestSnapshot(sessionManager, updateDispatcher),
+                Config.JOURNAL_SNAPSHOT_CHECK_SECONDS, Config.JOURNAL_SNAPSHOT_CHECK_SECONDS, TimeUnit.SECONDS);
     }
 
     @Override
@@ -59,8 +206,67 @@ public class AmongUsBot extends TelegramLongPollingBot {
         return Config.BOT_TOKEN;
     }
 
+    /**
+     * Hands the update over to the dispatcher so that the polling thread never blocks on handler work.
+     * Updates of users who send too much are dropped here, before any handler work is done;
+     * a dropped button press is still answered, with text only within the notice interval.
+     */
     @Override
     public void onUpdateReceived(Update update) {
+        User from = senderOf(update);
+        AdmissionController.Decision decision = from != null
+                ? admissionController.admit(from.getId())
+                : AdmissionController.Decision.ADMITTED;
+
+        if (decision == AdmissionController.Decision.ADMITTED) {
+            metrics.increment("updates.admitted");
+            updateDispatcher.dispatch(update);
+            return;
+        }
+
+        metrics.increment("updates.rejected");
+        if (decision == AdmissionController.Decision.REJECTED_NOTIFY) {
+            log.debug("Throttling updates of user {}", from.getId());
+            sendSlowDownNotice(update);
+        } else if (update.hasCallbackQuery()) {
+            // Every button press needs an answer, or the client spins and then shows an error
+            AnswerCallbackQuery answer = new AnswerCallbackQuery();
+            answer.setCallbackQueryId(update.getCallbackQuery().getId());
+            answerCallbackQuerySafe(answer);
+        }
+    }
+
+    private static User senderOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getFrom();
+        }
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getFrom();
+        }
+        return null;
+    }
+
+    /**
+     * Tells a throttled user to slow down, as an answer to the button they pressed or as a message.
+     */
+    private void sendSlowDownNotice(Update update) {
+        String text = "⏳ Слишком много действий. Подождите немного.";
+        if (update.hasCallbackQuery()) {
+            AnswerCallbackQuery answer = new AnswerCallbackQuery();
+            answer.setCallbackQueryId(update.getCallbackQuery().getId());
+            answer.setText(text);
+            answer.setShowAlert(false);
+            answerCallbackQuerySafe(answer);
+        } else if (update.hasMessage()) {
+            sendTextMessageSafe(update.getMessage().getChatId().toString(), text);
+        }
+    }
+
+    /**
+     * Routes a single update to the appropriate handler.
+     * Called from the mailbox of the lobby the update belongs to.
+     */
+    private void processUpdate(Update update) {
         try {
             if (update.hasMessage()) {
                 if (update.getMessage().hasPhoto()) {
@@ -82,21 +288,31 @@ public class AmongUsBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Safely sends a message and returns the sent message object.
+     * Queues an API call addressed to a chat in the rate-limited outbound pipeline.
      */
-    public Message sendMessageSafe(SendMessage message) {
-        try {
-            return execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Failed to send message: {}", e.getMessage(), e);
-            return null;
-        }
+    public <T extends Serializable> CompletableFuture<T> enqueue(String chatId, BotApiMethod<T> method) {
+        return outboundQueue.submit(chatId, method);
+    }
+
+    /**
+     * Safely sends a message without blocking.
+     *
+     * @return A future with the sent message, or null if sending failed
+     */
+    public CompletableFuture<Message> sendMessageSafe(SendMessage message) {
+        return outboundQueue.submit(message.getChatId(), message)
+                .exceptionally(e -> {
+                    log.error("Failed to send message: {}", e.getMessage(), e);
+                    return null;
+                });
     }
 
     /**
-     * Safely sends a text message and returns the sent message object.
+     * Safely sends a text message without blocking.
+     *
+     * @return A future with the sent message, or null if sending failed
      */
-    public Message sendTextMessageSafe(String chatId, String text) {
+    public CompletableFuture<Message> sendTextMessageSafe(String chatId, String text) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(text);
@@ -105,62 +321,193 @@ public class AmongUsBot extends TelegramLongPollingBot {
         return sendMessageSafe(message);
     }
 
+    /**
+     * Sends the messages to their chats concurrently.
+     * Recipients that could not be reached are logged.
+     *
+     * @return A future with the per-recipient outcome
+     */
+    public CompletableFuture<BroadcastResult> broadcastSafe(Collection<SendMessage> messages) {
+        return broadcaster.broadcast(messages).whenComplete((result, error) -> {
+            if (result != null && !result.isAllDelivered()) {
+                result.getFailed().forEach((chatId, e) ->
+                        log.error("Failed to broadcast message to chat {}: {}", chatId, e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Sends the same text message to all given chats concurrently.
+     *
+     * @return A future with the per-recipient outcome
+     */
+    public CompletableFuture<BroadcastResult> broadcastTextSafe(Collection<String> chatIds, String text) {
+        List<SendMessage> messages = new ArrayList<>(chatIds.size());
+        for (String chatId : chatIds) {
+            SendMessage message = new SendMessage();
+            message.setChatId(chatId);
+            message.setText(text);
+            message.enableMarkdown(true);
+            messages.add(message);
+        }
+        return broadcastSafe(messages);
+    }
+
     /**
      * Sends a message that will be auto-deleted after a specified time.
      * Used for sensitive information like role assignments.
      */
     public void sendTemporaryMessage(String chatId, String text, int secondsToLive) {
+        sendTemporaryMessage(null, chatId, text, secondsToLive);
+    }
+
+    /**
+     * Sends a message that will be auto-deleted after a specified time.
+     * The pending deletion is tracked under the given owner, so that
+     * {@link #flushTemporaryMessages(String)} can delete the messages early.
+     *
+     * @param ownerKey The owner of the message, usually a lobby code, or null if not tracked
+     */
+    public void sendTemporaryMessage(String ownerKey, String chatId, String text, int secondsToLive) {
+        sendTemporaryMessage(ownerKey, chatId, text, secondsToLive, null);
+    }
+
+    /**
+     * Sends a message that will be auto-deleted after a specified time, through the outbox,
+     * so that it is sent and deleted even if the bot restarts in between.
+     *
+     * @param ownerKey  The owner of the message, usually a lobby code, or null if not tracked
+     * @param dedupeKey Identifies the message, so that it is never queued twice; null if it cannot be anyway
+     */
+    public void sendTemporaryMessage(String ownerKey, String chatId, String text, int secondsToLive, String dedupeKey) {
+        if (!outbox.add(dedupeKey, ownerKey, chatId, text, secondsToLive)) {
+            log.debug("Temporary message {} is already in the outbox", dedupeKey);
+        }
+    }
+
+    /**
+     * Sends a message from the outbox once it is on disk and schedules its deletion.
+     */
+    private void sendFromOutbox(MessageOutbox.Entry entry) {
         SendMessage message = new SendMessage();
-        message.setChatId(chatId);
-        message.setText(text);
+        message.setChatId(entry.getChatId());
+        message.setText(entry.getText());
         
-        try {
-            Message sentMessage = execute(message);
+        outboundQueue.submit(entry.getChatId(), message).whenComplete((sentMessage, error) -> {
+            if (error != null) {
+                // Retried already; sending it again after a restart would not help either
+                log.error("Failed to send temporary message: {}", error.getMessage(), error);
+                outbox.done(entry);
+                return;
+            }
             
-            // Schedule message deletion
-            scheduler.schedule(() -> {
-                DeleteMessage deleteMessage = new DeleteMessage();
-                deleteMessage.setChatId(chatId);
-                deleteMessage.setMessageId(sentMessage.getMessageId());
-                try {
-                    execute(deleteMessage);
-                } catch (TelegramApiException e) {
-                    log.error("Failed to delete temporary message: {}", e.getMessage(), e);
+            long delayMillis = TimeUnit.SECONDS.toMillis(entry.getSecondsToLive());
+            outbox.sent(entry, sentMessage.getMessageId(), System.currentTimeMillis() + delayMillis);
+            scheduleDeletion(entry, delayMillis);
+        });
+    }
+
+    private void scheduleDeletion(MessageOutbox.Entry entry, long delayMillis) {
+        String ownerKey = entry.getOwnerKey();
+        TemporaryMessage temporary = new TemporaryMessage(entry);
+        if (ownerKey != null) {
+            temporaryMessages.compute(ownerKey, (key, pending) -> {
+                Set<TemporaryMessage> set = pending != null ? pending : ConcurrentHashMap.newKeySet();
+                set.add(temporary);
+                return set;
+            });
+        }
+        
+        temporary.deletion = timer.schedule(ownerKey, () -> {
+            if (ownerKey == null || forgetTemporaryMessage(ownerKey, temporary)) {
+                deleteTemporaryMessage(temporary);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes all pending temporary messages of an owner right away and cancels their timers.
+     */
+    public void flushTemporaryMessages(String ownerKey) {
+        Set<TemporaryMessage> pending = temporaryMessages.remove(ownerKey);
+        if (pending == null) {
+            return;
+        }
+        for (TemporaryMessage temporary : pending) {
+            // Whoever removes the message from the set deletes it, the timer or this call
+            if (pending.remove(temporary)) {
+                WheelTimer.Timeout deletion = temporary.deletion;
+                if (deletion != null) {
+                    deletion.cancel();
                 }
-            }, secondsToLive, TimeUnit.SECONDS);
-        } catch (TelegramApiException e) {
-            log.error("Failed to send temporary message: {}", e.getMessage(), e);
+                deleteTemporaryMessage(temporary);
+            }
+        }
+    }
+
+    private boolean forgetTemporaryMessage(String ownerKey, TemporaryMessage temporary) {
+        Set<TemporaryMessage> pending = temporaryMessages.get(ownerKey);
+        if (pending == null || !pending.remove(temporary)) {
+            return false;
         }
+        temporaryMessages.computeIfPresent(ownerKey, (key, set) -> set.isEmpty() ? null : set);
+        return true;
     }
 
-    public Integer sendMessageWithReturnIdSafe(String chatId, String text, InlineKeyboardMarkup markup) {
+    private void deleteTemporaryMessage(TemporaryMessage temporary) {
+        MessageOutbox.Entry entry = temporary.entry;
+        DeleteMessage deleteMessage = new DeleteMessage();
+        deleteMessage.setChatId(entry.getChatId());
+        deleteMessage.setMessageId(entry.getMessageId());
+        outboundQueue.submit(entry.getChatId(), deleteMessage).whenComplete((deleted, error) -> {
+            if (error != null) {
+                log.error("Failed to delete temporary message: {}", error.getMessage(), error);
+            }
+            outbox.done(entry);
+        });
+    }
+
+    public CompletableFuture<Integer> sendMessageWithReturnIdSafe(String chatId, String text, InlineKeyboardMarkup markup) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(text);
         message.enableMarkdown(true);
         message.setReplyMarkup(markup);
-        try {
-            return execute(message).getMessageId();
-        } catch (TelegramApiException e) {
-            log.error("Failed to send message", e);
-            return null;
-        }
+        return outboundQueue.submit(chatId, message)
+                .thenApply(Message::getMessageId)
+                .exceptionally(e -> {
+                    log.error("Failed to send message", e);
+                    return null;
+                });
     }
 
-    public boolean editMessageTextSafe(String chatId, Integer messageId, String text, InlineKeyboardMarkup markup) {
+    public CompletableFuture<Boolean> editMessageTextSafe(String chatId, Integer messageId, String text, InlineKeyboardMarkup markup) {
+        return editMessageTextChecked(chatId, messageId, text, markup).thenApply(result -> result == EditResult.EDITED);
+    }
+
+    /**
+     * Safely edits a message and tells a message that is gone apart from other failures,
+     * so that callers replace the message only when editing it can no longer work.
+     *
+     * @return A future with the outcome of the edit; it never completes exceptionally
+     */
+    public CompletableFuture<EditResult> editMessageTextChecked(String chatId, Integer messageId, String text, InlineKeyboardMarkup markup) {
         EditMessageText edit = new EditMessageText();
         edit.setChatId(chatId);
         edit.setMessageId(messageId);
         edit.setText(text);
         edit.enableMarkdown(true);
         edit.setReplyMarkup(markup);
-        try {
-            execute(edit);
-            return true;
-        } catch (TelegramApiException e) {
-            log.error("Failed to edit message", e);
-            return false;
-        }
+        return outboundQueue.submitEdit(edit)
+                .thenApply(result -> EditResult.EDITED)
+                .exceptionally(e -> {
+                    if (OutboundQueue.isMessageGone(e)) {
+                        log.debug("Message {} in chat {} can no longer be edited", messageId, chatId);
+                        return EditResult.MESSAGE_GONE;
+                    }
+                    log.error("Failed to edit message", e);
+                    return EditResult.FAILED;
+                });
     }
 
     /**
@@ -169,30 +516,62 @@ public class AmongUsBot extends TelegramLongPollingBot {
      *
      * @param chatId The chat ID to send the message to
      * @param text The text to send
-     * @return The message ID of the sent message, or null if sending failed
+     * @return A future with the message ID of the sent message, or null if sending failed
      */
-    public Integer sendTextMessageWithReturnIdSafe(String chatId, String text) {
+    public CompletableFuture<Integer> sendTextMessageWithReturnIdSafe(String chatId, String text) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(text);
         message.enableMarkdown(true);
-        try {
-            return execute(message).getMessageId();
-        } catch (TelegramApiException e) {
-            log.error("Failed to send message", e);
-            return null;
-        }
+        return outboundQueue.submit(chatId, message)
+                .thenApply(Message::getMessageId)
+                .exceptionally(e -> {
+                    log.error("Failed to send message", e);
+                    return null;
+                });
     }
 
-    public boolean deleteMessage(String chatId, Integer messageId) {
+    /**
+     * Pins a message in a chat without notifying anyone.
+     */
+    public CompletableFuture<Boolean> pinMessageSafe(String chatId, Integer messageId) {
+        PinChatMessage pin = new PinChatMessage(chatId, messageId);
+        pin.setDisableNotification(true);
+        return outboundQueue.submit(chatId, pin)
+                .exceptionally(e -> {
+                    log.error("Failed to pin message", e);
+                    return false;
+                });
+    }
+
+    public CompletableFuture<Boolean> unpinMessageSafe(String chatId, Integer messageId) {
+        UnpinChatMessage unpin = new UnpinChatMessage(chatId);
+        unpin.setMessageId(messageId);
+        return outboundQueue.submit(chatId, unpin)
+                .exceptionally(e -> {
+                    log.error("Failed to unpin message", e);
+                    return false;
+                });
+    }
+
+    public CompletableFuture<Boolean> deleteMessage(String chatId, Integer messageId) {
         DeleteMessage deleteMessage = new DeleteMessage(chatId, messageId);
-        try {
-            execute(deleteMessage);
-            return true;
-        } catch (TelegramApiException e) {
-            log.error("Failed to delete message", e);
-            return false;
-        }
+        return outboundQueue.submit(chatId, deleteMessage)
+                .exceptionally(e -> {
+                    log.error("Failed to delete message", e);
+                    return false;
+                });
+    }
+
+    /**
+     * Answers a callback query without blocking.
+     */
+    public CompletableFuture<Boolean> answerCallbackQuerySafe(AnswerCallbackQuery answer) {
+        return outboundQueue.submitUnordered(answer)
+                .exceptionally(e -> {
+                    log.error("Failed to answer callback query", e);
+                    return false;
+                });
     }
 
     /**
@@ -213,8 +592,64 @@ public class AmongUsBot extends TelegramLongPollingBot {
         return securityManager;
     }
 
+    public LobbyStatusBoard getLobbyStatusBoard() {
+        return lobbyStatusBoard;
+    }
+
+    public GameHud getGameHud() {
+        return gameHud;
+    }
+
+    public MeetingBoard getMeetingBoard() {
+        return meetingBoard;
+    }
+
+    public ChatRelay getChatRelay() {
+        return chatRelay;
+    }
+
+    public SpectatorFeed getSpectatorFeed() {
+        return spectatorFeed;
+    }
 
-    public ScheduledExecutorService getScheduler() {
-        return scheduler;
+    public SessionJournal getSessionJournal() {
+        return sessionJournal;
+    }
+
+
+    /**
+     * Gets the timer shared by everything that needs to run later.
+     */
+    public WheelTimer getTimer() {
+        return timer;
+    }
+
+    public UpdateDispatcher getUpdateDispatcher() {
+        return updateDispatcher;
+    }
+
+    public BotMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void onClosing() {
+        updateDispatcher.shutdown();
+        outboundQueue.shutdown();
+        securityManager.shutdown();
+        timer.shutdown();
+        super.onClosing();
+    }
+
+    /**
+     * A sent message waiting for its scheduled deletion.
+     */
+    private static final class TemporaryMessage {
+        private final MessageOutbox.Entry entry;
+        private volatile WheelTimer.Timeout deletion;
+
+        TemporaryMessage(MessageOutbox.Entry entry) {
+            this.entry = entry;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package com.amongus.bot.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lightweight in-process metrics: counters, maximums and gauges, logged periodically.
+ * Recording is contention-free so it can be used on hot paths.
+ */
+public class BotMetrics {
+    private static final Logger log = LoggerFactory.getLogger(BotMetrics.class);
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> maximums = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Increments a counter by one.
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Adds a value to a counter.
+     */
+    public void add(String name, long value) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(value);
+    }
+
+    /**
+     * Records a value of which only the maximum since the last snapshot is kept.
+     */
+    public void recordMax(String name, long value) {
+        maximums.computeIfAbsent(name, key -> new AtomicLong(Long.MIN_VALUE)).accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Records a duration: adds it to "{name}.total", counts it in "{name}.count" and tracks "{name}.max".
+     */
+    public void recordDuration(String name, long value) {
+        add(name + ".total", value);
+        increment(name + ".count");
+        recordMax(name + ".max", value);
+    }
+
+    /**
+     * Registers a gauge that is read every time a snapshot is taken.
+     */
+    public void registerGauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Gets the current value of a counter.
+     */
+    public long getCounter(String name) {
+        LongAdder adder = counters.get(name);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    /**
+     * Takes a snapshot of all metrics. Maximums are reset by the snapshot.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, adder) -> values.put(name, adder.sum()));
+        maximums.forEach((name, max) -> {
+            long value = max.getAndSet(Long.MIN_VALUE);
+            if (value != Long.MIN_VALUE) {
+                values.put(name, value);
+            }
+        });
+        gauges.forEach((name, supplier) -> {
+            try {
+                values.put(name, supplier.getAsLong());
+            } catch (Exception e) {
+                log.warn("Failed to read gauge {}: {}", name, e.getMessage());
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Logs a snapshot of all metrics.
+     */
+    public void logSnapshot() {
+        Map<String, Long> values = snapshot();
+        if (!values.isEmpty()) {
+            log.info("Metrics: {}", values);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.amongus.bot.core;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-recipient outcome of a broadcast: the sent message for every chat that received it
+ * and the error for every chat that did not.
+ */
+public class BroadcastResult {
+    private final Map<String, Message> delivered = new LinkedHashMap<>();
+    private final Map<String, Throwable> failed = new LinkedHashMap<>();
+
+    synchronized void recordDelivered(String chatId, Message message) {
+        delivered.put(chatId, message);
+    }
+
+    synchronized void recordFailed(String chatId, Throwable error) {
+        failed.put(chatId, error);
+    }
+
+    /**
+     * Gets the sent messages by chat ID.
+     */
+    public synchronized Map<String, Message> getDelivered() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(delivered));
+    }
+
+    /**
+     * Gets the errors by chat ID of the recipients that did not receive the message.
+     */
+    public synchronized Map<String, Throwable> getFailed() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+
+    public synchronized int getDeliveredCount() {
+        return delivered.size();
+    }
+
+    public synchronized int getFailedCount() {
+        return failed.size();
+    }
+
+    /**
+     * Checks if every recipient received the message.
+     */
+    public synchronized boolean isAllDelivered() {
+        return failed.isEmpty();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BroadcastResult{delivered=" + delivered.size() + ", failed=" + failed.keySet() + "}";
+    }
+}
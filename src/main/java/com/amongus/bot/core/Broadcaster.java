@@ -0,0 +1,58 @@
+package com.amongus.bot.core;
+
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends one message to many chats concurrently.
+ * Every send goes straight to the {@link OutboundQueue}, which limits the overall rate and keeps
+ * each chat's calls in order, so a broadcast is ordered with the direct messages to the same chat
+ * and a slow chat only delays its own messages.
+ */
+public class Broadcaster {
+    private final OutboundQueue outboundQueue;
+
+    /**
+     * Creates a new broadcaster.
+     *
+     * @param outboundQueue The queue the sends are submitted to
+     */
+    public Broadcaster(OutboundQueue outboundQueue) {
+        this.outboundQueue = outboundQueue;
+    }
+
+    /**
+     * Sends the messages concurrently, each to the chat it is addressed to.
+     *
+     * @param messages The messages, one per recipient
+     * @return A future completed once every send has either succeeded or failed.
+     *         It never completes exceptionally; failures are reported per recipient.
+     */
+    public CompletableFuture<BroadcastResult> broadcast(Collection<SendMessage> messages) {
+        BroadcastResult result = new BroadcastResult();
+        CompletableFuture<BroadcastResult> future = new CompletableFuture<>();
+        if (messages.isEmpty()) {
+            future.complete(result);
+            return future;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(messages.size());
+        for (SendMessage message : messages) {
+            String chatId = message.getChatId();
+            outboundQueue.submit(chatId, message).whenComplete((sent, error) -> {
+                if (error != null) {
+                    result.recordFailed(chatId, error);
+                } else {
+                    result.recordDelivered(chatId, sent);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    future.complete(result);
+                }
+            });
+        }
+        return future;
+    }
+}
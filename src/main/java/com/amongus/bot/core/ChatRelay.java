@@ -0,0 +1,117 @@
+package com.amongus.bot.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relays chat lines between players as digests. Lines for a recipient are buffered and sent
+ * as one message once the relay window of the first buffered line has passed, so a burst of
+ * chat costs one message per recipient instead of one per line. Lines keep their order, and a
+ * digest that would exceed Telegram's message length is sent early and a new one started.
+ * <p>
+ * Buffers belong to a lobby and are flushed right away when its game changes phase. The window
+ * flush runs in the lobby's dispatcher mailbox as well, so chat of one phase always arrives before
+ * the messages of the next.
+ */
+public class ChatRelay {
+    private static final Logger log = LoggerFactory.getLogger(ChatRelay.class);
+
+    // Telegram rejects longer messages
+    public static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private final AmongUsBot bot;
+    private final UpdateDispatcher dispatcher;
+    private final WheelTimer timer;
+    private final long windowMillis;
+
+    // Buffered lines by lobby code, then by recipient chat ID
+    private final Map<String, Map<String, StringBuilder>> buffers = new ConcurrentHashMap<>();
+
+    public ChatRelay(AmongUsBot bot, UpdateDispatcher dispatcher, WheelTimer timer, long windowMillis) {
+        this.bot = bot;
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Relays a line to the given chats of a lobby.
+     */
+    public void relay(String lobbyCode, Collection<String> chatIds, String line) {
+        if (line.length() > MAX_MESSAGE_LENGTH) {
+            line = line.substring(0, MAX_MESSAGE_LENGTH - 1) + "…";
+        }
+
+        List<String> digests = new ArrayList<>();
+        List<String> digestChatIds = new ArrayList<>();
+        boolean schedule;
+        Map<String, StringBuilder> lobbyBuffers = buffers.computeIfAbsent(lobbyCode, code -> new LinkedHashMap<>());
+        synchronized (lobbyBuffers) {
+            schedule = lobbyBuffers.isEmpty();
+            for (String chatId : chatIds) {
+                StringBuilder buffer = lobbyBuffers.get(chatId);
+                if (buffer == null) {
+                    lobbyBuffers.put(chatId, new StringBuilder(line));
+                    continue;
+                }
+                if (buffer.length() + 1 + line.length() > MAX_MESSAGE_LENGTH) {
+                    // The digest is full: send it now and start a new one with this line
+                    digests.add(buffer.toString());
+                    digestChatIds.add(chatId);
+                    buffer.setLength(0);
+                    buffer.append(line);
+                } else {
+                    buffer.append('\n').append(line);
+                }
+            }
+        }
+
+        for (int i = 0; i < digests.size(); i++) {
+            bot.sendTextMessageSafe(digestChatIds.get(i), digests.get(i));
+        }
+        if (schedule) {
+            timer.schedule(lobbyCode, () -> dispatcher.submitToLobby(lobbyCode, () -> flush(lobbyCode)),
+                    windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends all lines buffered for a lobby right away.
+     */
+    public void flush(String lobbyCode) {
+        Map<String, StringBuilder> lobbyBuffers = buffers.get(lobbyCode);
+        if (lobbyBuffers == null) {
+            return;
+        }
+        Map<String, String> digests;
+        synchronized (lobbyBuffers) {
+            if (lobbyBuffers.isEmpty()) {
+                return;
+            }
+            digests = new LinkedHashMap<>();
+            for (Map.Entry<String, StringBuilder> entry : lobbyBuffers.entrySet()) {
+                digests.put(entry.getKey(), entry.getValue().toString());
+            }
+            // Emptying the buffers lets the next line schedule the next flush
+            lobbyBuffers.clear();
+        }
+        digests.forEach(bot::sendTextMessageSafe);
+        log.debug("Relayed chat digests of lobby {} to {} chats", lobbyCode, digests.size());
+    }
+
+    /**
+     * Sends what is left for a removed lobby and drops its buffers.
+     */
+    public void forget(String lobbyCode) {
+        flush(lobbyCode);
+        buffers.remove(lobbyCode);
+    }
+}
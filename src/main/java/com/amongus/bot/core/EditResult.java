@@ -0,0 +1,13 @@
+package com.amongus.bot.core;
+
+/**
+ * Outcome of editing a message through {@link AmongUsBot#editMessageTextChecked}.
+ */
+public enum EditResult {
+    /** The message shows the new content. */
+    EDITED,
+    /** Telegram no longer has the message or will not edit it any more, so only a new message helps. */
+    MESSAGE_GONE,
+    /** The edit failed for another reason, such as a network error; the message itself may be fine. */
+    FAILED
+}
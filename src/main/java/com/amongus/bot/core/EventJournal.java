@@ -0,0 +1,270 @@
+package com.amongus.bot.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal in memory-mapped segment files.
+ * <p>
+ * Every record is framed as its length, the CRC32 of its payload and the payload. Segments are
+ * preallocated, so the zero length after the last record marks the end; a record whose CRC does
+ * not match was torn by a crash and ends the segment as well. Appends only write to the mapping,
+ * which survives a crash of the process; {@link #sync()} forces the pages to disk and is called
+ * in batches, so a power loss can lose the records of the last sync interval.
+ * <p>
+ * A {@link SessionSnapshot} replaces all segments before a given one, after which they are
+ * deleted with {@link #deleteSegmentsBefore} and {@link #replay} reads only the segments after it.
+ */
+public class EventJournal {
+    private static final Logger log = LoggerFactory.getLogger(EventJournal.class);
+
+    // "AUJ1" at the start of every segment
+    private static final int MAGIC = 0x41554A31;
+    private static final int FILE_HEADER_BYTES = 4;
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    // The segment being appended to, guarded by this
+    private long segmentSequence;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty = false;
+
+    private EventJournal(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the journal in a directory, creating the directory if needed.
+     * New records go to a fresh segment after the existing ones.
+     */
+    public static EventJournal open(Path directory, int segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        EventJournal journal = new EventJournal(directory, segmentBytes);
+        List<Long> segments = journal.list(SEGMENT_PREFIX);
+        long next = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        synchronized (journal) {
+            journal.openSegment(next);
+        }
+        log.info("Opened event journal in {} at segment {}", directory, next);
+        return journal;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return false if the record does not fit into a segment or could not be written
+     */
+    public synchronized boolean append(byte[] payload) {
+        int frameBytes = FRAME_HEADER_BYTES + payload.length;
+        if (frameBytes > segmentBytes - FILE_HEADER_BYTES) {
+            log.error("Journal record of {} bytes does not fit into a segment", payload.length);
+            return false;
+        }
+        try {
+            if (buffer.remaining() < frameBytes) {
+                roll();
+            }
+        } catch (IOException e) {
+            log.error("Failed to start journal segment {}: {}", segmentSequence + 1, e.getMessage(), e);
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        // The length goes last, so a reader never sees a length before the rest of the record
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        buffer.putInt(start, payload.length);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Forces the appended records to disk, if there are any since the last call.
+     */
+    public void sync() {
+        MappedByteBuffer toSync;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toSync = buffer;
+        }
+        toSync.force();
+    }
+
+    /**
+     * Starts a new segment, so that a snapshot can replace everything written so far.
+     *
+     * @return The sequence number of the new segment, the first one the snapshot does not cover
+     */
+    public synchronized long startSnapshot() throws IOException {
+        roll();
+        return segmentSequence;
+    }
+
+    /**
+     * Deletes the segments before the given one once a snapshot has replaced them.
+     */
+    public void deleteSegmentsBefore(long firstSegment) throws IOException {
+        for (long sequence : list(SEGMENT_PREFIX)) {
+            if (sequence < firstSegment) {
+                Files.deleteIfExists(file(SEGMENT_PREFIX, sequence));
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the number of segment files, including the one being appended to.
+     */
+    public int getSegmentCount() {
+        try {
+            return list(SEGMENT_PREFIX).size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the segments from the given one on, record by record. Reading a file stops at its end
+     * or at the first damaged record.
+     *
+     * @param from The first segment not covered by the snapshot, or 0 if there is no snapshot
+     * @return The number of records read
+     */
+    public int replay(long from, Consumer<ByteBuffer> consumer) throws IOException {
+        int records = 0;
+        for (long sequence : list(SEGMENT_PREFIX)) {
+            if (sequence >= from && sequence != currentSegment()) {
+                records += read(file(SEGMENT_PREFIX, sequence), consumer);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Syncs and unmaps the current segment.
+     */
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close journal segment {}: {}", segmentSequence, e.getMessage());
+        }
+    }
+
+    private synchronized long currentSegment() {
+        return segmentSequence;
+    }
+
+    private int read(Path path, Consumer<ByteBuffer> consumer) throws IOException {
+        int records = 0;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (file.size() < FILE_HEADER_BYTES) {
+                return 0;
+            }
+            ByteBuffer in = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            if (in.getInt() != MAGIC) {
+                log.error("Skipping {}: not a journal file", path.getFileName());
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            while (in.remaining() >= FRAME_HEADER_BYTES) {
+                int length = in.getInt();
+                int expected = in.getInt();
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > in.remaining()) {
+                    log.warn("Journal {} ends with a damaged record", path.getFileName());
+                    break;
+                }
+                ByteBuffer payload = in.slice();
+                payload.limit(length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != expected) {
+                    log.warn("Journal {} ends with a torn record", path.getFileName());
+                    break;
+                }
+                in.position(in.position() + length);
+                try {
+                    consumer.accept(payload);
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    log.warn("Skipping unreadable record in {}: {}", path.getFileName(), e.toString());
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private void roll() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            channel.close();
+        }
+        openSegment(segmentSequence + 1);
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        channel = FileChannel.open(file(SEGMENT_PREFIX, sequence), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buffer.putInt(MAGIC);
+        segmentSequence = sequence;
+        dirty = true;
+    }
+
+    private Path file(String prefix, long sequence) {
+        return directory.resolve(String.format("%s%016d%s", prefix, sequence, SUFFIX));
+    }
+
+    /**
+     * Lists the sequence numbers of the files with a prefix, in ascending order.
+     */
+    private List<Long> list(String prefix) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                try {
+                    sequences.add(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file {} in the journal directory", name);
+                }
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+}
@@ -0,0 +1,125 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.states.GameState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wakes game sessions exactly when their current state has something to do.
+ * Each session has at most one pending wake-up, set to the next deadline reported by its state;
+ * nothing polls sessions that are waiting for players. On wake-up the session's update runs
+ * in the lobby's mailbox, so it never races with player updates of the same lobby.
+ */
+public class GameClock {
+    private static final Logger log = LoggerFactory.getLogger(GameClock.class);
+
+    private final AmongUsBot bot;
+    private final UpdateDispatcher dispatcher;
+    private final WheelTimer timer;
+    private final BotMetrics metrics;
+
+    // Pending wake-up per lobby code
+    private final Map<String, WakeUp> wakeUps = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new game clock.
+     *
+     * @param bot        The bot passed to the sessions on update
+     * @param dispatcher The dispatcher whose lobby mailboxes run the updates
+     * @param timer      The timer that fires the wake-ups
+     * @param metrics    The metrics that receive the timer lag
+     */
+    public GameClock(AmongUsBot bot, UpdateDispatcher dispatcher, WheelTimer timer, BotMetrics metrics) {
+        this.bot = bot;
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.metrics = metrics;
+        metrics.registerGauge("clock.pending", wakeUps::size);
+    }
+
+    /**
+     * Sets the next wake-up of a session, replacing any pending one.
+     *
+     * @param session        The session to wake up
+     * @param deadlineMillis The wall-clock time in milliseconds to wake it up at,
+     *                       or {@link GameState#NO_DEADLINE} to cancel the pending wake-up
+     */
+    public void schedule(GameSession session, long deadlineMillis) {
+        String lobbyCode = session.getLobbyCode();
+        if (deadlineMillis == GameState.NO_DEADLINE) {
+            cancel(lobbyCode);
+            return;
+        }
+
+        WakeUp wakeUp = new WakeUp(session, deadlineMillis);
+        WakeUp previous = wakeUps.put(lobbyCode, wakeUp);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        long delay = Math.max(0, deadlineMillis - System.currentTimeMillis());
+        wakeUp.timeout = timer.schedule(lobbyCode, () -> fire(lobbyCode, wakeUp), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the pending wake-up of a lobby, if any.
+     */
+    public void cancel(String lobbyCode) {
+        WakeUp previous = wakeUps.remove(lobbyCode);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void fire(String lobbyCode, WakeUp wakeUp) {
+        if (!wakeUps.remove(lobbyCode, wakeUp)) {
+            // Replaced or cancelled after it was already due
+            return;
+        }
+
+        long lag = System.currentTimeMillis() - wakeUp.deadlineMillis;
+        metrics.recordDuration("clock.lag_ms", Math.max(0, lag));
+        metrics.increment("clock.fired");
+
+        dispatcher.submitToLobby(lobbyCode, () -> {
+            try {
+                wakeUp.session.update(bot);
+            } catch (Exception e) {
+                log.error("Error updating game session {}: {}", lobbyCode, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Gets the number of pending wake-ups.
+     */
+    public int getPendingCount() {
+        return wakeUps.size();
+    }
+
+    /**
+     * A pending wake-up of one session.
+     */
+    private static final class WakeUp {
+        private final GameSession session;
+        private final long deadlineMillis;
+        private volatile WheelTimer.Timeout timeout;
+
+        WakeUp(GameSession session, long deadlineMillis) {
+            this.session = session;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        void cancel() {
+            WheelTimer.Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.sabotage.Sabotage;
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.tasks.Task;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one pinned "HUD" message per player of a running game: task list and progress,
+ * the active sabotage with its countdown, kill readiness for impostors and the emergency
+ * meetings left, together with the player's game buttons.
+ * <p>
+ * Like the {@link LobbyStatusBoard}, changes only mark a game as changed; the messages are
+ * edited in place at most once per refresh window, in the lobby's mailbox. While a countdown
+ * is shown the HUD ticks on its own, in steps coarse enough that most ticks change nothing
+ * and are dropped by the outbound queue.
+ */
+public class GameHud {
+    private static final Logger log = LoggerFactory.getLogger(GameHud.class);
+    private static final int PROGRESS_BAR_LENGTH = 10;
+
+    private final AmongUsBot bot;
+    private final SessionManager sessionManager;
+    private final UpdateDispatcher dispatcher;
+    private final WheelTimer timer;
+    private final long refreshMillis;
+    private final long countdownStepSeconds;
+
+    private final Map<String, Hud> huds = new ConcurrentHashMap<>();
+
+    public GameHud(AmongUsBot bot, SessionManager sessionManager, UpdateDispatcher dispatcher,
+                   WheelTimer timer, long refreshMillis, long countdownStepSeconds) {
+        this.bot = bot;
+        this.sessionManager = sessionManager;
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.refreshMillis = refreshMillis;
+        this.countdownStepSeconds = countdownStepSeconds;
+    }
+
+    /**
+     * Makes sure every player of the game has a HUD. Players without one for this game get
+     * a new pinned message, the others are refreshed. Called from the lobby's mailbox.
+     */
+    public void show(GameSession gameSession) {
+        String lobbyCode = gameSession.getLobbyCode();
+        long epoch = gameSession.getCallbackEpoch(CallbackAction.Scope.GAME);
+        Hud hud = huds.compute(lobbyCode, (code, existing) ->
+                existing != null && existing.epoch == epoch ? existing : new Hud(code, epoch));
+
+        boolean refresh = false;
+        Instant now = Instant.now();
+        for (Player player : gameSession.getPlayers()) {
+            String chatId = gameSession.getPlayerChatId(player.getUserId()).orElse(null);
+            if (chatId == null) {
+                continue;
+            }
+            synchronized (hud) {
+                if (hud.viewers.containsKey(player.getUserId())) {
+                    refresh = true;
+                    continue;
+                }
+            }
+            send(hud, player.getUserId(), new Viewer(chatId), render(gameSession, player, now));
+        }
+        if (refresh) {
+            invalidate(lobbyCode);
+        }
+    }
+
+    /**
+     * Sends a player a new HUD in place of the old one, for when it has scrolled out of sight.
+     */
+    public void resend(GameSession gameSession, Player player) {
+        Hud hud = huds.get(gameSession.getLobbyCode());
+        String chatId = gameSession.getPlayerChatId(player.getUserId()).orElse(null);
+        if (hud == null || chatId == null) {
+            return;
+        }
+        Viewer old;
+        synchronized (hud) {
+            old = hud.viewers.get(player.getUserId());
+        }
+        send(hud, player.getUserId(), new Viewer(chatId), render(gameSession, player, Instant.now()));
+        if (old != null && old.messageId != null) {
+            bot.deleteMessage(old.chatId, old.messageId);
+        }
+    }
+
+    /**
+     * Marks the HUD of a game as changed. The messages are edited once the refresh window
+     * has passed, together with any other change made meanwhile.
+     */
+    public void invalidate(String lobbyCode) {
+        Hud hud = huds.get(lobbyCode);
+        if (hud == null) {
+            return;
+        }
+        synchronized (hud) {
+            if (hud.flushPending) {
+                return;
+            }
+            hud.flushPending = true;
+        }
+        timer.schedule(lobbyCode, () -> dispatcher.submitToLobby(lobbyCode, () -> flush(hud)),
+                refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Unpins the HUDs of a game that has ended. Their buttons are stale from now on.
+     */
+    public void close(String lobbyCode) {
+        Hud hud = huds.remove(lobbyCode);
+        if (hud == null) {
+            return;
+        }
+        synchronized (hud) {
+            for (Viewer viewer : hud.viewers.values()) {
+                if (viewer.messageId != null) {
+                    bot.unpinMessageSafe(viewer.chatId, viewer.messageId);
+                }
+            }
+            hud.viewers.clear();
+        }
+    }
+
+    /**
+     * Drops everything known about a removed lobby.
+     */
+    public void forget(String lobbyCode) {
+        huds.remove(lobbyCode);
+    }
+
+    /**
+     * Brings the HUDs of all players up to date. Runs in the lobby's mailbox.
+     */
+    private void flush(Hud hud) {
+        synchronized (hud) {
+            hud.flushPending = false;
+        }
+        if (huds.get(hud.lobbyCode) != hud) {
+            return;
+        }
+        GameSession gameSession = sessionManager.getSessionByLobbyCode(hud.lobbyCode).orElse(null);
+        if (gameSession == null || sessionManager.getLobbyPhase(hud.lobbyCode) != LobbyPhase.RUNNING) {
+            huds.remove(hud.lobbyCode, hud);
+            return;
+        }
+
+        Instant now = Instant.now();
+        boolean countdown = false;
+        int edits = 0;
+        Set<Long> players = new HashSet<>();
+        for (Player player : gameSession.getPlayers()) {
+            players.add(player.getUserId());
+            Rendering rendering = render(gameSession, player, now);
+            countdown |= rendering.countdown;
+
+            Viewer viewer;
+            Integer messageId;
+            synchronized (hud) {
+                viewer = hud.viewers.get(player.getUserId());
+                if (viewer == null || viewer.messageId == null || rendering.sameContent(viewer.shown)) {
+                    // No message yet, one is being sent, or it already shows this content
+                    if (viewer != null) {
+                        viewer.wanted = rendering;
+                    }
+                    continue;
+                }
+                viewer.shown = rendering;
+                messageId = viewer.messageId;
+            }
+            edit(hud, player.getUserId(), viewer, messageId, rendering);
+            edits++;
+        }
+        synchronized (hud) {
+            hud.viewers.keySet().retainAll(players);
+        }
+        log.debug("Refreshed HUD of {} with {} edits", hud.lobbyCode, edits);
+
+        if (countdown) {
+            scheduleTick(hud);
+        }
+    }
+
+    /**
+     * Keeps the countdowns moving. Steps that change nothing cost no API call.
+     */
+    private void scheduleTick(Hud hud) {
+        synchronized (hud) {
+            if (hud.tickPending) {
+                return;
+            }
+            hud.tickPending = true;
+        }
+        timer.schedule(hud.lobbyCode, () -> {
+            synchronized (hud) {
+                hud.tickPending = false;
+            }
+            invalidate(hud.lobbyCode);
+        }, countdownStepSeconds, TimeUnit.SECONDS);
+    }
+
+    private void edit(Hud hud, long userId, Viewer viewer, Integer messageId, Rendering rendering) {
+        bot.editMessageTextChecked(viewer.chatId, messageId, rendering.text, rendering.markup).thenAccept(result -> {
+            if (result == EditResult.MESSAGE_GONE) {
+                // The message is gone: replace it with a new one
+                send(hud, userId, new Viewer(viewer.chatId), rendering);
+            } else if (result == EditResult.FAILED) {
+                // Keep the message; the next refresh edits it again
+                synchronized (hud) {
+                    if (viewer.shown == rendering) {
+                        viewer.shown = null;
+                    }
+                }
+            }
+        });
+    }
+
+    private void send(Hud hud, long userId, Viewer viewer, Rendering rendering) {
+        synchronized (hud) {
+            viewer.shown = rendering;
+            viewer.wanted = rendering;
+            hud.viewers.put(userId, viewer);
+        }
+        bot.sendMessageWithReturnIdSafe(viewer.chatId, rendering.text, rendering.markup).thenAccept(messageId -> {
+            if (messageId == null) {
+                return;
+            }
+            boolean stale;
+            synchronized (hud) {
+                if (hud.viewers.get(userId) != viewer) {
+                    return;
+                }
+                viewer.messageId = messageId;
+                stale = !viewer.wanted.sameContent(viewer.shown);
+            }
+            bot.pinMessageSafe(viewer.chatId, messageId);
+            if (stale) {
+                // The game changed while the message was on its way
+                invalidate(hud.lobbyCode);
+            }
+        });
+    }
+
+    /**
+     * Renders the HUD of one player.
+     */
+    private Rendering render(GameSession gameSession, Player player, Instant now) {
+        StringBuilder sb = new StringBuilder();
+        boolean countdown = false;
+        boolean impostor = player.getRole().isImpostor();
+        sb.append("🎮 *Игровая панель*\n\n");
+
+        if (!player.isAlive()) {
+            sb.append("👻 Вы призрак. Вы можете выполнять задания и общаться с другими призраками.\n\n");
+        }
+
+        // Задания
+        if (!gameSession.getSabotageManager().canPerformTasks(gameSession.getId(), player)) {
+            sb.append("📋 *Задания недоступны:* помехи связи.\n");
+        } else if (player.getTasks().isEmpty()) {
+            if (impostor) {
+                sb.append("📋 У вас нет заданий. Вы можете притворяться, что выполняете задания, чтобы не вызывать подозрений.\n");
+            } else {
+                sb.append("📋 У вас нет заданий. Это странно, сообщите администратору.\n");
+            }
+        } else {
+            sb.append("📋 *Ваши задания:*\n\n");
+            for (Task task : player.getTasks()) {
+                sb.append(task.getFormattedDescription()).append("\n\n");
+            }
+            sb.append("Ваш прогресс: ").append(player.getTaskCompletionPercentage()).append("%\n");
+        }
+        if (!impostor) {
+            // In steps of a tenth, so that one task of another player rarely changes everyone's HUD
+            int overallProgress = gameSession.getTaskManager().getOverallTaskCompletionPercentage();
+            sb.append("📊 Общий прогресс команды: ").append(progressBar(overallProgress)).append("\n");
+        }
+
+        // Саботаж
+        Optional<Sabotage> sabotage = gameSession.getSabotageManager().getActiveSabotage(gameSession.getId());
+        if (sabotage.isPresent()) {
+            sb.append("\n⚠️ *Саботаж:* ").append(sabotage.get().getType().getDisplayName());
+            if (sabotage.get().getDeadline() != null) {
+                long remaining = sabotage.get().getDeadline().getEpochSecond() - now.getEpochSecond();
+                sb.append(" — ⏱ ~").append(roundUp(remaining)).append(" сек.");
+                countdown = true;
+            }
+            sb.append("\n");
+        }
+
+        // Перезарядка убийства
+        if (impostor && player.isAlive()) {
+            if (player.canKill(now)) {
+                sb.append("\n🔪 Убийство: готово\n");
+            } else {
+                long readyAt = player.getLastKillTime().getEpochSecond() + player.getKillCooldownSeconds();
+                sb.append("\n⏳ Перезарядка убийства: ~").append(roundUp(readyAt - now.getEpochSecond())).append(" сек.\n");
+                countdown = true;
+            }
+        }
+
+        sb.append("\n🚨 Экстренных собраний: ").append(player.getEmergencyMeetingsLeft());
+
+        InlineKeyboardMarkup markup = player.getRole().getAbilitiesKeyboard(player,
+                gameSession.getCallbackEpoch(CallbackAction.Scope.GAME));
+        return new Rendering(sb.toString(), markup, countdown);
+    }
+
+    private static String progressBar(int percent) {
+        int filled = Math.max(0, Math.min(PROGRESS_BAR_LENGTH, percent * PROGRESS_BAR_LENGTH / 100));
+        StringBuilder sb = new StringBuilder(PROGRESS_BAR_LENGTH + 6);
+        for (int i = 0; i < PROGRESS_BAR_LENGTH; i++) {
+            sb.append(i < filled ? '▰' : '▱');
+        }
+        return sb.append(' ').append(filled * 100 / PROGRESS_BAR_LENGTH).append('%').toString();
+    }
+
+    /**
+     * Rounds a countdown up to whole steps, so that it only changes once per step.
+     */
+    private long roundUp(long seconds) {
+        if (seconds <= 0) {
+            return 0;
+        }
+        return (seconds + countdownStepSeconds - 1) / countdownStepSeconds * countdownStepSeconds;
+    }
+
+    /**
+     * HUD state of one game.
+     */
+    private static final class Hud {
+        private final String lobbyCode;
+        // The game the HUDs belong to; buttons of another game are stale
+        private final long epoch;
+        private final Map<Long, Viewer> viewers = new HashMap<>();
+        private boolean flushPending = false;
+        private boolean tickPending = false;
+
+        Hud(String lobbyCode, long epoch) {
+            this.lobbyCode = lobbyCode;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * What is known about the HUD message of one player.
+     */
+    private static final class Viewer {
+        private final String chatId;
+        // Null while the message is being sent
+        private Integer messageId;
+        // The content last sent, and the content the message should show
+        private Rendering shown;
+        private Rendering wanted;
+
+        Viewer(String chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    /**
+     * Text and keyboard of a HUD message.
+     */
+    private static final class Rendering {
+        private final String text;
+        private final InlineKeyboardMarkup markup;
+        // Whether the text shows a running countdown
+        private final boolean countdown;
+
+        Rendering(String text, InlineKeyboardMarkup markup, boolean countdown) {
+            this.text = text;
+            this.markup = markup;
+            this.countdown = countdown;
+        }
+
+        boolean sameContent(Rendering other) {
+            return other != null && (other == this
+                    || (text.equals(other.text) && Objects.equals(markup, other.markup)));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.models.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds lobbies that have been idle for too long without scanning all of them.
+ * Lobbies are kept in a queue ordered by the deadline they had when they were last queued.
+ * Activity only updates a timestamp on the entry; a lobby whose queued deadline has passed
+ * but which has been active since is simply queued again with its new deadline.
+ * A sweep therefore only touches lobbies whose queued deadline has passed.
+ * <p>
+ * Lobbies still waiting for players may be given a shorter timeout, after which the
+ * {@link SessionManager} hibernates them instead of removing them.
+ */
+public class IdleReaper {
+    private static final long LOBBY_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(Config.LOBBY_TIMEOUT_MINUTES);
+    private static final long GAME_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(Config.GAME_INACTIVE_TIMEOUT_MINUTES);
+
+    private final PriorityQueue<Deadline> queue = new PriorityQueue<>();
+
+    // Timeout of lobbies whose game has not started
+    private volatile long waitingTimeoutNanos = LOBBY_TIMEOUT_NANOS;
+
+    // Queued lobbies that have been removed in the meantime
+    private int removedCount = 0;
+
+    /**
+     * Starts tracking a newly registered lobby.
+     */
+    public synchronized void track(LobbyEntry entry) {
+        queue.add(new Deadline(deadlineOf(entry), entry));
+        entry.queuedForReaper = true;
+    }
+
+    /**
+     * Notes that a tracked lobby has been removed. Removed lobbies are purged from the queue
+     * once they make up half of it, so they are not kept reachable until their deadline.
+     */
+    public synchronized void untrack(LobbyEntry entry) {
+        if (!entry.queuedForReaper) {
+            return;
+        }
+        removedCount++;
+        if (removedCount * 2 > queue.size()) {
+            queue.removeIf(deadline -> {
+                if (deadline.entry.isRemoved()) {
+                    deadline.entry.queuedForReaper = false;
+                    return true;
+                }
+                return false;
+            });
+            removedCount = 0;
+        }
+    }
+
+    /**
+     * Removes and returns the lobbies whose idle deadline has passed.
+     * Removed lobbies are dropped from the queue without being returned.
+     *
+     * @param nowNanos The current time from {@link System#nanoTime()}
+     */
+    public synchronized List<LobbyEntry> pollExpired(long nowNanos) {
+        List<LobbyEntry> expired = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().deadlineNanos - nowNanos <= 0) {
+            LobbyEntry entry = queue.poll().entry;
+            entry.queuedForReaper = false;
+            if (entry.isRemoved()) {
+                removedCount = Math.max(0, removedCount - 1);
+                continue;
+            }
+
+            long deadline = deadlineOf(entry);
+            if (deadline - nowNanos > 0) {
+                // Active since it was queued, wait for the new deadline
+                queue.add(new Deadline(deadline, entry));
+                entry.queuedForReaper = true;
+            } else {
+                expired.add(entry);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Checks whether a lobby's idle deadline has passed, for a lobby polled earlier.
+     *
+     * @param nowNanos The current time from {@link System#nanoTime()}
+     */
+    public boolean isExpired(LobbyEntry entry, long nowNanos) {
+        return deadlineOf(entry) - nowNanos <= 0;
+    }
+
+    /**
+     * Sets the timeout of lobbies whose game has not started. Lobbies already queued
+     * keep their deadline until it passes.
+     */
+    public void setWaitingTimeoutNanos(long waitingTimeoutNanos) {
+        this.waitingTimeoutNanos = waitingTimeoutNanos;
+    }
+
+    /**
+     * Gets the number of queued lobbies, including removed ones not yet polled.
+     */
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Running games may stay idle longer than lobbies waiting for players or finished games.
+     */
+    private long deadlineOf(LobbyEntry entry) {
+        LobbyPhase phase = entry.getPhase();
+        long timeout = phase == LobbyPhase.RUNNING ? GAME_TIMEOUT_NANOS
+                : phase == LobbyPhase.LOBBY ? waitingTimeoutNanos : LOBBY_TIMEOUT_NANOS;
+        return entry.getLastActivityNanos() + timeout;
+    }
+
+    /**
+     * A lobby together with the deadline it was queued with.
+     */
+    private static final class Deadline implements Comparable<Deadline> {
+        private final long deadlineNanos;
+        private final LobbyEntry entry;
+
+        Deadline(long deadlineNanos, LobbyEntry entry) {
+            this.deadlineNanos = deadlineNanos;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            return Long.compare(deadlineNanos - other.deadlineNanos, 0);
+        }
+    }
+}
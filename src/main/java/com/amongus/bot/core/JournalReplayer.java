@@ -0,0 +1,313 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.tasks.Task;
+import com.amongus.bot.models.GameSettings;
+import com.amongus.bot.models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Rebuilds the lobbies and games of the {@link SessionManager} from the newest
+ * {@link SessionSnapshot} and the records of the {@link SessionJournal} written after it.
+ * Runs once on startup, before any update is handled and before the journal records again,
+ * so that the rebuilding itself is not recorded.
+ * <p>
+ * Lobbies come back as they were. A running game comes back with its roles, tasks, deaths
+ * and used meetings and continues in the running state: a meeting that was interrupted by the
+ * restart is dropped, and its votes are not replayed. Finished games are not restored.
+ */
+public class JournalReplayer {
+    private static final Logger log = LoggerFactory.getLogger(JournalReplayer.class);
+
+    private static final String GAME_END_STATE = "GAME_END";
+
+    private final AmongUsBot bot;
+    private final SessionManager sessionManager;
+
+    // Last recorded state of every lobby whose game has started, in the order the games started
+    private final Map<String, String> startedGames = new LinkedHashMap<>();
+    private int skippedRecords = 0;
+
+    public JournalReplayer(AmongUsBot bot, SessionManager sessionManager) {
+        this.bot = bot;
+        this.sessionManager = sessionManager;
+    }
+
+    /**
+     * Restores the snapshot and replays the journal after it. The games that were running are
+     * rebuilt but wait for {@link #resumeGames()}.
+     *
+     * @return The number of journal records read
+     */
+    public int replay(SessionJournal journal) {
+        SessionSnapshot snapshot = journal.readSnapshot();
+        if (snapshot != null) {
+            for (SessionSnapshot.LobbyImage lobby : snapshot.getLobbies()) {
+                try {
+                    restore(lobby);
+                } catch (RuntimeException e) {
+                    log.error("Failed to restore lobby {} from the snapshot: {}", lobby.lobbyCode, e.getMessage(), e);
+                    sessionManager.removeLobby(lobby.lobbyCode);
+                }
+            }
+        }
+        int records = journal.replay(snapshot, this::apply);
+        log.info("Restored {} lobbies from the snapshot and replayed {} journal records: {} lobbies restored, "
+                        + "{} records skipped", snapshot != null ? snapshot.getLobbies().size() : 0,
+                records, sessionManager.getLobbyCount(), skippedRecords);
+        return records;
+    }
+
+    /**
+     * Continues the games rebuilt by {@link #replay}, telling their players about the restart.
+     *
+     * @return The number of games resumed
+     */
+    public int resumeGames() {
+        int resumed = 0;
+        for (Map.Entry<String, String> game : startedGames.entrySet()) {
+            if (resume(game.getKey(), game.getValue())) {
+                resumed++;
+            }
+        }
+        log.info("Resumed {} games", resumed);
+        return resumed;
+    }
+
+    /**
+     * Rebuilds one lobby and its game from its snapshot image.
+     */
+    private void restore(SessionSnapshot.LobbyImage image) {
+        LobbyEntry entry = sessionManager.restoreLobby(image, bot);
+        if (entry == null) {
+            return;
+        }
+        GameSession session = entry.getSession();
+        if (session == null || image.stateName == null) {
+            return;
+        }
+
+        session.getTaskManager().reset();
+        for (SessionSnapshot.PlayerImage saved : image.players) {
+            Player player = session.getPlayerById(saved.userId);
+            if (player == null) {
+                continue;
+            }
+            assignRole(session, player, saved.roleId, Arrays.asList(saved.taskTitles));
+            for (int i = 0; i < saved.taskTitles.length; i++) {
+                if (saved.taskDone[i]) {
+                    completeTask(session, player, i, saved.taskPhotos[i]);
+                }
+            }
+            if (!saved.isAlive()) {
+                player.kill();
+            }
+            player.setEmergencyMeetingsLeft(saved.meetingsLeft);
+        }
+        startedGames.put(image.lobbyCode, image.stateName);
+    }
+
+    private void apply(ByteBuffer record) {
+        SessionJournal.Type type = SessionJournal.readType(record);
+        String lobbyCode = SessionJournal.readString(record);
+
+        if (type == SessionJournal.Type.LOBBY_CREATED) {
+            Player owner = SessionJournal.readPlayer(record);
+            long callbackEpoch = record.getLong();
+            if (!sessionManager.restoreLobby(lobbyCode, owner, callbackEpoch, bot)) {
+                // Already restored from the snapshot
+                skippedRecords++;
+            }
+            return;
+        }
+
+        Optional<GameLobby> lobbyOpt = sessionManager.getLobbyByCode(lobbyCode);
+        if (!lobbyOpt.isPresent()) {
+            // A lobby that was removed or finished before the snapshot
+            skippedRecords++;
+            return;
+        }
+        GameLobby lobby = lobbyOpt.get();
+        GameSession session = sessionManager.getSessionByLobbyCode(lobbyCode).orElse(null);
+
+        switch (type) {
+            case PLAYER_JOINED:
+                sessionManager.joinLobby(lobbyCode, SessionJournal.readPlayer(record));
+                break;
+            case PLAYER_LEFT: {
+                long userId = record.getLong();
+                if (isInLobby(userId, lobbyCode)) {
+                    sessionManager.removePlayerFromLobby(userId);
+                }
+                break;
+            }
+            case CHAT_ID: {
+                long userId = record.getLong();
+                String chatId = SessionJournal.readString(record);
+                if (isInLobby(userId, lobbyCode)) {
+                    sessionManager.updatePlayerChatId(userId, chatId);
+                }
+                break;
+            }
+            case GROUP_BOUND:
+                sessionManager.bindGroupChat(lobbyCode, SessionJournal.readString(record));
+                break;
+            case SETTINGS: {
+                boolean ofSession = record.get() != 0;
+                GameSettings settings = ofSession && session != null ? session.getSettings() : lobby.getSettings();
+                settings.setImpostorCount(record.getInt());
+                settings.setDiscussionTimeSeconds(record.getInt());
+                settings.setVotingTimeSeconds(record.getInt());
+                settings.setKillCooldownSeconds(record.getInt());
+                settings.setTasksPerPlayer(record.getInt());
+                break;
+            }
+            case GAME_STARTED:
+                if (session != null) {
+                    restoreRoles(session, record);
+                    startedGames.put(lobbyCode, "RUNNING");
+                }
+                break;
+            case MEETINGS_LEFT: {
+                Player player = playerOf(session, record.getLong());
+                int left = record.getInt();
+                if (player != null) {
+                    player.setEmergencyMeetingsLeft(left);
+                }
+                break;
+            }
+            case PLAYER_DIED: {
+                Player player = playerOf(session, record.getLong());
+                if (player != null) {
+                    player.kill();
+                }
+                break;
+            }
+            case TASK_COMPLETED:
+                restoreTask(session, record);
+                break;
+            case STATE:
+                if (startedGames.containsKey(lobbyCode)) {
+                    startedGames.put(lobbyCode, SessionJournal.readString(record));
+                }
+                break;
+            case LOBBY_REMOVED:
+                sessionManager.removeLobby(lobbyCode);
+                startedGames.remove(lobbyCode);
+                break;
+            case VOTE:
+            default:
+                // Votes only matter within their meeting, which does not survive a restart
+                break;
+        }
+    }
+
+    /**
+     * Hands out the recorded roles and tasks again.
+     */
+    private void restoreRoles(GameSession session, ByteBuffer record) {
+        session.getTaskManager().reset();
+        int players = record.getInt();
+        for (int i = 0; i < players; i++) {
+            Player player = playerOf(session, record.getLong());
+            String roleId = SessionJournal.readString(record);
+            int taskCount = record.getInt();
+            List<String> titles = new ArrayList<>(taskCount);
+            for (int t = 0; t < taskCount; t++) {
+                titles.add(SessionJournal.readString(record));
+            }
+            if (player != null) {
+                assignRole(session, player, roleId, titles);
+            }
+        }
+    }
+
+    private static void assignRole(GameSession session, Player player, String roleId, List<String> taskTitles) {
+        if (roleId == null) {
+            return;
+        }
+        player.assignRole(session.getRoleFactory().createRole(roleId));
+        if (!taskTitles.isEmpty()) {
+            session.getTaskManager().restoreTasks(player, taskTitles);
+        }
+    }
+
+    private void restoreTask(GameSession session, ByteBuffer record) {
+        Player player = playerOf(session, record.getLong());
+        int taskIndex = record.getInt();
+        String photoFileId = SessionJournal.readString(record);
+        if (player != null) {
+            completeTask(session, player, taskIndex, photoFileId);
+        }
+    }
+
+    private static void completeTask(GameSession session, Player player, int taskIndex, String photoFileId) {
+        if (taskIndex < 0 || taskIndex >= player.getTasks().size()) {
+            return;
+        }
+        Task task = player.getTasks().get(taskIndex);
+        if (task.isCompleted()) {
+            return;
+        }
+        task.complete(photoFileId);
+        // Only tasks of crewmates count, as in the running state
+        if (player.getRole() != null && !player.getRole().isImpostor()) {
+            session.getTaskManager().recordCompletedTask();
+        }
+    }
+
+    /**
+     * Continues a restored game, or drops it if it had already finished.
+     *
+     * @return true if the game was resumed
+     */
+    private boolean resume(String lobbyCode, String stateName) {
+        if (GAME_END_STATE.equals(stateName)) {
+            sessionManager.removeLobby(lobbyCode);
+            return false;
+        }
+        Optional<GameSession> sessionOpt = sessionManager.getSessionByLobbyCode(lobbyCode);
+        if (!sessionOpt.isPresent()) {
+            return false;
+        }
+        GameSession session = sessionOpt.get();
+
+        // Sent before the resumed game sends its HUDs, so that players read it first
+        String notice = "♻️ Бот был перезапущен, игра продолжается." +
+                ("DISCUSSION".equals(stateName) ? " Прерванное собрание отменено." : "");
+        if (session.isGroupMode()) {
+            bot.sendTextMessageSafe(session.getGroupChatId(), notice);
+        } else {
+            for (Player player : session.getPlayers()) {
+                session.getPlayerChatId(player.getUserId()).ifPresent(chatId -> bot.sendTextMessageSafe(chatId, notice));
+            }
+        }
+
+        try {
+            session.resumeGame(bot);
+        } catch (RuntimeException e) {
+            log.error("Failed to resume the game of lobby {}: {}", lobbyCode, e.getMessage(), e);
+            sessionManager.removeLobby(lobbyCode);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isInLobby(long userId, String lobbyCode) {
+        return sessionManager.getLobbyCodeForPlayer(userId).map(lobbyCode::equals).orElse(false);
+    }
+
+    private static Player playerOf(GameSession session, long userId) {
+        return session != null ? session.getPlayerById(userId) : null;
+    }
+}
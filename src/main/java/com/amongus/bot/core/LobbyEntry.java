@@ -0,0 +1,106 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.game.states.GameSession;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lobby code owned by the {@link LobbyRegistry}: the lobby, its game session and its lifecycle phase.
+ * The phase and the session change only through atomic compare-and-set operations.
+ */
+public final class LobbyEntry {
+    private final String lobbyCode;
+    private final GameLobby lobby;
+    private final AtomicReference<GameSession> session;
+    private final AtomicReference<LobbyPhase> phase = new AtomicReference<>(LobbyPhase.LOBBY);
+    private volatile long lastActivityNanos = System.nanoTime();
+
+    // Whether the entry sits in the queue of the IdleReaper, guarded by the reaper
+    boolean queuedForReaper = false;
+
+    LobbyEntry(GameLobby lobby, GameSession session) {
+        this.lobbyCode = lobby.getLobbyCode();
+        this.lobby = lobby;
+        this.session = new AtomicReference<>(session);
+    }
+
+    public String getLobbyCode() {
+        return lobbyCode;
+    }
+
+    public GameLobby getLobby() {
+        return lobby;
+    }
+
+    /**
+     * Gets the game session of the lobby, or null if it has none.
+     */
+    public GameSession getSession() {
+        return session.get();
+    }
+
+    public LobbyPhase getPhase() {
+        return phase.get();
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} of the last activity in the lobby or its session.
+     */
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    /**
+     * Records activity in the lobby or its session.
+     */
+    void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    public boolean isRemoved() {
+        return phase.get() == LobbyPhase.REMOVED;
+    }
+
+    /**
+     * Atomically moves the lobby from one phase to the next.
+     *
+     * @return true if the lobby was in the expected phase and the transition is allowed
+     */
+    boolean transition(LobbyPhase from, LobbyPhase to) {
+        return from.canTransitionTo(to) && phase.compareAndSet(from, to);
+    }
+
+    /**
+     * Moves the lobby to REMOVED from whatever phase it is in.
+     *
+     * @return false if it was already removed
+     */
+    boolean markRemoved() {
+        return phase.getAndSet(LobbyPhase.REMOVED) != LobbyPhase.REMOVED;
+    }
+
+    /**
+     * Sets the session of a lobby that has none.
+     *
+     * @return The session of the lobby after the call, which may have been set concurrently
+     */
+    GameSession attachSession(GameSession newSession) {
+        if (session.compareAndSet(null, newSession)) {
+            return newSession;
+        }
+        return session.get();
+    }
+
+    /**
+     * Drops the session of the lobby if it is still the expected one.
+     */
+    boolean detachSession(GameSession expected) {
+        return session.compareAndSet(expected, null);
+    }
+
+    @Override
+    public String toString() {
+        return "LobbyEntry{" + lobbyCode + ", " + phase.get() + "}";
+    }
+}
@@ -0,0 +1,167 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.utils.ConcurrentLongMap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps idle lobbies outside the heap. A hibernated lobby is held as its {@link SessionSnapshot}
+ * encoding in a direct buffer; on the heap only the buffer, its lobby code and an index from
+ * the user IDs of its players to that code remain.
+ * <p>
+ * The {@link SessionManager} hibernates lobbies and wakes them when they are looked up, so the
+ * rest of the bot never sees a hibernated lobby.
+ */
+public class LobbyHibernator {
+    private final Map<String, Hibernated> lobbies = new ConcurrentHashMap<>();
+    private final ConcurrentLongMap<String> players = new ConcurrentLongMap<>();
+
+    // In the order the lobbies were hibernated, which is close to the order of their last activity
+    private final ArrayDeque<Hibernated> byActivity = new ArrayDeque<>();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+
+    /**
+     * Stores a lobby.
+     *
+     * @param lastActivityNanos The {@link System#nanoTime()} of the last activity in the lobby
+     */
+    public void put(SessionSnapshot.LobbyImage image, long lastActivityNanos) {
+        byte[] bytes = SessionSnapshot.encode(0, Collections.singletonList(image));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+
+        Hibernated hibernated = new Hibernated(image.lobbyCode, buffer, lastActivityNanos);
+        lobbies.put(image.lobbyCode, hibernated);
+        for (SessionSnapshot.PlayerImage player : image.players) {
+            if (player.isInLobby()) {
+                players.put(player.userId, image.lobbyCode);
+            }
+        }
+        synchronized (byActivity) {
+            byActivity.add(hibernated);
+        }
+        offHeapBytes.addAndGet(bytes.length);
+    }
+
+    /**
+     * Removes a lobby and returns it.
+     *
+     * @return The lobby, or null if it is not hibernated
+     */
+    public Hibernated take(String lobbyCode) {
+        Hibernated hibernated = lobbies.remove(lobbyCode);
+        if (hibernated == null) {
+            return null;
+        }
+        offHeapBytes.addAndGet(-hibernated.buffer.capacity());
+        for (SessionSnapshot.PlayerImage player : hibernated.image().players) {
+            // The index holds the very string the lobby was stored under
+            players.remove(player.userId, hibernated.lobbyCode);
+        }
+        // Left in the activity queue, where expired skips it
+        return hibernated;
+    }
+
+    /**
+     * Gets a copy of a lobby without removing it.
+     *
+     * @return The lobby, or null if it is not hibernated
+     */
+    public SessionSnapshot.LobbyImage peek(String lobbyCode) {
+        Hibernated hibernated = lobbies.get(lobbyCode);
+        return hibernated != null ? hibernated.image() : null;
+    }
+
+    /**
+     * Gets copies of all hibernated lobbies.
+     */
+    public List<SessionSnapshot.LobbyImage> images() {
+        List<SessionSnapshot.LobbyImage> images = new ArrayList<>(lobbies.size());
+        for (Hibernated hibernated : lobbies.values()) {
+            images.add(hibernated.image());
+        }
+        return images;
+    }
+
+    /**
+     * Gets the code of the hibernated lobby a player is in.
+     *
+     * @return The lobby code, or null if the player is not in a hibernated lobby
+     */
+    public String lobbyOf(long userId) {
+        return players.get(userId);
+    }
+
+    public boolean contains(String lobbyCode) {
+        return lobbies.containsKey(lobbyCode);
+    }
+
+    public boolean isEmpty() {
+        return lobbies.isEmpty();
+    }
+
+    public int size() {
+        return lobbies.size();
+    }
+
+    public long getOffHeapBytes() {
+        return offHeapBytes.get();
+    }
+
+    /**
+     * Finds the hibernated lobbies that have been idle for longer than the timeout.
+     * They stay hibernated; the caller removes them.
+     *
+     * @param nowNanos The current time from {@link System#nanoTime()}
+     */
+    public List<String> expired(long nowNanos, long timeoutNanos) {
+        List<String> expired = new ArrayList<>();
+        synchronized (byActivity) {
+            while (!byActivity.isEmpty()) {
+                Hibernated oldest = byActivity.peek();
+                if (lobbies.get(oldest.lobbyCode) != oldest) {
+                    // Woken since
+                    byActivity.poll();
+                } else if (nowNanos - oldest.lastActivityNanos >= timeoutNanos) {
+                    byActivity.poll();
+                    expired.add(oldest.lobbyCode);
+                } else {
+                    break;
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * One hibernated lobby.
+     */
+    public static final class Hibernated {
+        private final String lobbyCode;
+        private final ByteBuffer buffer;
+        private final long lastActivityNanos;
+
+        Hibernated(String lobbyCode, ByteBuffer buffer, long lastActivityNanos) {
+            this.lobbyCode = lobbyCode;
+            this.buffer = buffer;
+            this.lastActivityNanos = lastActivityNanos;
+        }
+
+        /**
+         * Decodes a copy of the lobby.
+         */
+        public SessionSnapshot.LobbyImage image() {
+            ByteBuffer copy = buffer.duplicate();
+            byte[] bytes = new byte[copy.remaining()];
+            copy.get(bytes);
+            return SessionSnapshot.decode(bytes).getLobbies().get(0);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.amongus.bot.core;
+
+/**
+ * Lifecycle phase of a lobby code in the {@link LobbyRegistry}.
+ * Phases only move forward: LOBBY → RUNNING → ENDED, and any phase may move to REMOVED.
+ */
+public enum LobbyPhase {
+    LOBBY,
+    RUNNING,
+    ENDED,
+    REMOVED;
+
+    /**
+     * Checks if a lobby in this phase may move to the given phase.
+     */
+    public boolean canTransitionTo(LobbyPhase next) {
+        if (this == REMOVED) {
+            return false;
+        }
+        return next == REMOVED || next.ordinal() == ordinal() + 1;
+    }
+}
@@ -0,0 +1,78 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.game.states.GameSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns every lobby code from creation to removal.
+ * Lookups are lock-free reads of a {@link ConcurrentHashMap}; the map itself never leaves this class.
+ */
+public class LobbyRegistry {
+    private final Map<String, LobbyEntry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a new lobby together with its game session.
+     *
+     * @return The new entry, or null if the lobby code is already taken
+     */
+    public LobbyEntry register(GameLobby lobby, GameSession session) {
+        LobbyEntry entry = new LobbyEntry(lobby, session);
+        return entries.putIfAbsent(lobby.getLobbyCode(), entry) == null ? entry : null;
+    }
+
+    /**
+     * Gets the entry of a lobby code.
+     */
+    public Optional<LobbyEntry> get(String lobbyCode) {
+        return Optional.ofNullable(entries.get(lobbyCode));
+    }
+
+    public boolean contains(String lobbyCode) {
+        return entries.containsKey(lobbyCode);
+    }
+
+    /**
+     * Marks a lobby as removed and releases its code.
+     *
+     * @return The removed entry, or empty if there was no such lobby
+     */
+    public Optional<LobbyEntry> remove(String lobbyCode) {
+        LobbyEntry entry = entries.remove(lobbyCode);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        entry.markRemoved();
+        return Optional.of(entry);
+    }
+
+    /**
+     * Marks a lobby as removed and releases its code, unless the code has been taken over
+     * by another lobby in the meantime.
+     *
+     * @return true if the entry was removed by this call
+     */
+    public boolean remove(LobbyEntry entry) {
+        if (!entries.remove(entry.getLobbyCode(), entry)) {
+            return false;
+        }
+        entry.markRemoved();
+        return true;
+    }
+
+    /**
+     * Gets a snapshot of all registered lobbies.
+     */
+    public List<LobbyEntry> snapshot() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
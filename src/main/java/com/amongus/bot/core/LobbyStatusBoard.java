@@ -0,0 +1,349 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.Config;
+import com.amongus.bot.models.Player;
+import com.amongus.bot.utils.CallbackCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the "players" status message of every lobby member up to date.
+ * Changes to a lobby only bump its version; the messages are refreshed at most once per
+ * debounce window, so a storm of joins or ready clicks costs one round of edits.
+ * A refresh renders the player list once and the keyboard once per viewer class
+ * (owner or not, ready or not), and skips every viewer whose message already shows that content.
+ * <p>
+ * Refreshes run in the lobby's mailbox, in order with the lobby's other updates.
+ */
+public class LobbyStatusBoard {
+    private static final Logger log = LoggerFactory.getLogger(LobbyStatusBoard.class);
+
+    private final AmongUsBot bot;
+    private final SessionManager sessionManager;
+    private final UpdateDispatcher dispatcher;
+    private final WheelTimer timer;
+    private final long debounceMillis;
+
+    private final Map<String, Board> boards = new ConcurrentHashMap<>();
+
+    public LobbyStatusBoard(AmongUsBot bot, SessionManager sessionManager, UpdateDispatcher dispatcher,
+                            WheelTimer timer, long debounceMillis) {
+        this.bot = bot;
+        this.sessionManager = sessionManager;
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Marks the status of a lobby as changed. The messages of its members are refreshed
+     * once the debounce window has passed, together with any other change made meanwhile.
+     */
+    public void invalidate(String lobbyCode) {
+        if (sessionManager.getLobbyPhase(lobbyCode) != LobbyPhase.LOBBY) {
+            return;
+        }
+        Board board = boards.computeIfAbsent(lobbyCode, Board::new);
+        synchronized (board) {
+            board.version++;
+            if (board.flushPending) {
+                return;
+            }
+            board.flushPending = true;
+        }
+        timer.schedule(lobbyCode, () -> dispatcher.submitToLobby(lobbyCode, () -> flush(lobbyCode)),
+                debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a player a new status message right away. Later refreshes edit this message.
+     */
+    public void show(String lobbyCode, long userId, String chatId) {
+        GameLobby lobby = sessionManager.getLobbyByCode(lobbyCode).orElse(null);
+        if (lobby == null) {
+            return;
+        }
+        Player player = lobby.getPlayer(userId).orElse(null);
+        if (player == null) {
+            return;
+        }
+
+        Board board = boards.computeIfAbsent(lobbyCode, Board::new);
+        Rendering rendering = board.render(lobby, ViewerClass.of(lobby, player));
+        Viewer viewer;
+        synchronized (board) {
+            viewer = new Viewer(chatId);
+            board.viewers.put(userId, viewer);
+        }
+        send(board, userId, viewer, rendering);
+    }
+
+    /**
+     * Drops everything known about a removed lobby.
+     */
+    public void forget(String lobbyCode) {
+        boards.remove(lobbyCode);
+    }
+
+    /**
+     * Brings the messages of all members up to date. Runs in the lobby's mailbox.
+     */
+    private void flush(String lobbyCode) {
+        Board board = boards.get(lobbyCode);
+        if (board == null) {
+            return;
+        }
+        synchronized (board) {
+            board.flushPending = false;
+        }
+
+        GameLobby lobby = sessionManager.getLobbyByCode(lobbyCode).orElse(null);
+        if (lobby == null || sessionManager.getLobbyPhase(lobbyCode) != LobbyPhase.LOBBY) {
+            // The game has started or the lobby is gone: the lobby buttons are no longer valid
+            boards.remove(lobbyCode, board);
+            return;
+        }
+
+        Set<Long> members = new HashSet<>();
+        int edits = 0;
+        for (Player player : lobby.getPlayers()) {
+            members.add(player.getUserId());
+            Rendering rendering = board.render(lobby, ViewerClass.of(lobby, player));
+
+            Viewer viewer;
+            Integer messageId;
+            synchronized (board) {
+                viewer = board.viewers.get(player.getUserId());
+                if (viewer == null || viewer.messageId == null || rendering.sameContent(viewer.shown)) {
+                    // No message yet, one is being sent, or it already shows this content
+                    if (viewer != null) {
+                        viewer.wanted = rendering;
+                    }
+                    continue;
+                }
+                viewer.shown = rendering;
+                messageId = viewer.messageId;
+            }
+            edit(board, player.getUserId(), viewer, messageId, rendering);
+            edits++;
+        }
+
+        synchronized (board) {
+            board.viewers.keySet().retainAll(members);
+        }
+        log.debug("Refreshed lobby status of {} at version {} with {} edits", lobbyCode, board.version, edits);
+    }
+
+    private void edit(Board board, long userId, Viewer viewer, Integer messageId, Rendering rendering) {
+        bot.editMessageTextChecked(viewer.chatId, messageId, rendering.text, rendering.markup).thenAccept(result -> {
+            if (result == EditResult.MESSAGE_GONE) {
+                // The message is gone: replace it with a new one
+                send(board, userId, viewer, rendering);
+            } else if (result == EditResult.FAILED) {
+                // Keep the message; the next refresh edits it again
+                synchronized (board) {
+                    if (viewer.shown == rendering) {
+                        viewer.shown = null;
+                    }
+                }
+            }
+        });
+    }
+
+    private void send(Board board, long userId, Viewer viewer, Rendering rendering) {
+        synchronized (board) {
+            viewer.messageId = null;
+            viewer.shown = rendering;
+            viewer.wanted = rendering;
+        }
+        CompletableFuture<Integer> sent = rendering.markup != null
+                ? bot.sendMessageWithReturnIdSafe(viewer.chatId, rendering.text, rendering.markup)
+                : bot.sendTextMessageWithReturnIdSafe(viewer.chatId, rendering.text);
+        sent.thenAccept(messageId -> {
+            if (messageId == null) {
+                return;
+            }
+            boolean stale;
+            synchronized (board) {
+                if (board.viewers.get(userId) != viewer) {
+                    return;
+                }
+                viewer.messageId = messageId;
+                stale = !viewer.wanted.sameContent(viewer.shown);
+            }
+            if (stale) {
+                // The lobby changed while the message was on its way
+                invalidate(board.lobbyCode);
+            }
+        });
+    }
+
+    /**
+     * Which keyboard a member sees.
+     */
+    private enum ViewerClass {
+        MEMBER_NOT_READY,
+        MEMBER_READY,
+        OWNER_NOT_READY,
+        OWNER_READY;
+
+        static ViewerClass of(GameLobby lobby, Player player) {
+            boolean owner = lobby.isOwner(player.getUserId());
+            if (owner) {
+                return player.isReady() ? OWNER_READY : OWNER_NOT_READY;
+            }
+            return player.isReady() ? MEMBER_READY : MEMBER_NOT_READY;
+        }
+
+        boolean isOwner() {
+            return this == OWNER_READY || this == OWNER_NOT_READY;
+        }
+
+        boolean isReady() {
+            return this == OWNER_READY || this == MEMBER_READY;
+        }
+    }
+
+    /**
+     * Status state of one lobby.
+     */
+    private final class Board {
+        private final String lobbyCode;
+        private final Map<Long, Viewer> viewers = new HashMap<>();
+        private long version = 0;
+        private boolean flushPending = false;
+
+        // Renderings of the current version, by viewer class
+        private long renderedVersion = -1;
+        private String renderedText;
+        private final Rendering[] renderings = new Rendering[ViewerClass.values().length];
+
+        Board(String lobbyCode) {
+            this.lobbyCode = lobbyCode;
+        }
+
+        synchronized Rendering render(GameLobby lobby, ViewerClass viewerClass) {
+            if (renderedVersion != version) {
+                renderedVersion = version;
+                renderedText = renderPlayers(lobby);
+                Arrays.fill(renderings, null);
+            }
+            Rendering rendering = renderings[viewerClass.ordinal()];
+            if (rendering == null) {
+                rendering = new Rendering(renderedText, renderKeyboard(lobbyCode, viewerClass));
+                renderings[viewerClass.ordinal()] = rendering;
+            }
+            return rendering;
+        }
+    }
+
+    /**
+     * What is known about the status message of one member.
+     */
+    private static final class Viewer {
+        private final String chatId;
+        // Null while the message is being sent
+        private Integer messageId;
+        // The content last sent, and the content the message should show
+        private Rendering shown;
+        private Rendering wanted;
+
+        Viewer(String chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    /**
+     * Text and keyboard of a status message.
+     */
+    private static final class Rendering {
+        private final String text;
+        private final InlineKeyboardMarkup markup;
+        // Button texts and callback data, to compare keyboards cheaply
+        private final String keyboardSignature;
+
+        Rendering(String text, InlineKeyboardMarkup markup) {
+            this.text = text;
+            this.markup = markup;
+            StringBuilder signature = new StringBuilder();
+            if (markup != null) {
+                for (List<InlineKeyboardButton> row : markup.getKeyboard()) {
+                    for (InlineKeyboardButton button : row) {
+                        signature.append(button.getText()).append('\u0000').append(button.getCallbackData()).append('\u0000');
+                    }
+                    signature.append('\n');
+                }
+            }
+            this.keyboardSignature = signature.toString();
+        }
+
+        boolean sameContent(Rendering other) {
+            return other != null && (other == this
+                    || (text.equals(other.text) && keyboardSignature.equals(other.keyboardSignature)));
+        }
+    }
+
+    private static String renderPlayers(GameLobby lobby) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("👥 *Игроки* (").append(lobby.getPlayers().size()).append("/").append(Config.MAX_PLAYERS).append("):\n");
+        for (Player p : lobby.getPlayers()) {
+            String readyStatus = p.isReady() ? "✅" : "⬜";
+            String ownerLabel = lobby.isOwner(p.getUserId()) ? " 👑" : "";
+            sb.append(readyStatus).append(" ")
+                    .append(p.getDisplayName())
+                    .append(ownerLabel)
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
+    private InlineKeyboardMarkup renderKeyboard(String lobbyCode, ViewerClass viewerClass) {
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
+
+        // Кнопка "Готов" если игрок не готов
+        if (!viewerClass.isReady()) {
+            keyboard.add(row("Готов", callback(lobbyCode, CallbackAction.READY)));
+        }
+
+        // Владельцу - кнопки настроек и запуска игры
+        if (viewerClass.isOwner()) {
+            keyboard.add(row("⚙️ Настройки", callback(lobbyCode, CallbackAction.SETTINGS)));
+            keyboard.add(row("🚀 Начать игру", callback(lobbyCode, CallbackAction.START_GAME)));
+        }
+
+        if (keyboard.isEmpty()) {
+            return null;
+        }
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        markup.setKeyboard(keyboard);
+        return markup;
+    }
+
+    private String callback(String lobbyCode, CallbackAction action) {
+        return CallbackCodec.encode(action, sessionManager.getCallbackEpoch(lobbyCode, action.getScope()));
+    }
+
+    private static List<InlineKeyboardButton> row(String text, String callbackData) {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(text);
+        button.setCallbackData(callbackData);
+        List<InlineKeyboardButton> row = new ArrayList<>();
+        row.add(button);
+        return row;
+    }
+}
@@ -0,0 +1,370 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.voting.VoteTracker;
+import com.amongus.bot.game.voting.VotingManager;
+import com.amongus.bot.models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the voting of a meeting in one message per player: who has voted, the time left and,
+ * for living players, their own vote and the voting buttons. When voting ends the same
+ * message is turned into the results, so a meeting costs one message per player plus edits.
+ * <p>
+ * Votes only mark the board as changed; the messages are edited at most once per refresh
+ * window, in the lobby's mailbox, the way the {@link GameHud} is.
+ * <p>
+ * A game bound to a group chat gets a single board in the group instead, with buttons
+ * for every living player; the voter is whoever presses a button.
+ */
+public class MeetingBoard {
+    private static final Logger log = LoggerFactory.getLogger(MeetingBoard.class);
+
+    // Viewer key of the board in a group chat; user IDs are always positive
+    private static final long GROUP_VIEWER = 0L;
+
+    // Nothing refreshes a closed board, so a failed edit of the results is retried this often
+    private static final int RESULT_EDIT_RETRIES = 2;
+
+    private final AmongUsBot bot;
+    private final UpdateDispatcher dispatcher;
+    private final WheelTimer timer;
+    private final long refreshMillis;
+    private final long countdownStepSeconds;
+
+    private final Map<String, Board> boards = new ConcurrentHashMap<>();
+
+    public MeetingBoard(AmongUsBot bot, UpdateDispatcher dispatcher, WheelTimer timer,
+                        long refreshMillis, long countdownStepSeconds) {
+        this.bot = bot;
+        this.dispatcher = dispatcher;
+        this.timer = timer;
+        this.refreshMillis = refreshMillis;
+        this.countdownStepSeconds = countdownStepSeconds;
+    }
+
+    /**
+     * Sends every player the board of a meeting whose voting has just started.
+     * Called from the lobby's mailbox.
+     */
+    public void open(GameSession gameSession, VotingManager votingManager) {
+        Board board = new Board(gameSession, votingManager);
+        Board previous = boards.put(gameSession.getLobbyCode(), board);
+        if (previous != null) {
+            synchronized (previous) {
+                previous.closed = true;
+            }
+        }
+
+        if (gameSession.isGroupMode()) {
+            board.keyboards.put(GROUP_VIEWER, votingManager.createVotingKeyboard(gameSession, null));
+            Viewer viewer = new Viewer(gameSession.getGroupChatId());
+            synchronized (board) {
+                board.viewers.put(GROUP_VIEWER, viewer);
+            }
+            send(board, GROUP_VIEWER, viewer, render(board, null));
+            scheduleTick(board);
+            return;
+        }
+
+        for (Player player : gameSession.getPlayers()) {
+            gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatId -> {
+                if (player.isAlive()) {
+                    board.keyboards.put(player.getUserId(), votingManager.createVotingKeyboard(gameSession, player));
+                }
+                Viewer viewer = new Viewer(chatId);
+                synchronized (board) {
+                    board.viewers.put(player.getUserId(), viewer);
+                }
+                send(board, player.getUserId(), viewer, render(board, player));
+            });
+        }
+        scheduleTick(board);
+    }
+
+    /**
+     * Marks the board of a meeting as changed, for example after a vote.
+     */
+    public void invalidate(String lobbyCode) {
+        Board board = boards.get(lobbyCode);
+        if (board == null) {
+            return;
+        }
+        synchronized (board) {
+            if (board.flushPending || board.closed) {
+                return;
+            }
+            board.flushPending = true;
+        }
+        timer.schedule(lobbyCode, () -> dispatcher.submitToLobby(lobbyCode, () -> flush(board)),
+                refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Turns the boards of a meeting into its results, right away.
+     *
+     * @param results The formatted voting results
+     */
+    public void close(String lobbyCode, String results) {
+        Board board = boards.remove(lobbyCode);
+        if (board == null) {
+            return;
+        }
+        Rendering rendering = new Rendering("🗳️ *Голосование завершено*\n\n" + results, null);
+        synchronized (board) {
+            board.closed = true;
+            for (Map.Entry<Long, Viewer> entry : board.viewers.entrySet()) {
+                Viewer viewer = entry.getValue();
+                viewer.wanted = rendering;
+                if (viewer.messageId != null) {
+                    viewer.shown = rendering;
+                    edit(board, entry.getKey(), viewer, viewer.messageId, rendering, RESULT_EDIT_RETRIES);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops everything known about a removed lobby.
+     */
+    public void forget(String lobbyCode) {
+        Board board = boards.remove(lobbyCode);
+        if (board != null) {
+            synchronized (board) {
+                board.closed = true;
+            }
+        }
+    }
+
+    /**
+     * Brings the boards of all players up to date. Runs in the lobby's mailbox.
+     */
+    private void flush(Board board) {
+        synchronized (board) {
+            board.flushPending = false;
+            if (board.closed) {
+                return;
+            }
+        }
+
+        int edits = 0;
+        if (board.gameSession.isGroupMode()) {
+            if (refresh(board, GROUP_VIEWER, render(board, null))) {
+                edits++;
+            }
+        } else {
+            for (Player player : board.gameSession.getPlayers()) {
+                if (refresh(board, player.getUserId(), render(board, player))) {
+                    edits++;
+                }
+            }
+        }
+        log.debug("Refreshed meeting board of {} with {} edits", board.gameSession.getLobbyCode(), edits);
+    }
+
+    /**
+     * Edits the board of one viewer if it does not show the given content yet.
+     *
+     * @return true if an edit was sent
+     */
+    private boolean refresh(Board board, long viewerKey, Rendering rendering) {
+        Viewer viewer;
+        Integer messageId;
+        synchronized (board) {
+            viewer = board.viewers.get(viewerKey);
+            if (viewer == null || viewer.messageId == null || rendering.sameContent(viewer.shown)) {
+                // No message yet, one is being sent, or it already shows this content
+                if (viewer != null) {
+                    viewer.wanted = rendering;
+                }
+                return false;
+            }
+            viewer.shown = rendering;
+            messageId = viewer.messageId;
+        }
+        edit(board, viewerKey, viewer, messageId, rendering, RESULT_EDIT_RETRIES);
+        return true;
+    }
+
+    /**
+     * Edits the board of one viewer. A message that is gone is replaced with a new one. After any
+     * other failure the message is kept: an open board edits it again on its next refresh, and the
+     * results of a closed board are retried a few times.
+     */
+    private void edit(Board board, long viewerKey, Viewer viewer, Integer messageId, Rendering rendering,
+                      int retries) {
+        bot.editMessageTextChecked(viewer.chatId, messageId, rendering.text, rendering.markup).thenAccept(result -> {
+            if (result == EditResult.MESSAGE_GONE) {
+                // The message is gone: replace it with a new one
+                send(board, viewerKey, viewer, rendering);
+            } else if (result == EditResult.FAILED) {
+                boolean retry;
+                synchronized (board) {
+                    if (board.viewers.get(viewerKey) != viewer || viewer.shown != rendering) {
+                        return;
+                    }
+                    viewer.shown = null;
+                    retry = board.closed && retries > 0;
+                    if (retry) {
+                        viewer.shown = rendering;
+                    }
+                }
+                if (retry) {
+                    String lobbyCode = board.gameSession.getLobbyCode();
+                    timer.schedule(lobbyCode, () -> dispatcher.submitToLobby(lobbyCode,
+                            () -> edit(board, viewerKey, viewer, messageId, rendering, retries - 1)),
+                            refreshMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    private void send(Board board, long userId, Viewer viewer, Rendering rendering) {
+        synchronized (board) {
+            viewer.messageId = null;
+            viewer.shown = rendering;
+            viewer.wanted = rendering;
+        }
+        bot.sendMessageWithReturnIdSafe(viewer.chatId, rendering.text, rendering.markup).thenAccept(messageId -> {
+            if (messageId == null) {
+                return;
+            }
+            Rendering wanted;
+            synchronized (board) {
+                if (board.viewers.get(userId) != viewer) {
+                    return;
+                }
+                viewer.messageId = messageId;
+                wanted = viewer.wanted;
+                if (wanted.sameContent(viewer.shown)) {
+                    return;
+                }
+                viewer.shown = wanted;
+            }
+            // The votes changed or the meeting ended while the message was on its way
+            edit(board, userId, viewer, messageId, wanted, RESULT_EDIT_RETRIES);
+        });
+    }
+
+    /**
+     * Keeps the countdown moving until the meeting is closed.
+     */
+    private void scheduleTick(Board board) {
+        timer.schedule(board.gameSession.getLobbyCode(), () -> {
+            synchronized (board) {
+                if (board.closed) {
+                    return;
+                }
+            }
+            invalidate(board.gameSession.getLobbyCode());
+            scheduleTick(board);
+        }, countdownStepSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Renders the board of one player, or of the group chat if the player is null.
+     */
+    private Rendering render(Board board, Player player) {
+        VotingManager votingManager = board.votingManager;
+        VoteTracker tracker = votingManager.getVoteTracker();
+        GameSession gameSession = board.gameSession;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("🗳️ *Голосование* — ⏱ ~").append(roundUp(votingManager.getRemainingVotingTimeSec()))
+                .append(" сек.\n\n");
+        for (int slot = 0; slot < tracker.getVoterCount(); slot++) {
+            boolean voted = tracker.hasVoted(slot);
+            gameSession.getPlayer(tracker.getVoterId(slot)).ifPresent(voter ->
+                    sb.append(voted ? "✅ " : "⬜ ").append(voter.getDisplayName()).append("\n"));
+        }
+        sb.append("\nПроголосовали: ").append(tracker.getVotedCount()).append("/").append(tracker.getVoterCount());
+
+        if (player == null) {
+            sb.append("\n\nВыберите игрока, которого вы подозреваете, или пропустите голосование. Призраки не голосуют.");
+            return new Rendering(sb.toString(), board.keyboards.get(GROUP_VIEWER));
+        }
+
+        InlineKeyboardMarkup markup = board.keyboards.get(player.getUserId());
+        if (markup == null) {
+            sb.append("\n\n👻 Призраки не голосуют.");
+        } else {
+            long target = tracker.getVoteTargetId(player.getUserId());
+            if (target == VoteTracker.SKIP) {
+                sb.append("\n\n✅ Ваш голос: пропуск");
+            } else if (target != VoteTracker.NONE) {
+                gameSession.getPlayer(target).ifPresent(voted ->
+                        sb.append("\n\n✅ Ваш голос: *").append(voted.getDisplayName()).append("*"));
+            } else {
+                sb.append("\n\nВыберите игрока, которого вы подозреваете, или пропустите голосование.");
+            }
+        }
+        return new Rendering(sb.toString(), markup);
+    }
+
+    private long roundUp(long seconds) {
+        if (seconds <= 0) {
+            return 0;
+        }
+        return (seconds + countdownStepSeconds - 1) / countdownStepSeconds * countdownStepSeconds;
+    }
+
+    /**
+     * Board state of one meeting.
+     */
+    private static final class Board {
+        private final GameSession gameSession;
+        private final VotingManager votingManager;
+        // Voting buttons of the living players; they do not change during a meeting
+        private final Map<Long, InlineKeyboardMarkup> keyboards = new ConcurrentHashMap<>();
+        private final Map<Long, Viewer> viewers = new HashMap<>();
+        private boolean flushPending = false;
+        private boolean closed = false;
+
+        Board(GameSession gameSession, VotingManager votingManager) {
+            this.gameSession = gameSession;
+            this.votingManager = votingManager;
+        }
+    }
+
+    /**
+     * What is known about the board message of one player.
+     */
+    private static final class Viewer {
+        private final String chatId;
+        // Null while the message is being sent
+        private Integer messageId;
+        // The content last sent, and the content the message should show
+        private Rendering shown;
+        private Rendering wanted;
+
+        Viewer(String chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    /**
+     * Text and keyboard of a board message.
+     */
+    private static final class Rendering {
+        private final String text;
+        private final InlineKeyboardMarkup markup;
+
+        Rendering(String text, InlineKeyboardMarkup markup) {
+            this.text = text;
+            this.markup = markup;
+        }
+
+        boolean sameContent(Rendering other) {
+            return other != null && (other == this
+                    || (text.equals(other.text) && Objects.equals(markup, other.markup)));
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.models.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Outbox of messages that must reach their chat, and be deleted again, even if the bot restarts
+ * in between. An entry is written to an {@link EventJournal} of its own before it is sent; sending
+ * it and deleting it later are recorded as well, and {@link #replay()} hands back what was left
+ * undone.
+ * <p>
+ * New entries are committed in groups: the IO thread syncs the journal once for all entries added
+ * while the previous sync ran, and only then hands them over for sending. Marking entries sent or
+ * done is not waited for; losing such a record to a power loss means the entry is handled again.
+ * <p>
+ * Every entry has a dedupe key. A key is ignored while its entry is pending and for the last
+ * {@link Config#OUTBOX_DEDUPE_KEYS} finished entries, so nothing is queued twice.
+ */
+public class MessageOutbox {
+    private static final Logger log = LoggerFactory.getLogger(MessageOutbox.class);
+
+    /**
+     * Record types. The codes are stored in the outbox and must never change.
+     */
+    private enum Type {
+        ADDED(1),
+        SENT(2),
+        DONE(3);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type of(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown outbox record type " + code);
+        }
+    }
+
+    // Null when the outbox is disabled and entries are handed over right away
+    private final EventJournal journal;
+
+    // Pending entries by key, and the keys of recently finished ones; guarded by this
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private final Map<String, Boolean> finished = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > Config.OUTBOX_DEDUPE_KEYS;
+        }
+    };
+    // Added but not yet synced, guarded by this
+    private List<Entry> unsynced = new ArrayList<>();
+
+    private volatile Consumer<Entry> sender = entry -> { };
+
+    // Syncs block on the disk, so they run here instead of on the caller's thread
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean commitQueued = new AtomicBoolean(false);
+    private final AtomicLong keySequence = new AtomicLong();
+
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder entriesCommitted = new LongAdder();
+    private final LongAdder recordsFailed = new LongAdder();
+
+    private MessageOutbox(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Opens the outbox in a directory, or returns a disabled outbox if the directory is empty
+     * or the outbox cannot be opened.
+     */
+    public static MessageOutbox open(String directory, int segmentBytes) {
+        if (directory == null || directory.isEmpty()) {
+            return new MessageOutbox(null);
+        }
+        try {
+            return new MessageOutbox(EventJournal.open(Path.of(directory), segmentBytes));
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to open the outbox in {}, messages will not survive a restart: {}",
+                    directory, e.getMessage(), e);
+            return new MessageOutbox(null);
+        }
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Sets what entries are handed to once they are on disk.
+     */
+    public void setSender(Consumer<Entry> sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Adds a message to be sent to a chat and deleted after a while.
+     *
+     * @param key            The dedupe key, or null for a message that cannot be queued twice anyway
+     * @param ownerKey       The owner the pending deletion is tracked under, see {@link AmongUsBot#flushTemporaryMessages}
+     * @param secondsToLive  How long the message stays after it has been sent
+     * @return false if an entry with the key is pending or finished recently
+     */
+    public boolean add(String key, String ownerKey, String chatId, String text, int secondsToLive) {
+        Entry entry;
+        synchronized (this) {
+            if (key == null) {
+                key = "auto:" + System.currentTimeMillis() + ":" + keySequence.incrementAndGet();
+            } else if (pending.containsKey(key) || finished.containsKey(key)) {
+                return false;
+            }
+            entry = new Entry(key, ownerKey, chatId, text, secondsToLive);
+            pending.put(key, entry);
+            if (journal != null) {
+                append(addedRecord(entry));
+                unsynced.add(entry);
+            }
+        }
+        if (journal == null) {
+            sender.accept(entry);
+        } else if (commitQueued.compareAndSet(false, true)) {
+            io.execute(this::commit);
+        }
+        return true;
+    }
+
+    /**
+     * Records that an entry has been sent and when its message is due for deletion.
+     */
+    public synchronized void sent(Entry entry, int messageId, long deleteAtMillis) {
+        entry.messageId = messageId;
+        entry.deleteAtMillis = deleteAtMillis;
+        if (journal != null && pending.get(entry.key) == entry) {
+            append(record(Type.SENT, entry.key, out -> {
+                out.writeInt(messageId);
+                out.writeLong(deleteAtMillis);
+            }));
+        }
+    }
+
+    /**
+     * Records that an entry needs nothing more: its message has been deleted, or it cannot be
+     * sent or deleted at all.
+     */
+    public synchronized void done(Entry entry) {
+        if (pending.remove(entry.key, entry)) {
+            finished.put(entry.key, Boolean.TRUE);
+            if (journal != null) {
+                append(record(Type.DONE, entry.key, out -> { }));
+            }
+        }
+    }
+
+    /**
+     * Reads the entries left pending by the previous run and writes them into a fresh segment, so that
+     * the older segments can go. Called once on startup, before anything is added.
+     *
+     * @return The pending entries in the order they were added; entries not yet sent have no message ID
+     */
+    public List<Entry> replay() {
+        if (journal == null) {
+            return Collections.emptyList();
+        }
+        synchronized (this) {
+            try {
+                int records = journal.replay(0, this::apply);
+                log.info("Replayed {} outbox records, {} entries pending", records, pending.size());
+            } catch (IOException e) {
+                log.error("Failed to replay the outbox: {}", e.getMessage(), e);
+            }
+            compact();
+            return new ArrayList<>(pending.values());
+        }
+    }
+
+    /**
+     * Rewrites the pending entries into a fresh segment in the background once the outbox has grown past
+     * its segment limit. Called periodically.
+     */
+    public void requestCompaction() {
+        if (journal != null) {
+            io.execute(() -> {
+                if (journal.getSegmentCount() > Config.OUTBOX_COMPACT_SEGMENTS) {
+                    synchronized (this) {
+                        compact();
+                    }
+                }
+            });
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    public long getEntriesCommitted() {
+        return entriesCommitted.sum();
+    }
+
+    public long getRecordsFailed() {
+        return recordsFailed.sum();
+    }
+
+    /**
+     * Syncs everything added so far and hands the new entries over. Entries added during the sync
+     * wait for the next one.
+     */
+    private void commit() {
+        commitQueued.set(false);
+        List<Entry> batch;
+        synchronized (this) {
+            if (unsynced.isEmpty()) {
+                return;
+            }
+            batch = unsynced;
+            unsynced = new ArrayList<>();
+        }
+        journal.sync();
+        commits.increment();
+        entriesCommitted.add(batch.size());
+        Consumer<Entry> target = sender;
+        for (Entry entry : batch) {
+            try {
+                target.accept(entry);
+            } catch (RuntimeException e) {
+                log.error("Failed to hand over outbox entry {}: {}", entry.key, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment with the pending entries and deletes the older ones. Runs with the lock held,
+     * so no record can fall between the copy and the deletion.
+     */
+    private void compact() {
+        try {
+            long firstSegment = journal.startSnapshot();
+            for (Entry entry : pending.values()) {
+                append(addedRecord(entry));
+                if (entry.messageId != 0) {
+                    int messageId = entry.messageId;
+                    long deleteAt = entry.deleteAtMillis;
+                    append(record(Type.SENT, entry.key, out -> {
+                        out.writeInt(messageId);
+                        out.writeLong(deleteAt);
+                    }));
+                }
+            }
+            journal.sync();
+            journal.deleteSegmentsBefore(firstSegment);
+        } catch (IOException e) {
+            log.error("Failed to compact the outbox: {}", e.getMessage(), e);
+        }
+    }
+
+    private void apply(ByteBuffer record) {
+        Type type = Type.of(record.get());
+        String key = SessionJournal.readString(record);
+        switch (type) {
+            case ADDED:
+                if (!finished.containsKey(key)) {
+                    String ownerKey = SessionJournal.readString(record);
+                    String chatId = SessionJournal.readString(record);
+                    String text = SessionJournal.readString(record);
+                    pending.putIfAbsent(key, new Entry(key, ownerKey, chatId, text, record.getInt()));
+                }
+                break;
+            case SENT: {
+                Entry entry = pending.get(key);
+                if (entry != null) {
+                    entry.messageId = record.getInt();
+                    entry.deleteAtMillis = record.getLong();
+                }
+                break;
+            }
+            case DONE:
+                pending.remove(key);
+                finished.put(key, Boolean.TRUE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void append(byte[] record) {
+        if (!journal.append(record)) {
+            recordsFailed.increment();
+        }
+    }
+
+    private static byte[] addedRecord(Entry entry) {
+        return record(Type.ADDED, entry.key, out -> {
+            SessionJournal.writeString(out, entry.ownerKey);
+            SessionJournal.writeString(out, entry.chatId);
+            SessionJournal.writeString(out, entry.text);
+            out.writeInt(entry.secondsToLive);
+        });
+    }
+
+    /**
+     * Writes the fields of a record after its type and key.
+     */
+    private interface Fields {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] record(Type type, String key, Fields fields) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type.code);
+            SessionJournal.writeString(out, key);
+            fields.write(out);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A message in the outbox.
+     */
+    public static final class Entry {
+        private final String key;
+        private final String ownerKey;
+        private final String chatId;
+        private final String text;
+        private final int secondsToLive;
+
+        // Set once the message has been sent
+        private volatile int messageId;
+        private volatile long deleteAtMillis;
+
+        Entry(String key, String ownerKey, String chatId, String text, int secondsToLive) {
+            this.key = key;
+            this.ownerKey = ownerKey;
+            this.chatId = chatId;
+            this.text = text;
+            this.secondsToLive = secondsToLive;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getOwnerKey() {
+            return ownerKey;
+        }
+
+        public String getChatId() {
+            return chatId;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getSecondsToLive() {
+            return secondsToLive;
+        }
+
+        /**
+         * Gets the ID of the sent message, or 0 if it has not been sent.
+         */
+        public int getMessageId() {
+            return messageId;
+        }
+
+        public long getDeleteAtMillis() {
+            return deleteAtMillis;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.models.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous, rate-limited pipeline for outgoing Telegram API calls.
+ * Calls to one chat are sent in submission order and limited by a per-chat token bucket,
+ * all calls share a global token bucket, and "429 Too Many Requests" responses are
+ * retried after the delay requested by Telegram.
+ * <p>
+ * Edits of the same message are coalesced while they wait: a newer edit replaces the content
+ * of the queued one, so only the latest content is sent. An edit whose content is exactly what
+ * the message already shows is completed without an API call.
+ */
+public class OutboundQueue {
+    private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int BAD_REQUEST = 400;
+    private static final String NOT_MODIFIED = "message is not modified";
+    private static final String[] MESSAGE_GONE = {"message to edit not found", "message can't be edited"};
+
+    // Messages per chat whose last sent content is remembered
+    private static final int TRACKED_MESSAGES_PER_CHAT = 64;
+
+    private final AbsSender sender;
+    private final ScheduledExecutorService executor;
+    private final TokenBucket globalBucket;
+
+    // Pending calls per chat ID; idle chats with a full bucket are evicted periodically
+    private final Map<String, ChatQueue> chats = new ConcurrentHashMap<>();
+
+    private final LongAdder editsSubmitted = new LongAdder();
+    private final LongAdder editsCoalesced = new LongAdder();
+    private final LongAdder editsSuppressed = new LongAdder();
+
+    /**
+     * Creates a new outbound queue.
+     *
+     * @param sender        The sender that performs the actual API calls
+     * @param senderThreads The number of threads performing network I/O
+     */
+    public OutboundQueue(AbsSender sender, int senderThreads) {
+        this.sender = sender;
+        this.executor = Executors.newScheduledThreadPool(senderThreads, new SenderThreadFactory());
+        this.globalBucket = new TokenBucket(Config.OUTBOUND_GLOBAL_MESSAGES_PER_SECOND, Config.OUTBOUND_GLOBAL_MESSAGES_PER_SECOND);
+
+        executor.scheduleAtFixedRate(this::evictIdleChats, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Queues an API call addressed to a chat.
+     *
+     * @param chatId The chat the call is addressed to
+     * @param method The API method to execute
+     * @return A future completed with the API response, or exceptionally if the call failed
+     */
+    public <T extends Serializable> CompletableFuture<T> submit(String chatId, BotApiMethod<T> method) {
+        PendingCall<T> call = new PendingCall<>(method);
+        while (true) {
+            ChatQueue queue = chats.computeIfAbsent(chatId, ChatQueue::new);
+            synchronized (queue) {
+                if (queue.evicted) {
+                    continue;
+                }
+                queue.pending.add(call);
+                if (!queue.active) {
+                    queue.active = true;
+                    executor.execute(() -> drain(queue));
+                }
+            }
+            return call.future;
+        }
+    }
+
+    /**
+     * Queues an edit of a message's text. If an edit of the same message is still waiting,
+     * its content is replaced instead and both callers get the result of the one call.
+     *
+     * @return A future completed with the API response, or with {@code true} if no call was needed
+     */
+    public CompletableFuture<Serializable> submitEdit(EditMessageText edit) {
+        String chatId = edit.getChatId();
+        Integer messageId = edit.getMessageId();
+        editsSubmitted.increment();
+        while (true) {
+            ChatQueue queue = chats.computeIfAbsent(chatId, ChatQueue::new);
+            synchronized (queue) {
+                if (queue.evicted) {
+                    continue;
+                }
+                PendingCall<Serializable> waiting = queue.pendingEdits.get(messageId);
+                if (waiting != null) {
+                    // Last write wins: the queued edit now carries the newest content
+                    waiting.method = edit;
+                    editsCoalesced.increment();
+                    return waiting.future;
+                }
+
+                PendingCall<Serializable> call = new PendingCall<>(edit);
+                call.editedMessageId = messageId;
+                queue.pendingEdits.put(messageId, call);
+                queue.pending.add(call);
+                if (!queue.active) {
+                    queue.active = true;
+                    executor.execute(() -> drain(queue));
+                }
+                return call.future;
+            }
+        }
+    }
+
+    /**
+     * Queues an API call that is not bound to a chat, such as answering a callback query.
+     * Such calls are only limited by the global bucket and are not ordered.
+     */
+    public <T extends Serializable> CompletableFuture<T> submitUnordered(BotApiMethod<T> method) {
+        PendingCall<T> call = new PendingCall<>(method);
+        executor.execute(() -> sendUnordered(call));
+        return call.future;
+    }
+
+    /**
+     * Sends the pending calls of a chat one by one while the rate limits allow it,
+     * rescheduling itself when a bucket runs dry.
+     */
+    private void drain(ChatQueue queue) {
+        while (true) {
+            PendingCall<?> call;
+            synchronized (queue) {
+                call = queue.pending.peek();
+                if (call == null) {
+                    queue.active = false;
+                    return;
+                }
+                if (suppressUnmodified(queue, call)) {
+                    continue;
+                }
+            }
+
+            long wait = acquire(queue);
+            if (wait > 0) {
+                // A waiting edit keeps absorbing newer edits of its message
+                executor.schedule(() -> drain(queue), wait, TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            if (call.editedMessageId != null) {
+                synchronized (queue) {
+                    // From here on the content is fixed; later edits of the message queue a new call
+                    queue.pendingEdits.remove(call.editedMessageId, call);
+                    if (suppressUnmodified(queue, call)) {
+                        continue;
+                    }
+                }
+            }
+
+            Long retryAfterSeconds = call.send();
+            if (retryAfterSeconds != null) {
+                log.warn("Rate limited by Telegram in chat {}, retrying in {}s", queue.chatId, retryAfterSeconds);
+                queue.pausedUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+                continue;
+            }
+
+            synchronized (queue) {
+                queue.pending.poll();
+                if (call.editedMessageId != null && call.future.isDone() && !call.future.isCompletedExceptionally()) {
+                    queue.sentContent.put(call.editedMessageId, contentOf(call.method));
+                }
+            }
+        }
+    }
+
+    /**
+     * Completes the edit at the head of a queue without sending it if the message already shows
+     * its content. Called with the queue locked.
+     *
+     * @return true if the edit was completed and removed from the queue
+     */
+    private boolean suppressUnmodified(ChatQueue queue, PendingCall<?> call) {
+        if (call.editedMessageId == null
+                || !contentOf(call.method).equals(queue.sentContent.get(call.editedMessageId))) {
+            return false;
+        }
+        queue.pending.poll();
+        queue.pendingEdits.remove(call.editedMessageId, call);
+        editsSuppressed.increment();
+        call.completeUnmodified();
+        return true;
+    }
+
+    /**
+     * Everything an edit changes about a message, for comparing it with what the message shows.
+     */
+    private static List<Object> contentOf(BotApiMethod<?> method) {
+        EditMessageText edit = (EditMessageText) method;
+        return Arrays.asList(edit.getText(), edit.getParseMode(), edit.getDisableWebPagePreview(),
+                edit.getEntities(), edit.getReplyMarkup());
+    }
+
+    /**
+     * Takes a token from the chat and the global bucket.
+     *
+     * @return 0 if the call may be sent now, otherwise the nanoseconds to wait
+     */
+    private long acquire(ChatQueue queue) {
+        long now = System.nanoTime();
+        if (queue.pausedUntilNanos > now) {
+            return queue.pausedUntilNanos - now;
+        }
+
+        long wait = queue.bucket.tryAcquire(now);
+        if (wait > 0) {
+            return wait;
+        }
+
+        wait = globalBucket.tryAcquire(now);
+        if (wait > 0) {
+            queue.bucket.release();
+        }
+        return wait;
+    }
+
+    private void sendUnordered(PendingCall<?> call) {
+        long wait = globalBucket.tryAcquire(System.nanoTime());
+        if (wait > 0) {
+            executor.schedule(() -> sendUnordered(call), wait, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        Long retryAfterSeconds = call.send();
+        if (retryAfterSeconds != null) {
+            executor.schedule(() -> sendUnordered(call), retryAfterSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Drops the state of chats that have nothing queued and no rate limiting history.
+     */
+    private void evictIdleChats() {
+        long now = System.nanoTime();
+        for (ChatQueue queue : chats.values()) {
+            synchronized (queue) {
+                if (!queue.active && queue.pending.isEmpty() && queue.pausedUntilNanos <= now && queue.bucket.isFull(now)) {
+                    queue.evicted = true;
+                    chats.remove(queue.chatId, queue);
+                }
+            }
+        }
+    }
+
+    public long getEditsSubmitted() {
+        return editsSubmitted.sum();
+    }
+
+    /**
+     * Gets the number of edits merged into an edit of the same message that was still waiting.
+     */
+    public long getEditsCoalesced() {
+        return editsCoalesced.sum();
+    }
+
+    /**
+     * Gets the number of edits dropped because the message already showed their content.
+     */
+    public long getEditsSuppressed() {
+        return editsSuppressed.sum();
+    }
+
+    /**
+     * Gets the number of chats with tracked rate limiting state.
+     */
+    public int getTrackedChatCount() {
+        return chats.size();
+    }
+
+    /**
+     * Stops the sender threads. Calls still queued are abandoned.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Per-chat FIFO of pending calls together with the chat's rate limiting state.
+     */
+    private static final class ChatQueue {
+        private final String chatId;
+        private final Queue<PendingCall<?>> pending = new ArrayDeque<>();
+        private final TokenBucket bucket = new TokenBucket(Config.OUTBOUND_CHAT_MESSAGES_PER_SECOND, Config.OUTBOUND_CHAT_BURST);
+        // Queued edits that have not been sent yet, by message ID
+        private final Map<Integer, PendingCall<Serializable>> pendingEdits = new HashMap<>();
+        // Content each recently edited message shows, least recently edited first
+        private final Map<Integer, List<Object>> sentContent = new LinkedHashMap<Integer, List<Object>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Object>> eldest) {
+                return size() > TRACKED_MESSAGES_PER_CHAT;
+            }
+        };
+        private volatile long pausedUntilNanos = 0;
+        private boolean active = false;
+        private boolean evicted = false;
+
+        ChatQueue(String chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    /**
+     * An API call waiting to be sent together with the future of its result.
+     */
+    private final class PendingCall<T extends Serializable> {
+        // Replaced by newer edits of the same message until the call is taken for sending
+        private BotApiMethod<T> method;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private int attempts = 0;
+        // The edited message if this is a coalescable edit
+        private Integer editedMessageId;
+
+        PendingCall(BotApiMethod<T> method) {
+            this.method = method;
+        }
+
+        /**
+         * Executes the call and completes the future.
+         *
+         * @return the delay in seconds requested by Telegram if the call should be retried, or null when done
+         */
+        Long send() {
+            attempts++;
+            try {
+                future.complete(sender.execute(method));
+            } catch (TelegramApiRequestException e) {
+                Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+                if (e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS
+                        && retryAfter != null && attempts <= Config.OUTBOUND_MAX_RETRIES) {
+                    return retryAfter.longValue();
+                }
+                if (editedMessageId != null && isNotModified(e)) {
+                    // The message already shows this content, which is what the caller wanted
+                    completeUnmodified();
+                    return null;
+                }
+                future.completeExceptionally(e);
+            } catch (TelegramApiException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        }
+
+        /**
+         * Completes an edit that needed no change, the way Telegram answers edits of inline messages.
+         */
+        @SuppressWarnings("unchecked")
+        void completeUnmodified() {
+            future.complete((T) Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Checks if a call failed because Telegram no longer has the message or will not edit it any more.
+     * Other failures, such as network errors or exhausted retries, say nothing about the message.
+     */
+    public static boolean isMessageGone(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (!(cause instanceof TelegramApiRequestException)) {
+            return false;
+        }
+        TelegramApiRequestException e = (TelegramApiRequestException) cause;
+        if (e.getErrorCode() == null || e.getErrorCode() != BAD_REQUEST || e.getApiResponse() == null) {
+            return false;
+        }
+        for (String description : MESSAGE_GONE) {
+            if (e.getApiResponse().contains(description)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNotModified(TelegramApiRequestException e) {
+        return e.getErrorCode() != null && e.getErrorCode() == BAD_REQUEST
+                && e.getApiResponse() != null && e.getApiResponse().contains(NOT_MODIFIED);
+    }
+
+    /**
+     * Names sender threads so that they are recognizable in thread dumps.
+     */
+    private static final class SenderThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "outbound-sender-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
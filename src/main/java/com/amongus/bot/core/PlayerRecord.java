@@ -0,0 +1,56 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.models.Player;
+
+/**
+ * Everything the bot needs to know about a user who is in a lobby, resolved by a single lookup.
+ * Records are immutable; changing any part replaces the whole record in the index.
+ * The session is read through the lobby entry, so attaching or detaching it needs no index update.
+ */
+public final class PlayerRecord {
+    private final Player player;
+    private final LobbyEntry entry;
+    private final String chatId;
+
+    PlayerRecord(Player player, LobbyEntry entry, String chatId) {
+        this.player = player;
+        this.entry = entry;
+        this.chatId = chatId;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public LobbyEntry getEntry() {
+        return entry;
+    }
+
+    public GameLobby getLobby() {
+        return entry.getLobby();
+    }
+
+    public String getLobbyCode() {
+        return entry.getLobbyCode();
+    }
+
+    /**
+     * Gets the game session of the lobby, or null if the lobby has none.
+     */
+    public GameSession getSession() {
+        return entry.getSession();
+    }
+
+    /**
+     * Gets the private chat ID of the player, or null if it is not known yet.
+     */
+    public String getChatId() {
+        return chatId;
+    }
+
+    PlayerRecord withChatId(String chatId) {
+        return new PlayerRecord(player, entry, chatId);
+    }
+}
@@ -0,0 +1,549 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.tasks.Task;
+import com.amongus.bot.models.Config;
+import com.amongus.bot.models.GameSettings;
+import com.amongus.bot.models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Records what happens to lobbies and games in the {@link EventJournal}, so that the
+ * {@link JournalReplayer} can rebuild them after a restart. From time to time a
+ * {@link SessionSnapshot} replaces the journal written so far.
+ * <p>
+ * Every record is written after the change it describes and carries absolute values
+ * (a setting, the meetings a player has left), so applying a record twice does no harm.
+ * That lets a snapshot be taken while lobbies keep changing: records that race with it
+ * land after it in the journal and are simply applied again.
+ */
+public class SessionJournal {
+    private static final Logger log = LoggerFactory.getLogger(SessionJournal.class);
+
+    /**
+     * Record types. The codes are stored in the journal and must never change.
+     */
+    enum Type {
+        LOBBY_CREATED(1),
+        PLAYER_JOINED(2),
+        PLAYER_LEFT(3),
+        CHAT_ID(4),
+        GROUP_BOUND(5),
+        SETTINGS(6),
+        GAME_STARTED(7),
+        MEETINGS_LEFT(8),
+        VOTE(9),
+        PLAYER_DIED(10),
+        TASK_COMPLETED(11),
+        STATE(12),
+        LOBBY_REMOVED(13);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type of(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown journal record type " + code);
+        }
+    }
+
+    // Null when journaling is disabled
+    private final EventJournal journal;
+
+    // Records are dropped until the journal has been replayed
+    private volatile boolean recording = false;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean(false);
+    private volatile long lastSnapshotNanos = System.nanoTime();
+    private volatile long lastSnapshotBytes = 0;
+
+    // Syncs and snapshots block on the disk, so they run here instead of on the timer thread.
+    // A snapshot waits for every lobby mailbox, so it gets its own thread and never delays a sync
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService snapshots = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean syncQueued = new AtomicBoolean(false);
+
+    private final LongAdder recordsWritten = new LongAdder();
+    private final LongAdder recordsFailed = new LongAdder();
+
+    private SessionJournal(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Opens the journal in a directory, or returns a disabled journal if the directory is empty
+     * or the journal cannot be opened.
+     */
+    public static SessionJournal open(String directory, int segmentBytes) {
+        if (directory == null || directory.isEmpty()) {
+            return new SessionJournal(null);
+        }
+        try {
+            return new SessionJournal(EventJournal.open(Path.of(directory), segmentBytes));
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to open the event journal in {}, games will not survive a restart: {}",
+                    directory, e.getMessage(), e);
+            return new SessionJournal(null);
+        }
+    }
+
+    /**
+     * Gets a journal that records nothing.
+     */
+    public static SessionJournal disabled() {
+        return new SessionJournal(null);
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Starts recording. Called once the journal has been replayed.
+     */
+    public void start() {
+        recording = isEnabled();
+    }
+
+    /**
+     * Reads the newest snapshot.
+     *
+     * @return The snapshot, or null if there is none
+     */
+    public SessionSnapshot readSnapshot() {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            return SessionSnapshot.readNewest(journal.getDirectory());
+        } catch (IOException e) {
+            log.error("Failed to read the snapshot: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the records written after a snapshot.
+     *
+     * @param snapshot The snapshot the records follow, or null to read the whole journal
+     * @return The number of records read
+     */
+    public int replay(SessionSnapshot snapshot, Consumer<ByteBuffer> consumer) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        try {
+            return journal.replay(snapshot != null ? snapshot.getFirstSegment() : 0, consumer);
+        } catch (IOException e) {
+            log.error("Failed to replay the event journal: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Forces recorded changes to disk in the background. Called periodically, so that the disk
+     * is synced once per interval instead of once per record.
+     */
+    public void requestSync() {
+        if (recording && syncQueued.compareAndSet(false, true)) {
+            io.execute(() -> {
+                syncQueued.set(false);
+                journal.sync();
+            });
+        }
+    }
+
+    /**
+     * Takes a snapshot in the background once the snapshot interval has passed, or earlier if the
+     * journal has grown past its segment limit, so that replay never has to read more than a few segments.
+     */
+    public void requestSnapshot(SessionManager sessionManager, UpdateDispatcher dispatcher) {
+        if (recording) {
+            snapshots.execute(() -> {
+                boolean due = System.nanoTime() - lastSnapshotNanos
+                        >= TimeUnit.SECONDS.toNanos(Config.JOURNAL_SNAPSHOT_INTERVAL_SECONDS);
+                if (due || journal.getSegmentCount() > Config.JOURNAL_SNAPSHOT_SEGMENTS) {
+                    snapshot(sessionManager, dispatcher);
+                }
+            });
+        }
+    }
+
+    /**
+     * Records a new lobby with the epoch of its buttons, so that they stay valid after a restart.
+     */
+    public void lobbyCreated(GameLobby lobby, long callbackEpoch) {
+        if (recording) {
+            write(lobbyCreatedRecord(lobby, callbackEpoch));
+        }
+    }
+
+    public void playerJoined(String lobbyCode, Player player) {
+        if (recording) {
+            write(playerJoinedRecord(lobbyCode, player));
+        }
+    }
+
+    public void playerLeft(String lobbyCode, long userId) {
+        if (recording) {
+            write(record(Type.PLAYER_LEFT, lobbyCode, out -> out.writeLong(userId)));
+        }
+    }
+
+    public void chatIdChanged(String lobbyCode, long userId, String chatId) {
+        if (recording) {
+            write(chatIdRecord(lobbyCode, userId, chatId));
+        }
+    }
+
+    public void groupBound(String lobbyCode, String groupChatId) {
+        if (recording) {
+            write(groupBoundRecord(lobbyCode, groupChatId));
+        }
+    }
+
+    /**
+     * Records the settings of a lobby.
+     *
+     * @param ofSession true for the settings of the game session, false for those of the lobby
+     */
+    public void settingsChanged(String lobbyCode, GameSettings settings, boolean ofSession) {
+        if (recording) {
+            write(settingsRecord(lobbyCode, settings, ofSession));
+        }
+    }
+
+    /**
+     * Records the roles and tasks handed out at the start of a game.
+     */
+    public void gameStarted(GameSession gameSession) {
+        if (recording) {
+            write(gameStartedRecord(gameSession));
+        }
+    }
+
+    public void meetingsLeft(String lobbyCode, Player player) {
+        if (recording) {
+            write(meetingsLeftRecord(lobbyCode, player));
+        }
+    }
+
+    public void voteCast(String lobbyCode, long voterId, long targetId) {
+        if (recording) {
+            write(record(Type.VOTE, lobbyCode, out -> {
+                out.writeLong(voterId);
+                out.writeLong(targetId);
+            }));
+        }
+    }
+
+    public void playerDied(String lobbyCode, long userId) {
+        if (recording) {
+            write(playerDiedRecord(lobbyCode, userId));
+        }
+    }
+
+    public void taskCompleted(String lobbyCode, Player player, Task task) {
+        if (recording) {
+            write(taskCompletedRecord(lobbyCode, player, player.getTasks().indexOf(task), task));
+        }
+    }
+
+    public void stateChanged(String lobbyCode, String stateName) {
+        if (recording) {
+            write(stateRecord(lobbyCode, stateName));
+        }
+    }
+
+    public void lobbyRemoved(String lobbyCode) {
+        if (recording) {
+            write(record(Type.LOBBY_REMOVED, lobbyCode, out -> { }));
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current lobbies and games and deletes the journal it replaces.
+     * Every lobby is copied in its own dispatcher mailbox, between two of its updates, so update
+     * handling never stops for the snapshot.
+     *
+     * @param dispatcher The dispatcher of the lobbies, or null to copy them directly when no updates are handled yet
+     */
+    public void snapshot(SessionManager sessionManager, UpdateDispatcher dispatcher) {
+        if (!isEnabled() || !snapshotRunning.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // Changes from here on go to the new segment; the snapshot covers everything before it
+            long firstSegment = journal.startSnapshot();
+            List<SessionSnapshot.LobbyImage> lobbies = new ArrayList<>();
+            List<LobbyEntry> entries = sessionManager.getLobbyEntries(lobbies);
+            List<SessionSnapshot.LobbyImage> captured = capture(sessionManager, entries, dispatcher);
+            if (captured == null) {
+                // The segments stay; the next snapshot covers them as well
+                log.warn("Abandoned snapshot {}, not every lobby could be copied", firstSegment);
+                return;
+            }
+            lobbies.addAll(captured);
+            int bytes = SessionSnapshot.write(journal.getDirectory(), firstSegment, lobbies);
+            journal.deleteSegmentsBefore(firstSegment);
+
+            lastSnapshotNanos = System.nanoTime();
+            lastSnapshotBytes = bytes;
+            log.info("Wrote snapshot {} of {} lobbies ({} bytes) in {} ms", firstSegment, lobbies.size(), bytes,
+                    TimeUnit.NANOSECONDS.toMillis(lastSnapshotNanos - start));
+        } catch (IOException e) {
+            log.error("Failed to write a snapshot: {}", e.getMessage(), e);
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten.sum();
+    }
+
+    public long getRecordsFailed() {
+        return recordsFailed.sum();
+    }
+
+    public long getLastSnapshotBytes() {
+        return lastSnapshotBytes;
+    }
+
+    /**
+     * Copies every lobby in its mailbox, or directly when there is no dispatcher yet. A lobby left out
+     * of the snapshot would lose its records with the segments the snapshot replaces, so a lobby that
+     * cannot be copied in its mailbox in time abandons the whole snapshot instead.
+     *
+     * @return The copies, or null if the snapshot has to be abandoned
+     */
+    private List<SessionSnapshot.LobbyImage> capture(SessionManager sessionManager, List<LobbyEntry> entries,
+                                                     UpdateDispatcher dispatcher) {
+        AtomicReferenceArray<SessionSnapshot.LobbyImage> images = new AtomicReferenceArray<>(entries.size());
+        AtomicBoolean failed = new AtomicBoolean(false);
+        CountDownLatch copied = new CountDownLatch(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            int index = i;
+            LobbyEntry entry = entries.get(i);
+            Runnable copy = () -> {
+                try {
+                    images.set(index, sessionManager.captureLobby(entry));
+                } catch (RuntimeException e) {
+                    log.warn("Failed to copy lobby {} into the snapshot: {}", entry.getLobbyCode(), e.toString());
+                    failed.set(true);
+                } finally {
+                    copied.countDown();
+                }
+            };
+            if (dispatcher != null) {
+                dispatcher.submitToLobby(entry.getLobbyCode(), copy);
+            } else {
+                copy.run();
+            }
+        }
+        try {
+            if (!copied.await(Config.JOURNAL_SNAPSHOT_CAPTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("{} lobbies were not copied in their mailbox in time", copied.getCount());
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (failed.get()) {
+            return null;
+        }
+
+        List<SessionSnapshot.LobbyImage> lobbies = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            // Null for a lobby that is gone or whose game has finished
+            if (images.get(i) != null) {
+                lobbies.add(images.get(i));
+            }
+        }
+        return lobbies;
+    }
+
+    private static byte[] lobbyCreatedRecord(GameLobby lobby, long callbackEpoch) {
+        return record(Type.LOBBY_CREATED, lobby.getLobbyCode(), out -> {
+            writePlayer(out, lobby.getOwner());
+            out.writeLong(callbackEpoch);
+        });
+    }
+
+    private static byte[] playerJoinedRecord(String lobbyCode, Player player) {
+        return record(Type.PLAYER_JOINED, lobbyCode, out -> writePlayer(out, player));
+    }
+
+    private static byte[] chatIdRecord(String lobbyCode, long userId, String chatId) {
+        return record(Type.CHAT_ID, lobbyCode, out -> {
+            out.writeLong(userId);
+            writeString(out, chatId);
+        });
+    }
+
+    private static byte[] groupBoundRecord(String lobbyCode, String groupChatId) {
+        return record(Type.GROUP_BOUND, lobbyCode, out -> writeString(out, groupChatId));
+    }
+
+    private static byte[] settingsRecord(String lobbyCode, GameSettings settings, boolean ofSession) {
+        return record(Type.SETTINGS, lobbyCode, out -> {
+            out.writeBoolean(ofSession);
+            out.writeInt(settings.getImpostorCount());
+            out.writeInt(settings.getDiscussionTimeSeconds());
+            out.writeInt(settings.getVotingTimeSeconds());
+            out.writeInt(settings.getKillCooldownSeconds());
+            out.writeInt(settings.getTasksPerPlayer());
+        });
+    }
+
+    private static byte[] gameStartedRecord(GameSession gameSession) {
+        List<Player> players = new ArrayList<>(gameSession.getPlayers());
+        return record(Type.GAME_STARTED, gameSession.getLobbyCode(), out -> {
+            out.writeInt(players.size());
+            for (Player player : players) {
+                out.writeLong(player.getUserId());
+                writeString(out, player.getRole() != null ? player.getRole().getRoleId() : null);
+                List<Task> tasks = new ArrayList<>(player.getTasks());
+                out.writeInt(tasks.size());
+                for (Task task : tasks) {
+                    writeString(out, task.getTitle());
+                }
+            }
+        });
+    }
+
+    private static byte[] meetingsLeftRecord(String lobbyCode, Player player) {
+        return record(Type.MEETINGS_LEFT, lobbyCode, out -> {
+            out.writeLong(player.getUserId());
+            out.writeInt(player.getEmergencyMeetingsLeft());
+        });
+    }
+
+    private static byte[] playerDiedRecord(String lobbyCode, long userId) {
+        return record(Type.PLAYER_DIED, lobbyCode, out -> out.writeLong(userId));
+    }
+
+    private static byte[] taskCompletedRecord(String lobbyCode, Player player, int taskIndex, Task task) {
+        return record(Type.TASK_COMPLETED, lobbyCode, out -> {
+            out.writeLong(player.getUserId());
+            out.writeInt(taskIndex);
+            writeString(out, task.getPhotoFileId());
+        });
+    }
+
+    private static byte[] stateRecord(String lobbyCode, String stateName) {
+        return record(Type.STATE, lobbyCode, out -> writeString(out, stateName));
+    }
+
+    private void write(byte[] record) {
+        if (journal.append(record)) {
+            recordsWritten.increment();
+        } else {
+            recordsFailed.increment();
+        }
+    }
+
+    /**
+     * Writes the fields of a record after its type and lobby code.
+     */
+    private interface Fields {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] record(Type type, String lobbyCode, Fields fields) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type.code);
+            writeString(out, lobbyCode);
+            fields.write(out);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writePlayer(DataOutputStream out, Player player) throws IOException {
+        out.writeLong(player.getUserId());
+        writeString(out, player.getUsername());
+        writeString(out, player.getFirstName());
+        writeString(out, player.getLastName());
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes; null is written as length -1.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     */
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("String of " + length + " bytes past the end of the record");
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a player written by {@link #writePlayer}.
+     */
+    static Player readPlayer(ByteBuffer in) {
+        long userId = in.getLong();
+        return new Player(userId, readString(in), readString(in), readString(in));
+    }
+
+    static Type readType(ByteBuffer in) {
+        return Type.of(in.get());
+    }
+}
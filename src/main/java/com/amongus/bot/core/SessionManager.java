@@ -1,117 +1,254 @@
 package com.amongus.bot.core;
 
+import com.amongus.bot.game.states.GameEndState;
+import com.amongus.bot.game.states.GameRunningState;
 import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.states.GameState;
 import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.models.CallbackAction;
 import com.amongus.bot.models.Config;
 import com.amongus.bot.models.Player;
 import com.amongus.bot.utils.CodeGenerator;
+import com.amongus.bot.utils.ConcurrentLongMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Manages all active game sessions (lobbies) and player associations.
  */
 public class SessionManager {
     private static final Logger log = LoggerFactory.getLogger(SessionManager.class);
+    private static final long LOBBY_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(Config.LOBBY_TIMEOUT_MINUTES);
 
-    private Map<String, GameSession> activeSessions = new HashMap<>();
-
-    // Map of lobby codes to GameLobby instances
-    private final Map<String, GameLobby> lobbies = new ConcurrentHashMap<>();
+    // Owner of all lobby codes, their lobbies, sessions and lifecycle phases
+    private final LobbyRegistry registry = new LobbyRegistry();
+    
+    // Index of user IDs to the player, lobby, session and chat they belong to
+    private final ConcurrentLongMap<PlayerRecord> playerIndex = new ConcurrentLongMap<>();
+    
+    // Lobbies ordered by idle deadline
+    private final IdleReaper reaper = new IdleReaper();
+    
+    // Idle lobbies kept off the heap until one of their players comes back; guards moving lobbies in and out
+    private final LobbyHibernator hibernator = new LobbyHibernator();
+    
+    // Set once hibernation is enabled: rebuilds woken lobbies
+    private volatile AmongUsBot hibernationBot;
+    private volatile long hibernateAfterNanos;
+    
+    // Runs evictions and hibernation in the mailboxes of the lobbies; null runs them on the caller's thread
+    private volatile UpdateDispatcher dispatcher;
+    
+    // Users who have written to the bot in a private chat, so that it can message them there
+    private final ConcurrentLongMap<Boolean> privateChats = new ConcurrentLongMap<>();
+    
+    // Lobby codes by the group chat they are bound to
+    private final Map<String, String> groupLobbies = new ConcurrentHashMap<>();
+    
+    // Notified with the lobby code whenever a lobby is removed
+    private final List<Consumer<String>> lobbyRemovalListeners = new CopyOnWriteArrayList<>();
+    
+    // Notified with the lobby code whenever a player joins or leaves a lobby
+    private final List<Consumer<String>> membershipListeners = new CopyOnWriteArrayList<>();
     
-    // Map of user IDs to lobby codes they are in
-    private final Map<Long, String> playerLobbyMap = new ConcurrentHashMap<>();
+    // Wakes sessions up at the deadlines of their states
+    private volatile GameClock gameClock;
+    
+    // Records lobby changes so that they survive a restart
+    private volatile SessionJournal journal = SessionJournal.disabled();
     
     /**
      * Creates a new game lobby and returns its code.
      */
     public String createLobby(Player owner, AmongUsBot bot) {
         // First, check if player is already in another lobby
-        String existingLobbyCode = playerLobbyMap.get(owner.getUserId());
-        if (existingLobbyCode != null) {
-            // Remove player from previous lobby
-            GameLobby existingLobby = lobbies.get(existingLobbyCode);
-            if (existingLobby != null) {
-                existingLobby.removePlayer(owner.getUserId());
-                
-                // If lobby is now empty, remove it
-                if (existingLobby.getPlayers().isEmpty()) {
-                    lobbies.remove(existingLobbyCode);
-                    log.info("Removed empty lobby: {}", existingLobbyCode);
-                }
-            }
-            
-            playerLobbyMap.remove(owner.getUserId());
-        }
+        removePlayerFromLobby(owner.getUserId());
         
-        // Generate a unique lobby code
-        String lobbyCode;
+        // Generate a unique lobby code and register the lobby under it atomically
+        LobbyEntry entry;
         do {
-            lobbyCode = CodeGenerator.generateGameCode(Config.GAME_CODE_LENGTH);
-        } while (lobbies.containsKey(lobbyCode));
+            entry = registerLobby(CodeGenerator.generateGameCode(Config.GAME_CODE_LENGTH), owner, bot);
+        } while (entry == null);
+        journal.lobbyCreated(entry.getLobby(), entry.getSession().getCallbackEpoch(CallbackAction.Scope.LOBBY));
         
-        // Create new lobby
+        log.info("Created new lobby with code {} owned by {}", entry.getLobbyCode(), owner.getUserId());
+        return entry.getLobbyCode();
+    }
+    
+    /**
+     * Creates a lobby under a known code, when it is restored from the journal.
+     *
+     * @param callbackEpoch The epoch of the lobby buttons sent before the restart
+     * @return false if the code is already taken
+     */
+    boolean restoreLobby(String lobbyCode, Player owner, long callbackEpoch, AmongUsBot bot) {
+        LobbyEntry entry = restoreEntry(lobbyCode, owner, bot);
+        if (entry == null) {
+            return false;
+        }
+        continueCallbackEpoch(entry, callbackEpoch);
+        return true;
+    }
+
+    /**
+     * Rebuilds a lobby from its snapshot image: the lobby with its players and their chat IDs,
+     * its settings, its group chat and the epoch of its buttons. Unlike {@link #joinLobby} and {@link #bindGroupChat} nothing
+     * is journaled, logged or announced, since nothing changes for the players. The game of a
+     * running lobby is left to the caller.
+     *
+     * @return The entry, or null if the code is already taken
+     */
+    LobbyEntry restoreLobby(SessionSnapshot.LobbyImage image, AmongUsBot bot) {
+        // The owner's entry among the players also carries their chat ID
+        SessionSnapshot.PlayerImage ownerImage = image.owner;
+        for (SessionSnapshot.PlayerImage player : image.players) {
+            if (player.userId == image.owner.userId) {
+                ownerImage = player;
+            }
+        }
+        Player owner = ownerImage.toPlayer();
+        LobbyEntry entry = restoreEntry(image.lobbyCode, owner, bot);
+        if (entry == null) {
+            return null;
+        }
+
+        for (SessionSnapshot.PlayerImage player : image.players) {
+            restorePlayer(entry, player.userId == owner.getUserId() ? owner : player.toPlayer(), player.isInLobby());
+        }
+        SessionSnapshot.applySettings(image.lobbySettings, entry.getLobby().getSettings());
+        continueCallbackEpoch(entry, image.callbackEpoch);
+        GameSession session = entry.getSession();
+        if (session != null) {
+            if (image.sessionSettings != null) {
+                SessionSnapshot.applySettings(image.sessionSettings, session.getSettings());
+            }
+            if (image.groupChatId != null) {
+                bindGroup(image.lobbyCode, image.groupChatId, session);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Keeps the lobby buttons sent before a restart or hibernation valid.
+     */
+    private static void continueCallbackEpoch(LobbyEntry entry, long callbackEpoch) {
+        if (callbackEpoch > 0 && entry.getSession() != null) {
+            entry.getSession().continueCallbackEpoch(callbackEpoch);
+        }
+    }
+
+    private LobbyEntry restoreEntry(String lobbyCode, Player owner, AmongUsBot bot) {
+        if (registry.contains(lobbyCode)) {
+            return null;
+        }
+        removePlayerFromLobby(owner.getUserId());
+        return registerLobby(lobbyCode, owner, bot);
+    }
+
+    /**
+     * Puts a player from a snapshot back into a lobby being restored, with the chat ID the player carries.
+     *
+     * @param inLobby false for a player who had left the lobby but was still part of its game
+     */
+    private void restorePlayer(LobbyEntry entry, Player player, boolean inLobby) {
+        GameLobby lobby = entry.getLobby();
+        GameSession session = entry.getSession();
+        if (lobby.isOwner(player.getUserId())) {
+            if (!inLobby) {
+                lobby.removePlayer(player.getUserId());
+                playerIndex.remove(player.getUserId());
+            }
+        } else {
+            if (inLobby && !lobby.addPlayer(player)) {
+                return;
+            }
+            if (session != null) {
+                session.addPlayer(player);
+            }
+        }
+        if (session != null && player.getChatId() != 0) {
+            session.setPlayerChatId(player.getUserId(), String.valueOf(player.getChatId()));
+        }
+        if (inLobby) {
+            indexPlayer(player, entry);
+        }
+    }
+    
+    /**
+     * Registers a new lobby with its session under a code and indexes its owner.
+     *
+     * @return The entry, or null if the code is already taken
+     */
+    private LobbyEntry registerLobby(String lobbyCode, Player owner, AmongUsBot bot) {
         GameLobby lobby = new GameLobby(lobbyCode, owner);
-        lobbies.put(lobbyCode, lobby);
-        
-        // Associate player with lobby
-        playerLobbyMap.put(owner.getUserId(), lobbyCode);
 
         // Создаем и игровую сессию одновременно
-        GameSession session = new GameSession(lobbyCode, owner, bot.getScheduler(), bot.getSecurityManager());
-        activeSessions.put(lobbyCode, session);
+        GameSession session = new GameSession(lobbyCode, owner, bot.getTimer(), bot.getSecurityManager());
+        LobbyEntry entry;
+        synchronized (hibernator) {
+            // A hibernated lobby keeps its code
+            entry = hibernator.contains(lobbyCode) ? null : registry.register(lobby, session);
+        }
+        if (entry == null) {
+            return null;
+        }
+        
+        entry.getLobby().setActivityListener(entry::touch);
+        bindSession(entry, session);
+        reaper.track(entry);
         
-        log.info("Created new lobby with code {} owned by {}", lobbyCode, owner.getUserId());
-        return lobbyCode;
+        // Associate player with lobby
+        indexPlayer(owner, entry);
+        return entry;
     }
     
     /**
-     * Adds a player to an existing lobby.
+     * Adds a player to an existing lobby. A player still in another lobby is removed from it first;
+     * callers on the dispatcher have the player leave in the mailbox of that lobby beforehand,
+     * see {@link com.amongus.bot.commands.JoinCommand}.
      * 
      * @return true if joining was successful, false otherwise
      */
     public boolean joinLobby(String lobbyCode, Player player) {
-        GameLobby lobby = lobbies.get(lobbyCode);
+        Optional<LobbyEntry> entryOpt = entryOf(lobbyCode);
         
-        // Check if lobby exists
-        if (lobby == null) {
+        // Check if lobby exists and still accepts players
+        if (!entryOpt.isPresent() || entryOpt.get().getPhase() != LobbyPhase.LOBBY) {
             return false;
         }
+        LobbyEntry entry = entryOpt.get();
+        GameLobby lobby = entry.getLobby();
         
         // Check if player is already in another lobby
-        String existingLobbyCode = playerLobbyMap.get(player.getUserId());
-        if (existingLobbyCode != null) {
-            // Remove player from previous lobby
-            GameLobby existingLobby = lobbies.get(existingLobbyCode);
-            if (existingLobby != null) {
-                existingLobby.removePlayer(player.getUserId());
-                
-                // If lobby is now empty, remove it
-                if (existingLobby.getPlayers().isEmpty()) {
-                    lobbies.remove(existingLobbyCode);
-                    log.info("Removed empty lobby: {}", existingLobbyCode);
-                }
+        PlayerRecord existing = recordOf(player.getUserId());
+        if (existing != null) {
+            if (existing.getEntry() == entry) {
+                // Already in this lobby
+                return true;
             }
-            
-            playerLobbyMap.remove(player.getUserId());
+            removePlayerFromLobby(player.getUserId());
         }
         
         // Add player to lobby
         boolean added = lobby.addPlayer(player);
         if (added) {
-            playerLobbyMap.put(player.getUserId(), lobbyCode);
-            GameSession session = activeSessions.get(lobbyCode);
+            GameSession session = entry.getSession();
             if (session != null) {
                 session.addPlayer(player);
             }
+            indexPlayer(player, entry);
+            journal.playerJoined(lobbyCode, player);
             log.info("Player {} joined lobby {}", player.getUserId(), lobbyCode);
+            notifyMembershipChanged(lobbyCode);
         }
         
         return added;
@@ -121,49 +258,133 @@ public class SessionManager {
      * Retrieves the lobby for a given player.
      */
     public Optional<GameLobby> getLobbyForPlayer(long userId) {
-        String lobbyCode = playerLobbyMap.get(userId);
-        if (lobbyCode == null) {
-            return Optional.empty();
+        PlayerRecord record = recordOf(userId);
+        return record != null ? Optional.of(record.getLobby()) : Optional.empty();
+    }
+
+    /**
+     * Gets the code of the lobby a player is currently in. A hibernated lobby is not woken,
+     * so that updates can be routed to its mailbox and wake it there.
+     */
+    public Optional<String> getLobbyCodeForPlayer(long userId) {
+        PlayerRecord record = playerIndex.get(userId);
+        if (record != null) {
+            return Optional.of(record.getLobbyCode());
         }
-        
-        return Optional.ofNullable(lobbies.get(lobbyCode));
+        return hibernator.isEmpty() ? Optional.empty() : Optional.ofNullable(hibernator.lobbyOf(userId));
+    }
+
+    /**
+     * Gets everything known about a player who is in a lobby with a single lookup.
+     */
+    public Optional<PlayerRecord> getPlayerRecord(long userId) {
+        return Optional.ofNullable(recordOf(userId));
+    }
+
+    /**
+     * Gets the epoch that new buttons of a lobby must carry, see {@link GameSession#getCallbackEpoch}.
+     *
+     * @return The epoch, or 0 if the lobby has no session
+     */
+    public long getCallbackEpoch(String lobbyCode, CallbackAction.Scope scope) {
+        return getSessionByLobbyCode(lobbyCode).map(session -> session.getCallbackEpoch(scope)).orElse(0L);
     }
 
     public Optional<GameSession> getSessionByLobbyCode(String lobbyCode) {
-        return Optional.ofNullable(activeSessions.get(lobbyCode));
+        return entryOf(lobbyCode).map(LobbyEntry::getSession);
+    }
+
+    /**
+     * Binds a lobby to a group chat, so that its public events are posted there.
+     * A group can hold one lobby at a time.
+     *
+     * @return true if bound, false if there is no such lobby or the group already has another one
+     */
+    public boolean bindGroupChat(String lobbyCode, String groupChatId) {
+        GameSession session = getSessionByLobbyCode(lobbyCode).orElse(null);
+        if (session == null) {
+            return false;
+        }
+        if (!bindGroup(lobbyCode, groupChatId, session)) {
+            return false;
+        }
+        journal.groupBound(lobbyCode, groupChatId);
+        log.info("Lobby {} is bound to group chat {}", lobbyCode, groupChatId);
+        return true;
+    }
+
+    private boolean bindGroup(String lobbyCode, String groupChatId, GameSession session) {
+        String bound = groupLobbies.compute(groupChatId, (chatId, existing) ->
+                existing != null && exists(existing) ? existing : lobbyCode);
+        if (!bound.equals(lobbyCode)) {
+            return false;
+        }
+        session.setGroupChatId(groupChatId);
+        return true;
+    }
+    
+    /**
+     * Gets the code of the lobby bound to a group chat.
+     */
+    public Optional<String> getLobbyCodeForGroup(String groupChatId) {
+        String lobbyCode = groupLobbies.get(groupChatId);
+        if (lobbyCode == null || !exists(lobbyCode)) {
+            return Optional.empty();
+        }
+        return Optional.of(lobbyCode);
     }
 
     /**
      * Retrieves a lobby by its code.
      */
     public Optional<GameLobby> getLobbyByCode(String lobbyCode) {
-        return Optional.ofNullable(lobbies.get(lobbyCode));
+        return entryOf(lobbyCode).map(LobbyEntry::getLobby);
+    }
+
+    /**
+     * Gets the lifecycle phase of a lobby, or REMOVED if there is no such lobby.
+     */
+    public LobbyPhase getLobbyPhase(String lobbyCode) {
+        return entryOf(lobbyCode).map(LobbyEntry::getPhase).orElse(LobbyPhase.REMOVED);
     }
     
     /**
      * Removes a player from their current lobby.
      */
     public boolean removePlayerFromLobby(long userId) {
-        String lobbyCode = playerLobbyMap.get(userId);
-        if (lobbyCode == null) {
+        PlayerRecord record = recordOf(userId);
+        if (record == null) {
             return false;
         }
-        
-        GameLobby lobby = lobbies.get(lobbyCode);
-        if (lobby == null) {
-            playerLobbyMap.remove(userId);
+        return removePlayer(userId, record);
+    }
+    
+    /**
+     * Removes a player from the given lobby, if they are still in it. Used from the mailbox
+     * of that lobby when the player moves to another one.
+     */
+    public boolean removePlayerFromLobby(long userId, String lobbyCode) {
+        PlayerRecord record = recordOf(userId);
+        if (record == null || !record.getLobbyCode().equals(lobbyCode)) {
             return false;
         }
-        
+        return removePlayer(userId, record);
+    }
+    
+    private boolean removePlayer(long userId, PlayerRecord record) {
+        GameLobby lobby = record.getLobby();
+        String lobbyCode = lobby.getLobbyCode();
         boolean removed = lobby.removePlayer(userId);
+        playerIndex.remove(userId, record);
         if (removed) {
-            playerLobbyMap.remove(userId);
+            journal.playerLeft(lobbyCode, userId);
             log.info("Player {} left lobby {}", userId, lobbyCode);
             
             // If lobby is now empty, remove it
             if (lobby.getPlayers().isEmpty()) {
-                lobbies.remove(lobbyCode);
-                log.info("Removed empty lobby: {}", lobbyCode);
+                removeLobby(lobbyCode);
+            } else {
+                notifyMembershipChanged(lobbyCode);
             }
         }
         
@@ -171,47 +392,272 @@ public class SessionManager {
     }
     
     /**
-     * Removes an entire lobby.
+     * Kicks a player, found by their username, from the given lobby.
+     * The lobby owner cannot be kicked.
+     *
+     * @return The kicked player, or empty if there is no such player in the lobby
+     */
+    public Optional<Player> kickPlayerFromLobby(String username, String lobbyCode) {
+        Optional<LobbyEntry> entryOpt = entryOf(lobbyCode);
+        if (!entryOpt.isPresent()) {
+            return Optional.empty();
+        }
+        GameLobby lobby = entryOpt.get().getLobby();
+        
+        Optional<Player> target = lobby.getPlayers().stream()
+                .filter(p -> p.getUsername() != null && p.getUsername().equalsIgnoreCase(username))
+                .filter(p -> !lobby.isOwner(p.getUserId()))
+                .findFirst();
+        target.ifPresent(p -> {
+            removePlayerFromLobby(p.getUserId());
+            log.info("Player {} was kicked from lobby {}", p.getUserId(), lobbyCode);
+        });
+        return target;
+    }
+    
+    /**
+     * Removes an entire lobby together with its game session.
      */
     public boolean removeLobby(String lobbyCode) {
-        GameLobby lobby = lobbies.remove(lobbyCode);
-        if (lobby == null) {
+        return entryOf(lobbyCode).map(this::removeLobby).orElse(false);
+    }
+    
+    /**
+     * Removes a lobby together with everything that belongs to it:
+     * the session and its timers, the player mappings and the reaper entry.
+     */
+    private boolean removeLobby(LobbyEntry entry) {
+        if (!registry.remove(entry)) {
             return false;
         }
+        journal.lobbyRemoved(entry.getLobbyCode());
+        reaper.untrack(entry);
+        entry.getLobby().setActivityListener(null);
+        
+        GameSession session = entry.getSession();
+        if (session != null && session.getGroupChatId() != null) {
+            groupLobbies.remove(session.getGroupChatId(), entry.getLobbyCode());
+        }
+        if (session != null && entry.detachSession(session)) {
+            session.dispose();
+        }
+        
+        unindexPlayers(entry);
         
-        // Remove all player associations
-        lobby.getPlayers().stream()
-                .map(Player::getUserId)
-                .forEach(playerLobbyMap::remove);
+        for (Consumer<String> listener : lobbyRemovalListeners) {
+            try {
+                listener.accept(entry.getLobbyCode());
+            } catch (Exception e) {
+                log.error("Error in lobby removal listener for {}: {}", entry.getLobbyCode(), e.getMessage(), e);
+            }
+        }
         
-        log.info("Removed lobby: {}", lobbyCode);
+        log.info("Removed lobby: {}", entry.getLobbyCode());
         return true;
     }
     
     /**
-     * Cleans up inactive sessions periodically.
-     * This method is called by the scheduler in AmongUsBot.
+     * Removes the index entries that point at a lobby.
+     */
+    private void unindexPlayers(LobbyEntry entry) {
+        for (Player player : entry.getLobby().getPlayers()) {
+            PlayerRecord record = playerIndex.get(player.getUserId());
+            if (record != null && record.getEntry() == entry) {
+                playerIndex.remove(player.getUserId(), record);
+            }
+        }
+    }
+    
+    /**
+     * Registers a listener notified with the lobby code whenever a lobby is removed.
+     */
+    public void addLobbyRemovalListener(Consumer<String> listener) {
+        lobbyRemovalListeners.add(listener);
+    }
+    
+    /**
+     * Registers a listener notified with the lobby code whenever a player joins or leaves a lobby.
+     */
+    public void addMembershipListener(Consumer<String> listener) {
+        membershipListeners.add(listener);
+    }
+    
+    private void notifyMembershipChanged(String lobbyCode) {
+        for (Consumer<String> listener : membershipListeners) {
+            try {
+                listener.accept(lobbyCode);
+            } catch (Exception e) {
+                log.error("Error in membership listener for {}: {}", lobbyCode, e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Evicts lobbies and finished games that have been inactive for too long, and hibernates
+     * idle lobbies if hibernation is enabled.
+     * This method is called by the scheduler in AmongUsBot; it only looks at expired lobbies.
+     * The evictions themselves run in the mailboxes of the lobbies, so that a lobby is not
+     * removed in the middle of one of its updates, and the timer thread is not held up.
      */
     public void cleanupInactiveSessions() {
-        log.info("Running inactive session cleanup");
-        Instant now = Instant.now();
+        long now = System.nanoTime();
+        int expired = 0;
+        for (LobbyEntry entry : reaper.pollExpired(now)) {
+            inMailbox(entry.getLobbyCode(), () -> expire(entry));
+            expired++;
+        }
+        // Hibernated lobbies are woken to be removed, so that everything holding them is notified
+        for (String lobbyCode : hibernator.expired(now, LOBBY_TIMEOUT_NANOS)) {
+            inMailbox(lobbyCode, () -> expireHibernated(lobbyCode));
+            expired++;
+        }
         
-        // Find lobbies that have been inactive for too long
-        lobbies.entrySet().stream()
-                .filter(entry -> {
-                    GameLobby lobby = entry.getValue();
-                    long inactiveMinutes = lobby.getInactiveMinutes(now);
-                    
-                    // Apply different timeout rules based on game state
-                    if (lobby.isGameInProgress()) {
-                        return inactiveMinutes > Config.GAME_INACTIVE_TIMEOUT_MINUTES;
-                    } else {
-                        return inactiveMinutes > Config.LOBBY_TIMEOUT_MINUTES;
-                    }
-                })
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList()) // Collect to avoid ConcurrentModificationException
-                .forEach(this::removeLobby);
+        if (expired > 0) {
+            log.info("Expiring {} inactive lobbies, {} remaining ({} hibernated)",
+                    expired, getLobbyCount(), hibernator.size());
+        }
+    }
+    
+    /**
+     * Sets the dispatcher whose lobby mailboxes run evictions and hibernation.
+     */
+    public void setDispatcher(UpdateDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+    
+    /**
+     * Hibernates lobbies whose game has not started once they have been idle for the given time,
+     * instead of keeping them on the heap until they expire. Woken lobbies are rebuilt with the bot.
+     */
+    public void enableHibernation(AmongUsBot bot, long idleMinutes) {
+        hibernateAfterNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        hibernationBot = bot;
+        reaper.setWaitingTimeoutNanos(hibernateAfterNanos);
+    }
+    
+    private void inMailbox(String lobbyCode, Runnable task) {
+        UpdateDispatcher target = dispatcher;
+        if (target != null) {
+            target.submitToLobby(lobbyCode, task);
+        } else {
+            task.run();
+        }
+    }
+    
+    /**
+     * Removes or hibernates a lobby the reaper found idle, unless it has been active since.
+     */
+    private void expire(LobbyEntry entry) {
+        if (entry.isRemoved()) {
+            return;
+        }
+        if (!reaper.isExpired(entry, System.nanoTime())) {
+            reaper.track(entry);
+        } else if (hibernationBot != null && entry.getPhase() == LobbyPhase.LOBBY) {
+            hibernate(entry);
+        } else {
+            removeLobby(entry);
+        }
+    }
+    
+    /**
+     * Removes a hibernated lobby that has expired, unless it has been woken since.
+     */
+    private void expireHibernated(String lobbyCode) {
+        LobbyEntry entry;
+        synchronized (hibernator) {
+            if (!hibernator.contains(lobbyCode)) {
+                return;
+            }
+            entry = wake(lobbyCode);
+        }
+        if (entry != null) {
+            removeLobby(entry);
+        }
+    }
+    
+    /**
+     * Moves an idle lobby into the hibernator. Unlike {@link #removeLobby(LobbyEntry)} the removal listeners
+     * are not notified and nothing is journaled, since the lobby still exists. A lobby that has become
+     * active or started its game since it was found idle goes back to the reaper.
+     */
+    private void hibernate(LobbyEntry entry) {
+        if (entry.isRemoved()) {
+            return;
+        }
+        long idleNanos = System.nanoTime() - entry.getLastActivityNanos();
+        if (entry.getPhase() != LobbyPhase.LOBBY || idleNanos < hibernateAfterNanos) {
+            reaper.track(entry);
+            return;
+        }
+        
+        GameSession session = entry.getSession();
+        synchronized (hibernator) {
+            SessionSnapshot.LobbyImage image = SessionSnapshot.capture(entry);
+            if (image == null || !registry.remove(entry)) {
+                return;
+            }
+            hibernator.put(image, entry.getLastActivityNanos());
+            // Lookups of its players find the hibernated lobby from here on
+            unindexPlayers(entry);
+        }
+        entry.getLobby().setActivityListener(null);
+        if (session != null && entry.detachSession(session)) {
+            session.dispose();
+        }
+        log.debug("Hibernated lobby {}", entry.getLobbyCode());
+    }
+    
+    /**
+     * Brings a hibernated lobby back, with the button epoch it had.
+     *
+     * @return The entry, or null if the lobby is neither registered nor hibernated
+     */
+    private LobbyEntry wake(String lobbyCode) {
+        synchronized (hibernator) {
+            LobbyEntry entry = registry.get(lobbyCode).orElse(null);
+            if (entry != null) {
+                // Woken in the meantime
+                return entry;
+            }
+            LobbyHibernator.Hibernated hibernated = hibernator.take(lobbyCode);
+            if (hibernated == null) {
+                return null;
+            }
+            entry = restoreLobby(hibernated.image(), hibernationBot);
+            log.debug("Woke lobby {}", lobbyCode);
+            return entry;
+        }
+    }
+    
+    /**
+     * Gets the entry of a lobby, waking the lobby if it is hibernated.
+     */
+    private Optional<LobbyEntry> entryOf(String lobbyCode) {
+        Optional<LobbyEntry> entry = registry.get(lobbyCode);
+        if (entry.isPresent() || hibernator.isEmpty()) {
+            return entry;
+        }
+        return Optional.ofNullable(wake(lobbyCode));
+    }
+    
+    /**
+     * Gets the index entry of a player, waking the lobby of the player if it is hibernated.
+     */
+    private PlayerRecord recordOf(long userId) {
+        PlayerRecord record = playerIndex.get(userId);
+        if (record != null || hibernator.isEmpty()) {
+            return record;
+        }
+        String lobbyCode = hibernator.lobbyOf(userId);
+        if (lobbyCode == null || wake(lobbyCode) == null) {
+            return null;
+        }
+        return playerIndex.get(userId);
+    }
+    
+    private boolean exists(String lobbyCode) {
+        return registry.contains(lobbyCode) || hibernator.contains(lobbyCode);
     }
 
     /**
@@ -221,19 +667,13 @@ public class SessionManager {
      * @return The game session, or empty if the player is not in a game
      */
     public Optional<GameSession> getSessionForPlayer(long userId) {
-        return activeSessions.values().stream()
-                .filter(session -> session.getPlayer(userId).isPresent())
-                .findFirst();
+        PlayerRecord record = recordOf(userId);
+        return record != null ? Optional.ofNullable(record.getSession()) : Optional.empty();
     }
 
     public Player getPlayer(long userId) {
-        for (GameSession session : activeSessions.values()) {
-            Player player = session.getPlayerById(userId);
-            if (player != null) {
-                return player;
-            }
-        }
-        return null;
+        PlayerRecord record = recordOf(userId);
+        return record != null ? record.getPlayer() : null;
     }
 
     public void updatePlayerChatId(long userId, String chatId) {
@@ -241,87 +681,219 @@ public class SessionManager {
 
         long chatIdLong = Long.parseLong(chatId);
 
-        // Обновляем chatId в игровых сессиях
-        for (GameSession session : activeSessions.values()) {
-            Optional<Player> playerOpt = session.getPlayer(userId);
-            if (playerOpt.isPresent()) {
-                playerOpt.get().setChatId(chatIdLong);
-                log.info("Updated chatId for player {} in session", userId);
+        while (true) {
+            PlayerRecord record = recordOf(userId);
+            if (record == null) {
+                return;
             }
-        }
 
-        // Обновляем chatId в лобби
-        for (GameLobby lobby : lobbies.values()) {
-            Optional<Player> playerOpt = lobby.getPlayer(userId);
-            if (playerOpt.isPresent()) {
-                playerOpt.get().setChatId(chatIdLong);
-                log.info("Updated chatId for player {} in lobby", userId);
+            // Игрок общий для лобби и сессии, поэтому достаточно обновить его один раз
+            record.getPlayer().setChatId(chatIdLong);
+            if (record.getSession() != null) {
+                record.getSession().setPlayerChatId(userId, chatId);
+            }
+
+            if (playerIndex.replace(userId, record, record.withChatId(chatId))) {
+                journal.chatIdChanged(record.getLobbyCode(), userId, chatId);
+                log.info("Updated chatId for player {}", userId);
+                return;
             }
         }
     }
 
+    /**
+     * Remembers that a user has written to the bot in a private chat.
+     */
+    public void rememberPrivateChat(long userId) {
+        privateChats.putIfAbsent(userId, Boolean.TRUE);
+    }
+    
+    /**
+     * Checks whether the bot can message a user in a private chat: the user has written to it there,
+     * or is in a lobby with a known chat ID, as after a restart.
+     */
+    public boolean hasPrivateChat(long userId) {
+        if (privateChats.containsKey(userId)) {
+            return true;
+        }
+        PlayerRecord record = recordOf(userId);
+        return record != null && record.getChatId() != null;
+    }
+    
     public String getPlayerChatId(long userId) {
-        // Проверяем в сессиях
-        for (GameSession session : activeSessions.values()) {
-            Optional<Player> playerOpt = session.getPlayer(userId);
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
-                long chatIdLong = player.getChatId();
-                if (chatIdLong != 0) {
-                    return String.valueOf(chatIdLong);
-                }
+        PlayerRecord record = recordOf(userId);
+        if (record != null && record.getChatId() != null) {
+            return record.getChatId();
+        }
+
+        log.warn("No valid chatId found for userId {}", userId);
+        return null;
+    }
+
+    /**
+     * Gets the game session of a lobby, creating one from the lobby's players if it has none.
+     *
+     * @return The session, or empty if there is no such lobby
+     */
+    public Optional<GameSession> getOrCreateSession(String lobbyCode, AmongUsBot bot) {
+        Optional<LobbyEntry> entryOpt = entryOf(lobbyCode);
+        if (!entryOpt.isPresent()) {
+            return Optional.empty();
+        }
+        LobbyEntry entry = entryOpt.get();
+        GameSession existing = entry.getSession();
+        if (existing != null) {
+            return Optional.of(existing);
+        }
+
+        // Создаем сессию, если её нет
+        GameLobby lobby = entry.getLobby();
+        GameSession session = new GameSession(lobbyCode, lobby.getOwner(),
+                bot.getTimer(), bot.getSecurityManager());
+
+        // Копируем всех игроков из лобби
+        for (Player p : lobby.getPlayers()) {
+            session.addPlayer(p);
+            // Установить chatId с использованием метода класса GameSession
+            session.setPlayerChatId(p.getUserId(), String.valueOf(p.getChatId()));
+        }
+        bindSession(entry, session);
+
+        GameSession attached = entry.attachSession(session);
+        if (attached == session) {
+            log.info("Created new session for lobby: {}", lobbyCode);
+        }
+        return Optional.of(attached);
+    }
+
+    /**
+     * Connects a session to its lobby entry and to the game clock.
+     */
+    private void bindSession(LobbyEntry entry, GameSession session) {
+        session.setActivityListener(entry::touch);
+        session.setStateListener((s, state) -> onSessionStateChanged(entry, state));
+        session.setDeadlineListener(deadline -> {
+            GameClock clock = gameClock;
+            if (clock != null) {
+                clock.schedule(session, deadline);
             }
+        });
+    }
+
+    /**
+     * Sets the clock that wakes sessions up at the deadlines of their states.
+     */
+    public void setGameClock(GameClock gameClock) {
+        this.gameClock = gameClock;
+    }
+
+    /**
+     * Sets the journal that lobby changes are recorded in.
+     */
+    public void setJournal(SessionJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Gets all registered lobbies for a snapshot, and adds copies of the hibernated ones to the given list.
+     * Every lobby is in exactly one of the two.
+     */
+    List<LobbyEntry> getLobbyEntries(List<SessionSnapshot.LobbyImage> hibernated) {
+        synchronized (hibernator) {
+            hibernated.addAll(hibernator.images());
+            return registry.snapshot();
         }
+    }
 
-        // Если не нашли в сессиях, проверяем в лобби
-        for (GameLobby lobby : lobbies.values()) {
-            Optional<Player> playerOpt = lobby.getPlayer(userId);
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
-                long chatIdLong = player.getChatId();
-                if (chatIdLong != 0) {
-                    return String.valueOf(chatIdLong);
+    /**
+     * Copies a lobby listed by {@link #getLobbyEntries} for a snapshot. A lobby hibernated or woken
+     * since then is copied from where it is now.
+     *
+     * @return The copy, or null if the lobby is gone or its game has finished
+     */
+    SessionSnapshot.LobbyImage captureLobby(LobbyEntry entry) {
+        if (entry.isRemoved()) {
+            synchronized (hibernator) {
+                SessionSnapshot.LobbyImage image = hibernator.peek(entry.getLobbyCode());
+                if (image != null) {
+                    return image;
                 }
+                entry = registry.get(entry.getLobbyCode()).orElse(null);
             }
         }
+        return entry != null ? SessionSnapshot.capture(entry) : null;
+    }
 
-        log.warn("No valid chatId found for userId {}", userId);
-        return null;
+    /**
+     * Gets the number of lobbies, hibernated ones included.
+     */
+    public int getLobbyCount() {
+        return registry.size() + hibernator.size();
+    }
+
+    public int getHibernatedLobbyCount() {
+        return hibernator.size();
+    }
+
+    public long getHibernatedBytes() {
+        return hibernator.getOffHeapBytes();
     }
 
+    /**
+     * Adds or replaces the index entry of a player.
+     */
+    private void indexPlayer(Player player, LobbyEntry entry) {
+        String chatId = player.getChatId() != 0 ? String.valueOf(player.getChatId()) : null;
+        playerIndex.put(player.getUserId(), new PlayerRecord(player, entry, chatId));
+    }
 
+    /**
+     * Keeps the lifecycle phase of a lobby in step with the state of its game session,
+     * including games started or finished by the states themselves.
+     */
+    private void onSessionStateChanged(LobbyEntry entry, GameState state) {
+        if (state instanceof GameRunningState) {
+            if (entry.transition(LobbyPhase.LOBBY, LobbyPhase.RUNNING)) {
+                entry.getLobby().setGameStarted(true);
+                log.info("Lobby {} is now {}", entry.getLobbyCode(), LobbyPhase.RUNNING);
+            }
+        } else if (state instanceof GameEndState) {
+            if (entry.transition(LobbyPhase.RUNNING, LobbyPhase.ENDED)) {
+                log.info("Lobby {} is now {}", entry.getLobbyCode(), LobbyPhase.ENDED);
+            }
+        }
+    }
 
-    public void startGame(String lobbyCode, AmongUsBot bot) {
+    /**
+     * Starts the game of a lobby. Only one caller can start a given lobby;
+     * concurrent or repeated attempts are rejected.
+     *
+     * @return true if the game was started by this call
+     */
+    public boolean startGame(String lobbyCode, AmongUsBot bot) {
         log.info("Attempting to start game for lobby: {}", lobbyCode);
 
-        GameSession session = activeSessions.get(lobbyCode);
-        if (session == null) {
-            log.error("Game session not found for lobby: {}", lobbyCode);
-
-            // Создаем сессию, если её нет
-            GameLobby lobby = lobbies.get(lobbyCode);
-            if (lobby != null) {
-                session = new GameSession(lobbyCode, lobby.getOwner(),
-                        bot.getScheduler(), bot.getSecurityManager());
-
-                // Копируем всех игроков из лобби
-                for (Player p : lobby.getPlayers()) {
-                    boolean added = session.addPlayer(p);
-                    if (added) {
-                        // Установить chatId с использованием метода класса GameSession
-                        session.setPlayerChatId(p.getUserId(), String.valueOf(p.getChatId()));
-                    }
-                }
+        Optional<LobbyEntry> entryOpt = entryOf(lobbyCode);
+        if (!entryOpt.isPresent()) {
+            log.error("Lobby not found: {}", lobbyCode);
+            return false;
+        }
+        LobbyEntry entry = entryOpt.get();
 
-                activeSessions.put(lobbyCode, session);
-                log.info("Created new session for lobby: {}", lobbyCode);
-            } else {
-                return;
-            }
+        Optional<GameSession> sessionOpt = getOrCreateSession(lobbyCode, bot);
+        if (!sessionOpt.isPresent()) {
+            return false;
         }
 
+        if (!entry.transition(LobbyPhase.LOBBY, LobbyPhase.RUNNING)) {
+            log.warn("Game for lobby {} cannot be started in phase {}", lobbyCode, entry.getPhase());
+            return false;
+        }
+        entry.getLobby().setGameStarted(true);
+
         // Теперь запускаем игру
-        session.startGame(bot);
+        sessionOpt.get().startGame(bot);
+        return true;
     }
 
 
@@ -333,13 +905,15 @@ public class SessionManager {
      * @param lobbyCode Код лобби, игру которого нужно завершить
      * @param bot Экземпляр бота для отправки сообщений
      */
-    public void endGame(String lobbyCode, AmongUsBot bot) {
-        // Проверяем, существует ли сессия с указанным кодом
-        GameSession session = activeSessions.get(lobbyCode);
-        if (session == null) {
+    public boolean endGame(String lobbyCode, AmongUsBot bot) {
+        // Проверяем, существует ли запущенная игра с указанным кодом
+        Optional<LobbyEntry> entryOpt = entryOf(lobbyCode);
+        GameSession session = entryOpt.map(LobbyEntry::getSession).orElse(null);
+        if (session == null || entryOpt.get().getPhase() != LobbyPhase.RUNNING) {
             log.warn("Попытка завершить несуществующую игровую сессию: {}", lobbyCode);
-            return;
+            return false;
         }
+        LobbyEntry entry = entryOpt.get();
 
         try {
             // Определяем победившую команду
@@ -369,14 +943,14 @@ public class SessionManager {
             }
 
             // Удаляем сессию из активных
-            activeSessions.remove(lobbyCode);
+            if (entry.detachSession(session)) {
+                session.dispose();
+            }
             log.info("Игровая сессия {} завершена и удалена", lobbyCode);
+            return true;
         } catch (Exception e) {
             log.error("Ошибка при завершении игровой сессии {}: {}", lobbyCode, e.getMessage(), e);
+            return false;
         }
     }
-
-    public Map<String, GameSession> getActiveSessions() {
-        return activeSessions;
-    }
 }
\ No newline at end of file
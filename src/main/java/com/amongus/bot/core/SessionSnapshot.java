@@ -0,0 +1,616 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.tasks.Task;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.GameSettings;
+import com.amongus.bot.models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary image of all live lobbies and games, written next to the {@link EventJournal}
+ * so that a restart only has to replay the journal written after it.
+ * <p>
+ * Lobbies are first copied into immutable {@link LobbyImage}s, each between two updates of its
+ * own lobby, and then encoded and written in the background; nothing waits for the disk.
+ * <p>
+ * Layout, all numbers except the header and the trailer as varints:
+ * <pre>
+ * int magic, byte version, long first journal segment after the snapshot
+ * string table: count, then UTF-8 length and bytes of every distinct string
+ * lobbies: count, then every lobby with strings as table index + 1 (0 for null)
+ *          and the epoch of its buttons after its code
+ * int CRC32 of everything before it
+ * </pre>
+ * Task titles, role ids and state names repeat in every game, so the table keeps them to one
+ * copy per file.
+ */
+public final class SessionSnapshot {
+    private static final Logger log = LoggerFactory.getLogger(SessionSnapshot.class);
+
+    // "AUS1" at the start of every snapshot file
+    private static final int MAGIC = 0x41555331;
+    private static final byte VERSION = 1;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    // Player flags
+    private static final int IN_LOBBY = 1;
+    private static final int IN_SESSION = 2;
+    private static final int ALIVE = 4;
+
+    private final long firstSegment;
+    private final List<LobbyImage> lobbies;
+
+    private SessionSnapshot(long firstSegment, List<LobbyImage> lobbies) {
+        this.firstSegment = firstSegment;
+        this.lobbies = lobbies;
+    }
+
+    /**
+     * Gets the first journal segment that is not covered by this snapshot.
+     */
+    public long getFirstSegment() {
+        return firstSegment;
+    }
+
+    public List<LobbyImage> getLobbies() {
+        return lobbies;
+    }
+
+    /**
+     * Copies a lobby and its game. Must run between two updates of the lobby, e.g. in its
+     * dispatcher mailbox, for the copy to be consistent.
+     *
+     * @return The copy, or null if the lobby is finished or removed and is not restored
+     */
+    static LobbyImage capture(LobbyEntry entry) {
+        LobbyPhase phase = entry.getPhase();
+        if (phase == LobbyPhase.ENDED || phase == LobbyPhase.REMOVED) {
+            return null;
+        }
+        GameLobby lobby = entry.getLobby();
+        GameSession session = entry.getSession();
+        boolean running = session != null && phase == LobbyPhase.RUNNING && session.isGameInProgress();
+
+        // Lobby players first, in joining order, then those who left the lobby but not the game
+        Map<Long, PlayerImage> players = new LinkedHashMap<>();
+        for (Player player : lobby.getPlayers()) {
+            players.put(player.getUserId(), new PlayerImage(player, IN_LOBBY, running));
+        }
+        if (session != null) {
+            for (Player player : session.getPlayers()) {
+                PlayerImage image = players.get(player.getUserId());
+                players.put(player.getUserId(), image != null
+                        ? image.inSession()
+                        : new PlayerImage(player, IN_SESSION, running));
+            }
+        }
+
+        return new LobbyImage(entry.getLobbyCode(),
+                session != null ? session.getCallbackEpoch(CallbackAction.Scope.LOBBY) : 0,
+                new PlayerImage(lobby.getOwner(), 0, false),
+                settingsOf(lobby.getSettings()),
+                session != null ? settingsOf(session.getSettings()) : null,
+                session != null ? session.getGroupChatId() : null,
+                running ? session.getCurrentState().getStateName() : null,
+                new ArrayList<>(players.values()));
+    }
+
+    /**
+     * Writes a snapshot into a directory and deletes the older snapshots there. The file is written
+     * aside and renamed, so a crash leaves either the old or the new snapshot.
+     *
+     * @return The size of the snapshot in bytes
+     */
+    static int write(Path directory, long firstSegment, List<LobbyImage> lobbies) throws IOException {
+        ByteBuffer out = ByteBuffer.wrap(encode(firstSegment, lobbies));
+        int size = out.remaining();
+
+        Path target = file(directory, firstSegment);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                file.write(out);
+            }
+            file.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long sequence : list(directory)) {
+            if (sequence < firstSegment) {
+                Files.deleteIfExists(file(directory, sequence));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reads the newest snapshot in a directory.
+     *
+     * @return The snapshot, or null if there is none or it is damaged
+     */
+    static SessionSnapshot readNewest(Path directory) throws IOException {
+        List<Long> sequences = list(directory);
+        if (sequences.isEmpty()) {
+            return null;
+        }
+        Path path = file(directory, sequences.get(sequences.size() - 1));
+        try {
+            return decode(Files.readAllBytes(path));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            log.error("Ignoring damaged snapshot {}: {}", path.getFileName(), e.toString());
+            return null;
+        }
+    }
+
+    static byte[] encode(long firstSegment, List<LobbyImage> lobbies) {
+        Output body = new Output(64 * lobbies.size() + 16);
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> table = new ArrayList<>();
+
+        body.varint(lobbies.size());
+        for (LobbyImage lobby : lobbies) {
+            body.string(lobby.lobbyCode, strings, table);
+            body.varint(lobby.callbackEpoch);
+            writePlayer(body, lobby.owner, false, strings, table);
+            body.ints(lobby.lobbySettings);
+            body.varint(lobby.sessionSettings != null ? 1 : 0);
+            if (lobby.sessionSettings != null) {
+                body.ints(lobby.sessionSettings);
+            }
+            body.string(lobby.groupChatId, strings, table);
+            body.string(lobby.stateName, strings, table);
+
+            body.varint(lobby.players.size());
+            for (PlayerImage player : lobby.players) {
+                writePlayer(body, player, true, strings, table);
+                if (lobby.stateName != null) {
+                    body.string(player.roleId, strings, table);
+                    body.varint(player.meetingsLeft);
+                    body.varint(player.taskTitles.length);
+                    for (int i = 0; i < player.taskTitles.length; i++) {
+                        body.string(player.taskTitles[i], strings, table);
+                        body.varint(player.taskDone[i] ? 1 : 0);
+                        if (player.taskDone[i]) {
+                            body.string(player.taskPhotos[i], strings, table);
+                        }
+                    }
+                }
+            }
+        }
+
+        Output out = new Output(body.size + 64 + 16 * table.size());
+        out.fixedInt(MAGIC);
+        out.put(VERSION);
+        out.fixedLong(firstSegment);
+        out.varint(table.size());
+        for (String value : table) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.varint(utf8.length);
+            out.put(utf8, utf8.length);
+        }
+        out.put(body.bytes, body.size);
+
+        CRC32 crc = new CRC32();
+        crc.update(out.bytes, 0, out.size);
+        out.fixedInt((int) crc.getValue());
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    static SessionSnapshot decode(byte[] bytes) {
+        if (bytes.length < 4 + 1 + 8 + 4) {
+            throw new IllegalArgumentException("Snapshot of " + bytes.length + " bytes is too short");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes).getInt(bytes.length - 4)) {
+            throw new IllegalArgumentException("Snapshot checksum does not match");
+        }
+        Input in = new Input(bytes, bytes.length - 4);
+
+        if (in.fixedInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a snapshot file");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        long firstSegment = in.fixedLong();
+
+        String[] table = new String[in.count()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = in.utf8(in.count());
+        }
+
+        int lobbyCount = in.count();
+        List<LobbyImage> lobbies = new ArrayList<>(lobbyCount);
+        for (int l = 0; l < lobbyCount; l++) {
+            String lobbyCode = in.string(table);
+            long callbackEpoch = in.varlong();
+            PlayerImage owner = readPlayer(in, table, false);
+            int[] lobbySettings = in.ints();
+            int[] sessionSettings = in.varint() != 0 ? in.ints() : null;
+            String groupChatId = in.string(table);
+            String stateName = in.string(table);
+
+            int playerCount = in.count();
+            List<PlayerImage> players = new ArrayList<>(playerCount);
+            for (int p = 0; p < playerCount; p++) {
+                PlayerImage player = readPlayer(in, table, true);
+                if (stateName != null) {
+                    player.roleId = in.string(table);
+                    player.meetingsLeft = in.varint();
+                    int tasks = in.count();
+                    player.taskTitles = new String[tasks];
+                    player.taskDone = new boolean[tasks];
+                    player.taskPhotos = new String[tasks];
+                    for (int t = 0; t < tasks; t++) {
+                        player.taskTitles[t] = in.string(table);
+                        player.taskDone[t] = in.varint() != 0;
+                        if (player.taskDone[t]) {
+                            player.taskPhotos[t] = in.string(table);
+                        }
+                    }
+                }
+                players.add(player);
+            }
+            lobbies.add(new LobbyImage(lobbyCode, callbackEpoch, owner, lobbySettings, sessionSettings, groupChatId,
+                    stateName, players));
+        }
+        return new SessionSnapshot(firstSegment, Collections.unmodifiableList(lobbies));
+    }
+
+    private static int[] settingsOf(GameSettings settings) {
+        return new int[] {
+                settings.getImpostorCount(),
+                settings.getDiscussionTimeSeconds(),
+                settings.getVotingTimeSeconds(),
+                settings.getKillCooldownSeconds(),
+                settings.getTasksPerPlayer()
+        };
+    }
+
+    /**
+     * Copies settings written by {@link #settingsOf} back.
+     */
+    static void applySettings(int[] values, GameSettings settings) {
+        settings.setImpostorCount(values[0]);
+        settings.setDiscussionTimeSeconds(values[1]);
+        settings.setVotingTimeSeconds(values[2]);
+        settings.setKillCooldownSeconds(values[3]);
+        settings.setTasksPerPlayer(values[4]);
+    }
+
+    private static void writePlayer(Output out, PlayerImage player, boolean withChat,
+                                    Map<String, Integer> strings, List<String> table) {
+        out.zigzag(player.userId);
+        out.string(player.username, strings, table);
+        out.string(player.firstName, strings, table);
+        out.string(player.lastName, strings, table);
+        if (withChat) {
+            out.varint(player.flags);
+            out.zigzag(player.chatId);
+        }
+    }
+
+    private static PlayerImage readPlayer(Input in, String[] table, boolean withChat) {
+        long userId = in.zigzag();
+        String username = in.string(table);
+        String firstName = in.string(table);
+        String lastName = in.string(table);
+        int flags = withChat ? in.varint() : 0;
+        long chatId = withChat ? in.zigzag() : 0;
+        return new PlayerImage(userId, username, firstName, lastName, flags, chatId);
+    }
+
+    private static Path file(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%016d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    /**
+     * Lists the sequence numbers of the snapshots in a directory, in ascending order.
+     */
+    private static List<Long> list(Path directory) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                try {
+                    sequences.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file {} in the journal directory", name);
+                }
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    /**
+     * Immutable copy of one lobby and its game.
+     */
+    static final class LobbyImage {
+        final String lobbyCode;
+        // Epoch of the lobby buttons, 0 when the lobby has no session
+        final long callbackEpoch;
+        final PlayerImage owner;
+        final int[] lobbySettings;
+        // Null when the lobby has no session
+        final int[] sessionSettings;
+        final String groupChatId;
+        // Null unless the game is running
+        final String stateName;
+        final List<PlayerImage> players;
+
+        LobbyImage(String lobbyCode, long callbackEpoch, PlayerImage owner, int[] lobbySettings,
+                   int[] sessionSettings, String groupChatId, String stateName, List<PlayerImage> players) {
+            this.lobbyCode = lobbyCode;
+            this.callbackEpoch = callbackEpoch;
+            this.owner = owner;
+            this.lobbySettings = lobbySettings;
+            this.sessionSettings = sessionSettings;
+            this.groupChatId = groupChatId;
+            this.stateName = stateName;
+            this.players = players;
+        }
+    }
+
+    /**
+     * Copy of a player. The game fields are only set for players of a running game.
+     */
+    static final class PlayerImage {
+        final long userId;
+        final String username;
+        final String firstName;
+        final String lastName;
+        final int flags;
+        final long chatId;
+        String roleId;
+        int meetingsLeft;
+        String[] taskTitles = new String[0];
+        boolean[] taskDone = new boolean[0];
+        String[] taskPhotos = new String[0];
+
+        PlayerImage(long userId, String username, String firstName, String lastName, int flags, long chatId) {
+            this.userId = userId;
+            this.username = username;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.flags = flags;
+            this.chatId = chatId;
+        }
+
+        PlayerImage(Player player, int flags, boolean withGame) {
+            this(player.getUserId(), player.getUsername(), player.getFirstName(), player.getLastName(),
+                    flags | (player.isAlive() ? ALIVE : 0), player.getChatId());
+            if (!withGame) {
+                return;
+            }
+            roleId = player.getRole() != null ? player.getRole().getRoleId() : null;
+            meetingsLeft = player.getEmergencyMeetingsLeft();
+            List<Task> tasks = new ArrayList<>(player.getTasks());
+            taskTitles = new String[tasks.size()];
+            taskDone = new boolean[tasks.size()];
+            taskPhotos = new String[tasks.size()];
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                taskTitles[i] = task.getTitle();
+                taskDone[i] = task.isCompleted();
+                taskPhotos[i] = task.getPhotoFileId();
+            }
+        }
+
+        private PlayerImage inSession() {
+            PlayerImage copy = new PlayerImage(userId, username, firstName, lastName, flags | IN_SESSION, chatId);
+            copy.roleId = roleId;
+            copy.meetingsLeft = meetingsLeft;
+            copy.taskTitles = taskTitles;
+            copy.taskDone = taskDone;
+            copy.taskPhotos = taskPhotos;
+            return copy;
+        }
+
+        Player toPlayer() {
+            Player player = new Player(userId, username, firstName, lastName);
+            player.setChatId(chatId);
+            return player;
+        }
+
+        boolean isInLobby() {
+            return (flags & IN_LOBBY) != 0;
+        }
+
+        boolean isAlive() {
+            return (flags & ALIVE) != 0;
+        }
+    }
+
+    /**
+     * Growable byte array with varint writers.
+     */
+    private static final class Output {
+        private byte[] bytes;
+        private int size = 0;
+
+        Output(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        void put(byte value) {
+            ensure(1);
+            bytes[size++] = value;
+        }
+
+        void put(byte[] values, int length) {
+            ensure(length);
+            System.arraycopy(values, 0, bytes, size, length);
+            size += length;
+        }
+
+        void fixedInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void fixedLong(long value) {
+            fixedInt((int) (value >>> 32));
+            fixedInt((int) value);
+        }
+
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void zigzag(long value) {
+            varint((value << 1) ^ (value >> 63));
+        }
+
+        void ints(int[] values) {
+            varint(values.length);
+            for (int value : values) {
+                zigzag(value);
+            }
+        }
+
+        void string(String value, Map<String, Integer> strings, List<String> table) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                table.add(value);
+                index = table.size();
+                strings.put(value, index);
+            }
+            varint(index);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Reader over a byte array, the counterpart of {@link Output}. Reading past the limit throws
+     * {@link IndexOutOfBoundsException}.
+     */
+    private static final class Input {
+        private final byte[] bytes;
+        private final int limit;
+        private int position = 0;
+
+        Input(byte[] bytes, int limit) {
+            this.bytes = bytes;
+            this.limit = limit;
+        }
+
+        byte get() {
+            if (position >= limit) {
+                throw new IndexOutOfBoundsException("Read past the end of the snapshot");
+            }
+            return bytes[position++];
+        }
+
+        int fixedInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (get() & 0xFF);
+            }
+            return value;
+        }
+
+        long fixedLong() {
+            return ((long) fixedInt() << 32) | (fixedInt() & 0xFFFFFFFFL);
+        }
+
+        int varint() {
+            return (int) varlong();
+        }
+
+        long zigzag() {
+            long value = varlong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads a count, which can never be larger than the bytes left.
+         */
+        int count() {
+            int count = varint();
+            if (count < 0 || count > limit - position) {
+                throw new IllegalArgumentException("Count " + count + " past the end of the snapshot");
+            }
+            return count;
+        }
+
+        int[] ints() {
+            int[] values = new int[count()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (int) zigzag();
+            }
+            return values;
+        }
+
+        String utf8(int length) {
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String string(String[] table) {
+            int index = varint();
+            if (index == 0) {
+                return null;
+            }
+            if (index > table.length) {
+                throw new IllegalArgumentException("String " + index + " is not in the table");
+            }
+            return table[index - 1];
+        }
+
+        long varlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in the snapshot");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.states.GameSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mirrors the public events of games (start, meetings and their results, task progress and
+ * the outcome) into one spectator channel. Every event is posted to the channel once, tagged
+ * with the lobby code, so the number of viewers does not change the cost of an event.
+ * <p>
+ * Viewers who start watching a game late get a short summary of it from {@link #summarize}
+ * instead of a replay of what they missed.
+ */
+public class SpectatorFeed {
+    private static final Logger log = LoggerFactory.getLogger(SpectatorFeed.class);
+
+    private final AmongUsBot bot;
+    // Null or empty when spectating is disabled
+    private final String channelId;
+    private final int progressStepPercent;
+
+    // What the channel has been told about each game
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+
+    public SpectatorFeed(AmongUsBot bot, String channelId, int progressStepPercent) {
+        this.bot = bot;
+        this.channelId = channelId;
+        this.progressStepPercent = progressStepPercent;
+    }
+
+    /**
+     * Checks if a spectator channel is configured.
+     */
+    public boolean isEnabled() {
+        return channelId != null && !channelId.isEmpty();
+    }
+
+    /**
+     * Gets a link to the spectator channel, or null if the channel has no public username.
+     */
+    public String getChannelLink() {
+        if (!isEnabled() || !channelId.startsWith("@")) {
+            return null;
+        }
+        return "https://t.me/" + channelId.substring(1);
+    }
+
+    /**
+     * Posts the start of a game.
+     */
+    public void gameStarted(GameSession gameSession) {
+        if (!isEnabled()) {
+            return;
+        }
+        // A new game in the same lobby starts from a clean record
+        feeds.put(gameSession.getLobbyCode(), new Feed());
+        post(gameSession, "🚀 Игра началась! Игроков: " + gameSession.getPlayers().size()
+                + ", импостеров: " + gameSession.getSettings().getImpostorCount());
+    }
+
+    /**
+     * Posts the start of a meeting.
+     */
+    public void meetingStarted(GameSession gameSession) {
+        Feed feed = feedOf(gameSession);
+        if (feed == null) {
+            return;
+        }
+        int meeting;
+        synchronized (feed) {
+            meeting = ++feed.meetings;
+        }
+        post(gameSession, "🔔 Экстренное собрание №" + meeting);
+    }
+
+    /**
+     * Posts the results of a meeting, including who was ejected.
+     */
+    public void meetingEnded(GameSession gameSession, String results) {
+        Feed feed = feedOf(gameSession);
+        if (feed == null) {
+            return;
+        }
+        synchronized (feed) {
+            feed.lastResults = results;
+        }
+        post(gameSession, "🗳️ Итоги голосования:\n\n" + results);
+    }
+
+    /**
+     * Posts the task progress of the crew when it has passed the next step.
+     */
+    public void progressChanged(GameSession gameSession) {
+        Feed feed = feedOf(gameSession);
+        if (feed == null) {
+            return;
+        }
+        int percent = gameSession.getTaskManager().getOverallTaskCompletionPercentage();
+        int reached = percent / progressStepPercent * progressStepPercent;
+        synchronized (feed) {
+            if (reached <= feed.progressPosted || percent >= 100) {
+                // Nothing new, or the end of the game says it anyway
+                return;
+            }
+            feed.progressPosted = reached;
+        }
+        post(gameSession, "📊 Выполнено " + reached + "% заданий");
+    }
+
+    /**
+     * Posts the outcome of a game.
+     *
+     * @param outcome The winners and the roles of the players
+     */
+    public void gameEnded(GameSession gameSession, String outcome) {
+        Feed feed = feedOf(gameSession);
+        if (feed == null) {
+            return;
+        }
+        synchronized (feed) {
+            feed.outcome = outcome;
+        }
+        post(gameSession, outcome);
+    }
+
+    /**
+     * Summarizes what has happened in a game so far, for a viewer who has just started watching.
+     */
+    public String summarize(GameSession gameSession) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("👀 *Игра ").append(gameSession.getLobbyCode()).append("*\n\n");
+
+        Feed feed = feeds.get(gameSession.getLobbyCode());
+        if (feed == null || !gameSession.isGameInProgress()) {
+            sb.append("Игра ещё не началась. Игроков в лобби: ").append(gameSession.getPlayers().size());
+            return sb.toString();
+        }
+        synchronized (feed) {
+            if (feed.outcome != null) {
+                return sb.append(feed.outcome).toString();
+            }
+            sb.append("Фаза: ").append(phaseOf(gameSession)).append("\n");
+            sb.append("Игроков: ").append(gameSession.getPlayers().size()).append("\n");
+            sb.append("Выполнено заданий: ")
+                    .append(gameSession.getTaskManager().getOverallTaskCompletionPercentage()).append("%\n");
+            sb.append("Собраний: ").append(feed.meetings);
+            if (feed.lastResults != null) {
+                sb.append("\n\n*Последнее голосование:*\n").append(feed.lastResults);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Drops everything known about a removed lobby.
+     */
+    public void forget(String lobbyCode) {
+        feeds.remove(lobbyCode);
+    }
+
+    private Feed feedOf(GameSession gameSession) {
+        return isEnabled() ? feeds.get(gameSession.getLobbyCode()) : null;
+    }
+
+    private void post(GameSession gameSession, String event) {
+        bot.sendTextMessageSafe(channelId, "🎮 *" + gameSession.getLobbyCode() + "* · " + event);
+        log.debug("Posted spectator event of lobby {}", gameSession.getLobbyCode());
+    }
+
+    private static String phaseOf(GameSession gameSession) {
+        switch (gameSession.getCurrentState().getStateName()) {
+            case "DISCUSSION":
+                return "собрание";
+            case "GAME_END":
+                return "игра окончена";
+            default:
+                return "идёт игра";
+        }
+    }
+
+    /**
+     * What the channel has been told about one game.
+     */
+    private static final class Feed {
+        private int meetings = 0;
+        private int progressPosted = 0;
+        private String lastResults;
+        private String outcome;
+    }
+}
@@ -0,0 +1,64 @@
+package com.amongus.bot.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter working on {@link System#nanoTime()} timestamps.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Creates a new token bucket that starts full.
+     *
+     * @param ratePerSecond The number of tokens added per second
+     * @param capacity      The maximum number of tokens (burst size)
+     */
+    public TokenBucket(double ratePerSecond, int capacity) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Tries to take one token.
+     *
+     * @param nowNanos The current time from {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the number of nanoseconds until one becomes available
+     */
+    public synchronized long tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Returns a token taken by {@link #tryAcquire(long)} that ended up unused.
+     */
+    public synchronized void release() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * Checks if the bucket is full, meaning it carries no rate limiting state worth keeping.
+     */
+    public synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
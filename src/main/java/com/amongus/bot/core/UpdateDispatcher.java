@@ -0,0 +1,378 @@
+package com.amongus.bot.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Routes incoming updates to per-lobby mailboxes that are drained by a fixed set of workers.
+ * Updates of one lobby are processed one at a time, while different lobbies are processed in parallel.
+ * <p>
+ * Lobbies share the workers by deficit round-robin: a lobby gets a quantum of handler time per turn
+ * and is charged what its updates actually took, so a lobby relaying a flood of chat gets the same
+ * share of time as a quiet one and cannot delay it by more than a few turns.
+ * Game actions (button presses, commands, photos and timer tasks) are in a higher class than free-text
+ * chat: lobbies with pending actions are served several turns for every turn of a lobby with only chat.
+ * The class only decides which lobby is served next; inside a lobby all work runs strictly in arrival order.
+ */
+public class UpdateDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    // Handler time a mailbox may use per turn before yielding its worker to other lobbies
+    private static final long TURN_QUANTUM_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    // Turns given to mailboxes with pending actions for every turn of a mailbox with only chat
+    private static final int ACTION_TURNS_PER_CHAT_TURN = 4;
+
+    private static final String LOBBY_KEY_PREFIX = "lobby:";
+    private static final String USER_KEY_PREFIX = "user:";
+
+    /**
+     * Scheduling class of queued work.
+     */
+    public enum Priority {
+        // Button presses, commands, photos and timer tasks: someone is waiting for them
+        ACTION,
+        // Free-text messages, which are only relayed to other players
+        CHAT
+    }
+
+    private final SessionManager sessionManager;
+    private final Consumer<Update> updateHandler;
+    private final BotMetrics metrics;
+    private final List<Thread> workers = new ArrayList<>();
+
+    // Guards the mailboxes and the run queues
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+
+    // Active mailboxes by routing key; a mailbox is removed once it is drained
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    // Mailboxes waiting for a worker, by the highest class of their pending work
+    private final ArrayDeque<Mailbox> actionRunQueue = new ArrayDeque<>();
+    private final ArrayDeque<Mailbox> chatRunQueue = new ArrayDeque<>();
+    private int actionTurnsInRow = 0;
+    private boolean running = true;
+
+    /**
+     * Creates a new dispatcher and starts its workers.
+     *
+     * @param sessionManager The session manager used to resolve the lobby of a user
+     * @param updateHandler  The handler that processes a single update
+     * @param workerThreads  The number of worker threads
+     * @param metrics        The metrics that receive the queueing delay of each class
+     */
+    public UpdateDispatcher(SessionManager sessionManager, Consumer<Update> updateHandler, int workerThreads,
+                            BotMetrics metrics) {
+        this.sessionManager = sessionManager;
+        this.updateHandler = updateHandler;
+        this.metrics = metrics;
+        for (int i = 1; i <= workerThreads; i++) {
+            Thread worker = new Thread(this::work, "update-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues an update into the mailbox of the lobby it belongs to.
+     */
+    public void dispatch(Update update) {
+        submit(resolveKey(update), priorityOf(update), () -> updateHandler.accept(update));
+    }
+
+    /**
+     * Queues a task into the mailbox of the given lobby, so that it runs in order
+     * with the updates of that lobby.
+     */
+    public void submitToLobby(String lobbyCode, Runnable task) {
+        submit(LOBBY_KEY_PREFIX + lobbyCode, Priority.ACTION, task);
+    }
+
+    /**
+     * Queues a task into the mailbox with the given routing key.
+     */
+    private void submit(String key, Priority priority, Runnable task) {
+        lock.lock();
+        try {
+            if (!running) {
+                log.warn("Dropping work for {} after shutdown", key);
+                return;
+            }
+            Mailbox mailbox = mailboxes.computeIfAbsent(key, Mailbox::new);
+            mailbox.add(new QueuedTask(task, priority));
+
+            if (mailbox.waiting) {
+                // A mailbox waiting with only chat moves up once it gets an action
+                if (priority == Priority.ACTION && chatRunQueue.remove(mailbox)) {
+                    actionRunQueue.add(mailbox);
+                }
+            } else if (!mailbox.active) {
+                makeReady(mailbox);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Classifies an update: everything but free text is a game action.
+     */
+    private static Priority priorityOf(Update update) {
+        if (update.hasMessage()) {
+            String text = update.getMessage().getText();
+            if (text != null && !text.startsWith("/")) {
+                return Priority.CHAT;
+            }
+        }
+        return Priority.ACTION;
+    }
+
+    /**
+     * Resolves the routing key of an update: the lobby of the sender if there is one,
+     * or the sender itself otherwise.
+     */
+    private String resolveKey(Update update) {
+        User from = null;
+        if (update.hasMessage()) {
+            Message message = update.getMessage();
+            from = message.getFrom();
+
+            // A join request is ordered with the lobby being joined, not with the sender
+            String joinCode = extractJoinCode(message.getText());
+            if (joinCode != null) {
+                return LOBBY_KEY_PREFIX + joinCode;
+            }
+        } else if (update.hasCallbackQuery()) {
+            from = update.getCallbackQuery().getFrom();
+        }
+
+        if (from == null) {
+            return USER_KEY_PREFIX + "0";
+        }
+
+        long userId = from.getId();
+        return sessionManager.getLobbyCodeForPlayer(userId)
+                .map(code -> LOBBY_KEY_PREFIX + code)
+                .orElse(USER_KEY_PREFIX + userId);
+    }
+
+    /**
+     * Extracts the lobby code from a "/join CODE" command, or returns null for any other text.
+     */
+    private static String extractJoinCode(String text) {
+        if (text == null || !text.startsWith("/join")) {
+            return null;
+        }
+        String[] parts = text.trim().split("\\s+", 2);
+        String command = parts[0];
+        int mention = command.indexOf('@');
+        if (mention >= 0) {
+            command = command.substring(0, mention);
+        }
+        if (!command.equalsIgnoreCase("/join") || parts.length < 2) {
+            return null;
+        }
+        return parts[1].trim().toUpperCase();
+    }
+
+    /**
+     * Gets the number of mailboxes that currently hold pending work.
+     */
+    public int getActiveMailboxCount() {
+        return mailboxes.size();
+    }
+
+    private void work() {
+        while (true) {
+            Mailbox mailbox = takeMailbox();
+            if (mailbox == null) {
+                return;
+            }
+            runTurn(mailbox);
+        }
+    }
+
+    /**
+     * Waits for the next mailbox to serve and gives it a new quantum.
+     *
+     * @return The mailbox, or null once the dispatcher is shut down and all work is done
+     */
+    private Mailbox takeMailbox() {
+        lock.lock();
+        try {
+            while (actionRunQueue.isEmpty() && chatRunQueue.isEmpty()) {
+                if (!running) {
+                    return null;
+                }
+                workAvailable.awaitUninterruptibly();
+            }
+
+            Mailbox mailbox;
+            if (!actionRunQueue.isEmpty()
+                    && (chatRunQueue.isEmpty() || actionTurnsInRow < ACTION_TURNS_PER_CHAT_TURN)) {
+                mailbox = actionRunQueue.poll();
+                actionTurnsInRow++;
+            } else {
+                mailbox = chatRunQueue.poll();
+                actionTurnsInRow = 0;
+            }
+            mailbox.waiting = false;
+            mailbox.active = true;
+            mailbox.deficitNanos += TURN_QUANTUM_NANOS;
+            return mailbox;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the tasks of a mailbox until its deficit is used up or it is drained.
+     */
+    private void runTurn(Mailbox mailbox) {
+        long costNanos = 0;
+        while (true) {
+            QueuedTask task;
+            lock.lock();
+            try {
+                mailbox.deficitNanos -= costNanos;
+                task = mailbox.deficitNanos > 0 ? mailbox.poll() : null;
+                if (task == null) {
+                    endTurn(mailbox);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            metrics.recordDuration(task.priority == Priority.ACTION ? "dispatch.wait.action" : "dispatch.wait.chat",
+                    TimeUnit.NANOSECONDS.toMillis(start - task.enqueuedNanos));
+            try {
+                task.task.run();
+            } catch (Exception e) {
+                log.error("Error processing update in mailbox {}: {}", mailbox.key, e.getMessage(), e);
+            }
+            costNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Puts a mailbox back in line if it has work left, or drops it. Called with the lock held.
+     */
+    private void endTurn(Mailbox mailbox) {
+        mailbox.active = false;
+        if (mailbox.isEmpty()) {
+            // An idle lobby does not keep unused credit or debt
+            mailbox.deficitNanos = 0;
+            mailboxes.remove(mailbox.key, mailbox);
+        } else {
+            makeReady(mailbox);
+        }
+    }
+
+    /**
+     * Queues a mailbox for a worker in the class of its most urgent work. Called with the lock held.
+     */
+    private void makeReady(Mailbox mailbox) {
+        mailbox.waiting = true;
+        if (mailbox.pendingActions == 0) {
+            chatRunQueue.add(mailbox);
+        } else {
+            actionRunQueue.add(mailbox);
+        }
+        workAvailable.signal();
+    }
+
+    /**
+     * Stops accepting work and waits briefly for queued updates to finish.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try {
+            for (Thread worker : workers) {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Pending work for one routing key. At most one worker runs it at a time.
+     * All fields are guarded by the dispatcher lock, except that the worker running a turn
+     * owns the mailbox's tasks once it has polled them.
+     */
+    private static final class Mailbox {
+        private final String key;
+        private final ArrayDeque<QueuedTask> tasks = new ArrayDeque<>();
+        // Queued tasks of the ACTION class, which decide the run queue of the mailbox
+        private int pendingActions = 0;
+
+        // Handler time this mailbox may still use; negative if its last task overran the quantum
+        private long deficitNanos = 0;
+        // In a run queue
+        private boolean waiting = false;
+        // Being run by a worker
+        private boolean active = false;
+
+        Mailbox(String key) {
+            this.key = key;
+        }
+
+        void add(QueuedTask task) {
+            tasks.add(task);
+            if (task.priority == Priority.ACTION) {
+                pendingActions++;
+            }
+        }
+
+        QueuedTask poll() {
+            QueuedTask task = tasks.poll();
+            if (task != null && task.priority == Priority.ACTION) {
+                pendingActions--;
+            }
+            return task;
+        }
+
+        boolean isEmpty() {
+            return tasks.isEmpty();
+        }
+    }
+
+    private static final class QueuedTask {
+        private final Runnable task;
+        private final Priority priority;
+        private final long enqueuedNanos = System.nanoTime();
+
+        QueuedTask(Runnable task, Priority priority) {
+            this.task = task;
+            this.priority = priority;
+        }
+    }
+}
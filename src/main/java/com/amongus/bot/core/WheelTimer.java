@@ -0,0 +1,355 @@
+package com.amongus.bot.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed-wheel timer shared by everything in the bot that needs to run later.
+ * Timeouts are hashed into a ring of buckets by their deadline tick, so scheduling and
+ * cancelling are O(1) and a pending timeout costs one small object instead of a heap entry
+ * of a {@link java.util.concurrent.ScheduledThreadPoolExecutor}. The price is precision:
+ * a timeout fires up to one tick after its deadline.
+ * <p>
+ * Timeouts may be scheduled under an owner (usually a lobby code) and cancelled in bulk with
+ * {@link #cancelAll(Object)}. Tasks run on the single timer thread and must not block;
+ * anything heavier should be handed to another executor.
+ */
+public class WheelTimer {
+    private static final Logger log = LoggerFactory.getLogger(WheelTimer.class);
+
+    // Upper bound of new timeouts moved into the wheel per tick, so a burst cannot stall expiry
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+
+    // Handed over to the timer thread, which alone touches the buckets
+    private final Queue<Timeout> additions = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+
+    // Pending timeouts by owner, for bulk cancellation
+    private final Map<Object, Set<Timeout>> owners = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    // Only accessed by the timer thread
+    private long tick = 0;
+
+    /**
+     * Creates and starts a new timer.
+     *
+     * @param tickMillis The length of one tick, which is also the precision of the timer
+     * @param wheelSize  The number of buckets, rounded up to a power of two
+     */
+    public WheelTimer(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+
+        this.worker = new Thread(this::run, "wheel-timer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs a task once after a delay.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(null, task, delay, unit);
+    }
+
+    /**
+     * Runs a task once after a delay.
+     *
+     * @param owner The owner of the timeout for {@link #cancelAll(Object)}, or null if not tracked
+     */
+    public Timeout schedule(Object owner, Runnable task, long delay, TimeUnit unit) {
+        return add(new Timeout(owner, task, deadlineAfter(delay, unit), 0));
+    }
+
+    /**
+     * Runs a task repeatedly, first after the initial delay and then once per period,
+     * until the returned timeout is cancelled.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return scheduleAtFixedRate(null, task, initialDelay, period, unit);
+    }
+
+    /**
+     * Runs a task repeatedly under an owner, first after the initial delay and then once per period.
+     */
+    public Timeout scheduleAtFixedRate(Object owner, Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return add(new Timeout(owner, task, deadlineAfter(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    /**
+     * Cancels every pending timeout of an owner.
+     *
+     * @return The number of cancelled timeouts
+     */
+    public int cancelAll(Object owner) {
+        Set<Timeout> timeouts = owners.remove(owner);
+        if (timeouts == null) {
+            return 0;
+        }
+        int cancelled = 0;
+        for (Timeout timeout : timeouts) {
+            if (timeout.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Gets the number of timeouts that have neither fired nor been cancelled.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the timer thread. Pending timeouts never fire.
+     */
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private long deadlineAfter(long delay, TimeUnit unit) {
+        return System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+    }
+
+    private Timeout add(Timeout timeout) {
+        if (!running) {
+            throw new IllegalStateException("Timer has been shut down");
+        }
+        pending.incrementAndGet();
+        if (timeout.owner != null) {
+            owners.compute(timeout.owner, (key, set) -> {
+                Set<Timeout> timeouts = set != null ? set : ConcurrentHashMap.newKeySet();
+                timeouts.add(timeout);
+                return timeouts;
+            });
+        }
+        additions.add(timeout);
+        return timeout;
+    }
+
+    private void forget(Timeout timeout) {
+        pending.decrementAndGet();
+        if (timeout.owner != null) {
+            owners.computeIfPresent(timeout.owner, (key, set) -> {
+                set.remove(timeout);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            processCancellations();
+            transferAdditions();
+            expire(wheel[(int) (tick & mask)], deadline);
+            tick++;
+        }
+    }
+
+    private void processCancellations() {
+        Timeout timeout;
+        while ((timeout = cancellations.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferAdditions() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = additions.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() == STATE_PENDING) {
+                place(timeout, tick);
+            }
+        }
+    }
+
+    /**
+     * Puts a timeout into the bucket of its deadline tick.
+     *
+     * @param firstTick The first tick whose bucket has not been expired yet;
+     *                  deadlines that are already due go into its bucket
+     */
+    private void place(Timeout timeout, long firstTick) {
+        long targetTick = Math.max(timeout.deadlineNanos / tickNanos, firstTick);
+        timeout.remainingRounds = (targetTick - firstTick) / wheel.length;
+        wheel[(int) (targetTick & mask)].add(timeout);
+    }
+
+    private void expire(Bucket bucket, long tickDeadline) {
+        // Periodic timeouts may be re-added to this bucket while it is expired; they wait for the next round
+        Timeout last = bucket.tail;
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            boolean isLast = timeout == last;
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else if (timeout.deadlineNanos <= tickDeadline) {
+                bucket.remove(timeout);
+                fire(timeout);
+            }
+            if (isLast) {
+                return;
+            }
+            timeout = next;
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        boolean periodic = timeout.periodNanos > 0;
+        if (!periodic && !timeout.state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+            return;
+        }
+        if (periodic && timeout.state.get() != STATE_PENDING) {
+            return;
+        }
+
+        try {
+            timeout.task.run();
+        } catch (Exception e) {
+            log.error("Error in timer task: {}", e.getMessage(), e);
+        }
+
+        if (!periodic) {
+            forget(timeout);
+        } else if (timeout.state.get() == STATE_PENDING) {
+            timeout.deadlineNanos += timeout.periodNanos;
+            place(timeout, tick + 1);
+        }
+    }
+
+    /**
+     * A scheduled task. Cancelling it is O(1): the timeout is unlinked from its bucket
+     * by the timer thread on the next tick.
+     */
+    public final class Timeout {
+        private final Object owner;
+        private final Runnable task;
+        private final long periodNanos;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+        // Only accessed by the timer thread
+        private long deadlineNanos;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        Timeout(Object owner, Runnable task, long deadlineNanos, long periodNanos) {
+            this.owner = owner;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        /**
+         * Cancels the timeout unless it has already fired.
+         *
+         * @return true if this call cancelled it
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+            forget(this);
+            cancellations.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts hashed to one slot of the wheel.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
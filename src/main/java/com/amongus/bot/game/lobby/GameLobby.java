@@ -9,12 +9,13 @@ import com.amongus.bot.models.GameSettings;
 import com.amongus.bot.models.Player;
 import com.amongus.bot.utils.SecurityManager;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a game lobby where players gather before starting a game.
@@ -27,10 +28,14 @@ public class GameLobby {
     private final Instant creationTime;
     private Instant lastActivityTime;
     private final GameSettings settings = new GameSettings();
-    private final Map<Long, Integer> playerStatusMessageIds = new ConcurrentHashMap<>();
     private boolean gameInProgress = false;
     private boolean gameStarted = false;
     private final Logger log = LoggerFactory.getLogger(GameLobby.class);
+
+    // Notified on every recorded activity, used by the idle reaper
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile Runnable activityListener;
     public boolean isGameStarted() { return gameStarted; }
 
 
@@ -185,6 +190,10 @@ public class GameLobby {
      */
     public void recordActivity() {
         this.lastActivityTime = Instant.now();
+        Runnable listener = activityListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
     
     /**
@@ -193,12 +202,4 @@ public class GameLobby {
     public long getInactiveMinutes(Instant now) {
         return (now.getEpochSecond() - lastActivityTime.getEpochSecond()) / 60;
     }
-
-    public void setStatusMessageId(long userId, Integer messageId) {
-        playerStatusMessageIds.put(userId, messageId);
-    }
-
-    public Integer getStatusMessageId(long userId) {
-        return playerStatusMessageIds.get(userId);
-    }
 } 
\ No newline at end of file
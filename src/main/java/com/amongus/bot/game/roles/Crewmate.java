@@ -1,6 +1,8 @@
 package com.amongus.bot.game.roles;
 
+import com.amongus.bot.models.CallbackAction;
 import com.amongus.bot.models.Player;
+import com.amongus.bot.utils.CallbackCodec;
 import com.amongus.bot.utils.SecurityManager;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
@@ -45,7 +47,7 @@ public class Crewmate implements Role {
     }
     
     @Override
-    public InlineKeyboardMarkup getAbilitiesKeyboard(Player player) {
+    public InlineKeyboardMarkup getAbilitiesKeyboard(Player player, long epoch) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         
@@ -54,12 +56,12 @@ public class Crewmate implements Role {
         
         InlineKeyboardButton tasksButton = new InlineKeyboardButton();
         tasksButton.setText("📋 Задания");
-        tasksButton.setCallbackData("tasks");
+        tasksButton.setCallbackData(CallbackCodec.encode(CallbackAction.TASKS, epoch));
         row1.add(tasksButton);
         
         InlineKeyboardButton reportButton = new InlineKeyboardButton();
         reportButton.setText("⚠️ Сообщить о теле");
-        reportButton.setCallbackData("report_body");
+        reportButton.setCallbackData(CallbackCodec.encode(CallbackAction.REPORT_BODY, epoch));
         row1.add(reportButton);
         
         // Second row: Emergency meeting and Kill Me buttons
@@ -71,12 +73,12 @@ public class Crewmate implements Role {
         } else {
             emergencyButton.setText("🚨 Экстренное собрание (0)");
         }
-        emergencyButton.setCallbackData("emergency_meeting");
+        emergencyButton.setCallbackData(CallbackCodec.encode(CallbackAction.EMERGENCY_MEETING, epoch));
         row2.add(emergencyButton);
         
         InlineKeyboardButton killMeButton = new InlineKeyboardButton();
         killMeButton.setText("💀 Меня убили");
-        killMeButton.setCallbackData("killed");
+        killMeButton.setCallbackData(CallbackCodec.encode(CallbackAction.KILLED, epoch));
         row2.add(killMeButton);
         
         keyboard.add(row1);
@@ -95,8 +97,8 @@ public class Crewmate implements Role {
     }
     
     @Override
-    public String getEncodedRoleCallback() {
+    public String getEncodedRoleCallback(String sessionId, long epoch, long userId) {
         // Using security manager to encode role information
-        return securityManager.encodeRoleCallback(ROLE_ID);
+        return securityManager.encodeRoleCallback(ROLE_ID, sessionId, epoch, userId);
     }
 } 
\ No newline at end of file
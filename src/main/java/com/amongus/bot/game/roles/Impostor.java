@@ -1,6 +1,8 @@
 package com.amongus.bot.game.roles;
 
+import com.amongus.bot.models.CallbackAction;
 import com.amongus.bot.models.Player;
+import com.amongus.bot.utils.CallbackCodec;
 import com.amongus.bot.utils.SecurityManager;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
@@ -46,7 +48,7 @@ public class Impostor implements Role {
     }
     
     @Override
-    public InlineKeyboardMarkup getAbilitiesKeyboard(Player player) {
+    public InlineKeyboardMarkup getAbilitiesKeyboard(Player player, long epoch) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         
@@ -55,12 +57,12 @@ public class Impostor implements Role {
         
         InlineKeyboardButton tasksButton = new InlineKeyboardButton();
         tasksButton.setText("📋 Задания");
-        tasksButton.setCallbackData("fake_tasks");  // Note the difference for impostors
+        tasksButton.setCallbackData(CallbackCodec.encode(CallbackAction.TASKS, epoch));  // The task list itself differs for impostors
         row1.add(tasksButton);
         
         InlineKeyboardButton reportButton = new InlineKeyboardButton();
         reportButton.setText("⚠️ Сообщить о теле");
-        reportButton.setCallbackData("report_body");
+        reportButton.setCallbackData(CallbackCodec.encode(CallbackAction.REPORT_BODY, epoch));
         row1.add(reportButton);
         
         // Second row: Emergency meeting and Kill Me buttons
@@ -72,12 +74,12 @@ public class Impostor implements Role {
         } else {
             emergencyButton.setText("🚨 Экстренное собрание (0)");
         }
-        emergencyButton.setCallbackData("emergency_meeting");
+        emergencyButton.setCallbackData(CallbackCodec.encode(CallbackAction.EMERGENCY_MEETING, epoch));
         row2.add(emergencyButton);
         
         InlineKeyboardButton killMeButton = new InlineKeyboardButton();
         killMeButton.setText("💀 Меня убили");
-        killMeButton.setCallbackData("killed");
+        killMeButton.setCallbackData(CallbackCodec.encode(CallbackAction.KILLED, epoch));
         row2.add(killMeButton);
         
         // Third row: Kill and Sabotage buttons
@@ -90,12 +92,12 @@ public class Impostor implements Role {
         } else {
             killButton.setText("🔪 Убить (перезарядка)");
         }
-        killButton.setCallbackData("kill");
+        killButton.setCallbackData(CallbackCodec.encode(CallbackAction.KILL_MENU, epoch));
         row3.add(killButton);
         
         InlineKeyboardButton sabotageButton = new InlineKeyboardButton();
         sabotageButton.setText("⚡ Саботаж");
-        sabotageButton.setCallbackData("sabotage");
+        sabotageButton.setCallbackData(CallbackCodec.encode(CallbackAction.SABOTAGE_MENU, epoch));
         row3.add(sabotageButton);
         
         keyboard.add(row1);
@@ -116,8 +118,8 @@ public class Impostor implements Role {
     }
     
     @Override
-    public String getEncodedRoleCallback() {
+    public String getEncodedRoleCallback(String sessionId, long epoch, long userId) {
         // Using security manager to encode role information
-        return securityManager.encodeRoleCallback(ROLE_ID);
+        return securityManager.encodeRoleCallback(ROLE_ID, sessionId, epoch, userId);
     }
 } 
\ No newline at end of file
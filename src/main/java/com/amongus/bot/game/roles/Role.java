@@ -40,8 +40,11 @@ public interface Role {
      * Gets the special abilities keyboard for this role.
      * Each role has its own custom keyboard for abilities.
      * The keyboard layout should be similar for all roles for security.
+     *
+     * @param player The player the keyboard is for
+     * @param epoch  The game epoch of the session, see {@link com.amongus.bot.game.states.GameSession#getCallbackEpoch}
      */
-    InlineKeyboardMarkup getAbilitiesKeyboard(Player player);
+    InlineKeyboardMarkup getAbilitiesKeyboard(Player player, long epoch);
     
     /**
      * Gets the secure role reveal message for this role.
@@ -52,6 +55,10 @@ public interface Role {
     /**
      * Gets the encoded role callback data for buttons.
      * This is used to hide the actual role from anyone seeing the screen.
+     *
+     * @param sessionId The lobby code of the session
+     * @param epoch     The game epoch of the session; the token is rejected in any other game
+     * @param userId    The player the token is for; the token is rejected for anyone else
      */
-    String getEncodedRoleCallback();
+    String getEncodedRoleCallback(String sessionId, long epoch, long userId);
 } 
\ No newline at end of file
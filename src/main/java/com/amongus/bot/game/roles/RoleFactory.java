@@ -36,10 +36,12 @@ public class RoleFactory {
     
     /**
      * Decodes a role callback and creates the corresponding role.
+     *
+     * @return The role, or null if the token is not valid for the session, epoch and player
      */
-    public Role createRoleFromCallback(String encodedCallback) {
-        String roleId = securityManager.decodeRoleCallback(encodedCallback);
-        return createRole(roleId);
+    public Role createRoleFromCallback(String encodedCallback, String sessionId, long epoch, long userId) {
+        String roleId = securityManager.decodeRoleCallback(encodedCallback, sessionId, epoch, userId);
+        return roleId != null ? createRole(roleId) : null;
     }
     
     /**
@@ -75,6 +75,18 @@ public class Sabotage {
         return Math.max(0, remainingSeconds);
     }
     
+    /**
+     * Gets the moment a critical sabotage ends the game if it is not fixed.
+     * 
+     * @return the deadline, or null if not a critical sabotage or already fixed
+     */
+    public Instant getDeadline() {
+        if (!type.isCritical() || fixed) {
+            return null;
+        }
+        return startTime.plusSeconds(Config.CRITICAL_SABOTAGE_TIMEOUT_SECONDS);
+    }
+    
     /**
      * Checks if this critical sabotage has timed out.
      * 
@@ -1,5 +1,6 @@
 package com.amongus.bot.game.sabotage;
 
+import com.amongus.bot.core.WheelTimer;
 import com.amongus.bot.models.Player;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,8 +10,6 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -24,19 +23,26 @@ public class SabotageManager {
     private final Map<Long, Sabotage> activeSabotages = new HashMap<>();
     
     // Map of game IDs to their sabotage timeout tasks
-    private final Map<Long, ScheduledFuture<?>> sabotageTimeoutTasks = new HashMap<>();
+    private final Map<Long, WheelTimer.Timeout> sabotageTimeoutTasks = new HashMap<>();
     
-    // Scheduler from the main bot class
-    private final ScheduledExecutorService scheduler;
+    // Timer from the main bot class
+    private final WheelTimer timer;
+    
+    // Owner of the timeout tasks, so that they are cancelled together with the lobby
+    private final String ownerKey;
     
     // Callback when a critical sabotage times out
     private final Map<Long, Consumer<Sabotage>> timeoutCallbacks = new HashMap<>();
     
     /**
      * Creates a new sabotage manager.
+     *
+     * @param timer    The timer for critical sabotage timeouts
+     * @param ownerKey The owner of the timeouts, usually the lobby code
      */
-    public SabotageManager(ScheduledExecutorService scheduler) {
-        this.scheduler = scheduler;
+    public SabotageManager(WheelTimer timer, String ownerKey) {
+        this.timer = timer;
+        this.ownerKey = ownerKey;
     }
     
     /**
@@ -74,7 +80,8 @@ public class SabotageManager {
             cancelTimeoutTask(gameId);
             
             // Schedule a new timeout task
-            ScheduledFuture<?> timeoutTask = scheduler.schedule(
+            WheelTimer.Timeout timeoutTask = timer.schedule(
+                    ownerKey,
                     () -> handleSabotageTimeout(gameId),
                     sabotage.getRemainingTimeSeconds(),
                     TimeUnit.SECONDS
@@ -156,9 +163,9 @@ public class SabotageManager {
      * Cancels the timeout task for a game.
      */
     private void cancelTimeoutTask(long gameId) {
-        ScheduledFuture<?> task = sabotageTimeoutTasks.remove(gameId);
-        if (task != null && !task.isDone()) {
-            task.cancel(false);
+        WheelTimer.Timeout task = sabotageTimeoutTasks.remove(gameId);
+        if (task != null) {
+            task.cancel();
         }
     }
     
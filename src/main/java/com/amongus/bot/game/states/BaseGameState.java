@@ -1,12 +1,20 @@
 package com.amongus.bot.game.states;
 
 import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.core.BroadcastResult;
+import com.amongus.bot.models.CallbackData;
 import com.amongus.bot.models.Player;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Base implementation of GameState with default behavior for all methods.
  * Other states can extend this class and override only the methods they need.
@@ -24,7 +32,7 @@ public abstract class BaseGameState implements GameState {
     }
 
     @Override
-    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery) {
+    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery, CallbackData data) {
         // Default implementation: do nothing and stay in the same state
         return this;
     }
@@ -45,6 +53,9 @@ public abstract class BaseGameState implements GameState {
     public void onExit(GameSession gameSession, AmongUsBot bot) {
         // Default implementation: log state transition
         log.info("Exiting state {} for game {}", getStateName(), gameSession.getId());
+        
+        // Chat of this phase must arrive before anything the next phase sends
+        bot.getChatRelay().flush(gameSession.getLobbyCode());
     }
 
     @Override
@@ -64,38 +75,71 @@ public abstract class BaseGameState implements GameState {
     }
 
     /**
-     * Sends a message to all players in the game.
+     * Sends a message to all players in the game, or posts it once to the group chat of the game.
      */
-    protected void sendMessageToAllPlayers(GameSession gameSession, AmongUsBot bot, String message) {
-        for (Player player : gameSession.getPlayers()) {
-            gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatId -> {
-                bot.sendTextMessageSafe(chatId, message);
-            });
+    protected CompletableFuture<BroadcastResult> sendMessageToAllPlayers(GameSession gameSession, AmongUsBot bot, String message) {
+        if (gameSession.isGroupMode()) {
+            return bot.broadcastTextSafe(Collections.singletonList(gameSession.getGroupChatId()), message);
         }
+        return sendMessageToPlayers(gameSession, bot, gameSession.getPlayers(), message);
     }
 
     /**
      * Sends a message to all living players in the game.
      */
-    protected void sendMessageToLivingPlayers(GameSession gameSession, AmongUsBot bot, String message) {
-        for (Player player : gameSession.getLivingPlayers()) {
-            gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatId -> {
-                bot.sendTextMessageSafe(chatId, message);
-            });
-        }
+    protected CompletableFuture<BroadcastResult> sendMessageToLivingPlayers(GameSession gameSession, AmongUsBot bot, String message) {
+        return sendMessageToPlayers(gameSession, bot, gameSession.getLivingPlayers(), message);
     }
 
     /**
      * Sends a message to all ghost players in the game.
      */
-    protected void sendMessageToGhosts(GameSession gameSession, AmongUsBot bot, String message) {
-        for (Player player : gameSession.getGhosts()) {
-            gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatId -> {
-                bot.sendTextMessageSafe(chatId, message);
-            });
+    protected CompletableFuture<BroadcastResult> sendMessageToGhosts(GameSession gameSession, AmongUsBot bot, String message) {
+        return sendMessageToPlayers(gameSession, bot, gameSession.getGhosts(), message);
+    }
+
+    /**
+     * Sends a message to the given players concurrently.
+     */
+    protected CompletableFuture<BroadcastResult> sendMessageToPlayers(GameSession gameSession, AmongUsBot bot,
+                                                                      Collection<Player> players, String message) {
+        List<String> chatIds = new ArrayList<>(players.size());
+        for (Player player : players) {
+            gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatIds::add);
         }
+        return bot.broadcastTextSafe(chatIds, message);
     }
 
+    /**
+     * Relays a chat line to all players, merged with other lines of the same burst.
+     */
+    protected void relayToAllPlayers(GameSession gameSession, AmongUsBot bot, String line) {
+        if (gameSession.isGroupMode()) {
+            bot.getChatRelay().relay(gameSession.getLobbyCode(),
+                    Collections.singletonList(gameSession.getGroupChatId()), line);
+            return;
+        }
+        relayToPlayers(gameSession, bot, gameSession.getPlayers(), line);
+    }
+    
+    /**
+     * Relays a chat line to all ghost players, merged with other lines of the same burst.
+     */
+    protected void relayToGhosts(GameSession gameSession, AmongUsBot bot, String line) {
+        relayToPlayers(gameSession, bot, gameSession.getGhosts(), line);
+    }
+    
+    /**
+     * Relays a chat line to the given players through the chat relay.
+     */
+    protected void relayToPlayers(GameSession gameSession, AmongUsBot bot, Collection<Player> players, String line) {
+        List<String> chatIds = new ArrayList<>(players.size());
+        for (Player player : players) {
+            gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatIds::add);
+        }
+        bot.getChatRelay().relay(gameSession.getLobbyCode(), chatIds, line);
+    }
+    
     /**
      * Sends a message to a specific player.
      */
@@ -104,4 +148,4 @@ public abstract class BaseGameState implements GameState {
             bot.sendTextMessageSafe(chatId, message);
         });
     }
-} 
\ No newline at end of file
+}
@@ -1,8 +1,11 @@
 package com.amongus.bot.game.states;
 
 import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.CallbackData;
 import com.amongus.bot.models.Player;
 import com.amongus.bot.game.voting.VotingManager;
+import com.amongus.bot.game.voting.VoteTracker;
 import com.amongus.bot.game.voting.VotingResults;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
@@ -12,6 +15,8 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Represents the state when players are discussing after a body is found or emergency meeting is called.
+ * Voting is shown on each player's {@link com.amongus.bot.core.MeetingBoard}, which also shows the results.
+ * The meeting and its results are also posted to the {@link com.amongus.bot.core.SpectatorFeed}.
  */
 public class DiscussionState extends BaseGameState {
     
@@ -55,6 +60,7 @@ public class DiscussionState extends BaseGameState {
                 "У вас есть " + (discussionDurationMs / 1000) + " секунд для обсуждения, " +
                 "затем " + votingDurationSec + " секунд для голосования.\n\n" +
                 "Обсудите, кто может быть импостером, и будьте готовы проголосовать!");
+        bot.getSpectatorFeed().meetingStarted(gameSession);
     }
     
     @Override
@@ -74,13 +80,13 @@ public class DiscussionState extends BaseGameState {
             // Only allow living players to speak during discussion
             if (player.isAlive() && !text.startsWith("/")) {
                 String formattedMessage = "*" + player.getDisplayName() + "*: " + text;
-                sendMessageToAllPlayers(gameSession, bot, formattedMessage);
+                relayToAllPlayers(gameSession, bot, formattedMessage);
             }
             
             // Allow ghost chat for dead players
             if (!player.isAlive() && !text.startsWith("/")) {
                 String ghostMessage = "👻 *" + player.getDisplayName() + "* (призрак): " + text;
-                sendMessageToGhosts(gameSession, bot, ghostMessage);
+                relayToGhosts(gameSession, bot, ghostMessage);
             }
         }
         
@@ -88,51 +94,40 @@ public class DiscussionState extends BaseGameState {
     }
     
     @Override
-    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery) {
-        String data = callbackQuery.getData();
+    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery, CallbackData data) {
         long userId = callbackQuery.getFrom().getId();
-        String chatId = callbackQuery.getMessage().getChatId().toString();
         
         Optional<Player> playerOpt = gameSession.getPlayer(userId);
         if (!playerOpt.isPresent() || !playerOpt.get().isAlive() || !votingStarted || votingEnded) {
             return this;
         }
         
-        // Handle voting actions
-        if (data.startsWith("vote_")) {
-            String targetIdStr = data.substring(5);
-            if (targetIdStr.equals("skip")) {
-                // Skip vote
-                votingManager.castVote(userId, "skip");
-                bot.sendTextMessageSafe(chatId, "✅ Вы проголосовали за пропуск.");
-                
-                // Notify all players that someone voted
-                sendMessageToAllPlayers(gameSession, bot, "*" + playerOpt.get().getDisplayName() + "* проголосовал(а).");
-            } else {
-                try {
-                    long targetId = Long.parseLong(targetIdStr);
-                    Optional<Player> targetPlayerOpt = gameSession.getPlayer(targetId);
-                    
-                    if (targetPlayerOpt.isPresent() && targetPlayerOpt.get().isAlive()) {
-                        votingManager.castVote(userId, targetIdStr);
-                        bot.sendTextMessageSafe(chatId, "✅ Вы проголосовали против *" + 
-                                targetPlayerOpt.get().getDisplayName() + "*.");
-                        
-                        // Notify all players that someone voted
-                        sendMessageToAllPlayers(gameSession, bot, "*" + playerOpt.get().getDisplayName() + "* проголосовал(а).");
-                    }
-                } catch (NumberFormatException e) {
-                    // Invalid target ID
-                }
-            }
+        // Handle voting actions; the voter and everyone else see the vote on their boards
+        if (data.getAction() == CallbackAction.VOTE_SKIP) {
+            // Skip vote
+            votingManager.castVote(userId, VoteTracker.SKIP);
+            bot.getSessionJournal().voteCast(gameSession.getLobbyCode(), userId, VoteTracker.SKIP);
+            bot.getMeetingBoard().invalidate(gameSession.getLobbyCode());
+        } else if (data.getAction() == CallbackAction.VOTE) {
+            long targetId = data.getArgument(0);
+            Optional<Player> targetPlayerOpt = gameSession.getPlayer(targetId);
             
-            // Check if everyone has voted
-            if (votingManager.hasEveryoneVoted()) {
-                votingEnded = true;
-                votingManager.endVoting();
-                announceVotingResults(gameSession, bot);
-                return processVotingResults(gameSession, bot);
+            // The shared keyboard of a group chat also offers the voter themselves
+            if (targetPlayerOpt.isPresent() && targetPlayerOpt.get().isAlive() && targetId != userId
+                    && votingManager.castVote(userId, targetId)) {
+                bot.getSessionJournal().voteCast(gameSession.getLobbyCode(), userId, targetId);
+                bot.getMeetingBoard().invalidate(gameSession.getLobbyCode());
             }
+        } else {
+            return this;
+        }
+        
+        // Check if everyone has voted
+        if (votingManager.hasEveryoneVoted()) {
+            votingEnded = true;
+            votingManager.endVoting();
+            announceVotingResults(gameSession, bot);
+            return processVotingResults(gameSession, bot);
         }
         
         return this;
@@ -161,6 +156,17 @@ public class DiscussionState extends BaseGameState {
         return this;
     }
     
+    @Override
+    public long getNextDeadline(GameSession gameSession) {
+        if (!votingStarted) {
+            return discussionStartTime + discussionDurationMs;
+        }
+        if (!votingEnded) {
+            return votingManager.getVotingEndTimeMs();
+        }
+        return NO_DEADLINE;
+    }
+    
     /**
      * Starts the voting phase.
      */
@@ -169,20 +175,17 @@ public class DiscussionState extends BaseGameState {
         votingManager = new VotingManager(votingDurationSec);
         votingManager.registerVoters(gameSession);
         
-        sendMessageToAllPlayers(gameSession, bot, "🗳️ *Время голосования!*\n\n" +
-                "У вас есть " + votingDurationSec + " секунд, чтобы проголосовать. Выберите игрока, которого вы подозреваете, " +
-                "или пропустите голосование.");
-        
-        // Start the voting process
-        votingManager.startVoting(gameSession, bot);
+        // Send the vote boards with the voting buttons
+        bot.getMeetingBoard().open(gameSession, votingManager);
     }
     
     /**
-     * Announces voting results to all players.
+     * Announces voting results to all players, in place of their vote boards.
      */
     private void announceVotingResults(GameSession gameSession, AmongUsBot bot) {
         String resultsMessage = votingManager.getFormattedVotingResults(gameSession);
-        sendMessageToAllPlayers(gameSession, bot, resultsMessage);
+        bot.getMeetingBoard().close(gameSession.getLobbyCode(), resultsMessage);
+        bot.getSpectatorFeed().meetingEnded(gameSession, resultsMessage);
     }
     
     /**
@@ -194,30 +197,21 @@ public class DiscussionState extends BaseGameState {
         
         // If a player should be ejected
         if (results.shouldEjectPlayer()) {
-            results.getMostVotedPlayerId().ifPresent(playerId -> {
-                try {
-                    long id = Long.parseLong(playerId);
-                    Optional<Player> ejectedPlayerOpt = gameSession.getPlayer(id);
-                    if (ejectedPlayerOpt.isPresent()) {
-                        Player ejectedPlayer = ejectedPlayerOpt.get();
-                        
-                        // Kill the player
+            results.getMostVotedPlayerId().ifPresent(playerId ->
+                    // Kill the player
+                    gameSession.getPlayer(playerId).ifPresent(ejectedPlayer -> {
                         ejectedPlayer.setAlive(false);
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip invalid entries
-                }
-            });
+                        bot.getSessionJournal().playerDied(gameSession.getLobbyCode(), playerId);
+                    }));
             
             // Check win conditions after player ejection
             Optional<String> winningTeam = gameSession.checkWinConditions();
             if (winningTeam.isPresent()) {
-                gameSession.endGame(winningTeam.get(), bot);
                 return new GameEndState(winningTeam.get());
             }
         }
         
         // Return to the previous game state
-        return new GameRunningState();
+        return new GameRunningState(true);
     }
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.amongus.bot.game.states;
 
 import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.models.CallbackData;
 import com.amongus.bot.models.Player;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
@@ -32,6 +33,9 @@ public class GameEndState extends BaseGameState {
     public void onEnter(GameSession gameSession, AmongUsBot bot) {
         super.onEnter(gameSession, bot);
         
+        // The game buttons in the HUDs are no longer valid
+        bot.getGameHud().close(gameSession.getLobbyCode());
+        
         // Announce game end
         String winMessage;
         
@@ -63,6 +67,7 @@ public class GameEndState extends BaseGameState {
         }
         
         sendMessageToAllPlayers(gameSession, bot, playerList.toString());
+        bot.getSpectatorFeed().gameEnded(gameSession, winMessage + playerList);
         
         // Message about starting a new game
         sendMessageToAllPlayers(gameSession, bot, "\nИспользуйте команду /newgame, чтобы начать новую игру!");
@@ -79,7 +84,7 @@ public class GameEndState extends BaseGameState {
             if (playerOpt.isPresent()) {
                 Player player = playerOpt.get();
                 String formattedMessage = "*" + player.getDisplayName() + "*: " + text;
-                sendMessageToAllPlayers(gameSession, bot, formattedMessage);
+                relayToAllPlayers(gameSession, bot, formattedMessage);
             }
         }
         
@@ -87,7 +92,7 @@ public class GameEndState extends BaseGameState {
     }
     
     @Override
-    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery) {
+    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery, CallbackData data) {
         // No callback queries in the end state
         return this;
     }
@@ -2,6 +2,8 @@ package com.amongus.bot.game.states;
 
 import com.amongus.bot.core.AmongUsBot;
 import com.amongus.bot.game.roles.Role;
+import com.amongus.bot.game.sabotage.SabotageType;
+import com.amongus.bot.models.CallbackData;
 import com.amongus.bot.models.Config;
 import com.amongus.bot.models.Player;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -13,9 +15,28 @@ import java.util.Optional;
 
 /**
  * Represents the state when the game is actively running.
+ * Task progress, sabotages, kill cooldown and meetings are shown in each player's
+ * pinned HUD (see {@link com.amongus.bot.core.GameHud}) rather than in separate messages.
  */
 public class GameRunningState extends BaseGameState {
     
+    // True when the game goes on after a meeting, so roles and tasks are not handed out again
+    private final boolean resumed;
+    
+    /**
+     * Creates the state for a game that has just started.
+     */
+    public GameRunningState() {
+        this(false);
+    }
+    
+    /**
+     * Creates the state for a game that has just started or goes on after a meeting.
+     */
+    public GameRunningState(boolean resumed) {
+        this.resumed = resumed;
+    }
+    
     @Override
     public String getStateName() {
         return "RUNNING";
@@ -25,17 +46,21 @@ public class GameRunningState extends BaseGameState {
     public void onEnter(GameSession gameSession, AmongUsBot bot) {
         super.onEnter(gameSession, bot);
         
+        // Send tasks and game buttons to players, or refresh them after a meeting
+        bot.getGameHud().show(gameSession);
+        if (resumed) {
+            return;
+        }
+        
         // Send roles to players
         distributeRoles(gameSession, bot);
         
-        // Send tasks to players
-        distributeTasks(gameSession, bot);
-        
         // Send game started message
         sendMessageToAllPlayers(gameSession, bot, "🎮 *Игра началась!*\n\n" +
                 "Проверьте свои личные сообщения с ролью и списком заданий.\n" +
                 "Мирные жители: выполняйте задания и находите импостеров.\n" +
                 "Импостеры: саботируйте и убивайте мирных жителей.");
+        bot.getSpectatorFeed().gameStarted(gameSession);
     }
     
     @Override
@@ -52,7 +77,7 @@ public class GameRunningState extends BaseGameState {
             if (!player.isAlive() && text != null && !text.startsWith("/")) {
                 // Forward message to other ghosts
                 String ghostMessage = "👻 *" + player.getDisplayName() + "* (призрак): " + text;
-                sendMessageToGhosts(gameSession, bot, ghostMessage);
+                relayToGhosts(gameSession, bot, ghostMessage);
             }
         }
         
@@ -60,8 +85,7 @@ public class GameRunningState extends BaseGameState {
     }
     
     @Override
-    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery) {
-        String data = callbackQuery.getData();
+    public GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery, CallbackData data) {
         long userId = callbackQuery.getFrom().getId();
         String chatId = callbackQuery.getMessage().getChatId().toString();
         
@@ -73,72 +97,81 @@ public class GameRunningState extends BaseGameState {
         Player player = playerOpt.get();
         
         // Handle different button actions
-        if (data.equals("tasks")) {
-            // Show tasks list
-            showTasksList(gameSession, bot, player);
-        } else if (data.equals("report_body")) {
-            // Report a body
-            if (player.isAlive()) {
-                gameSession.reportBody(player, bot);
-                return new DiscussionState();
-            } else {
+        switch (data.getAction()) {
+            case TASKS:
+                // Bring the HUD with the tasks list back into view
+                bot.getGameHud().resend(gameSession, player);
+                break;
+            case REPORT_BODY:
+                // Report a body
+                if (player.isAlive()) {
+                    // The session has already switched to the meeting
+                    gameSession.reportBody(player, bot);
+                    return gameSession.getCurrentState();
+                }
                 bot.sendTextMessageSafe(chatId, "⚠️ Призраки не могут сообщать о телах.");
-            }
-        } else if (data.equals("emergency_meeting")) {
-            // Call emergency meeting
-            if (player.isAlive() && player.getEmergencyMeetingsLeft() > 0) {
-                boolean called = gameSession.callEmergencyMeeting(player, bot);
-                if (called) {
-                    return new DiscussionState();
+                break;
+            case EMERGENCY_MEETING:
+                // Call emergency meeting
+                if (player.isAlive() && player.getEmergencyMeetingsLeft() > 0) {
+                    boolean called = gameSession.callEmergencyMeeting(player, bot);
+                    if (called) {
+                        // The session has already switched to the meeting
+                        return gameSession.getCurrentState();
+                    } else {
+                        bot.sendTextMessageSafe(chatId, "⚠️ У вас не осталось экстренных собраний.");
+                    }
+                } else if (!player.isAlive()) {
+                    bot.sendTextMessageSafe(chatId, "⚠️ Призраки не могут вызывать экстренные собрания.");
                 } else {
                     bot.sendTextMessageSafe(chatId, "⚠️ У вас не осталось экстренных собраний.");
                 }
-            } else if (!player.isAlive()) {
-                bot.sendTextMessageSafe(chatId, "⚠️ Призраки не могут вызывать экстренные собрания.");
-            } else {
-                bot.sendTextMessageSafe(chatId, "⚠️ У вас не осталось экстренных собраний.");
-            }
-        } else if (data.equals("killed")) {
-            // Handle "I was killed" button
-            if (player.isAlive()) {
-                // Confirm kill
-                String confirmationCode = bot.getSecurityManager().generateConfirmationCode(player.getUserId());
-                
-                bot.sendTextMessageSafe(chatId, "⚠️ *Подтверждение убийства*\n\n" +
-                        "Вы сообщаете, что были убиты. Это действие нельзя отменить.\n\n" +
-                        "Если вы уверены, введите код подтверждения: *" + confirmationCode + "*\n\n" +
-                        "Для подтверждения отправьте сообщение с текстом:\n" +
-                        "/confirm " + confirmationCode);
-            } else {
-                bot.sendTextMessageSafe(chatId, "👻 Вы уже мертвы.");
-            }
-        } else if (data.equals("kill")) {
-            // Handle kill button (for impostors)
-            if (player.isAlive() && player.getRole().isImpostor()) {
-                showPlayersToKill(gameSession, bot, player);
-            }
-        } else if (data.equals("sabotage")) {
-            // Handle sabotage button (for impostors)
-            if (player.isAlive() && player.getRole().isImpostor()) {
-                showSabotageOptions(gameSession, bot, player);
-            }
-        } else if (data.startsWith("kill_")) {
-            // Handle specific player kill
-            if (player.isAlive() && player.getRole().isImpostor()) {
-                String targetIdStr = data.substring(5);
-                try {
-                    long targetId = Long.parseLong(targetIdStr);
-                    handleKillAttempt(gameSession, bot, player, targetId);
-                } catch (NumberFormatException e) {
-                    log.error("Invalid target ID: {}", targetIdStr);
+                break;
+            case KILLED:
+                // Handle "I was killed" button
+                if (player.isAlive()) {
+                    // Confirm kill
+                    String confirmationCode = bot.getSecurityManager().generateConfirmationCode(player.getUserId());
+                    
+                    bot.sendTextMessageSafe(chatId, "⚠️ *Подтверждение убийства*\n\n" +
+                            "Вы сообщаете, что были убиты. Это действие нельзя отменить.\n\n" +
+                            "Если вы уверены, введите код подтверждения: *" + confirmationCode + "*\n\n" +
+                            "Для подтверждения отправьте сообщение с текстом:\n" +
+                            "/confirm " + confirmationCode);
+                } else {
+                    bot.sendTextMessageSafe(chatId, "👻 Вы уже мертвы.");
                 }
-            }
-        } else if (data.startsWith("sabotage_")) {
-            // Handle specific sabotage type
-            if (player.isAlive() && player.getRole().isImpostor()) {
-                String sabotageType = data.substring(9);
-                handleSabotageAttempt(gameSession, bot, player, sabotageType);
-            }
+                break;
+            case KILL_MENU:
+                // Handle kill button (for impostors)
+                if (player.isAlive() && player.getRole().isImpostor()) {
+                    showPlayersToKill(gameSession, bot, player);
+                }
+                break;
+            case SABOTAGE_MENU:
+                // Handle sabotage button (for impostors)
+                if (player.isAlive() && player.getRole().isImpostor()) {
+                    showSabotageOptions(gameSession, bot, player);
+                }
+                break;
+            case KILL:
+                // Handle specific player kill
+                if (player.isAlive() && player.getRole().isImpostor()) {
+                    handleKillAttempt(gameSession, bot, player, data.getArgument(0));
+                    bot.getGameHud().invalidate(gameSession.getLobbyCode());
+                }
+                break;
+            case SABOTAGE:
+                // Handle specific sabotage type
+                SabotageType[] types = SabotageType.values();
+                long typeIndex = data.getArgument(0);
+                if (player.isAlive() && player.getRole().isImpostor() && typeIndex < types.length) {
+                    handleSabotageAttempt(gameSession, bot, player, types[(int) typeIndex]);
+                    bot.getGameHud().invalidate(gameSession.getLobbyCode());
+                }
+                break;
+            default:
+                break;
         }
         
         return this;
@@ -166,6 +199,7 @@ public class GameRunningState extends BaseGameState {
             for (var task : player.getTasks()) {
                 if (!task.isCompleted()) {
                     task.complete(photoFileId);
+                    bot.getSessionJournal().taskCompleted(gameSession.getLobbyCode(), player, task);
                     
                     // Only count completed tasks for crewmates
                     if (!player.getRole().isImpostor()) {
@@ -174,14 +208,13 @@ public class GameRunningState extends BaseGameState {
                     
                     bot.sendTextMessageSafe(chatId, "✅ Задание \"" + task.getTitle() + "\" отмечено как выполненное!");
                     
-                    // Update the task progress for all players
-                    int progress = gameSession.getTaskManager().getOverallTaskCompletionPercentage();
-                    sendMessageToAllPlayers(gameSession, bot, "📊 Общий прогресс заданий: " + progress + "%");
+                    // The task progress of all players is shown in their HUDs
+                    bot.getGameHud().invalidate(gameSession.getLobbyCode());
+                    bot.getSpectatorFeed().progressChanged(gameSession);
                     
                     // Check if all tasks are completed
                     if (gameSession.getTaskManager().areAllTasksCompleted()) {
                         // Crewmates win
-                        gameSession.endGame("crewmates", bot);
                         return new GameEndState("crewmates");
                     }
                     
@@ -198,20 +231,24 @@ public class GameRunningState extends BaseGameState {
         // Check win conditions
         Optional<String> winningTeam = gameSession.checkWinConditions();
         if (winningTeam.isPresent()) {
-            gameSession.endGame(winningTeam.get(), bot);
             return new GameEndState(winningTeam.get());
         }
         
         // Check for active sabotage timeout
         if (gameSession.isSabotageTimedOut()) {
             // Impostors win due to critical sabotage timeout
-            gameSession.endGame("impostors", bot);
             return new GameEndState("impostors");
         }
         
         return this;
     }
     
+    @Override
+    public long getNextDeadline(GameSession gameSession) {
+        // Wake up when a critical sabotage runs out
+        return gameSession.getSabotageDeadline();
+    }
+    
     /**
      * Distributes roles to all players.
      */
@@ -221,71 +258,17 @@ public class GameRunningState extends BaseGameState {
             if (role != null) {
                 // Send role information
                 gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatId -> {
-                    bot.sendTemporaryMessage(chatId, role.getRoleRevealMessage(), Config.ROLE_MESSAGE_AUTO_DELETE_SECONDS);
+                    // Names the reveal of this game to this player in the outbox. A lobby runs a single
+                    // game, but its code may be reused later, hence the start time
+                    String dedupeKey = "role:" + gameSession.getLobbyCode() + ":"
+                            + gameSession.getGameStartTime().toEpochMilli() + ":" + player.getUserId();
+                    bot.sendTemporaryMessage(gameSession.getLobbyCode(), chatId, role.getRoleRevealMessage(),
+                            Config.ROLE_MESSAGE_AUTO_DELETE_SECONDS, dedupeKey);
                 });
             }
         }
     }
     
-    /**
-     * Distributes tasks to all players.
-     */
-    private void distributeTasks(GameSession gameSession, AmongUsBot bot) {
-        for (Player player : gameSession.getPlayers()) {
-            // Send tasks list
-            showTasksList(gameSession, bot, player);
-        }
-    }
-    
-    /**
-     * Shows the player's tasks list.
-     */
-    private void showTasksList(GameSession gameSession, AmongUsBot bot, Player player) {
-        gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatId -> {
-            StringBuilder sb = new StringBuilder();
-            sb.append("📋 *Ваши задания:*\n\n");
-            
-            if (player.getTasks().isEmpty()) {
-                if (player.getRole().isImpostor()) {
-                    sb.append("У вас нет заданий. Вы можете притворяться, что выполняете задания, чтобы не вызывать подозрений.");
-                } else {
-                    sb.append("У вас нет заданий. Это странно, сообщите администратору.");
-                }
-            } else {
-                for (var task : player.getTasks()) {
-                    sb.append(task.getFormattedDescription()).append("\n\n");
-                }
-                
-                int completionPercentage = player.getTaskCompletionPercentage();
-                sb.append("Ваш прогресс: ").append(completionPercentage).append("%");
-                
-                if (player.getRole().isImpostor()) {
-                    sb.append("\n\n⚠️ *Внимание*: Как импостер, вы можете отправлять фотографии, но ваши задания не засчитываются в общий прогресс.");
-                }
-            }
-            
-            // Show overall task progress
-            if (!player.getRole().isImpostor()) {
-                int overallProgress = gameSession.getTaskManager().getOverallTaskCompletionPercentage();
-                sb.append("\n\n📊 Общий прогресс команды: ").append(overallProgress).append("%");
-            }
-            
-            bot.sendTextMessageSafe(chatId, sb.toString());
-            
-            // Send game controls
-            SendMessage controlsMessage = new SendMessage();
-            controlsMessage.setChatId(chatId);
-            controlsMessage.setText("🎮 *Игровые кнопки:*");
-            controlsMessage.enableMarkdown(true);
-            
-            // Get role-specific keyboard
-            InlineKeyboardMarkup keyboard = player.getRole().getAbilitiesKeyboard(player);
-            controlsMessage.setReplyMarkup(keyboard);
-            
-            bot.sendMessageSafe(controlsMessage);
-        });
-    }
-    
     /**
      * Shows the list of players that can be killed.
      */
@@ -338,7 +321,7 @@ public class GameRunningState extends BaseGameState {
     /**
      * Handles a sabotage attempt.
      */
-    private void handleSabotageAttempt(GameSession gameSession, AmongUsBot bot, Player player, String sabotageType) {
+    private void handleSabotageAttempt(GameSession gameSession, AmongUsBot bot, Player player, SabotageType sabotageType) {
         // Implementation omitted for brevity - would handle the sabotage mechanic
     }
 } 
\ No newline at end of file
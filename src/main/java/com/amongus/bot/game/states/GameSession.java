@@ -1,13 +1,22 @@
 package com.amongus.bot.game.states;
 
 import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.core.WheelTimer;
 import com.amongus.bot.game.roles.RoleFactory;
+import com.amongus.bot.game.sabotage.Sabotage;
 import com.amongus.bot.game.sabotage.SabotageManager;
 import com.amongus.bot.game.tasks.TaskManager;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.CallbackData;
 import com.amongus.bot.models.GameSettings;
 import com.amongus.bot.models.Player;
 import com.amongus.bot.utils.SecurityManager;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
@@ -19,8 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -30,6 +39,9 @@ import java.util.stream.Collectors;
 public class GameSession {
     private static final Logger log = LoggerFactory.getLogger(GameSession.class);
     private static final AtomicLong ID_GENERATOR = new AtomicLong(1);
+    // Epochs are unique across sessions, so a button from another game never matches. Seeded from the
+    // clock and raised above every restored epoch, so buttons sent before a restart do not match either
+    private static final AtomicLong EPOCH_GENERATOR = new AtomicLong(System.currentTimeMillis());
     
     // Core game properties
     private final long id;
@@ -43,7 +55,10 @@ public class GameSession {
     // Player management
     private final List<Player> players = new ArrayList<>();
     private final Map<Long, String> playerChatIds = new ConcurrentHashMap<>();
-    private final Map<Long, Integer> playerStatusMessageIds = new ConcurrentHashMap<>();
+    
+    // Group chat the lobby is bound to, if any; public events are posted there once instead of to every player.
+    // Bound through SessionManager.bindGroupChat, which keeps one lobby per group
+    private volatile String groupChatId;
     
     // Game components
     private final TaskManager taskManager;
@@ -55,14 +70,44 @@ public class GameSession {
     // Reporting and meetings
     private Player bodyReporter;
     private Player meetingCaller;
-    private final Map<Long, Long> votes = new ConcurrentHashMap<>();
     private Instant discussionEndTime;
     private Instant votingEndTime;
     
+    // Notified after every state transition
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile GameStateListener stateListener;
+    
+    // Notified on every recorded activity, used by the idle reaper
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile Runnable activityListener;
+    
+    // Notified with the next deadline of the current state whenever it changes, used by the game clock
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile LongConsumer deadlineListener;
+    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long armedDeadline = GameState.NO_DEADLINE;
+    
+    // Epoch of lobby and game buttons, renewed when a game starts
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile long epoch = EPOCH_GENERATOR.getAndIncrement();
+    
+    // Epoch of voting buttons, renewed for every meeting
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile long meetingEpoch = 0;
+    
     /**
      * Creates a new game session.
      */
-    public GameSession(String lobbyCode, Player owner, ScheduledExecutorService scheduler, SecurityManager securityManager) {
+    public GameSession(String lobbyCode, Player owner, WheelTimer timer, SecurityManager securityManager) {
         this.id = ID_GENERATOR.getAndIncrement();
         this.lobbyCode = lobbyCode;
         this.owner = owner;
@@ -75,7 +120,7 @@ public class GameSession {
         
         // Initialize game components
         this.taskManager = new TaskManager();
-        this.sabotageManager = new SabotageManager(scheduler);
+        this.sabotageManager = new SabotageManager(timer, lobbyCode);
         this.roleFactory = new RoleFactory(securityManager);
         this.settings = new GameSettings();
         
@@ -88,6 +133,10 @@ public class GameSession {
      */
     public void recordActivity() {
         this.lastActivityTime = Instant.now();
+        Runnable listener = activityListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
     
     /**
@@ -104,14 +153,6 @@ public class GameSession {
         return gameStartTime != null;
     }
 
-    public void setStatusMessageId(long userId, Integer messageId) {
-        playerStatusMessageIds.put(userId, messageId);
-    }
-
-    public Integer getStatusMessageId(long userId) {
-        return playerStatusMessageIds.get(userId);
-    }
-
 
     /**
      * Adds a player to the game.
@@ -184,6 +225,13 @@ public class GameSession {
     }
 
 
+    /**
+     * Checks if public events of this game are posted to a group chat.
+     */
+    public boolean isGroupMode() {
+        return groupChatId != null;
+    }
+    
     /**
      * Gets a player's chat ID for sending direct messages.
      */
@@ -246,6 +294,9 @@ public class GameSession {
      * Starts a new game.
      */
     public void startGame(AmongUsBot bot) {
+        // Buttons of the lobby are stale from now on
+        epoch = EPOCH_GENERATOR.getAndIncrement();
+        
         // Reset all players
         for (Player player : players) {
             player.revive();
@@ -265,11 +316,23 @@ public class GameSession {
         for (Player player : roleFactory.getCrewmates(players)) {
             taskManager.assignTasksToPlayer(player, settings.getTasksPerPlayer());
         }
+        bot.getSessionJournal().gameStarted(this);
         
         // Transition to the GameRunningState
         transitionToState(new GameRunningState(), bot);
     }
     
+    /**
+     * Continues a game whose roles and tasks have been restored from the journal.
+     * The game goes on from the running state, so a meeting interrupted by a restart is dropped.
+     */
+    public void resumeGame(AmongUsBot bot) {
+        // Buttons sent before the restart are stale
+        epoch = EPOCH_GENERATOR.getAndIncrement();
+        gameStartTime = Instant.now();
+        transitionToState(new GameRunningState(true), bot);
+    }
+    
     /**
      * Reports a body and starts an emergency meeting.
      */
@@ -283,6 +346,7 @@ public class GameSession {
      */
     public boolean callEmergencyMeeting(Player caller, AmongUsBot bot) {
         if (caller.useEmergencyMeeting()) {
+            bot.getSessionJournal().meetingsLeft(lobbyCode, caller);
             this.meetingCaller = caller;
             startMeeting(caller, bot);
             return true;
@@ -294,8 +358,8 @@ public class GameSession {
      * Starts a meeting (discussion and voting).
      */
     private void startMeeting(Player initiator, AmongUsBot bot) {
-        // Reset votes
-        votes.clear();
+        // Voting buttons of earlier meetings are stale from now on
+        meetingEpoch = EPOCH_GENERATOR.getAndIncrement();
         
         // Set discussion end time
         discussionEndTime = Instant.now().plusSeconds(settings.getDiscussionTimeSeconds());
@@ -304,58 +368,6 @@ public class GameSession {
         transitionToState(new DiscussionState(), bot);
     }
     
-    /**
-     * Records a vote.
-     */
-    public void recordVote(long voterId, long targetId) {
-        votes.put(voterId, targetId);
-    }
-    
-    /**
-     * Gets the player with the most votes.
-     * If there's a tie, returns Optional.empty().
-     */
-    public Optional<Player> getMostVotedPlayer() {
-        Map<Long, Long> voteCounts = new ConcurrentHashMap<>();
-        
-        // Count votes for each player
-        for (long targetId : votes.values()) {
-            if (targetId > 0) { // Skip skipped votes (targetId == 0)
-                voteCounts.put(targetId, voteCounts.getOrDefault(targetId, 0L) + 1);
-            }
-        }
-        
-        if (voteCounts.isEmpty()) {
-            return Optional.empty();
-        }
-        
-        // Find the player with the most votes
-        long maxVotes = 0;
-        long mostVotedId = 0;
-        boolean tie = false;
-        
-        for (Map.Entry<Long, Long> entry : voteCounts.entrySet()) {
-            long playerId = entry.getKey();
-            long voteCount = entry.getValue();
-            
-            if (voteCount > maxVotes) {
-                maxVotes = voteCount;
-                mostVotedId = playerId;
-                tie = false;
-            } else if (voteCount == maxVotes) {
-                tie = true;
-            }
-        }
-        
-        // If there's a tie, no one is ejected
-        if (tie) {
-            return Optional.empty();
-        }
-        
-        // Return the player with the most votes
-        return getPlayer(mostVotedId);
-    }
-    
     /**
      * Handles a message in the current state.
      */
@@ -368,20 +380,41 @@ public class GameSession {
                 transitionToState(nextState, bot);
             }
         }
+        armClock();
+    }
+    
+    /**
+     * Gets the epoch that buttons of a scope must carry to be accepted.
+     */
+    public long getCallbackEpoch(CallbackAction.Scope scope) {
+        return scope == CallbackAction.Scope.MEETING ? meetingEpoch : epoch;
+    }
+    
+    /**
+     * Takes over the epoch of an earlier session of the same lobby, so that the lobby buttons
+     * it sent stay valid. Only meant for a session whose game has not started.
+     */
+    public void continueCallbackEpoch(long epoch) {
+        this.epoch = epoch;
+        // Epochs handed out from now on must not repeat the restored one
+        EPOCH_GENERATOR.accumulateAndGet(epoch + 1, Math::max);
     }
     
     /**
      * Handles a callback query in the current state.
+     *
+     * @param data The decoded callback data, already checked against the epoch
      */
-    public void handleCallbackQuery(AmongUsBot bot, CallbackQuery callbackQuery) {
+    public void handleCallbackQuery(AmongUsBot bot, CallbackQuery callbackQuery, CallbackData data) {
         recordActivity();
         
         if (currentState != null) {
-            GameState nextState = currentState.handleCallbackQuery(this, bot, callbackQuery);
+            GameState nextState = currentState.handleCallbackQuery(this, bot, callbackQuery, data);
             if (nextState != currentState) {
                 transitionToState(nextState, bot);
             }
         }
+        armClock();
     }
     
     /**
@@ -391,23 +424,46 @@ public class GameSession {
      * @param message The photo message to handle
      */
     public void handlePhoto(AmongUsBot bot, Message message) {
+        recordActivity();
+        
         // Delegate to the current state
         GameState nextState = currentState.handlePhoto(this, bot, message);
         if (nextState != currentState) {
             transitionToState(nextState, bot);
         }
+        armClock();
     }
     
     /**
      * Updates the game state.
      */
     public void update(AmongUsBot bot) {
+        // The wake-up that led here is used up, so whatever the state reports next must be armed again
+        armedDeadline = GameState.NO_DEADLINE;
+        
         if (currentState != null) {
             GameState nextState = currentState.onUpdate(this, bot);
             if (nextState != currentState) {
                 transitionToState(nextState, bot);
             }
         }
+        armClock();
+    }
+    
+    /**
+     * Tells the game clock when the current state needs its next update, if that has changed.
+     */
+    private void armClock() {
+        long deadline = currentState != null ? currentState.getNextDeadline(this) : GameState.NO_DEADLINE;
+        if (deadline == armedDeadline) {
+            return;
+        }
+        armedDeadline = deadline;
+        
+        LongConsumer listener = deadlineListener;
+        if (listener != null) {
+            listener.accept(deadline);
+        }
     }
     
     /**
@@ -423,6 +479,13 @@ public class GameSession {
         
         currentState = newState;
         currentState.onEnter(this, bot);
+        bot.getSessionJournal().stateChanged(lobbyCode, newState.getStateName());
+        
+        GameStateListener listener = stateListener;
+        if (listener != null) {
+            listener.onStateChanged(this, newState);
+        }
+        armClock();
     }
     
     /**
@@ -465,6 +528,16 @@ public class GameSession {
         transitionToState(new GameEndState(winningTeam), bot);
     }
     
+    /**
+     * Releases the timers held by this session. Called when the session is evicted.
+     */
+    public void dispose() {
+        sabotageManager.cancelSabotage(id);
+        stateListener = null;
+        activityListener = null;
+        deadlineListener = null;
+    }
+    
     /**
      * Checks if the game session allows submitting task photos.
      * This is used during sabotages like lights out.
@@ -502,8 +575,21 @@ public class GameSession {
      * @return true if the sabotage was successfully completed, false otherwise
      */
     public boolean isSabotageTimedOut() {
-        // Logic to check if a timed sabotage has completed
-        return false; // Placeholder, implement actual logic
+        return sabotageManager.getActiveSabotage(id)
+                .map(Sabotage::isTimedOut)
+                .orElse(false);
+    }
+    
+    /**
+     * Gets the wall-clock time in milliseconds at which the active critical sabotage ends the game.
+     * 
+     * @return the deadline, or GameState.NO_DEADLINE if there is no such sabotage
+     */
+    public long getSabotageDeadline() {
+        return sabotageManager.getActiveSabotage(id)
+                .map(Sabotage::getDeadline)
+                .map(Instant::toEpochMilli)
+                .orElse(GameState.NO_DEADLINE);
     }
     
     /**
@@ -1,6 +1,7 @@
 package com.amongus.bot.game.states;
 
 import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.models.CallbackData;
 import com.amongus.bot.models.Player;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
@@ -10,6 +11,9 @@ import org.telegram.telegrambots.meta.api.objects.Message;
  * Implements the State design pattern for game state management.
  */
 public interface GameState {
+    // Returned by getNextDeadline when the state has nothing time-based to do
+    long NO_DEADLINE = Long.MAX_VALUE;
+    
     /**
      * Gets the name of this state.
      */
@@ -31,9 +35,10 @@ public interface GameState {
      * @param gameSession the game session
      * @param bot the bot instance
      * @param callbackQuery the callback query to handle
+     * @param data the decoded callback data
      * @return the next state, or this state if no transition
      */
-    GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery);
+    GameState handleCallbackQuery(GameSession gameSession, AmongUsBot bot, CallbackQuery callbackQuery, CallbackData data);
     
     /**
      * Handles a photo message when in this state.
@@ -87,4 +92,12 @@ public interface GameState {
      * @return the next state, or this state if no transition
      */
     GameState onUpdate(GameSession gameSession, AmongUsBot bot);
+    
+    /**
+     * Gets the wall-clock time in milliseconds at which onUpdate has to run next,
+     * or NO_DEADLINE if the state only reacts to players.
+     */
+    default long getNextDeadline(GameSession gameSession) {
+        return NO_DEADLINE;
+    }
 } 
\ No newline at end of file
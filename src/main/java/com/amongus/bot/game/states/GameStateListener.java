@@ -0,0 +1,9 @@
+package com.amongus.bot.game.states;
+
+/**
+ * Listener notified when a game session moves to a new state.
+ */
+@FunctionalInterface
+public interface GameStateListener {
+    void onStateChanged(GameSession gameSession, GameState newState);
+}
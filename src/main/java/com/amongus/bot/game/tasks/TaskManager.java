@@ -150,6 +150,23 @@ public class TaskManager {
         return assignedTasks;
     }
     
+    /**
+     * Gives a player the tasks with the given titles again, as recorded in the journal.
+     * Titles that are no longer in the pool are skipped.
+     */
+    public List<Task> restoreTasks(Player player, List<String> titles) {
+        List<Task> restoredTasks = new ArrayList<>();
+        for (String title : titles) {
+            taskPool.stream()
+                    .filter(task -> task.getTitle().equals(title))
+                    .findFirst()
+                    .ifPresent(task -> restoredTasks.add(cloneTask(task)));
+        }
+        totalTasksAssigned.addAndGet(restoredTasks.size());
+        player.assignTasks(restoredTasks);
+        return restoredTasks;
+    }
+    
     /**
      * Gets a random task from a list.
      */
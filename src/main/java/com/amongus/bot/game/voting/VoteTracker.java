@@ -1,160 +1,269 @@
 package com.amongus.bot.game.voting;
 
-import java.util.*;
+import com.amongus.bot.models.Config;
+
+import java.util.Arrays;
 
 /**
  * Tracks votes during the discussion phase.
+ * Every voter gets a dense slot index on registration; votes and counts are kept in int arrays
+ * indexed by slot, with one extra slot for skipping. The leader and the tie state are updated
+ * on every vote, so casting a vote and reading the result never allocate.
+ * <p>
+ * Not thread-safe: a tracker belongs to one discussion and is only used from its lobby's mailbox.
  */
 public class VoteTracker {
-    
-    // Maps voter ID to vote
-    private final Map<String, Vote> votes;
-    
-    // List of all voters (with name for display purposes)
-    private final Map<String, String> voters;
-    
+
+    /**
+     * Target ID of a skip vote.
+     */
+    public static final long SKIP = 0L;
+
+    /**
+     * Returned when there is no vote or no single leader.
+     */
+    public static final long NONE = -1L;
+
+    private static final int NO_SLOT = -1;
+
+    // User IDs of the voters by slot; voters are also the only valid targets
+    private long[] voterIds;
+    private int voterCount = 0;
+
+    // Target slot chosen by each voter slot, or NO_SLOT
+    private int[] choices;
+
+    // Votes received by each target slot; the slot after the last voter counts skips
+    private int[] counts;
+
+    private int votedCount = 0;
+    private int leaderSlot = NO_SLOT;
+    private int leaderVotes = 0;
+    private boolean tie = false;
+
     public VoteTracker() {
-        this.votes = new HashMap<>();
-        this.voters = new HashMap<>();
+        this(Config.MAX_PLAYERS);
     }
-    
+
     /**
-     * Adds a voter to the tracker.
-     * 
-     * @param voterId The ID of the voter
-     * @param voterName The name of the voter for display
+     * Creates a tracker for the expected number of voters. More voters may still be added.
      */
-    public void addVoter(long voterId, String voterName) {
-        this.voters.put(String.valueOf(voterId), voterName);
+    public VoteTracker(int expectedVoters) {
+        int capacity = Math.max(1, expectedVoters);
+        this.voterIds = new long[capacity];
+        this.choices = new int[capacity];
+        this.counts = new int[capacity + 1];
     }
-    
+
     /**
-     * Records a vote from a voter to a target.
-     * 
+     * Adds a voter to the tracker. Voters can only be added before the first vote.
+     *
      * @param voterId The ID of the voter
-     * @param targetId The ID of the target (can be "skip" for skipping)
-     * @return true if the vote was recorded, false if the voter is not eligible
+     * @return The slot of the voter
      */
-    public boolean vote(long voterId, String targetId) {
-        String voterIdStr = String.valueOf(voterId);
-        
-        if (!voters.containsKey(voterIdStr)) {
+    public int addVoter(long voterId) {
+        int existing = slotOf(voterId);
+        if (existing != NO_SLOT) {
+            return existing;
+        }
+        if (votedCount > 0) {
+            throw new IllegalStateException("Voters cannot be added after voting has started");
+        }
+        if (voterCount == voterIds.length) {
+            int capacity = voterIds.length * 2;
+            voterIds = Arrays.copyOf(voterIds, capacity);
+            choices = Arrays.copyOf(choices, capacity);
+            counts = new int[capacity + 1];
+        }
+        voterIds[voterCount] = voterId;
+        choices[voterCount] = NO_SLOT;
+        return voterCount++;
+    }
+
+    /**
+     * Records a vote from a voter to a target, replacing any earlier vote of the voter.
+     *
+     * @param voterId  The ID of the voter
+     * @param targetId The ID of the target, or {@link #SKIP} for skipping
+     * @return true if the vote was recorded, false if the voter is not eligible or the target is unknown
+     */
+    public boolean vote(long voterId, long targetId) {
+        int voter = slotOf(voterId);
+        if (voter == NO_SLOT) {
+            return false;
+        }
+        int target = targetId == SKIP ? skipSlot() : slotOf(targetId);
+        if (target == NO_SLOT) {
             return false;
         }
-        
-        String voterName = voters.get(voterIdStr);
-        Vote vote = new Vote(voterIdStr, voterName, targetId);
-        votes.put(voterIdStr, vote);
+
+        int previous = choices[voter];
+        if (previous == target) {
+            return true;
+        }
+        if (previous == NO_SLOT) {
+            votedCount++;
+        } else {
+            retract(previous);
+        }
+        choices[voter] = target;
+        add(target);
         return true;
     }
-    
+
+    private void add(int target) {
+        int votes = ++counts[target];
+        if (votes > leaderVotes) {
+            leaderVotes = votes;
+            leaderSlot = target;
+            tie = false;
+        } else if (votes == leaderVotes && target != leaderSlot) {
+            tie = true;
+        }
+    }
+
+    private void retract(int target) {
+        int votes = counts[target]--;
+        if (votes < leaderVotes) {
+            // Only a slot at the top can change the leader or the tie
+            return;
+        }
+        // A slot at the top lost a vote: rescan the few slots for the new top
+        leaderVotes = 0;
+        leaderSlot = NO_SLOT;
+        tie = false;
+        for (int slot = 0; slot <= voterCount; slot++) {
+            int count = slot == voterCount ? counts[skipSlot()] : counts[slot];
+            if (count > leaderVotes) {
+                leaderVotes = count;
+                leaderSlot = slot == voterCount ? skipSlot() : slot;
+                tie = false;
+            } else if (count == leaderVotes && count > 0) {
+                tie = true;
+            }
+        }
+    }
+
     /**
      * Checks if everyone has voted.
-     * 
+     *
      * @return true if all registered voters have voted
      */
     public boolean hasEveryoneVoted() {
-        return votes.size() >= voters.size();
+        return votedCount >= voterCount;
     }
-    
+
     /**
-     * Gets a list of voters who have not yet voted.
-     * 
-     * @return List of voter IDs who haven't voted
+     * Gets the number of voters who have voted.
      */
-    public List<String> getNonVoters() {
-        List<String> nonVoters = new ArrayList<>();
-        
-        for (String voterId : voters.keySet()) {
-            if (!votes.containsKey(voterId)) {
-                nonVoters.add(voterId);
-            }
-        }
-        
-        return nonVoters;
+    public int getVotedCount() {
+        return votedCount;
     }
-    
+
     /**
-     * Gets the vote counts for each target.
-     * 
-     * @return Map of target ID to vote count
+     * Gets the number of registered voters, which is also the number of slots.
      */
-    public Map<String, Integer> getVoteCounts() {
-        Map<String, Integer> voteCounts = new HashMap<>();
-        
-        for (Vote vote : votes.values()) {
-            String targetId = vote.getTargetId();
-            voteCounts.put(targetId, voteCounts.getOrDefault(targetId, 0) + 1);
-        }
-        
-        return voteCounts;
+    public int getVoterCount() {
+        return voterCount;
     }
-    
+
     /**
-     * Gets the player with the most votes.
-     * 
-     * @return ID of the most voted player, or null if there's a tie
+     * Gets the user ID of the voter in a slot.
      */
-    public String getMostVotedPlayer() {
-        Map<String, Integer> voteCounts = getVoteCounts();
-        
-        if (voteCounts.isEmpty()) {
-            return null;
-        }
-        
-        // Find the maximum vote count
-        int maxVotes = Collections.max(voteCounts.values());
-        
-        // Find all players with the maximum vote count
-        List<String> mostVotedPlayers = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : voteCounts.entrySet()) {
-            if (entry.getValue() == maxVotes) {
-                mostVotedPlayers.add(entry.getKey());
-            }
-        }
-        
-        // If there's a tie, return null
-        if (mostVotedPlayers.size() > 1) {
-            return null;
+    public long getVoterId(int slot) {
+        return voterIds[slot];
+    }
+
+    /**
+     * Checks if the voter in a slot has voted.
+     */
+    public boolean hasVoted(int slot) {
+        return choices[slot] != NO_SLOT;
+    }
+
+    /**
+     * Gets the number of votes against the voter in a slot.
+     */
+    public int getVotesAt(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * Gets the number of votes against a player.
+     */
+    public int getVotes(long targetId) {
+        int slot = slotOf(targetId);
+        return slot == NO_SLOT ? 0 : counts[slot];
+    }
+
+    public int getSkipVotes() {
+        return counts[skipSlot()];
+    }
+
+    public int getTotalVotes() {
+        return votedCount;
+    }
+
+    /**
+     * Gets the target with the most votes.
+     *
+     * @return ID of the most voted player, {@link #SKIP} if skipping leads,
+     *         or {@link #NONE} if there are no votes or there's a tie
+     */
+    public long getMostVoted() {
+        if (leaderSlot == NO_SLOT || tie) {
+            return NONE;
         }
-        
-        return mostVotedPlayers.get(0);
+        return leaderSlot == skipSlot() ? SKIP : voterIds[leaderSlot];
     }
-    
+
     /**
-     * Gets the vote of a specific voter.
-     * 
-     * @param voterId The ID of the voter
-     * @return The vote cast by the voter, or null if they haven't voted
+     * Checks if two or more targets share the most votes.
      */
-    public Vote getVote(long voterId) {
-        return votes.get(String.valueOf(voterId));
+    public boolean isTie() {
+        return tie;
     }
-    
+
     /**
      * Gets the target ID voted for by a specific voter.
-     * 
+     *
      * @param voterId The ID of the voter
-     * @return The ID of the target they voted for, or null if they haven't voted
+     * @return The ID of the target, {@link #SKIP}, or {@link #NONE} if they haven't voted
      */
-    public String getVoteTargetId(long voterId) {
-        Vote vote = getVote(voterId);
-        return vote != null ? vote.getTargetId() : null;
+    public long getVoteTargetId(long voterId) {
+        int voter = slotOf(voterId);
+        if (voter == NO_SLOT || choices[voter] == NO_SLOT) {
+            return NONE;
+        }
+        int target = choices[voter];
+        return target == skipSlot() ? SKIP : voterIds[target];
     }
-    
+
     /**
-     * Gets all votes.
-     * 
-     * @return Collection of all votes
+     * Clears all votes, keeping the registered voters.
      */
-    public Collection<Vote> getAllVotes() {
-        return votes.values();
+    public void clearVotes() {
+        Arrays.fill(choices, 0, voterCount, NO_SLOT);
+        Arrays.fill(counts, 0);
+        votedCount = 0;
+        leaderSlot = NO_SLOT;
+        leaderVotes = 0;
+        tie = false;
+    }
+
+    private int skipSlot() {
+        return counts.length - 1;
     }
-    
+
     /**
-     * Clears all votes.
+     * Finds the slot of a user. A linear scan beats hashing for the handful of players in a game.
      */
-    public void clearVotes() {
-        votes.clear();
+    private int slotOf(long userId) {
+        for (int slot = 0; slot < voterCount; slot++) {
+            if (voterIds[slot] == userId) {
+                return slot;
+            }
+        }
+        return NO_SLOT;
     }
-} 
\ No newline at end of file
+}
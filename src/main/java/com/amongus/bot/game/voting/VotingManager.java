@@ -1,9 +1,9 @@
 package com.amongus.bot.game.voting;
 
-import com.amongus.bot.core.AmongUsBot;
 import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.models.CallbackAction;
 import com.amongus.bot.models.Player;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import com.amongus.bot.utils.CallbackCodec;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
@@ -50,6 +50,15 @@ public class VotingManager {
         return Math.max(0, votingDurationMs - elapsedTime);
     }
     
+    /**
+     * Gets the wall-clock time in milliseconds at which voting ends.
+     *
+     * @return The end of the voting phase in milliseconds
+     */
+    public long getVotingEndTimeMs() {
+        return votingStartTime + votingDurationMs;
+    }
+    
     /**
      * Gets the remaining voting time in seconds.
      *
@@ -67,7 +76,7 @@ public class VotingManager {
     public void registerVoters(GameSession gameSession) {
         for (Player player : gameSession.getPlayers()) {
             if (player.isAlive()) {
-                voteTracker.addVoter(player.getUserId(), player.getDisplayName());
+                voteTracker.addVoter(player.getUserId());
             }
         }
     }
@@ -76,10 +85,10 @@ public class VotingManager {
      * Records a vote from a player.
      *
      * @param voterId  The ID of the voter
-     * @param targetId The ID of the target
+     * @param targetId The ID of the target, or {@link VoteTracker#SKIP} for skipping
      * @return true if the vote was recorded, false otherwise
      */
-    public boolean castVote(long voterId, String targetId) {
+    public boolean castVote(long voterId, long targetId) {
         return voteTracker.vote(voterId, targetId);
     }
     
@@ -112,18 +121,19 @@ public class VotingManager {
      * Creates a voting keyboard for a player.
      *
      * @param gameSession The game session
-     * @param voter       The player who is voting
+     * @param voter       The player who is voting, or null for a shared keyboard in a group chat
      * @return The voting keyboard
      */
     public InlineKeyboardMarkup createVotingKeyboard(GameSession gameSession, Player voter) {
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        long epoch = gameSession.getCallbackEpoch(CallbackAction.Scope.MEETING);
         
         // Add button for each living player except the voter
         for (Player player : gameSession.getPlayers()) {
-            if (player.isAlive() && player.getUserId() != voter.getUserId()) {
+            if (player.isAlive() && (voter == null || player.getUserId() != voter.getUserId())) {
                 InlineKeyboardButton button = new InlineKeyboardButton();
                 button.setText(player.getDisplayName());
-                button.setCallbackData("vote_" + player.getUserId());
+                button.setCallbackData(CallbackCodec.encode(CallbackAction.VOTE, epoch, player.getUserId()));
                 
                 List<InlineKeyboardButton> row = new ArrayList<>();
                 row.add(button);
@@ -134,7 +144,7 @@ public class VotingManager {
         // Add skip vote button
         InlineKeyboardButton skipButton = new InlineKeyboardButton();
         skipButton.setText("⏭️ Пропустить");
-        skipButton.setCallbackData("vote_skip");
+        skipButton.setCallbackData(CallbackCodec.encode(CallbackAction.VOTE_SKIP, epoch));
         
         List<InlineKeyboardButton> skipRow = new ArrayList<>();
         skipRow.add(skipButton);
@@ -146,31 +156,6 @@ public class VotingManager {
         return markup;
     }
     
-    /**
-     * Starts the voting phase by sending voting keyboards to all living players.
-     *
-     * @param gameSession The game session
-     * @param bot         The bot instance
-     */
-    public void startVoting(GameSession gameSession, AmongUsBot bot) {
-        // Send voting keyboard to all living players
-        for (Player player : gameSession.getPlayers()) {
-            if (player.isAlive()) {
-                gameSession.getPlayerChatId(player.getUserId()).ifPresent(chatId -> {
-                    SendMessage voteMessage = new SendMessage();
-                    voteMessage.setChatId(chatId);
-                    voteMessage.setText("🗳️ *Голосование*\n\nВыберите игрока или пропустите:");
-                    voteMessage.enableMarkdown(true);
-                    
-                    InlineKeyboardMarkup markup = createVotingKeyboard(gameSession, player);
-                    voteMessage.setReplyMarkup(markup);
-                    
-                    bot.sendMessageSafe(voteMessage);
-                });
-            }
-        }
-    }
-    
     /**
      * Gets a formatted string with voting results.
      *
@@ -178,72 +163,50 @@ public class VotingManager {
      * @return The formatted voting results
      */
     public String getFormattedVotingResults(GameSession gameSession) {
-        Map<String, Integer> voteCount = voteTracker.getVoteCounts();
-        List<Player> players = gameSession.getPlayers();
-        
         StringBuilder sb = new StringBuilder();
         sb.append("📊 *Результаты голосования:*\n\n");
         
-        for (Map.Entry<String, Integer> entry : voteCount.entrySet()) {
-            String targetId = entry.getKey();
-            int count = entry.getValue();
-            
-            if (targetId.equals("skip")) {
-                sb.append("⏭️ *Пропуск*: ").append(count).append(" голосов\n");
-            } else {
-                try {
-                    long id = Long.parseLong(targetId);
-                    Optional<Player> targetPlayerOpt = gameSession.getPlayer(id);
-                    if (targetPlayerOpt.isPresent()) {
-                        sb.append("*").append(targetPlayerOpt.get().getDisplayName())
-                          .append("*: ").append(count).append(" голосов\n");
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip invalid entries
-                }
+        for (int slot = 0; slot < voteTracker.getVoterCount(); slot++) {
+            int count = voteTracker.getVotesAt(slot);
+            if (count > 0) {
+                gameSession.getPlayer(voteTracker.getVoterId(slot)).ifPresent(target ->
+                        sb.append("*").append(target.getDisplayName())
+                          .append("*: ").append(count).append(" голосов\n"));
             }
         }
+        if (voteTracker.getSkipVotes() > 0) {
+            sb.append("⏭️ *Пропуск*: ").append(voteTracker.getSkipVotes()).append(" голосов\n");
+        }
         
         // List players who didn't vote
-        List<String> nonVoters = voteTracker.getNonVoters();
-        if (!nonVoters.isEmpty()) {
+        if (!voteTracker.hasEveryoneVoted()) {
             sb.append("\n⚠️ *Не проголосовали:*\n");
-            for (String voterId : nonVoters) {
-                try {
-                    long id = Long.parseLong(voterId);
-                    Optional<Player> playerOpt = gameSession.getPlayer(id);
-                    if (playerOpt.isPresent()) {
-                        sb.append("- ").append(playerOpt.get().getDisplayName()).append("\n");
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip invalid entries
+            for (int slot = 0; slot < voteTracker.getVoterCount(); slot++) {
+                if (!voteTracker.hasVoted(slot)) {
+                    gameSession.getPlayer(voteTracker.getVoterId(slot)).ifPresent(player ->
+                            sb.append("- ").append(player.getDisplayName()).append("\n"));
                 }
             }
         }
         
         // Add the player with most votes (if any)
-        String mostVotedId = voteTracker.getMostVotedPlayer();
-        if (mostVotedId != null && !mostVotedId.equals("skip")) {
-            try {
-                long id = Long.parseLong(mostVotedId);
-                Optional<Player> ejectedPlayerOpt = gameSession.getPlayer(id);
-                if (ejectedPlayerOpt.isPresent()) {
-                    Player ejectedPlayer = ejectedPlayerOpt.get();
-                    sb.append("\n🚀 *").append(ejectedPlayer.getDisplayName())
-                      .append("* был(а) выброшен(а) с корабля!");
-                    
-                    // Reveal role
-                    sb.append("\nРоль: ").append(ejectedPlayer.getRole().isImpostor() ? "Импостер! 😈" : "Член экипажа 👨‍🚀");
-                }
-            } catch (NumberFormatException e) {
-                // Skip invalid entries
-            }
-        } else if (mostVotedId != null && mostVotedId.equals("skip")) {
+        long mostVotedId = voteTracker.getMostVoted();
+        if (mostVotedId == VoteTracker.SKIP) {
             sb.append("\n⏭️ *Никто не был выброшен с корабля.*");
+        } else if (mostVotedId != VoteTracker.NONE) {
+            Optional<Player> ejectedPlayerOpt = gameSession.getPlayer(mostVotedId);
+            if (ejectedPlayerOpt.isPresent()) {
+                Player ejectedPlayer = ejectedPlayerOpt.get();
+                sb.append("\n🚀 *").append(ejectedPlayer.getDisplayName())
+                  .append("* был(а) выброшен(а) с корабля!");
+                
+                // Reveal role
+                sb.append("\nРоль: ").append(ejectedPlayer.getRole().isImpostor() ? "Импостер! 😈" : "Член экипажа 👨‍🚀");
+            }
         } else {
             sb.append("\n⚖️ *Ничья в голосовании. Никто не был выброшен с корабля.*");
         }
         
         return sb.toString();
     }
-} 
\ No newline at end of file
+}
@@ -2,40 +2,31 @@ package com.amongus.bot.game.voting;
 
 import com.amongus.bot.models.Player;
 
-import java.util.Map;
-import java.util.Optional;
+import java.util.OptionalLong;
 
 /**
  * Encapsulates the results of voting.
  */
 public class VotingResults {
     
-    private final Map<String, Integer> voteCounts;
-    private final String mostVotedPlayerId;
+    private final VoteTracker voteTracker;
+    private final long mostVotedPlayerId;
     private final boolean isTie;
     private final boolean isSkip;
     private final int totalVotes;
     
     /**
      * Creates a new voting results instance.
+     * The results read the counts from the tracker, so it must not receive further votes.
      *
      * @param voteTracker The vote tracker with votes
      */
     public VotingResults(VoteTracker voteTracker) {
-        this.voteCounts = voteTracker.getVoteCounts();
-        this.mostVotedPlayerId = voteTracker.getMostVotedPlayer();
-        this.isTie = mostVotedPlayerId == null;
-        this.isSkip = mostVotedPlayerId != null && mostVotedPlayerId.equals("skip");
-        this.totalVotes = voteCounts.values().stream().mapToInt(Integer::intValue).sum();
-    }
-    
-    /**
-     * Gets the vote counts for each target.
-     *
-     * @return The vote counts map
-     */
-    public Map<String, Integer> getVoteCounts() {
-        return voteCounts;
+        this.voteTracker = voteTracker;
+        this.mostVotedPlayerId = voteTracker.getMostVoted();
+        this.isTie = mostVotedPlayerId == VoteTracker.NONE;
+        this.isSkip = mostVotedPlayerId == VoteTracker.SKIP;
+        this.totalVotes = voteTracker.getTotalVotes();
     }
     
     /**
@@ -43,11 +34,11 @@ public class VotingResults {
      *
      * @return The ID of the most voted player, or empty if there's a tie or skip
      */
-    public Optional<String> getMostVotedPlayerId() {
+    public OptionalLong getMostVotedPlayerId() {
         if (isTie || isSkip) {
-            return Optional.empty();
+            return OptionalLong.empty();
         }
-        return Optional.ofNullable(mostVotedPlayerId);
+        return OptionalLong.of(mostVotedPlayerId);
     }
     
     /**
@@ -93,7 +84,7 @@ public class VotingResults {
      * @return The number of votes for the player
      */
     public int getVotesForPlayer(Player player) {
-        return voteCounts.getOrDefault(String.valueOf(player.getUserId()), 0);
+        return voteTracker.getVotes(player.getUserId());
     }
     
     /**
@@ -102,6 +93,6 @@ public class VotingResults {
      * @return The number of skip votes
      */
     public int getSkipVotes() {
-        return voteCounts.getOrDefault("skip", 0);
+        return voteTracker.getSkipVotes();
     }
-} 
\ No newline at end of file
+}
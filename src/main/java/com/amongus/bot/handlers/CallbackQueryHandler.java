@@ -1,21 +1,24 @@
 package com.amongus.bot.handlers;
 
 import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.core.PlayerRecord;
 import com.amongus.bot.core.SessionManager;
 import com.amongus.bot.game.lobby.GameLobby;
 import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.CallbackData;
 import com.amongus.bot.models.Config;
+import com.amongus.bot.models.GameSettings;
 import com.amongus.bot.models.Player;
+import com.amongus.bot.utils.CallbackCodec;
 import com.amongus.bot.utils.SecurityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,6 +34,9 @@ public class CallbackQueryHandler {
     private final SessionManager sessionManager;
     private final SecurityManager securityManager;
 
+    // Handler of every callback action, indexed by the action's ordinal
+    private final CallbackRoute[] routes = new CallbackRoute[CallbackAction.values().length];
+
     /**
      * Creates a new callback query handler.
      */
@@ -38,22 +44,27 @@ public class CallbackQueryHandler {
         this.bot = bot;
         this.sessionManager = sessionManager;
         this.securityManager = securityManager;
+
+        for (CallbackAction action : CallbackAction.values()) {
+            // Lobby buttons are handled here, everything else by the current state of the game
+            routes[action.ordinal()] = action.getScope() == CallbackAction.Scope.LOBBY
+                    ? this::handleLobbyCallback
+                    : this::forwardToSession;
+        }
     }
 
     /**
      * Handles a callback query from an inline keyboard button.
+     * The callback data is decoded once, checked against the epoch of the player's session
+     * and routed by its action.
      */
     public void handleCallbackQuery(CallbackQuery callbackQuery) {
         String callbackData = callbackQuery.getData();
         long userId = callbackQuery.getFrom().getId();
         String queryId = callbackQuery.getId();
-        String chatId = callbackQuery.getMessage().getChatId().toString();
 
         log.debug("Received callback query from user {}: {}", userId, callbackData);
 
-        // First, we should acknowledge the callback query to stop the loading indicator
-        acknowledgeCallbackQuery(queryId);
-
         // Check if the user is authorized to perform actions
         if (!securityManager.isUserAuthorized(userId)) {
             log.warn("Unauthorized user {} attempted to use callback query", userId);
@@ -61,213 +72,114 @@ public class CallbackQueryHandler {
             return;
         }
 
-        // Сначала проверяем, находится ли пользователь в лобби
-        Optional<GameLobby> lobbyOpt = sessionManager.getLobbyForPlayer(userId);
-        if (lobbyOpt.isPresent()) {
-            GameLobby lobby = lobbyOpt.get();
+        CallbackData data = CallbackCodec.decode(callbackData);
+        Optional<PlayerRecord> recordOpt = sessionManager.getPlayerRecord(userId);
+        GameSession session = recordOpt.map(PlayerRecord::getSession).orElse(null);
 
-            // Обработка коллбэков лобби
-            handleLobbyCallback(callbackQuery, lobby);
+        // Кнопки прошлых игр и собраний, а также кнопки в старом формате больше не действуют
+        if (data == null || session == null
+                || data.getEpoch() != session.getCallbackEpoch(data.getAction().getScope())) {
+            log.debug("Rejected stale callback query from user {}: {}", userId, data);
+            sendCallbackResponse(queryId, "⌛ Эта кнопка устарела.");
             return;
         }
 
-        // Затем проверяем, находится ли пользователь в игровой сессии
-        Optional<GameSession> gameSessionOpt = sessionManager.getSessionForPlayer(userId);
-        if (gameSessionOpt.isPresent()) {
-            GameSession gameSession = gameSessionOpt.get();
-            // Let the game session handle the callback query based on the current state
-            gameSession.handleCallbackQuery(bot, callbackQuery);
-        } else {
-            // Handle general callback queries (not related to an active game)
-            handleGeneralCallbackQuery(callbackQuery);
+        // Acknowledge the callback query to stop the loading indicator
+        acknowledgeCallbackQuery(queryId);
+
+        routes[data.getAction().ordinal()].handle(callbackQuery, data, recordOpt.get());
+    }
+
+    /**
+     * Passes a game or meeting button to the current state of the player's game session.
+     */
+    private void forwardToSession(CallbackQuery callbackQuery, CallbackData data, PlayerRecord record) {
+        GameSession gameSession = record.getSession();
+        if (gameSession != null) {
+            gameSession.handleCallbackQuery(bot, callbackQuery, data);
         }
     }
 
     /**
      * Обрабатывает callback-запросы от игроков в лобби
      */
-    private void handleLobbyCallback(CallbackQuery callbackQuery, GameLobby lobby) {
-        String data = callbackQuery.getData();
+    private void handleLobbyCallback(CallbackQuery callbackQuery, CallbackData data, PlayerRecord record) {
+        GameLobby lobby = record.getLobby();
+        lobby.recordActivity();
         long userId = callbackQuery.getFrom().getId();
         String chatId = callbackQuery.getMessage().getChatId().toString();
 
-        if (data.equals("ready")) {
-            Optional<Player> playerOpt = lobby.getPlayer(userId);
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
-
-                if (!player.isReady()) {
-                    // Отмечаем игрока как готового
-                    player.setReady(true);
-                    bot.sendTextMessageSafe(chatId, "✅ Вы отмечены как готовый к игре!");
-
-                    // Обновляем статус всех игроков
-                    for (Player p : lobby.getPlayers()) {
-                        updatePlayerStatus(lobby, p);
-                    }
-
-                    // Проверяем, готовы ли все игроки начать игру
-                    if (lobby.areAllPlayersReady() && lobby.getPlayers().size() >= Config.MIN_PLAYERS) {
-                        // Начинаем игру
-                        for (Player p : lobby.getPlayers()) {
-                            String pChatId = sessionManager.getPlayerChatId(p.getUserId());
-                            if (pChatId != null) {
-                                bot.sendTextMessageSafe(pChatId, "🚀 Все игроки готовы! Игра начинается...");
+        switch (data.getAction()) {
+            case READY: {
+                Optional<Player> playerOpt = lobby.getPlayer(userId);
+                if (playerOpt.isPresent()) {
+                    Player player = playerOpt.get();
+
+                    if (!player.isReady()) {
+                        // Отмечаем игрока как готового
+                        player.setReady(true);
+                        bot.sendTextMessageSafe(chatId, "✅ Вы отмечены как готовый к игре!");
+
+                        // Обновляем статус всех игроков
+                        bot.getLobbyStatusBoard().invalidate(lobby.getLobbyCode());
+
+                        // Проверяем, готовы ли все игроки начать игру
+                        if (lobby.areAllPlayersReady() && lobby.getPlayers().size() >= Config.MIN_PLAYERS) {
+                            // Начинаем игру
+                            for (Player p : lobby.getPlayers()) {
+                                String pChatId = sessionManager.getPlayerChatId(p.getUserId());
+                                if (pChatId != null) {
+                                    bot.sendTextMessageSafe(pChatId, "🚀 Все игроки готовы! Игра начинается...");
+                                }
                             }
+                            sessionManager.startGame(lobby.getLobbyCode(), bot);
                         }
-                        sessionManager.startGame(lobby.getLobbyCode(), bot);
+                    } else {
+                        bot.sendTextMessageSafe(chatId, "✅ Вы уже отмечены как готовый к игре!");
                     }
-                } else {
-                    bot.sendTextMessageSafe(chatId, "✅ Вы уже отмечены как готовый к игре!");
                 }
+                break;
             }
-        } else if (data.equals("settings")) {
-            if (lobby.isOwner(userId)) {
-                SendMessage settingsMessage = new SendMessage();
-                settingsMessage.setChatId(chatId);
-                settingsMessage.setText(lobby.getSettings().getFormattedSettings());
-                settingsMessage.enableMarkdown(true);
-                settingsMessage.setReplyMarkup(createSettingsKeyboard(lobby));
-                bot.sendMessageSafe(settingsMessage);
-            } else {
-                bot.sendTextMessageSafe(chatId, "❌ Только владелец лобби может изменять настройки.");
-            }
-        } else if (data.equals("start_game")) {
-            if (lobby.isOwner(userId)) {
-                if (lobby.getPlayers().size() < Config.MIN_PLAYERS) {
-                    bot.sendTextMessageSafe(chatId, "❌ Недостаточно игроков для начала игры. Минимальное количество: " + Config.MIN_PLAYERS);
-                    return;
-                }
-                if (lobby.isGameStarted()) {
-                    bot.sendTextMessageSafe(chatId, "Игра уже запущена!");
-                    return;
-                }
-                // Получаем или создаём GameSession
-                Optional<GameSession> sessionOpt = sessionManager.getSessionByLobbyCode(lobby.getLobbyCode());
-                GameSession session;
-                if (sessionOpt.isPresent()) {
-                    session = sessionOpt.get();
+            case SETTINGS:
+                if (lobby.isOwner(userId)) {
+                    SendMessage settingsMessage = new SendMessage();
+                    settingsMessage.setChatId(chatId);
+                    settingsMessage.setText(lobby.getSettings().getFormattedSettings());
+                    settingsMessage.enableMarkdown(true);
+                    settingsMessage.setReplyMarkup(createSettingsKeyboard(lobby));
+                    bot.sendMessageSafe(settingsMessage);
                 } else {
-                    session = new GameSession(lobby.getLobbyCode(), lobby.getOwner(), bot.getScheduler(), bot.getSecurityManager());
-                    for (Player p : lobby.getPlayers()) session.addPlayer(p);
-                    sessionManager.getActiveSessions().put(lobby.getLobbyCode(), session);
+                    bot.sendTextMessageSafe(chatId, "❌ Только владелец лобби может изменять настройки.");
                 }
-                session.startGame(bot);
-                lobby.setGameStarted(true);
-                for (Player p : lobby.getPlayers()) {
-                    String pChatId = sessionManager.getPlayerChatId(p.getUserId());
-                    if (pChatId != null) {
-                        log.info("Sending start message to {}", pChatId);
-                        bot.sendTextMessageSafe(pChatId, "🚀 Игра началась! Проверьте вашу роль в личных сообщениях.");
-                        log.info("Sent start message to {}", pChatId);
+                break;
+            case START_GAME:
+                if (lobby.isOwner(userId)) {
+                    if (lobby.getPlayers().size() < Config.MIN_PLAYERS) {
+                        bot.sendTextMessageSafe(chatId, "❌ Недостаточно игроков для начала игры. Минимальное количество: " + Config.MIN_PLAYERS);
+                        return;
                     }
-                }
-            } else {
-                bot.sendTextMessageSafe(chatId, "❌ Только владелец лобби может запустить игру.");
-            }
-    } else if (data.startsWith("settings_")) {
-            handleSettingsCallback(lobby, callbackQuery, data);
-        }
-    }
-
-    /**
-     * Обновляет статус игрока в лобби
-     */
-    private void updatePlayerStatus(GameLobby lobby, Player player) {
-        String chatId = sessionManager.getPlayerChatId(player.getUserId());
-        if (chatId == null) {
-            return;
-        }
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("👥 *Игроки* (").append(lobby.getPlayers().size()).append("/").append(Config.MAX_PLAYERS).append("):\n");
-        for (Player p : lobby.getPlayers()) {
-            String readyStatus = p.isReady() ? "✅" : "⬜";
-            String ownerLabel = lobby.isOwner(p.getUserId()) ? " 👑" : "";
-            sb.append(readyStatus).append(" ")
-                    .append(p.getDisplayName())
-                    .append(ownerLabel)
-                    .append("\n");
-        }
-
-        // Получаем текущий ID сообщения из лобби
-        Integer statusMessageId = lobby.getStatusMessageId(player.getUserId());
-
-        // Создаем клавиатуру
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-
-        // Кнопка "Готов" если игрок не готов
-        if (!player.isReady()) {
-            List<InlineKeyboardButton> readyRow = new ArrayList<>();
-            InlineKeyboardButton readyButton = new InlineKeyboardButton();
-            readyButton.setText("Готов");
-            readyButton.setCallbackData("ready");
-            readyRow.add(readyButton);
-            keyboard.add(readyRow);
-        }
-
-        // Если игрок - владелец, добавляем кнопки настроек и запуска игры
-        if (lobby.isOwner(player.getUserId())) {
-            // Кнопка настроек
-            List<InlineKeyboardButton> settingsRow = new ArrayList<>();
-            InlineKeyboardButton settingsButton = new InlineKeyboardButton();
-            settingsButton.setText("⚙️ Настройки");
-            settingsButton.setCallbackData("settings");
-            settingsRow.add(settingsButton);
-            keyboard.add(settingsRow);
-
-            // Кнопка запуска игры
-            List<InlineKeyboardButton> startGameRow = new ArrayList<>();
-            InlineKeyboardButton startGameButton = new InlineKeyboardButton();
-            startGameButton.setText("🚀 Начать игру");
-            startGameButton.setCallbackData("start_game");
-            startGameRow.add(startGameButton);
-            keyboard.add(startGameRow);
-        }
-
-        markup.setKeyboard(keyboard);
-
-        // Если ни одна кнопка не добавлена, установим null для клавиатуры
-        if (keyboard.isEmpty()) {
-            markup = null;
-        }
-
-        try {
-            if (statusMessageId != null) {
-                // Редактируем существующее сообщение
-                try {
-                    EditMessageText editMessage = new EditMessageText();
-                    editMessage.setChatId(chatId);
-                    editMessage.setMessageId(statusMessageId);
-                    editMessage.setText(sb.toString());
-                    editMessage.enableMarkdown(true);
-                    editMessage.setReplyMarkup(markup);
-                    bot.execute(editMessage);
-                } catch (TelegramApiException e) {
-                    // Если редактирование не удалось, отправляем новое сообщение
-                    Integer newMessageId = markup != null
-                            ? bot.sendMessageWithReturnIdSafe(chatId, sb.toString(), markup)
-                            : bot.sendTextMessageWithReturnIdSafe(chatId, sb.toString());
-                    if (newMessageId != null) {
-                        lobby.setStatusMessageId(player.getUserId(), newMessageId);
+                    if (!sessionManager.startGame(lobby.getLobbyCode(), bot)) {
+                        bot.sendTextMessageSafe(chatId, "Игра уже запущена!");
+                        return;
                     }
+                    for (Player p : lobby.getPlayers()) {
+                        String pChatId = sessionManager.getPlayerChatId(p.getUserId());
+                        if (pChatId != null) {
+                            log.info("Sending start message to {}", pChatId);
+                            bot.sendTextMessageSafe(pChatId, "🚀 Игра началась! Проверьте вашу роль в личных сообщениях.");
+                            log.info("Sent start message to {}", pChatId);
+                        }
+                    }
+                } else {
+                    bot.sendTextMessageSafe(chatId, "❌ Только владелец лобби может запустить игру.");
                 }
-            } else {
-                // Отправляем новое сообщение и сохраняем его ID
-                Integer newMessageId = markup != null
-                        ? bot.sendMessageWithReturnIdSafe(chatId, sb.toString(), markup)
-                        : bot.sendTextMessageWithReturnIdSafe(chatId, sb.toString());
-                if (newMessageId != null) {
-                    lobby.setStatusMessageId(player.getUserId(), newMessageId);
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error updating player status: " + e.getMessage(), e);
+                break;
+            default:
+                handleSettingsCallback(lobby, callbackQuery, data);
+                break;
         }
     }
 
-
     /**
      * Создает клавиатуру настроек для лобби
      */
@@ -279,17 +191,17 @@ public class CallbackQueryHandler {
         List<InlineKeyboardButton> impostorRow = new ArrayList<>();
         InlineKeyboardButton impostorMinus = new InlineKeyboardButton();
         impostorMinus.setText("➖");
-        impostorMinus.setCallbackData("settings_impostor_minus");
+        impostorMinus.setCallbackData(callback(lobby, CallbackAction.SETTING_DECREASE, GameSettings.Adjustable.IMPOSTOR_COUNT.ordinal()));
         impostorRow.add(impostorMinus);
 
         InlineKeyboardButton impostorCount = new InlineKeyboardButton();
         impostorCount.setText("Импостеры: " + lobby.getSettings().getImpostorCount() + " →");
-        impostorCount.setCallbackData("settings_next");
+        impostorCount.setCallbackData(callback(lobby, CallbackAction.SETTINGS_REFRESH));
         impostorRow.add(impostorCount);
 
         InlineKeyboardButton impostorPlus = new InlineKeyboardButton();
         impostorPlus.setText("➕");
-        impostorPlus.setCallbackData("settings_impostor_plus");
+        impostorPlus.setCallbackData(callback(lobby, CallbackAction.SETTING_INCREASE, GameSettings.Adjustable.IMPOSTOR_COUNT.ordinal()));
         impostorRow.add(impostorPlus);
         keyboard.add(impostorRow);
 
@@ -297,17 +209,17 @@ public class CallbackQueryHandler {
         List<InlineKeyboardButton> discussionRow = new ArrayList<>();
         InlineKeyboardButton discussionMinus = new InlineKeyboardButton();
         discussionMinus.setText("➖");
-        discussionMinus.setCallbackData("settings_discussion_minus");
+        discussionMinus.setCallbackData(callback(lobby, CallbackAction.SETTING_DECREASE, GameSettings.Adjustable.DISCUSSION_TIME.ordinal()));
         discussionRow.add(discussionMinus);
 
         InlineKeyboardButton discussionTime = new InlineKeyboardButton();
         discussionTime.setText("Обсуждение: " + lobby.getSettings().getDiscussionTimeSeconds() + "с");
-        discussionTime.setCallbackData("settings_discussion_info");
+        discussionTime.setCallbackData(callback(lobby, CallbackAction.SETTINGS_INFO));
         discussionRow.add(discussionTime);
 
         InlineKeyboardButton discussionPlus = new InlineKeyboardButton();
         discussionPlus.setText("➕");
-        discussionPlus.setCallbackData("settings_discussion_plus");
+        discussionPlus.setCallbackData(callback(lobby, CallbackAction.SETTING_INCREASE, GameSettings.Adjustable.DISCUSSION_TIME.ordinal()));
         discussionRow.add(discussionPlus);
         keyboard.add(discussionRow);
 
@@ -315,17 +227,17 @@ public class CallbackQueryHandler {
         List<InlineKeyboardButton> votingRow = new ArrayList<>();
         InlineKeyboardButton votingMinus = new InlineKeyboardButton();
         votingMinus.setText("➖");
-        votingMinus.setCallbackData("settings_voting_minus");
+        votingMinus.setCallbackData(callback(lobby, CallbackAction.SETTING_DECREASE, GameSettings.Adjustable.VOTING_TIME.ordinal()));
         votingRow.add(votingMinus);
 
         InlineKeyboardButton votingTime = new InlineKeyboardButton();
         votingTime.setText("Голосование: " + lobby.getSettings().getVotingTimeSeconds() + "с");
-        votingTime.setCallbackData("settings_voting_info");
+        votingTime.setCallbackData(callback(lobby, CallbackAction.SETTINGS_INFO));
         votingRow.add(votingTime);
 
         InlineKeyboardButton votingPlus = new InlineKeyboardButton();
         votingPlus.setText("➕");
-        votingPlus.setCallbackData("settings_voting_plus");
+        votingPlus.setCallbackData(callback(lobby, CallbackAction.SETTING_INCREASE, GameSettings.Adjustable.VOTING_TIME.ordinal()));
         votingRow.add(votingPlus);
         keyboard.add(votingRow);
 
@@ -333,17 +245,17 @@ public class CallbackQueryHandler {
         List<InlineKeyboardButton> killCooldownRow = new ArrayList<>();
         InlineKeyboardButton killCooldownMinus = new InlineKeyboardButton();
         killCooldownMinus.setText("➖");
-        killCooldownMinus.setCallbackData("settings_killcooldown_minus");
+        killCooldownMinus.setCallbackData(callback(lobby, CallbackAction.SETTING_DECREASE, GameSettings.Adjustable.KILL_COOLDOWN.ordinal()));
         killCooldownRow.add(killCooldownMinus);
 
         InlineKeyboardButton killCooldown = new InlineKeyboardButton();
         killCooldown.setText("Перезарядка: " + lobby.getSettings().getKillCooldownSeconds() + "с");
-        killCooldown.setCallbackData("settings_killcooldown_info");
+        killCooldown.setCallbackData(callback(lobby, CallbackAction.SETTINGS_INFO));
         killCooldownRow.add(killCooldown);
 
         InlineKeyboardButton killCooldownPlus = new InlineKeyboardButton();
         killCooldownPlus.setText("➕");
-        killCooldownPlus.setCallbackData("settings_killcooldown_plus");
+        killCooldownPlus.setCallbackData(callback(lobby, CallbackAction.SETTING_INCREASE, GameSettings.Adjustable.KILL_COOLDOWN.ordinal()));
         killCooldownRow.add(killCooldownPlus);
         keyboard.add(killCooldownRow);
 
@@ -351,17 +263,17 @@ public class CallbackQueryHandler {
         List<InlineKeyboardButton> tasksRow = new ArrayList<>();
         InlineKeyboardButton tasksMinus = new InlineKeyboardButton();
         tasksMinus.setText("➖");
-        tasksMinus.setCallbackData("settings_tasks_minus");
+        tasksMinus.setCallbackData(callback(lobby, CallbackAction.SETTING_DECREASE, GameSettings.Adjustable.TASKS_PER_PLAYER.ordinal()));
         tasksRow.add(tasksMinus);
 
         InlineKeyboardButton tasks = new InlineKeyboardButton();
         tasks.setText("Задания: " + lobby.getSettings().getTasksPerPlayer());
-        tasks.setCallbackData("settings_tasks_info");
+        tasks.setCallbackData(callback(lobby, CallbackAction.SETTINGS_INFO));
         tasksRow.add(tasks);
 
         InlineKeyboardButton tasksPlus = new InlineKeyboardButton();
         tasksPlus.setText("➕");
-        tasksPlus.setCallbackData("settings_tasks_plus");
+        tasksPlus.setCallbackData(callback(lobby, CallbackAction.SETTING_INCREASE, GameSettings.Adjustable.TASKS_PER_PLAYER.ordinal()));
         tasksRow.add(tasksPlus);
         keyboard.add(tasksRow);
 
@@ -369,7 +281,7 @@ public class CallbackQueryHandler {
         List<InlineKeyboardButton> backRow = new ArrayList<>();
         InlineKeyboardButton backButton = new InlineKeyboardButton();
         backButton.setText("◀️ Назад");
-        backButton.setCallbackData("settings_back");
+        backButton.setCallbackData(callback(lobby, CallbackAction.SETTINGS_BACK));
         backRow.add(backButton);
         keyboard.add(backRow);
 
@@ -380,7 +292,7 @@ public class CallbackQueryHandler {
     /**
      * Обрабатывает настройки лобби
      */
-    private void handleSettingsCallback(GameLobby lobby, CallbackQuery callbackQuery, String data) {
+    private void handleSettingsCallback(GameLobby lobby, CallbackQuery callbackQuery, CallbackData data) {
         long userId = callbackQuery.getFrom().getId();
         String chatId = callbackQuery.getMessage().getChatId().toString();
 
@@ -393,168 +305,46 @@ public class CallbackQueryHandler {
         boolean settingsChanged = false;
 
         // Обработка различных настроек
-        if (data.startsWith("settings_impostor_")) {
-            if (data.equals("settings_impostor_plus")) {
-                int newValue = lobby.getSettings().getImpostorCount() + 1;
-                lobby.getSettings().setImpostorCount(newValue);
-                settingsChanged = true;
-            } else if (data.equals("settings_impostor_minus")) {
-                int newValue = lobby.getSettings().getImpostorCount() - 1;
-                lobby.getSettings().setImpostorCount(newValue);
-                settingsChanged = true;
-            }
-        } else if (data.startsWith("settings_discussion_")) {
-            if (data.equals("settings_discussion_plus")) {
-                int newValue = lobby.getSettings().getDiscussionTimeSeconds() + 15;
-                lobby.getSettings().setDiscussionTimeSeconds(newValue);
-                settingsChanged = true;
-            } else if (data.equals("settings_discussion_minus")) {
-                int newValue = lobby.getSettings().getDiscussionTimeSeconds() - 15;
-                lobby.getSettings().setDiscussionTimeSeconds(newValue);
-                settingsChanged = true;
-            }
-        } else if (data.startsWith("settings_voting_")) {
-            if (data.equals("settings_voting_plus")) {
-                int newValue = lobby.getSettings().getVotingTimeSeconds() + 15;
-                lobby.getSettings().setVotingTimeSeconds(newValue);
-                settingsChanged = true;
-            } else if (data.equals("settings_voting_minus")) {
-                int newValue = lobby.getSettings().getVotingTimeSeconds() - 15;
-                lobby.getSettings().setVotingTimeSeconds(newValue);
-                settingsChanged = true;
-            }
-        } else if (data.startsWith("settings_killcooldown_")) {
-            if (data.equals("settings_killcooldown_plus")) {
-                int newValue = lobby.getSettings().getKillCooldownSeconds() + 5;
-                lobby.getSettings().setKillCooldownSeconds(newValue);
-                settingsChanged = true;
-            } else if (data.equals("settings_killcooldown_minus")) {
-                int newValue = lobby.getSettings().getKillCooldownSeconds() - 5;
-                lobby.getSettings().setKillCooldownSeconds(newValue);
-                settingsChanged = true;
-            }
-        } else if (data.startsWith("settings_tasks_")) {
-            if (data.equals("settings_tasks_plus")) {
-                int newValue = lobby.getSettings().getTasksPerPlayer() + 1;
-                lobby.getSettings().setTasksPerPlayer(newValue);
-                settingsChanged = true;
-            } else if (data.equals("settings_tasks_minus")) {
-                int newValue = lobby.getSettings().getTasksPerPlayer() - 1;
-                lobby.getSettings().setTasksPerPlayer(newValue);
-                settingsChanged = true;
+        switch (data.getAction()) {
+            case SETTING_INCREASE:
+            case SETTING_DECREASE: {
+                GameSettings.Adjustable setting = GameSettings.Adjustable.fromIndex(data.getArgument(0));
+                if (setting != null) {
+                    lobby.getSettings().adjust(setting, data.getAction() == CallbackAction.SETTING_INCREASE ? 1 : -1);
+                    bot.getSessionJournal().settingsChanged(lobby.getLobbyCode(), lobby.getSettings(), false);
+                    settingsChanged = true;
+                }
+                break;
             }
-        } else if (data.equals("settings_back")) {
-            Player player = lobby.getPlayer(userId).orElse(null);
-            if (player != null) {
+            case SETTINGS_BACK: {
                 // Принудительно отправляем новое сообщение со статусом вместо редактирования
-                String statusText = buildPlayerStatusText(lobby);
-                InlineKeyboardMarkup markup = createPlayerStatusKeyboard(lobby, player);
-
-                Integer newMessageId = bot.sendMessageWithReturnIdSafe(chatId, statusText, markup);
-                if (newMessageId != null) {
-                    lobby.setStatusMessageId(player.getUserId(), newMessageId);
-                }
+                bot.getLobbyStatusBoard().show(lobby.getLobbyCode(), userId, chatId);
 
                 // Удаляем сообщение с настройками
-                try {
-                    bot.deleteMessage(chatId, callbackQuery.getMessage().getMessageId());
-                } catch (Exception e) {
-                    log.error("Error deleting settings message", e);
-                }
+                bot.deleteMessage(chatId, callbackQuery.getMessage().getMessageId());
+                return;
             }
-            return;
-        } else if (data.equals("settings_next")) {
-            // Здесь можно реализовать переключение между различными страницами настроек
-            // Для простоты просто обновляем текущую страницу
-            settingsChanged = true;
+            case SETTINGS_REFRESH:
+                // Здесь можно реализовать переключение между различными страницами настроек
+                // Для простоты просто обновляем текущую страницу
+                settingsChanged = true;
+                break;
+            default:
+                break;
         }
 
         // Обновляем сообщение с настройками, только если изменения произошли
         if (settingsChanged) {
-            try {
-                EditMessageText editMessage = new EditMessageText();
-                editMessage.setChatId(chatId);
-                editMessage.setMessageId(callbackQuery.getMessage().getMessageId());
-                editMessage.setText(lobby.getSettings().getFormattedSettings());
-                editMessage.enableMarkdown(true);
-                editMessage.setReplyMarkup(createSettingsKeyboard(lobby));
-                bot.execute(editMessage);
-            } catch (TelegramApiException e) {
-                log.error("Error updating settings message", e);
-            }
-        }
-    }
-
-    /**
-     * Строит текст статуса игроков в лобби
-     */
-    private String buildPlayerStatusText(GameLobby lobby) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("👥 *Игроки* (").append(lobby.getPlayers().size()).append("/").append(Config.MAX_PLAYERS).append("):\n");
-        for (Player p : lobby.getPlayers()) {
-            String readyStatus = p.isReady() ? "✅" : "⬜";
-            String ownerLabel = lobby.isOwner(p.getUserId()) ? " 👑" : "";
-            sb.append(readyStatus).append(" ")
-                    .append(p.getDisplayName())
-                    .append(ownerLabel)
-                    .append("\n");
+            bot.editMessageTextSafe(chatId, callbackQuery.getMessage().getMessageId(),
+                    lobby.getSettings().getFormattedSettings(), createSettingsKeyboard(lobby));
         }
-        return sb.toString();
     }
 
     /**
-     * Создает клавиатуру для статуса игрока
+     * Encodes the callback data of a lobby button, bound to the lobby's current epoch.
      */
-    private InlineKeyboardMarkup createPlayerStatusKeyboard(GameLobby lobby, Player player) {
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-
-        // Кнопка "Готов" если игрок не готов
-        if (!player.isReady()) {
-            List<InlineKeyboardButton> readyRow = new ArrayList<>();
-            InlineKeyboardButton readyButton = new InlineKeyboardButton();
-            readyButton.setText("Готов");
-            readyButton.setCallbackData("ready");
-            readyRow.add(readyButton);
-            keyboard.add(readyRow);
-        }
-
-        // Если игрок - владелец, добавляем кнопки настроек и запуска игры
-        if (lobby.isOwner(player.getUserId())) {
-            // Кнопка настроек
-            List<InlineKeyboardButton> settingsRow = new ArrayList<>();
-            InlineKeyboardButton settingsButton = new InlineKeyboardButton();
-            settingsButton.setText("⚙️ Настройки");
-            settingsButton.setCallbackData("settings");
-            settingsRow.add(settingsButton);
-            keyboard.add(settingsRow);
-
-            // Кнопка запуска игры
-            List<InlineKeyboardButton> startGameRow = new ArrayList<>();
-            InlineKeyboardButton startGameButton = new InlineKeyboardButton();
-            startGameButton.setText("🚀 Начать игру");
-            startGameButton.setCallbackData("start_game");
-            startGameRow.add(startGameButton);
-            keyboard.add(startGameRow);
-        }
-
-        markup.setKeyboard(keyboard);
-        return markup;
-    }
-
-
-    /**
-     * Handles general callback queries not related to a specific game session.
-     */
-    private void handleGeneralCallbackQuery(CallbackQuery callbackQuery) {
-        String callbackData = callbackQuery.getData();
-        String queryId = callbackQuery.getId();
-        // For now, we'll just acknowledge the callback
-        log.debug("Handling general callback query: {}", callbackData);
-        // In a real implementation, we would parse the callback data and take appropriate action
-        // This might include creating games, joining lobbies, etc.
-        // Just acknowledge for now
-        sendCallbackResponse(queryId, "Обработка команды...");
+    private String callback(GameLobby lobby, CallbackAction action, long... arguments) {
+        return CallbackCodec.encode(action, sessionManager.getCallbackEpoch(lobby.getLobbyCode(), action.getScope()), arguments);
     }
 
     /**
@@ -563,11 +353,7 @@ public class CallbackQueryHandler {
     private void acknowledgeCallbackQuery(String queryId) {
         AnswerCallbackQuery answer = new AnswerCallbackQuery();
         answer.setCallbackQueryId(queryId);
-        try {
-            bot.execute(answer);
-        } catch (TelegramApiException e) {
-            log.error("Failed to acknowledge callback query", e);
-        }
+        bot.answerCallbackQuerySafe(answer);
     }
 
     /**
@@ -578,10 +364,14 @@ public class CallbackQueryHandler {
         answer.setCallbackQueryId(queryId);
         answer.setText(text);
         answer.setShowAlert(false);
-        try {
-            bot.execute(answer);
-        } catch (TelegramApiException e) {
-            log.error("Failed to send callback response", e);
-        }
+        bot.answerCallbackQuerySafe(answer);
+    }
+
+    /**
+     * Handles the callback queries of one action.
+     */
+    @FunctionalInterface
+    private interface CallbackRoute {
+        void handle(CallbackQuery callbackQuery, CallbackData data, PlayerRecord record);
     }
 }
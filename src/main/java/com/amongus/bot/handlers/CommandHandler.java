@@ -8,7 +8,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Message;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -40,9 +39,10 @@ public class CommandHandler {
      */
     private void registerCommands() {
         // Game creation commands
+        JoinCommand joinCommand = new JoinCommand(bot, sessionManager, securityManager);
         registerCommand(new CreateCommand(bot, sessionManager, securityManager));
-        registerCommand(new StartCommand(bot, sessionManager, securityManager));
-        registerCommand(new JoinCommand(bot, sessionManager, securityManager));
+        registerCommand(new StartCommand(bot, sessionManager, securityManager, joinCommand));
+        registerCommand(joinCommand);
         registerCommand(new LeaveCommand(bot, sessionManager, securityManager));
         registerCommand(new StartGameCommand(bot, sessionManager, securityManager));
 
@@ -50,6 +50,7 @@ public class CommandHandler {
         registerCommand(new HelpCommand(bot, sessionManager, commands));
         registerCommand(new PlayersCommand(bot, sessionManager, securityManager));
         registerCommand(new RulesCommand(bot, sessionManager, securityManager));
+        registerCommand(new WatchCommand(bot, sessionManager));
 
         // Admin commands
         registerCommand(new EndGameCommand(bot, sessionManager, securityManager));
@@ -73,8 +74,18 @@ public class CommandHandler {
         String text = message.getText();
         String[] parts = text.split("\\s+", 2);
         String commandName = parts[0].substring(1).toLowerCase(); // Remove the leading '/'
+        int mention = commandName.indexOf('@');
+        if (mention >= 0) {
+            // In group chats commands are addressed as /join@BotName
+            commandName = commandName.substring(0, mention);
+        }
         String args = parts.length > 1 ? parts[1] : "";
 
+        if (message.isUserMessage()) {
+            // The bot can write to this user in private from now on
+            sessionManager.rememberPrivateChat(message.getFrom().getId());
+        }
+
         Command command = commands.get(commandName);
         if (command != null) {
             try {
@@ -84,7 +95,7 @@ public class CommandHandler {
                 log.error("Error executing command {}: {}", commandName, e.getMessage(), e);
                 sendErrorMessage(message.getChatId(), "Произошла ошибка при выполнении команды.");
             }
-        } else {
+        } else if (message.isUserMessage()) {
             log.debug("Unknown command: {} from user {}", commandName, message.getFrom().getId());
             sendErrorMessage(message.getChatId(), "Неизвестная команда. Напишите /help для получения списка доступных команд.");
         }
@@ -97,10 +108,6 @@ public class CommandHandler {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(text);
-        try {
-            bot.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Failed to send error message: {}", e.getMessage(), e);
-        }
+        bot.sendMessageSafe(message);
     }
 }
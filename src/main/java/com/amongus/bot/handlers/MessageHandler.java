@@ -41,6 +41,11 @@ public class MessageHandler {
             return;
         }
         
+        // Group chats see their own messages; only direct messages take part in the game
+        if (!message.isUserMessage()) {
+            return;
+        }
+        
         long userId = telegramUser.getId();
         String chatId = message.getChatId().toString();
         String text = message.getText();
@@ -41,6 +41,11 @@ public class PhotoHandler {
             return;
         }
         
+        // Task photos are only accepted in direct messages
+        if (!message.isUserMessage()) {
+            return;
+        }
+        
         long userId = telegramUser.getId();
         String chatId = message.getChatId().toString();
         
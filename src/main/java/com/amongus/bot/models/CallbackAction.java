@@ -0,0 +1,89 @@
+package com.amongus.bot.models;
+
+/**
+ * Actions behind inline keyboard buttons, identified in callback data by a one-byte opcode.
+ * Opcodes are part of the wire format of buttons already sent to users:
+ * never renumber an action, only add new ones.
+ */
+public enum CallbackAction {
+    // Lobby
+    READY(1, Scope.LOBBY, 0),
+    SETTINGS(2, Scope.LOBBY, 0),
+    START_GAME(3, Scope.LOBBY, 0),
+    SETTING_INCREASE(4, Scope.LOBBY, 1),
+    SETTING_DECREASE(5, Scope.LOBBY, 1),
+    SETTINGS_REFRESH(6, Scope.LOBBY, 0),
+    SETTINGS_BACK(7, Scope.LOBBY, 0),
+    SETTINGS_INFO(8, Scope.LOBBY, 0),
+
+    // Running game
+    TASKS(16, Scope.GAME, 0),
+    REPORT_BODY(17, Scope.GAME, 0),
+    EMERGENCY_MEETING(18, Scope.GAME, 0),
+    KILLED(19, Scope.GAME, 0),
+    KILL_MENU(20, Scope.GAME, 0),
+    SABOTAGE_MENU(21, Scope.GAME, 0),
+    KILL(22, Scope.GAME, 1),
+    SABOTAGE(23, Scope.GAME, 1),
+
+    // Meeting
+    VOTE(32, Scope.MEETING, 1),
+    VOTE_SKIP(33, Scope.MEETING, 0);
+
+    private static final CallbackAction[] BY_OPCODE = new CallbackAction[256];
+
+    static {
+        for (CallbackAction action : values()) {
+            if (BY_OPCODE[action.opcode] != null) {
+                throw new IllegalStateException("Duplicate callback opcode " + action.opcode);
+            }
+            BY_OPCODE[action.opcode] = action;
+        }
+    }
+
+    private final int opcode;
+    private final Scope scope;
+    private final int argumentCount;
+
+    CallbackAction(int opcode, Scope scope, int argumentCount) {
+        this.opcode = opcode;
+        this.scope = scope;
+        this.argumentCount = argumentCount;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Gets the part of the game whose epoch a button of this action is bound to.
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    /**
+     * Looks up an action by its opcode.
+     *
+     * @return The action, or null if the opcode is unknown
+     */
+    public static CallbackAction fromOpcode(int opcode) {
+        return opcode >= 0 && opcode < BY_OPCODE.length ? BY_OPCODE[opcode] : null;
+    }
+
+    /**
+     * What a button stays valid for. A button is stale once the epoch of its scope has moved on.
+     */
+    public enum Scope {
+        // Until the game of the lobby starts
+        LOBBY,
+        // Until the game ends
+        GAME,
+        // Until the meeting ends
+        MEETING
+    }
+}
@@ -0,0 +1,49 @@
+package com.amongus.bot.models;
+
+/**
+ * Decoded callback data of an inline keyboard button.
+ */
+public final class CallbackData {
+    private static final long[] NO_ARGUMENTS = new long[0];
+
+    private final CallbackAction action;
+    private final long epoch;
+    private final long[] arguments;
+
+    public CallbackData(CallbackAction action, long epoch, long... arguments) {
+        if (arguments.length != action.getArgumentCount()) {
+            throw new IllegalArgumentException(action + " takes " + action.getArgumentCount()
+                    + " arguments, got " + arguments.length);
+        }
+        this.action = action;
+        this.epoch = epoch;
+        this.arguments = arguments.length == 0 ? NO_ARGUMENTS : arguments;
+    }
+
+    public CallbackAction getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the epoch of the session the button was created in.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Gets an argument of the action, such as the user ID of a vote target.
+     */
+    public long getArgument(int index) {
+        return arguments[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(action.name()).append('@').append(epoch);
+        for (long argument : arguments) {
+            sb.append(' ').append(argument);
+        }
+        return sb.toString();
+    }
+}
@@ -36,6 +36,9 @@ public class Config {
     public static final long LOBBY_TIMEOUT_MINUTES = 60; // Inactive lobbies expire after 60 minutes
     public static final long GAME_TIMEOUT_MINUTES = 120; // Games expire after 120 minutes
     public static final long GAME_INACTIVE_TIMEOUT_MINUTES = 120;
+    public static final long IDLE_SWEEP_INTERVAL_SECONDS = 30;
+    // Lobbies waiting for players are moved off the heap after this long without activity; 0 keeps them on it
+    public static final long HIBERNATE_IDLE_LOBBY_MINUTES = 5;
     public static final int ROLE_MESSAGE_AUTO_DELETE_SECONDS = 30;
 
     // Message deletion delays
@@ -45,10 +48,71 @@ public class Config {
     // Security
     public static final int CONFIRMATION_CODE_LENGTH = 6;
     public static final int CONFIRMATION_CODE_EXPIRY_SECONDS = 300;
+    public static final int MAX_CONFIRMATION_CODES = 10_000;
 
     // Game code settings
     public static final int GAME_CODE_LENGTH = 5;
 
+    // Admission control: updates a single user may send before being throttled
+    public static final double ADMISSION_UPDATES_PER_SECOND = 2.0;
+    public static final int ADMISSION_BURST = 8;
+    public static final int ADMISSION_NOTICE_INTERVAL_SECONDS = 10;
+    public static final int ADMISSION_EVICTION_INTERVAL_SECONDS = 60;
+
+    // Update processing
+    public static final int UPDATE_WORKER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // Outbound message pipeline (Telegram allows ~30 messages/s overall and ~1 message/s per chat)
+    public static final int OUTBOUND_SENDER_THREADS = 8;
+    public static final int OUTBOUND_GLOBAL_MESSAGES_PER_SECOND = 30;
+    public static final int OUTBOUND_CHAT_MESSAGES_PER_SECOND = 1;
+    public static final int OUTBOUND_CHAT_BURST = 3;
+    public static final int OUTBOUND_MAX_RETRIES = 3;
+
+    // Shared timer: precision and the number of buckets of the hashed wheel
+    public static final long TIMER_TICK_MILLIS = 100;
+    public static final int TIMER_WHEEL_SIZE = 512;
+
+    // Lobby status messages are refreshed at most once per window
+    public static final long LOBBY_STATUS_DEBOUNCE_MILLIS = 1000;
+
+    // In-game HUD messages are edited at most once per window; countdowns move in steps
+    public static final long GAME_HUD_REFRESH_MILLIS = 2000;
+    public static final long GAME_HUD_COUNTDOWN_STEP_SECONDS = 10;
+
+    // Meeting vote boards are edited at most once per window; the voting countdown moves in steps
+    public static final long MEETING_BOARD_REFRESH_MILLIS = 1000;
+    public static final long MEETING_BOARD_COUNTDOWN_STEP_SECONDS = 5;
+
+    // Chat lines relayed between players are merged into one message per window
+    public static final long CHAT_RELAY_WINDOW_MILLIS = 2000;
+
+    // Spectator channel that public game events are posted to, as @username or numeric ID; empty disables it.
+    // The bot has to be an administrator of the channel
+    public static final String SPECTATOR_CHANNEL_ID = "";
+    public static final int SPECTATOR_PROGRESS_STEP_PERCENT = 25;
+
+    // Event journal that lobbies and games are restored from after a restart; an empty directory disables it.
+    // Records are synced to disk once per interval. A snapshot replaces the journal periodically, or earlier once
+    // the journal has too many segments; if a lobby does not get copied in time, the snapshot is abandoned
+    public static final String JOURNAL_DIRECTORY = "data/journal";
+    public static final int JOURNAL_SEGMENT_BYTES = 8 * 1024 * 1024;
+    public static final long JOURNAL_SYNC_INTERVAL_MILLIS = 200;
+    public static final int JOURNAL_SNAPSHOT_INTERVAL_SECONDS = 300;
+    public static final int JOURNAL_SNAPSHOT_SEGMENTS = 4;
+    public static final int JOURNAL_SNAPSHOT_CHECK_SECONDS = 60;
+    public static final int JOURNAL_SNAPSHOT_CAPTURE_TIMEOUT_SECONDS = 10;
+
+    // Outbox that role reveals and the deletion of such messages go through, so that they survive a restart;
+    // an empty directory disables it. It is compacted once it has more segments than the limit
+    public static final String OUTBOX_DIRECTORY = "data/outbox";
+    public static final int OUTBOX_SEGMENT_BYTES = 1024 * 1024;
+    public static final int OUTBOX_COMPACT_SEGMENTS = 2;
+    public static final int OUTBOX_DEDUPE_KEYS = 10_000;
+
+    // Metrics
+    public static final int METRICS_LOG_INTERVAL_SECONDS = 60;
+
     // Critical sabotage timeout
     public static final int CRITICAL_SABOTAGE_TIMEOUT_SECONDS = 60;
 
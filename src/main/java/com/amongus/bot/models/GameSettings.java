@@ -58,6 +58,67 @@ public class GameSettings {
         }
     }
     
+    /**
+     * Steps a setting up or down by its step size, keeping it within its limits.
+     *
+     * @param setting   The setting to change
+     * @param direction 1 to increase the setting, -1 to decrease it
+     */
+    public void adjust(Adjustable setting, int direction) {
+        int delta = setting.getStep() * direction;
+        switch (setting) {
+            case IMPOSTOR_COUNT:
+                setImpostorCount(impostorCount + delta);
+                break;
+            case DISCUSSION_TIME:
+                setDiscussionTimeSeconds(discussionTimeSeconds + delta);
+                break;
+            case VOTING_TIME:
+                setVotingTimeSeconds(votingTimeSeconds + delta);
+                break;
+            case KILL_COOLDOWN:
+                setKillCooldownSeconds(killCooldownSeconds + delta);
+                break;
+            case TASKS_PER_PLAYER:
+                setTasksPerPlayer(tasksPerPlayer + delta);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Settings that the lobby owner can step up and down from the settings keyboard.
+     * The ordinal is sent in callback data, so only append new constants.
+     */
+    public enum Adjustable {
+        IMPOSTOR_COUNT(1),
+        DISCUSSION_TIME(15),
+        VOTING_TIME(15),
+        KILL_COOLDOWN(5),
+        TASKS_PER_PLAYER(1);
+        
+        private final int step;
+        
+        Adjustable(int step) {
+            this.step = step;
+        }
+        
+        public int getStep() {
+            return step;
+        }
+        
+        /**
+         * Looks up a setting by the index sent in callback data.
+         *
+         * @return The setting, or null if the index is out of range
+         */
+        public static Adjustable fromIndex(long index) {
+            Adjustable[] values = values();
+            return index >= 0 && index < values.length ? values[(int) index] : null;
+        }
+    }
+    
     /**
      * Gets a formatted string representation of the settings.
      */
@@ -0,0 +1,138 @@
+package com.amongus.bot.utils;
+
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.CallbackData;
+
+import java.util.Base64;
+
+/**
+ * Compact binary encoding of callback data.
+ * A button carries a version byte, the opcode of its action, the session epoch and the
+ * arguments of the action as unsigned varints, all in unpadded base64url. A vote for a
+ * player takes about 16 characters, well within Telegram's limit of 64 bytes.
+ */
+public final class CallbackCodec {
+    private static final int VERSION = 1;
+
+    // Telegram limits callback data to 64 bytes
+    private static final int MAX_CALLBACK_DATA_LENGTH = 64;
+
+    // Version, opcode, epoch and at most two arguments of up to 10 varint bytes each
+    private static final int MAX_ENCODED_BYTES = 2 + 3 * 10;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private CallbackCodec() {
+    }
+
+    /**
+     * Encodes a button action.
+     *
+     * @param action    The action of the button
+     * @param epoch     The epoch of the action's scope in the session that sends the button
+     * @param arguments The arguments of the action, all non-negative
+     * @return The callback data to set on the button
+     */
+    public static String encode(CallbackAction action, long epoch, long... arguments) {
+        if (arguments.length != action.getArgumentCount()) {
+            throw new IllegalArgumentException(action + " takes " + action.getArgumentCount()
+                    + " arguments, got " + arguments.length);
+        }
+
+        byte[] buffer = new byte[MAX_ENCODED_BYTES];
+        buffer[0] = VERSION;
+        buffer[1] = (byte) action.getOpcode();
+        int length = writeVarint(buffer, 2, epoch);
+        for (long argument : arguments) {
+            length = writeVarint(buffer, length, argument);
+        }
+
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, 0, bytes, 0, length);
+        return ENCODER.encodeToString(bytes);
+    }
+
+    /**
+     * Decodes callback data.
+     *
+     * @return The decoded data, or null if it is malformed, of another version or in the old text format
+     */
+    public static CallbackData decode(String data) {
+        if (data == null || data.isEmpty() || data.length() > MAX_CALLBACK_DATA_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(data);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length < 3 || bytes[0] != VERSION) {
+            return null;
+        }
+
+        CallbackAction action = CallbackAction.fromOpcode(bytes[1] & 0xFF);
+        if (action == null) {
+            return null;
+        }
+
+        Reader reader = new Reader(bytes, 2);
+        long epoch = reader.readVarint();
+        long[] arguments = new long[action.getArgumentCount()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = reader.readVarint();
+        }
+        if (reader.failed || reader.position != bytes.length) {
+            return null;
+        }
+        return new CallbackData(action, epoch, arguments);
+    }
+
+    private static int writeVarint(byte[] buffer, int offset, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Callback values must not be negative: " + value);
+        }
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Cursor over encoded callback data.
+     */
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+        private boolean failed = false;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        /**
+         * Reads an unsigned varint. Sets {@code failed} if the bytes end early
+         * or the value does not fit a non-negative long.
+         */
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 63 && position < bytes.length; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            failed = true;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.amongus.bot.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * A concurrent hash map with primitive {@code long} keys.
+ * Keys are spread over lock-striped segments, each an open-addressing table with linear probing,
+ * so lookups neither box the key nor allocate. Reads are optimistic and only take the segment
+ * lock when they race with a write.
+ *
+ * @param <V> The type of values; null values are not supported
+ */
+public class ConcurrentLongMap<V> {
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+
+    /**
+     * Creates a new map with the default number of segments.
+     */
+    public ConcurrentLongMap() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Creates a new map.
+     *
+     * @param concurrencyLevel The expected number of concurrently writing threads,
+     *                         rounded up to a power of two
+     */
+    public ConcurrentLongMap(int concurrencyLevel) {
+        int count = Integer.highestOneBit(Math.max(1, concurrencyLevel - 1)) << 1;
+        @SuppressWarnings("unchecked")
+        Segment<V>[] table = (Segment<V>[]) new Segment<?>[count];
+        this.segments = table;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>();
+        }
+        this.segmentMask = count - 1;
+    }
+
+    /**
+     * Gets the value for a key, or null if there is none.
+     */
+    public V get(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @return The previous value, or null if there was none
+     */
+    public V put(long key, V value) {
+        requireValue(value);
+        long hash = mix(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * Associates a value with a key unless the key already has one.
+     *
+     * @return The existing value, or null if the value was stored
+     */
+    public V putIfAbsent(long key, V value) {
+        requireValue(value);
+        long hash = mix(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Gets the value for a key, creating it with the given function if there is none.
+     * The function is called under the segment lock and must not access this map.
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        long hash = mix(key);
+        V existing = segmentFor(hash).get(key, hash);
+        if (existing != null) {
+            return existing;
+        }
+        return segmentFor(hash).computeIfAbsent(key, hash, factory);
+    }
+
+    /**
+     * Replaces the value of a key only if it is currently mapped to the expected value.
+     *
+     * @return true if the value was replaced
+     */
+    public boolean replace(long key, V expected, V value) {
+        requireValue(value);
+        long hash = mix(key);
+        return segmentFor(hash).replace(key, hash, expected, value);
+    }
+
+    /**
+     * Removes the value of a key.
+     *
+     * @return The removed value, or null if there was none
+     */
+    public V remove(long key) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Removes a key only if it is currently mapped to the expected value.
+     *
+     * @return true if the key was removed
+     */
+    public boolean remove(long key, V expected) {
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, expected) != null;
+    }
+
+    /**
+     * Removes every entry matching the filter.
+     *
+     * @return The number of removed entries
+     */
+    public int removeIf(EntryFilter<? super V> filter) {
+        int removed = 0;
+        for (Segment<V> segment : segments) {
+            removed += segment.removeIf(filter);
+        }
+        return removed;
+    }
+
+    /**
+     * Visits every entry. Each segment is visited as a snapshot, so the visitor may modify the map.
+     */
+    public void forEach(EntryVisitor<? super V> visitor) {
+        for (Segment<V> segment : segments) {
+            segment.forEach(visitor);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        // The low bits pick the slot inside a segment, so the segment comes from the high bits
+        return segments[(int) (hash >>> 48) & segmentMask];
+    }
+
+    private static void requireValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+    }
+
+    /**
+     * Spreads the bits of the key (the finalizer of MurmurHash3).
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Receives the entries of the map.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor<V> {
+        void accept(long key, V value);
+    }
+
+    /**
+     * Selects entries of the map.
+     */
+    @FunctionalInterface
+    public interface EntryFilter<V> {
+        boolean test(long key, V value);
+    }
+
+    /**
+     * Keys and values of a segment. Replaced as a whole on resize, so an optimistic reader
+     * always sees arrays of the same length.
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+    }
+
+    /**
+     * One lock stripe of the map. A slot is free when its value is null.
+     */
+    private static final class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private volatile Table table = new Table(INITIAL_SEGMENT_CAPACITY);
+        private int size = 0;
+
+        V get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                V value = find(table, key, hash);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return find(table, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private V find(Table t, long key, long hash) {
+            int mask = t.keys.length - 1;
+            int index = (int) hash & mask;
+            // Bounded so that a torn optimistic read can never spin forever
+            for (int probes = 0; probes <= mask; probes++) {
+                Object value = t.values[index];
+                if (value == null) {
+                    return null;
+                }
+                if (t.keys[index] == key) {
+                    return (V) value;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        V put(long key, long hash, V value, boolean onlyIfAbsent) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = slotFor(t, key, hash);
+                @SuppressWarnings("unchecked")
+                V previous = (V) t.values[index];
+                if (previous != null) {
+                    if (!onlyIfAbsent) {
+                        t.values[index] = value;
+                    }
+                    return previous;
+                }
+                insertAt(t, index, key, value);
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        V computeIfAbsent(long key, long hash, LongFunction<? extends V> factory) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = slotFor(t, key, hash);
+                @SuppressWarnings("unchecked")
+                V existing = (V) t.values[index];
+                if (existing != null) {
+                    return existing;
+                }
+                V value = factory.apply(key);
+                if (value != null) {
+                    insertAt(t, index, key, value);
+                }
+                return value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean replace(long key, long hash, V expected, V value) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = slotFor(t, key, hash);
+                if (t.values[index] == null || t.values[index] != expected) {
+                    return false;
+                }
+                t.values[index] = value;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        V remove(long key, long hash, V expected) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = slotFor(t, key, hash);
+                @SuppressWarnings("unchecked")
+                V previous = (V) t.values[index];
+                if (previous == null || (expected != null && previous != expected)) {
+                    return null;
+                }
+                deleteAt(t, index);
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int removeIf(EntryFilter<? super V> filter) {
+            long stamp = lock.writeLock();
+            try {
+                int removed = 0;
+                Table t = table;
+                int index = 0;
+                while (index < t.keys.length) {
+                    @SuppressWarnings("unchecked")
+                    V value = (V) t.values[index];
+                    if (value != null && filter.test(t.keys[index], value)) {
+                        deleteAt(t, index);
+                        removed++;
+                        // Backward shift may have moved another entry into this slot
+                        continue;
+                    }
+                    index++;
+                }
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void forEach(EntryVisitor<? super V> visitor) {
+            List<Object[]> snapshot = new ArrayList<>();
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                for (int i = 0; i < t.keys.length; i++) {
+                    if (t.values[i] != null) {
+                        snapshot.add(new Object[]{t.keys[i], t.values[i]});
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+
+            for (Object[] entry : snapshot) {
+                @SuppressWarnings("unchecked")
+                V value = (V) entry[1];
+                visitor.accept((Long) entry[0], value);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                table = new Table(INITIAL_SEGMENT_CAPACITY);
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Finds the slot holding the key, or the free slot where it would be inserted.
+         */
+        private static int slotFor(Table t, long key, long hash) {
+            int mask = t.keys.length - 1;
+            int index = (int) hash & mask;
+            while (t.values[index] != null && t.keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void insertAt(Table t, int index, long key, V value) {
+            t.keys[index] = key;
+            t.values[index] = value;
+            size++;
+            // Keep the load factor at or below one half
+            if (size * 2 > t.keys.length) {
+                resize(t.keys.length * 2);
+            }
+        }
+
+        /**
+         * Frees a slot and shifts back the entries of the probe chain that follows it,
+         * so that lookups never need tombstones.
+         */
+        private void deleteAt(Table t, int index) {
+            int mask = t.keys.length - 1;
+            int hole = index;
+            int next = (hole + 1) & mask;
+            while (t.values[next] != null) {
+                int home = (int) mix(t.keys[next]) & mask;
+                // Move the entry if the hole lies cyclically between its home slot and its position
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    t.keys[hole] = t.keys[next];
+                    t.values[hole] = t.values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            t.values[hole] = null;
+            t.keys[hole] = 0;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            Table old = table;
+            Table resized = new Table(capacity);
+            int mask = capacity - 1;
+            for (int i = 0; i < old.keys.length; i++) {
+                if (old.values[i] != null) {
+                    int index = (int) mix(old.keys[i]) & mask;
+                    while (resized.values[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    resized.keys[index] = old.keys[i];
+                    resized.values[index] = old.values[i];
+                }
+            }
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.amongus.bot.utils;
+
+import com.amongus.bot.core.WheelTimer;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded concurrent map whose entries expire a fixed time after they were put.
+ * An expired entry is never returned: reads check the deadline themselves, and a timeout on
+ * the shared {@link WheelTimer} removes the entry shortly after it expires, so nothing
+ * builds up even if it is never read again. When the store is full, putting a new key
+ * evicts the oldest entries, which with a single time-to-live are also the closest to expiry.
+ * <p>
+ * All operations are safe to call from any thread.
+ */
+public class ExpiringStore<K, V> {
+    private final WheelTimer timer;
+    private final long timeToLiveNanos;
+    private final int maxEntries;
+
+    private final Map<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+
+    // Entries in the order they were put; may still hold entries that have been removed or replaced
+    private final Queue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    /**
+     * Creates an empty store.
+     *
+     * @param timer      The timer that removes expired entries
+     * @param timeToLive How long an entry lives after it was put
+     * @param unit       The unit of the time to live
+     * @param maxEntries The maximum number of entries kept at once
+     */
+    public ExpiringStore(WheelTimer timer, long timeToLive, TimeUnit unit, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+        }
+        this.timer = timer;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Puts a value, replacing the previous value of the key and restarting its time to live.
+     */
+    public void put(K key, V value) {
+        Entry<K, V> entry = new Entry<>(key, value, System.nanoTime() + timeToLiveNanos);
+        Entry<K, V> previous = entries.put(key, entry);
+        if (previous != null) {
+            previous.cancel();
+        }
+        entry.expiry = timer.schedule(() -> expire(entry), timeToLiveNanos, TimeUnit.NANOSECONDS);
+
+        insertionOrder.add(entry);
+        queuedCount.incrementAndGet();
+        enforceLimit();
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @return The value, or null if there is none or it has expired
+     */
+    public V get(K key) {
+        Entry<K, V> entry = live(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Removes the value of a key.
+     *
+     * @return The removed value, or null if there was none or it had expired
+     */
+    public V remove(K key) {
+        Entry<K, V> entry = live(key);
+        if (entry == null || !entries.remove(key, entry)) {
+            return null;
+        }
+        entry.cancel();
+        return entry.value;
+    }
+
+    /**
+     * Removes a key only if it is still mapped to the given value.
+     * Of several threads removing the same value, exactly one succeeds.
+     *
+     * @return true if the value was removed
+     */
+    public boolean remove(K key, V value) {
+        Entry<K, V> entry = live(key);
+        if (entry == null || !entry.value.equals(value) || !entries.remove(key, entry)) {
+            return false;
+        }
+        entry.cancel();
+        return true;
+    }
+
+    /**
+     * Removes all entries. They are not counted as expired or evicted.
+     */
+    public void clear() {
+        for (Entry<K, V> entry : entries.values()) {
+            if (entries.remove(entry.key, entry)) {
+                entry.cancel();
+            }
+        }
+        insertionOrder.clear();
+        queuedCount.set(0);
+    }
+
+    /**
+     * Gets the number of entries, including expired ones the timer has not removed yet.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of entries removed because they expired.
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * Gets the number of entries evicted because the store was full.
+     */
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    /**
+     * Gets the entry of a key if it has not expired. An expired entry is removed on the way.
+     */
+    private Entry<K, V> live(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.deadlineNanos >= 0) {
+            if (entries.remove(key, entry)) {
+                entry.cancel();
+                expiredCount.increment();
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    private void expire(Entry<K, V> entry) {
+        if (entries.remove(entry.key, entry)) {
+            expiredCount.increment();
+        }
+        trimInsertionOrder();
+    }
+
+    /**
+     * Evicts the oldest entries while the store is over its limit.
+     */
+    private void enforceLimit() {
+        while (entries.size() > maxEntries) {
+            Entry<K, V> oldest = pollInsertionOrder();
+            if (oldest == null) {
+                return;
+            }
+            if (entries.remove(oldest.key, oldest)) {
+                oldest.cancel();
+                evictedCount.increment();
+            }
+        }
+        trimInsertionOrder();
+    }
+
+    /**
+     * Drops entries that are no longer in the store from the head of the insertion order.
+     * If replaced keys have left too many dead entries behind the head, the whole queue is swept.
+     */
+    private void trimInsertionOrder() {
+        Entry<K, V> head;
+        while ((head = insertionOrder.peek()) != null && entries.get(head.key) != head) {
+            if (insertionOrder.remove(head)) {
+                queuedCount.decrementAndGet();
+            }
+        }
+        if (queuedCount.get() > 2 * Math.max(maxEntries, entries.size())) {
+            insertionOrder.removeIf(entry -> {
+                boolean dead = entries.get(entry.key) != entry;
+                if (dead) {
+                    queuedCount.decrementAndGet();
+                }
+                return dead;
+            });
+        }
+    }
+
+    private Entry<K, V> pollInsertionOrder() {
+        Entry<K, V> entry = insertionOrder.poll();
+        if (entry != null) {
+            queuedCount.decrementAndGet();
+        }
+        return entry;
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final long deadlineNanos;
+        private volatile WheelTimer.Timeout expiry;
+
+        Entry(K key, V value, long deadlineNanos) {
+            this.key = key;
+            this.value = value;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        void cancel() {
+            WheelTimer.Timeout timeout = expiry;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
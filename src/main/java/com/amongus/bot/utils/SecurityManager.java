@@ -1,25 +1,18 @@
 package com.amongus.bot.utils;
 
+import com.amongus.bot.core.WheelTimer;
 import com.amongus.bot.models.Config;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
-import java.time.Instant;
+import java.util.Base64;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles security-related functionality like encryption, code verification,
@@ -28,87 +21,95 @@ import java.util.Random;
 public class SecurityManager {
     private static final Logger log = LoggerFactory.getLogger(SecurityManager.class);
     
-    // AES encryption key used for encoding role information
-    private final SecretKey encryptionKey;
-    
-    // Map of user IDs to confirmation codes with expiration time
-    private final Map<Long, Map.Entry<String, Long>> confirmationCodes = new ConcurrentHashMap<>();
+    // Roles a token can stand for
+    private static final String[] TOKEN_ROLE_IDS = {"crewmate", "impostor"};
+
+    private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder TOKEN_DECODER = Base64.getUrlDecoder();
+
+    // Signs role tokens with a key that lives as long as the bot
+    private final TokenSigner tokenSigner = TokenSigner.withRandomKey();
     
-    // Scheduler for cleaning up expired confirmation codes
-    private final ScheduledExecutorService cleanupScheduler = Executors.newSingleThreadScheduledExecutor();
+    // Confirmation codes by user ID, removed by the shared timer once they expire
+    private final ExpiringStore<Long, String> confirmationCodes;
     
     private final Random random = new SecureRandom();
-    private final Map<Long, String> confirmationCodesMap = new HashMap<>();
-    private final Map<Long, Instant> confirmationTimestamps = new HashMap<>();
     
     /**
      * Creates a new security manager.
+     *
+     * @param timer The timer that removes expired confirmation codes
      */
-    public SecurityManager() {
-        this.encryptionKey = generateEncryptionKey();
-        
-        // Schedule cleanup task
-        cleanupScheduler.scheduleAtFixedRate(
-                this::cleanupExpiredCodes,
-                1, 1, TimeUnit.MINUTES
-        );
+    public SecurityManager(WheelTimer timer) {
+        this.confirmationCodes = new ExpiringStore<>(timer,
+                Config.CONFIRMATION_CODE_EXPIRY_SECONDS, TimeUnit.SECONDS, Config.MAX_CONFIRMATION_CODES);
     }
     
     /**
-     * Generates an AES encryption key.
+     * Encodes a role ID into a callback token.
+     * This helps hide the actual role from players who might see others' screens: the token is
+     * only a tag over the session, epoch, player and role, so it does not contain the role, and
+     * players with the same role get different tokens. It is only accepted for the same session,
+     * epoch and player.
+     *
+     * @param roleId    The ID of the role
+     * @param sessionId The lobby code of the session
+     * @param epoch     The game epoch of the session
+     * @param userId    The player the token is for
+     * @return The token, or null if the role is unknown
      */
-    private SecretKey generateEncryptionKey() {
-        try {
-            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
-            keyGen.init(256);
-            return keyGen.generateKey();
-        } catch (NoSuchAlgorithmException e) {
-            log.error("Failed to generate encryption key: {}", e.getMessage(), e);
-            // Fallback to a hardcoded key (not secure for production!)
-            byte[] keyBytes = new byte[32]; // 256 bits
-            for (int i = 0; i < keyBytes.length; i++) {
-                keyBytes[i] = (byte) i;
-            }
-            return new SecretKeySpec(keyBytes, "AES");
+    public String encodeRoleCallback(String roleId, String sessionId, long epoch, long userId) {
+        if (!isTokenRole(roleId)) {
+            log.error("Cannot encode unknown role: {}", roleId);
+            return null;
         }
+
+        byte[] payload = rolePayload(userId, roleId);
+        byte[] tag = new byte[TokenSigner.TAG_BYTES];
+        tokenSigner.sign(sessionId, epoch, payload, payload.length, tag, 0);
+        return TOKEN_ENCODER.encodeToString(tag);
     }
-    
+
     /**
-     * Encodes a role ID into a callback data string.
-     * This helps hide the actual role from players who might see others' screens.
+     * Decodes a callback token back to a role ID by checking it against every role.
+     *
+     * @return The role ID, or null if the token is malformed, forged or was issued for another
+     *         session, epoch or player
      */
-    public String encodeRoleCallback(String roleId) {
+    public String decodeRoleCallback(String encodedCallback, String sessionId, long epoch, long userId) {
+        byte[] tag;
         try {
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey);
-            byte[] encrypted = cipher.doFinal(roleId.getBytes());
-            return Base64.getEncoder().encodeToString(encrypted);
-        } catch (Exception e) {
-            log.error("Failed to encode role callback: {}", e.getMessage(), e);
-            // Fallback to a simple obfuscation
-            return "role_" + Math.abs(roleId.hashCode());
+            tag = TOKEN_DECODER.decode(encodedCallback);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (tag.length == TokenSigner.TAG_BYTES) {
+            for (String roleId : TOKEN_ROLE_IDS) {
+                byte[] payload = rolePayload(userId, roleId);
+                if (tokenSigner.verify(sessionId, epoch, payload, payload.length, tag, 0)) {
+                    return roleId;
+                }
+            }
         }
+        log.warn("Rejected role token for session {}", sessionId);
+        return null;
     }
-    
-    /**
-     * Decodes a callback data string back to a role ID.
-     */
-    public String decodeRoleCallback(String encodedCallback) {
-        try {
-            byte[] decoded = Base64.getDecoder().decode(encodedCallback);
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.DECRYPT_MODE, encryptionKey);
-            byte[] decrypted = cipher.doFinal(decoded);
-            return new String(decrypted);
-        } catch (Exception e) {
-            log.error("Failed to decode role callback: {}", e.getMessage(), e);
-            // Try to handle the fallback encoding
-            if (encodedCallback.startsWith("role_")) {
-                return encodedCallback.substring(5).equals(String.valueOf(Math.abs("impostor".hashCode())))
-                        ? "impostor" : "crewmate";
+
+    private static boolean isTokenRole(String roleId) {
+        for (String tokenRoleId : TOKEN_ROLE_IDS) {
+            if (tokenRoleId.equals(roleId)) {
+                return true;
             }
-            return "crewmate"; // Default fallback
         }
+        return false;
+    }
+
+    /**
+     * Gets the bytes a role token signs: the user ID followed by the role ID.
+     */
+    private static byte[] rolePayload(long userId, String roleId) {
+        byte[] role = roleId.getBytes(StandardCharsets.US_ASCII);
+        return ByteBuffer.allocate(Long.BYTES + role.length).putLong(userId).put(role).array();
     }
     
     /**
@@ -122,40 +123,27 @@ public class SecurityManager {
         }
         
         String confirmationCode = code.toString();
-        confirmationCodesMap.put(userId, confirmationCode);
-        confirmationTimestamps.put(userId, Instant.now());
+        confirmationCodes.put(userId, confirmationCode);
         
         return confirmationCode;
     }
     
     /**
      * Verifies a confirmation code for a user.
+     * A code can only be used once; a wrong code leaves it valid until it expires.
      */
     public boolean verifyConfirmationCode(long userId, String code) {
-        String storedCode = confirmationCodesMap.get(userId);
-        Instant timestamp = confirmationTimestamps.get(userId);
-        
-        if (storedCode == null || timestamp == null) {
-            return false;
-        }
-        
-        // Check if the code is expired (10 minutes)
-        if (timestamp.plusSeconds(600).isBefore(Instant.now())) {
-            confirmationCodesMap.remove(userId);
-            confirmationTimestamps.remove(userId);
+        String storedCode = confirmationCodes.get(userId);
+        if (storedCode == null || code == null) {
             return false;
         }
         
-        // Check if the code matches
-        boolean isValid = storedCode.equals(code);
+        // Check if the code matches, in constant time
+        boolean isValid = MessageDigest.isEqual(
+                storedCode.getBytes(StandardCharsets.US_ASCII), code.getBytes(StandardCharsets.US_ASCII));
         
-        // Remove the code after verification attempt
-        if (isValid) {
-            confirmationCodesMap.remove(userId);
-            confirmationTimestamps.remove(userId);
-        }
-        
-        return isValid;
+        // Remove the code after successful verification; only one concurrent attempt can consume it
+        return isValid && confirmationCodes.remove(userId, storedCode);
     }
     
     /**
@@ -171,21 +159,16 @@ public class SecurityManager {
     }
     
     /**
-     * Cleans up expired confirmation codes.
+     * Gets the store of pending confirmation codes, for metrics.
      */
-    private void cleanupExpiredCodes() {
-        long now = System.currentTimeMillis();
-        
-        confirmationCodes.entrySet().removeIf(entry -> {
-            long expiryTime = entry.getValue().getValue();
-            return now > expiryTime;
-        });
+    public ExpiringStore<Long, String> getConfirmationCodes() {
+        return confirmationCodes;
     }
     
     /**
-     * Shut down the cleanup scheduler.
+     * Drops all pending confirmation codes.
      */
     public void shutdown() {
-        cleanupScheduler.shutdown();
+        confirmationCodes.clear();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.amongus.bot.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Signs short tokens with a truncated HMAC-SHA256.
+ * Every tag is bound to a scope (such as a lobby code) and an epoch, so a token is only
+ * accepted by the session and game it was issued for. Each thread keeps its own initialized
+ * {@link Mac} and buffers, so signing and verifying do no provider lookup, key setup or allocation.
+ */
+public final class TokenSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Length of a tag in bytes. 96 bits are plenty for tokens that live for one game.
+     */
+    public static final int TAG_BYTES = 12;
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<MacState> states;
+
+    /**
+     * Creates a signer with the given key.
+     */
+    public TokenSigner(byte[] key) {
+        this.key = new SecretKeySpec(key.clone(), ALGORITHM);
+        this.states = ThreadLocal.withInitial(this::newState);
+    }
+
+    /**
+     * Creates a signer with a random key that lives as long as the process.
+     */
+    public static TokenSigner withRandomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new TokenSigner(key);
+    }
+
+    /**
+     * Writes the tag of a payload into {@code tag} at {@code tagOffset}.
+     *
+     * @param scope   The scope the token is bound to
+     * @param epoch   The epoch the token is bound to
+     * @param payload The signed bytes
+     * @param length  The number of signed bytes at the start of {@code payload}
+     */
+    public void sign(String scope, long epoch, byte[] payload, int length, byte[] tag, int tagOffset) {
+        byte[] digest = digest(scope, epoch, payload, length);
+        System.arraycopy(digest, 0, tag, tagOffset, TAG_BYTES);
+    }
+
+    /**
+     * Checks the tag of a payload in constant time.
+     *
+     * @return true if the tag at {@code tagOffset} was issued for this payload, scope and epoch
+     */
+    public boolean verify(String scope, long epoch, byte[] payload, int length, byte[] tag, int tagOffset) {
+        if (tag.length - tagOffset < TAG_BYTES) {
+            return false;
+        }
+        byte[] digest = digest(scope, epoch, payload, length);
+        int difference = 0;
+        for (int i = 0; i < TAG_BYTES; i++) {
+            difference |= digest[i] ^ tag[tagOffset + i];
+        }
+        return difference == 0;
+    }
+
+    /**
+     * Computes the full MAC into the thread's digest buffer.
+     */
+    private byte[] digest(String scope, long epoch, byte[] payload, int length) {
+        MacState state = states.get();
+        Mac mac = state.mac;
+
+        // The scope is length-prefixed so that scope and payload cannot run into each other
+        int scopeLength = scope.length();
+        byte[] scratch = state.scratch(4 + 2 * scopeLength + 8);
+        int position = writeInt(scratch, 0, scopeLength);
+        for (int i = 0; i < scopeLength; i++) {
+            char c = scope.charAt(i);
+            scratch[position++] = (byte) (c >>> 8);
+            scratch[position++] = (byte) c;
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            scratch[position++] = (byte) (epoch >>> shift);
+        }
+        mac.update(scratch, 0, position);
+        mac.update(payload, 0, length);
+
+        try {
+            mac.doFinal(state.digest, 0);
+        } catch (GeneralSecurityException e) {
+            // Cannot happen: the digest buffer always has room for the full MAC
+            throw new IllegalStateException("Failed to compute token MAC", e);
+        }
+        return state.digest;
+    }
+
+    private static int writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+        return offset + 4;
+    }
+
+    private MacState newState() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return new MacState(mac);
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is required on every Java platform
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    /**
+     * The MAC and buffers of one thread.
+     */
+    private static final class MacState {
+        private final Mac mac;
+        private final byte[] digest;
+        private byte[] scratch = new byte[64];
+
+        MacState(Mac mac) {
+            this.mac = mac;
+            this.digest = new byte[mac.getMacLength()];
+        }
+
+        byte[] scratch(int length) {
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            return scratch;
+        }
+    }
+}
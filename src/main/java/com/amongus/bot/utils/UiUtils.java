@@ -1,6 +1,7 @@
 package com.amongus.bot.utils;
 
 import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.models.CallbackAction;
 import com.amongus.bot.models.Config;
 import com.amongus.bot.models.Player;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
@@ -12,14 +13,16 @@ import java.util.List;
 public class UiUtils {
     /**
      * Создает клавиатуру с кнопкой "Готов"
+     *
+     * @param epoch Эпоха лобби, см. {@link GameSession#getCallbackEpoch}
      */
-    public static InlineKeyboardMarkup createReadyButton() {
+    public static InlineKeyboardMarkup createReadyButton(long epoch) {
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
         List<InlineKeyboardButton> row = new ArrayList<>();
         InlineKeyboardButton readyButton = new InlineKeyboardButton();
         readyButton.setText("Готов");
-        readyButton.setCallbackData("ready");
+        readyButton.setCallbackData(CallbackCodec.encode(CallbackAction.READY, epoch));
         row.add(readyButton);
         keyboard.add(row);
         markup.setKeyboard(keyboard);
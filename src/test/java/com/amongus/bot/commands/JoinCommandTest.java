@@ -0,0 +1,102 @@
+package com.amongus.bot.commands;
+
+import com.amongus.bot.core.AmongUsBot;
+import com.amongus.bot.core.BotMetrics;
+import com.amongus.bot.core.SessionManager;
+import com.amongus.bot.core.UpdateDispatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JoinCommandTest {
+    private static final long GROUP_CHAT_ID = -100500L;
+    private static final long USER_ID = 42L;
+
+    private final List<SendMessage> sent = new CopyOnWriteArrayList<>();
+    private final SessionManager sessionManager = new SessionManager();
+    private UpdateDispatcher dispatcher;
+    private JoinCommand joinCommand;
+    private StartCommand startCommand;
+
+    @Before
+    public void start() {
+        AmongUsBot bot = mock(AmongUsBot.class);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(null);
+        }).when(bot).sendMessageSafe(any(SendMessage.class));
+        when(bot.getBotUsername()).thenReturn("TestBot");
+        dispatcher = new UpdateDispatcher(sessionManager, update -> { }, 1, new BotMetrics());
+        when(bot.getUpdateDispatcher()).thenReturn(dispatcher);
+        joinCommand = new JoinCommand(bot, sessionManager, null);
+        startCommand = new StartCommand(bot, sessionManager, null, joinCommand);
+    }
+
+    @After
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    private static Message message(long chatId, String chatType) {
+        Chat chat = new Chat(chatId, chatType);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setFrom(new User(USER_ID, "Анна", false));
+        return message;
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        for (int i = 0; i < 200 && sent.size() < count; i++) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void groupJoinWithoutPrivateChatGetsAJoinLink() {
+        joinCommand.execute(message(GROUP_CHAT_ID, "group"), "abcde");
+
+        assertEquals(1, sent.size());
+        SendMessage reply = sent.get(0);
+        assertEquals(String.valueOf(GROUP_CHAT_ID), reply.getChatId());
+        assertTrue(reply.getText().contains("https://t.me/TestBot?start=join-ABCDE"));
+        assertFalse(sessionManager.getLobbyCodeForPlayer(USER_ID).isPresent());
+    }
+
+    @Test
+    public void groupJoinWithPrivateChatTriesTheLobby() throws InterruptedException {
+        sessionManager.rememberPrivateChat(USER_ID);
+        joinCommand.execute(message(GROUP_CHAT_ID, "group"), "ABCDE");
+
+        // There is no such lobby, so the player is told so in private
+        awaitSent(1);
+        assertEquals(1, sent.size());
+        assertEquals(String.valueOf(USER_ID), sent.get(0).getChatId());
+        assertTrue(sent.get(0).getText().contains("Не удалось"));
+    }
+
+    @Test
+    public void joinLinkJoinsFromThePrivateChat() throws InterruptedException {
+        startCommand.execute(message(USER_ID, "private"), "join-ABCDE");
+
+        awaitSent(1);
+        assertEquals(1, sent.size());
+        assertEquals(String.valueOf(USER_ID), sent.get(0).getChatId());
+        assertTrue(sent.get(0).getText().contains("ABCDE"));
+    }
+}
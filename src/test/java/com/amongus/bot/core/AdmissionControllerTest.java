@@ -0,0 +1,70 @@
+package com.amongus.bot.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdmissionControllerTest {
+    // Slow enough that no token comes back while a test runs
+    private static final double NO_REFILL = 0.001;
+
+    @Test
+    public void burstIsAdmittedAndTheNextUpdateRejected() {
+        AdmissionController controller = new AdmissionController(NO_REFILL, 3, 3600);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(1));
+        }
+        assertEquals(AdmissionController.Decision.REJECTED_NOTIFY, controller.admit(1));
+    }
+
+    @Test
+    public void userIsToldOncePerNoticeInterval() {
+        AdmissionController controller = new AdmissionController(NO_REFILL, 1, 3600);
+        assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(1));
+        assertEquals(AdmissionController.Decision.REJECTED_NOTIFY, controller.admit(1));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(AdmissionController.Decision.REJECTED, controller.admit(1));
+        }
+
+        // Without an interval every rejection is a notice
+        AdmissionController chatty = new AdmissionController(NO_REFILL, 1, 0);
+        chatty.admit(1);
+        assertEquals(AdmissionController.Decision.REJECTED_NOTIFY, chatty.admit(1));
+        assertEquals(AdmissionController.Decision.REJECTED_NOTIFY, chatty.admit(1));
+    }
+
+    @Test
+    public void usersHaveTheirOwnBuckets() {
+        AdmissionController controller = new AdmissionController(NO_REFILL, 1, 3600);
+        assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(1));
+        assertEquals(AdmissionController.Decision.REJECTED_NOTIFY, controller.admit(1));
+        assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(2));
+    }
+
+    @Test
+    public void bucketRefillsAtTheRate() throws InterruptedException {
+        AdmissionController controller = new AdmissionController(10, 1, 3600);
+        assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(1));
+        assertEquals(AdmissionController.Decision.REJECTED_NOTIFY, controller.admit(1));
+        Thread.sleep(150);
+        assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(1));
+    }
+
+    @Test
+    public void onlyRefilledLimitersAreEvicted() throws InterruptedException {
+        AdmissionController controller = new AdmissionController(10, 2, 3600);
+        controller.admit(1);
+        controller.admit(2);
+        assertEquals(2, controller.getTrackedUserCount());
+        assertEquals(0, controller.evictIdle());
+
+        Thread.sleep(150);
+        controller.admit(2);
+        assertEquals(1, controller.evictIdle());
+        assertEquals(1, controller.getTrackedUserCount());
+
+        // An evicted user starts over with a full bucket
+        assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(1));
+        assertEquals(AdmissionController.Decision.ADMITTED, controller.admit(1));
+    }
+}
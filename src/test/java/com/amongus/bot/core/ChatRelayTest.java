@@ -0,0 +1,139 @@
+package com.amongus.bot.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class ChatRelayTest {
+    private static final long WINDOW_MILLIS = 50;
+
+    private final WheelTimer timer = new WheelTimer(5, 64);
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private UpdateDispatcher dispatcher;
+    private ChatRelay relay;
+
+    @Before
+    public void start() {
+        AmongUsBot bot = mock(AmongUsBot.class);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0) + ": " + invocation.getArgument(1));
+            return CompletableFuture.completedFuture(null);
+        }).when(bot).sendTextMessageSafe(anyString(), anyString());
+        dispatcher = new UpdateDispatcher(new SessionManager(), update -> { }, 2, new BotMetrics());
+        relay = new ChatRelay(bot, dispatcher, timer, WINDOW_MILLIS);
+    }
+
+    @After
+    public void shutdown() {
+        dispatcher.shutdown();
+        timer.shutdown();
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        for (int i = 0; i < 200 && sent.size() < count; i++) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void linesOfAWindowArriveAsOneDigestInOrder() throws InterruptedException {
+        List<String> chats = Arrays.asList("1", "2");
+        relay.relay("ABC123", chats, "first");
+        relay.relay("ABC123", chats, "second");
+        relay.relay("ABC123", Collections.singletonList("2"), "third");
+        assertTrue(sent.isEmpty());
+
+        awaitSent(2);
+        Thread.sleep(2 * WINDOW_MILLIS);
+        assertEquals(Arrays.asList("1: first\nsecond", "2: first\nsecond\nthird"), sent);
+    }
+
+    @Test
+    public void fullDigestIsSentEarlyAndNothingIsLost() throws InterruptedException {
+        char[] filler = new char[1000];
+        Arrays.fill(filler, 'x');
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lines.add(i + new String(filler));
+            relay.relay("ABC123", Collections.singletonList("1"), lines.get(i));
+        }
+        relay.flush("ABC123");
+
+        StringBuilder joined = new StringBuilder();
+        for (String message : sent) {
+            String text = message.substring("1: ".length());
+            assertTrue(text.length() <= ChatRelay.MAX_MESSAGE_LENGTH);
+            joined.append(joined.length() > 0 ? "\n" : "").append(text);
+        }
+        assertEquals(String.join("\n", lines), joined.toString());
+        // Four lines of 1001 characters fit into a message, the fifth does not
+        assertEquals(3, sent.size());
+    }
+
+    @Test
+    public void overlongLineIsCut() {
+        char[] line = new char[ChatRelay.MAX_MESSAGE_LENGTH + 100];
+        Arrays.fill(line, 'y');
+        relay.relay("ABC123", Collections.singletonList("1"), new String(line));
+        relay.flush("ABC123");
+        assertEquals(1, sent.size());
+        assertEquals(ChatRelay.MAX_MESSAGE_LENGTH, sent.get(0).length() - "1: ".length());
+    }
+
+    @Test
+    public void phaseChangeFlushesBeforeTheNextPhaseSpeaks() throws InterruptedException {
+        relay.relay("ABC123", Collections.singletonList("1"), "discussion chat");
+        // What a state transition does in the mailbox: flush on exit, then announce the next phase
+        relay.flush("ABC123");
+        sent.add("1: voting started");
+
+        Thread.sleep(3 * WINDOW_MILLIS);
+        assertEquals(Arrays.asList("1: discussion chat", "1: voting started"), sent);
+    }
+
+    @Test
+    public void windowFlushWaitsForTheLobbyMailbox() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch transitioned = new CountDownLatch(1);
+        dispatcher.submitToLobby("ABC123", () -> {
+            relay.relay("ABC123", Collections.singletonList("1"), "discussion chat");
+            try {
+                // The window passes while the lobby is busy
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            relay.flush("ABC123");
+            sent.add("1: voting started");
+            transitioned.countDown();
+        });
+
+        Thread.sleep(3 * WINDOW_MILLIS);
+        assertTrue(sent.isEmpty());
+        release.countDown();
+        assertTrue(transitioned.await(5, TimeUnit.SECONDS));
+        Thread.sleep(2 * WINDOW_MILLIS);
+        assertEquals(Arrays.asList("1: discussion chat", "1: voting started"), sent);
+    }
+
+    @Test
+    public void forgetSendsWhatIsLeft() {
+        relay.relay("ABC123", Collections.singletonList("1"), "last words");
+        relay.forget("ABC123");
+        assertEquals(Collections.singletonList("1: last words"), sent);
+    }
+}
@@ -0,0 +1,156 @@
+package com.amongus.bot.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventJournalTest {
+    private static final int SEGMENT_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] record(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(Path directory, long from) throws IOException {
+        List<String> records = new ArrayList<>();
+        EventJournal reader = EventJournal.open(directory, SEGMENT_BYTES);
+        try {
+            reader.replay(from, payload -> {
+                byte[] bytes = new byte[payload.remaining()];
+                payload.get(bytes);
+                records.add(new String(bytes, StandardCharsets.UTF_8));
+            });
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+    @Test
+    public void replaysRecordsInOrderAcrossSegments() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        EventJournal journal = EventJournal.open(directory, SEGMENT_BYTES);
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            written.add("record " + i);
+            assertTrue(journal.append(record("record " + i)));
+        }
+        journal.close();
+
+        assertTrue(journal.getSegmentCount() > 1);
+        assertEquals(written, replay(directory, 0));
+    }
+
+    @Test
+    public void tornLastRecordEndsTheSegment() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        EventJournal journal = EventJournal.open(directory, SEGMENT_BYTES);
+        journal.append(record("first"));
+        journal.append(record("second"));
+        journal.append(record("third"));
+        journal.close();
+
+        // A crash in the middle of the last record leaves a payload that does not match its CRC
+        Path segment = segments(directory).get(0);
+        int last = lastFrame(segment);
+        corrupt(segment, last + 8 + 2);
+
+        assertEquals(List.of("first", "second"), replay(directory, 0));
+    }
+
+    @Test
+    public void impossibleLengthEndsTheSegment() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        EventJournal journal = EventJournal.open(directory, SEGMENT_BYTES);
+        journal.append(record("first"));
+        journal.append(record("second"));
+        journal.close();
+
+        Path segment = segments(directory).get(0);
+        int last = lastFrame(segment);
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4).putInt(0, SEGMENT_BYTES * 2);
+            file.write(length, last);
+        }
+
+        assertEquals(List.of("first"), replay(directory, 0));
+    }
+
+    @Test
+    public void replayStartsAtTheSnapshotSegment() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        EventJournal journal = EventJournal.open(directory, SEGMENT_BYTES);
+        journal.append(record("before"));
+        long firstSegment = journal.startSnapshot();
+        journal.append(record("after"));
+        journal.deleteSegmentsBefore(firstSegment);
+        journal.close();
+
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(List.of("after"), replay(directory, firstSegment));
+    }
+
+    @Test
+    public void rejectsARecordLargerThanASegment() throws IOException {
+        EventJournal journal = EventJournal.open(folder.getRoot().toPath(), SEGMENT_BYTES);
+        try {
+            assertFalse(journal.append(new byte[SEGMENT_BYTES]));
+            assertTrue(journal.append(record("small")));
+        } finally {
+            journal.close();
+        }
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path path : files) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Finds the offset of the last record in a segment by walking the frames.
+     */
+    static int lastFrame(Path segment) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 4;
+        int last = -1;
+        while (position + 8 <= in.limit() && in.getInt(position) > 0) {
+            last = position;
+            position += 8 + in.getInt(position);
+        }
+        return last;
+    }
+
+    static void corrupt(Path file, int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, offset);
+            b.put(0, (byte) (b.get(0) ^ 0x5A)).position(0);
+            channel.write(b, offset);
+        }
+    }
+}
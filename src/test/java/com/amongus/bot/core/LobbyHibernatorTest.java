@@ -0,0 +1,107 @@
+package com.amongus.bot.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LobbyHibernatorTest {
+    private static SessionSnapshot.PlayerImage player(long userId, int flags) {
+        return new SessionSnapshot.PlayerImage(userId, "user" + userId, "Игрок", null, flags, userId);
+    }
+
+    private static SessionSnapshot.LobbyImage lobby(String code, long owner, long... others) {
+        List<SessionSnapshot.PlayerImage> players = new ArrayList<>();
+        players.add(player(owner, 1 | 2 | 4));
+        for (long userId : others) {
+            players.add(player(userId, 1 | 2 | 4));
+        }
+        return new SessionSnapshot.LobbyImage(code, 1_700_000_000_000L, player(owner, 0),
+                new int[] {1, 60, 30, 25, 5}, new int[] {1, 60, 30, 25, 5}, "-100500", null, players);
+    }
+
+    @Test
+    public void lobbyRoundTrips() {
+        LobbyHibernator hibernator = new LobbyHibernator();
+        hibernator.put(lobby("ABC123", 1, 2), 0);
+        assertTrue(hibernator.contains("ABC123"));
+        assertTrue(hibernator.getOffHeapBytes() > 0);
+
+        LobbyHibernator.Hibernated hibernated = hibernator.take("ABC123");
+        SessionSnapshot.LobbyImage image = hibernated.image();
+        assertEquals("ABC123", image.lobbyCode);
+        assertEquals(1_700_000_000_000L, image.callbackEpoch);
+        assertEquals("-100500", image.groupChatId);
+        assertArrayEquals(new int[] {1, 60, 30, 25, 5}, image.sessionSettings);
+        assertEquals(2, image.players.size());
+
+        assertFalse(hibernator.contains("ABC123"));
+        assertTrue(hibernator.isEmpty());
+        assertEquals(0, hibernator.getOffHeapBytes());
+        assertNull(hibernator.take("ABC123"));
+    }
+
+    @Test
+    public void playersFindTheirLobbyUntilItIsTaken() {
+        LobbyHibernator hibernator = new LobbyHibernator();
+        SessionSnapshot.LobbyImage image = lobby("ABC123", 1, 2);
+        // Left the lobby before it was hibernated
+        image.players.add(player(3, 2));
+        hibernator.put(image, 0);
+
+        assertEquals("ABC123", hibernator.lobbyOf(1));
+        assertEquals("ABC123", hibernator.lobbyOf(2));
+        assertNull(hibernator.lobbyOf(3));
+
+        hibernator.take("ABC123");
+        assertNull(hibernator.lobbyOf(1));
+        assertNull(hibernator.lobbyOf(2));
+    }
+
+    @Test
+    public void peekLeavesTheLobbyHibernated() {
+        LobbyHibernator hibernator = new LobbyHibernator();
+        hibernator.put(lobby("ABC123", 1), 0);
+        assertEquals("ABC123", hibernator.peek("ABC123").lobbyCode);
+        assertEquals(1, hibernator.images().size());
+        assertTrue(hibernator.contains("ABC123"));
+        assertNull(hibernator.peek("XYZ789"));
+    }
+
+    @Test
+    public void lobbiesExpireInTheOrderTheyWentIdle() {
+        LobbyHibernator hibernator = new LobbyHibernator();
+        hibernator.put(lobby("AAA111", 1), 100);
+        hibernator.put(lobby("BBB222", 2), 200);
+        hibernator.put(lobby("CCC333", 3), 300);
+
+        assertEquals(Collections.emptyList(), hibernator.expired(150, 100));
+        assertEquals(Collections.singletonList("AAA111"), hibernator.expired(200, 100));
+        // Expired lobbies stay hibernated until the caller removes them
+        assertTrue(hibernator.contains("AAA111"));
+
+        // A woken lobby does not expire
+        hibernator.take("BBB222");
+        assertEquals(Collections.singletonList("CCC333"), hibernator.expired(1_000, 100));
+        assertEquals(Collections.emptyList(), hibernator.expired(10_000, 100));
+    }
+
+    @Test
+    public void lobbyHibernatedAgainExpiresByItsNewActivity() {
+        LobbyHibernator hibernator = new LobbyHibernator();
+        hibernator.put(lobby("ABC123", 1), 100);
+        hibernator.take("ABC123");
+        hibernator.put(lobby("ABC123", 1), 500);
+
+        assertEquals(Collections.emptyList(), hibernator.expired(250, 100));
+        assertEquals(Arrays.asList("ABC123"), hibernator.expired(600, 100));
+    }
+}
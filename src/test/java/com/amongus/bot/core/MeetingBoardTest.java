@@ -0,0 +1,168 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.game.voting.VotingManager;
+import com.amongus.bot.models.Player;
+import com.amongus.bot.utils.SecurityManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class MeetingBoardTest {
+    private static final int PLAYERS = 10;
+    private static final long REFRESH_MILLIS = 20;
+
+    private final WheelTimer timer = new WheelTimer(5, 64);
+    private final List<String> sends = new CopyOnWriteArrayList<>();
+    private final List<String> edits = new CopyOnWriteArrayList<>();
+    private final List<Integer> editedMessageIds = new CopyOnWriteArrayList<>();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private volatile EditResult editResult = EditResult.EDITED;
+    private UpdateDispatcher dispatcher;
+    private MeetingBoard meetingBoard;
+    private GameSession gameSession;
+    private VotingManager votingManager;
+
+    @Before
+    public void start() {
+        AmongUsBot bot = mock(AmongUsBot.class);
+        doAnswer(invocation -> {
+            sends.add(invocation.getArgument(0));
+            return CompletableFuture.completedFuture(messageIds.incrementAndGet());
+        }).when(bot).sendMessageWithReturnIdSafe(anyString(), anyString(), any());
+        doAnswer(invocation -> {
+            edits.add(invocation.getArgument(0));
+            editedMessageIds.add(invocation.getArgument(1));
+            return CompletableFuture.completedFuture(editResult);
+        }).when(bot).editMessageTextChecked(anyString(), anyInt(), anyString(), any());
+        dispatcher = new UpdateDispatcher(new SessionManager(), update -> { }, 2, new BotMetrics());
+        meetingBoard = new MeetingBoard(bot, dispatcher, timer, REFRESH_MILLIS, 5);
+
+        gameSession = new GameSession("ABC123", new Player(1, "p1", "Игрок 1", null), timer, new SecurityManager(timer));
+        gameSession.setPlayerChatId(1, "1");
+        for (long userId = 2; userId <= PLAYERS; userId++) {
+            gameSession.addPlayer(new Player(userId, "p" + userId, "Игрок " + userId, null));
+            gameSession.setPlayerChatId(userId, String.valueOf(userId));
+        }
+        votingManager = new VotingManager(60);
+        votingManager.registerVoters(gameSession);
+    }
+
+    @After
+    public void shutdown() {
+        dispatcher.shutdown();
+        timer.shutdown();
+    }
+
+    private static void await(List<String> calls, int count) throws InterruptedException {
+        for (int i = 0; i < 400 && calls.size() < count; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, calls.size());
+    }
+
+    /**
+     * Runs a meeting in which every player votes, one vote per board refresh, and closes it.
+     */
+    private void runMeeting(int viewers) throws InterruptedException {
+        dispatcher.submitToLobby("ABC123", () -> meetingBoard.open(gameSession, votingManager));
+        await(sends, viewers);
+        for (long voterId = 1; voterId <= PLAYERS; voterId++) {
+            long voter = voterId;
+            dispatcher.submitToLobby("ABC123", () -> {
+                votingManager.castVote(voter, voter % PLAYERS + 1);
+                meetingBoard.invalidate("ABC123");
+            });
+            await(edits, (int) voterId * viewers);
+        }
+        dispatcher.submitToLobby("ABC123", () -> meetingBoard.close("ABC123", "Никто не изгнан"));
+        await(edits, (PLAYERS + 1) * viewers);
+        // Nothing else is sent once the results are shown
+        Thread.sleep(3 * REFRESH_MILLIS);
+    }
+
+    @Test
+    public void privateBoardsCostAMessageAndAnEditPerPlayer() throws InterruptedException {
+        runMeeting(PLAYERS);
+
+        assertEquals(PLAYERS, sends.size());
+        assertEquals((PLAYERS + 1) * PLAYERS, edits.size());
+    }
+
+    @Test
+    public void groupBoardCostsOneMessageAndOneEditPerChange() throws InterruptedException {
+        gameSession.setGroupChatId("-100500");
+        runMeeting(1);
+
+        assertEquals(List.of("-100500"), sends);
+        assertEquals(PLAYERS + 1, edits.size());
+    }
+
+    private void vote(long voterId, long targetId) {
+        dispatcher.submitToLobby("ABC123", () -> {
+            votingManager.castVote(voterId, targetId);
+            meetingBoard.invalidate("ABC123");
+        });
+    }
+
+    @Test
+    public void goneMessageIsReplaced() throws InterruptedException {
+        gameSession.setGroupChatId("-100500");
+        dispatcher.submitToLobby("ABC123", () -> meetingBoard.open(gameSession, votingManager));
+        await(sends, 1);
+
+        editResult = EditResult.MESSAGE_GONE;
+        vote(1, 2);
+        await(edits, 1);
+        await(sends, 2);
+
+        // Later changes edit the new message
+        editResult = EditResult.EDITED;
+        vote(2, 3);
+        await(edits, 2);
+        assertEquals(List.of(1, 2), editedMessageIds);
+    }
+
+    @Test
+    public void failedEditIsRepeatedAtTheNextRefresh() throws InterruptedException {
+        gameSession.setGroupChatId("-100500");
+        dispatcher.submitToLobby("ABC123", () -> meetingBoard.open(gameSession, votingManager));
+        await(sends, 1);
+
+        editResult = EditResult.FAILED;
+        vote(1, 2);
+        await(edits, 1);
+
+        // Nothing changed since, but the message does not show the vote yet
+        editResult = EditResult.EDITED;
+        dispatcher.submitToLobby("ABC123", () -> meetingBoard.invalidate("ABC123"));
+        await(edits, 2);
+        assertEquals(1, sends.size());
+    }
+
+    @Test
+    public void failedResultsAreRetriedAFewTimes() throws InterruptedException {
+        gameSession.setGroupChatId("-100500");
+        dispatcher.submitToLobby("ABC123", () -> meetingBoard.open(gameSession, votingManager));
+        await(sends, 1);
+
+        editResult = EditResult.FAILED;
+        dispatcher.submitToLobby("ABC123", () -> meetingBoard.close("ABC123", "Никто не изгнан"));
+        await(edits, 3);
+        Thread.sleep(5 * REFRESH_MILLIS);
+        assertEquals(3, edits.size());
+        assertEquals(1, sends.size());
+    }
+}
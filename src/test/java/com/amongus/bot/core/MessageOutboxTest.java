@@ -0,0 +1,129 @@
+package com.amongus.bot.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageOutboxTest {
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MessageOutbox open() {
+        MessageOutbox outbox = MessageOutbox.open(folder.getRoot().toString(), SEGMENT_BYTES);
+        assertTrue(outbox.isEnabled());
+        return outbox;
+    }
+
+    /**
+     * Adds entries and waits until they are on disk and handed over.
+     */
+    private static List<MessageOutbox.Entry> addAndCommit(MessageOutbox outbox, String... keys)
+            throws InterruptedException {
+        List<MessageOutbox.Entry> handed = new CopyOnWriteArrayList<>();
+        CountDownLatch committed = new CountDownLatch(keys.length);
+        outbox.setSender(entry -> {
+            handed.add(entry);
+            committed.countDown();
+        });
+        for (String key : keys) {
+            assertTrue(outbox.add(key, "owner", "chat-" + key, "Роль: " + key, 30));
+        }
+        assertTrue(committed.await(5, TimeUnit.SECONDS));
+        return handed;
+    }
+
+    @Test
+    public void pendingEntriesRoundTrip() throws InterruptedException {
+        MessageOutbox outbox = open();
+        List<MessageOutbox.Entry> entries = addAndCommit(outbox, "a", "b", "c");
+        outbox.sent(entries.get(0), 101, 1_000L);
+        outbox.sent(entries.get(1), 102, 2_000L);
+        outbox.done(entries.get(1));
+
+        List<MessageOutbox.Entry> pending = open().replay();
+        assertEquals(2, pending.size());
+        MessageOutbox.Entry sent = pending.get(0);
+        assertEquals("a", sent.getKey());
+        assertEquals("owner", sent.getOwnerKey());
+        assertEquals("chat-a", sent.getChatId());
+        assertEquals("Роль: a", sent.getText());
+        assertEquals(30, sent.getSecondsToLive());
+        assertEquals(101, sent.getMessageId());
+        assertEquals(1_000L, sent.getDeleteAtMillis());
+
+        MessageOutbox.Entry unsent = pending.get(1);
+        assertEquals("c", unsent.getKey());
+        assertEquals(0, unsent.getMessageId());
+    }
+
+    @Test
+    public void replayCompactsTheOutbox() throws InterruptedException {
+        MessageOutbox outbox = open();
+        List<MessageOutbox.Entry> entries = addAndCommit(outbox, "a", "b");
+        outbox.sent(entries.get(0), 7, 5_000L);
+        outbox.done(entries.get(1));
+
+        MessageOutbox restarted = open();
+        assertEquals(1, restarted.replay().size());
+        // Only the compacted copy is left, and it replays the same way
+        List<MessageOutbox.Entry> again = open().replay();
+        assertEquals(1, again.size());
+        assertEquals(7, again.get(0).getMessageId());
+    }
+
+    @Test
+    public void tornLastRecordIsDropped() throws InterruptedException, IOException {
+        MessageOutbox outbox = open();
+        List<MessageOutbox.Entry> entries = addAndCommit(outbox, "a", "b");
+        outbox.sent(entries.get(1), 55, 9_000L);
+
+        Path segment = EventJournalTest.segments(folder.getRoot().toPath()).get(0);
+        EventJournalTest.corrupt(segment, EventJournalTest.lastFrame(segment) + 8 + 1);
+
+        // The entry comes back as never sent, so it is sent again rather than lost
+        List<MessageOutbox.Entry> pending = open().replay();
+        assertEquals(2, pending.size());
+        assertEquals("b", pending.get(1).getKey());
+        assertEquals(0, pending.get(1).getMessageId());
+    }
+
+    @Test
+    public void keyIsIgnoredWhilePendingAndOnceDone() throws InterruptedException {
+        MessageOutbox outbox = open();
+        List<MessageOutbox.Entry> entries = addAndCommit(outbox, "reveal:ABC123:1");
+        assertFalse(outbox.add("reveal:ABC123:1", "owner", "chat", "again", 30));
+
+        outbox.done(entries.get(0));
+        assertFalse(outbox.add("reveal:ABC123:1", "owner", "chat", "again", 30));
+        assertEquals(0, outbox.getPendingCount());
+
+        // Finished keys are replayed as well
+        MessageOutbox restarted = open();
+        assertTrue(restarted.replay().isEmpty());
+        assertFalse(restarted.add("reveal:ABC123:1", "owner", "chat", "again", 30));
+    }
+
+    @Test
+    public void disabledOutboxHandsEntriesOverAtOnce() {
+        MessageOutbox outbox = MessageOutbox.open("", SEGMENT_BYTES);
+        List<MessageOutbox.Entry> handed = new CopyOnWriteArrayList<>();
+        outbox.setSender(handed::add);
+        assertTrue(outbox.add(null, "owner", "chat", "text", 30));
+        assertTrue(outbox.add(null, "owner", "chat", "text", 30));
+        assertEquals(2, handed.size());
+        assertTrue(outbox.replay().isEmpty());
+    }
+}
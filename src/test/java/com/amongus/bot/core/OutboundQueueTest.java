@@ -0,0 +1,125 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.models.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OutboundQueueTest {
+    private final List<String> editedTexts = new CopyOnWriteArrayList<>();
+    private AbsSender sender;
+    private OutboundQueue queue;
+
+    @Before
+    public void start() throws TelegramApiException {
+        sender = mock(AbsSender.class);
+        doAnswer(invocation -> {
+            editedTexts.add(((EditMessageText) invocation.getArgument(0)).getText());
+            return Boolean.TRUE;
+        }).when(sender).execute(any(EditMessageText.class));
+        doAnswer(invocation -> new Message()).when(sender).execute(any(SendMessage.class));
+        queue = new OutboundQueue(sender, 2);
+    }
+
+    @After
+    public void shutdown() {
+        queue.shutdown();
+    }
+
+    private static EditMessageText edit(String chatId, int messageId, String text) {
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId);
+        edit.setMessageId(messageId);
+        edit.setText(text);
+        return edit;
+    }
+
+    private static <T> T await(CompletableFuture<T> future)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void editsWaitingForTokensSendOnlyTheLatestContent() throws Exception {
+        // Use up the burst of the chat, so that the edits have to wait for a token
+        for (int i = 0; i < Config.OUTBOUND_CHAT_BURST; i++) {
+            queue.submit("1", new SendMessage("1", "message " + i));
+        }
+        CompletableFuture<Serializable> first = queue.submitEdit(edit("1", 7, "votes: 1"));
+        CompletableFuture<Serializable> second = queue.submitEdit(edit("1", 7, "votes: 2"));
+        CompletableFuture<Serializable> third = queue.submitEdit(edit("1", 7, "votes: 3"));
+
+        assertSame(first, second);
+        assertSame(first, third);
+        assertEquals(Boolean.TRUE, await(first));
+        assertEquals(List.of("votes: 3"), editedTexts);
+        assertEquals(3, queue.getEditsSubmitted());
+        assertEquals(2, queue.getEditsCoalesced());
+    }
+
+    @Test
+    public void editWithTheShownContentIsNotSent() throws Exception {
+        await(queue.submitEdit(edit("2", 7, "votes: 1")));
+        assertEquals(Boolean.TRUE, await(queue.submitEdit(edit("2", 7, "votes: 1"))));
+
+        assertEquals(List.of("votes: 1"), editedTexts);
+        assertEquals(1, queue.getEditsSuppressed());
+
+        // Other messages and other content are still sent
+        await(queue.submitEdit(edit("2", 8, "votes: 1")));
+        await(queue.submitEdit(edit("2", 7, "votes: 2")));
+        assertEquals(List.of("votes: 1", "votes: 1", "votes: 2"), editedTexts);
+    }
+
+    @Test
+    public void notModifiedCountsAsSuccess() throws Exception {
+        TelegramApiRequestException notModified = mock(TelegramApiRequestException.class);
+        when(notModified.getErrorCode()).thenReturn(400);
+        when(notModified.getApiResponse()).thenReturn("Bad Request: message is not modified");
+        doAnswer(invocation -> {
+            throw notModified;
+        }).when(sender).execute(any(EditMessageText.class));
+
+        assertEquals(Boolean.TRUE, await(queue.submitEdit(edit("3", 7, "votes: 1"))));
+    }
+
+    @Test
+    public void goneMessageFailsTheEdit() throws Exception {
+        TelegramApiRequestException gone = mock(TelegramApiRequestException.class);
+        when(gone.getErrorCode()).thenReturn(400);
+        when(gone.getApiResponse()).thenReturn("Bad Request: message to edit not found");
+        doAnswer(invocation -> {
+            throw gone;
+        }).when(sender).execute(any(EditMessageText.class));
+
+        try {
+            await(queue.submitEdit(edit("4", 7, "votes: 1")));
+            fail("The edit should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(OutboundQueue.isMessageGone(e.getCause()));
+        }
+    }
+}
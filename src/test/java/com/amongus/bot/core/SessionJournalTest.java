@@ -0,0 +1,124 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.lobby.GameLobby;
+import com.amongus.bot.models.GameSettings;
+import com.amongus.bot.models.Player;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class SessionJournalTest {
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SessionJournal open() {
+        SessionJournal journal = SessionJournal.open(folder.getRoot().toString(), SEGMENT_BYTES);
+        journal.start();
+        return journal;
+    }
+
+    private List<ByteBuffer> replay() {
+        List<ByteBuffer> records = new ArrayList<>();
+        SessionJournal.open(folder.getRoot().toString(), SEGMENT_BYTES).replay(null, record -> {
+            ByteBuffer copy = ByteBuffer.allocate(record.remaining());
+            copy.put(record).flip();
+            records.add(copy);
+        });
+        return records;
+    }
+
+    @Test
+    public void recordsRoundTrip() {
+        SessionJournal journal = open();
+        Player owner = new Player(1, "owner", "Анна", null);
+        journal.lobbyCreated(new GameLobby("ABC123", owner), 1_700_000_000_123L);
+        journal.playerJoined("ABC123", new Player(2, null, "Bob", "Smith"));
+        GameSettings settings = new GameSettings();
+        settings.setImpostorCount(2);
+        settings.setTasksPerPlayer(7);
+        journal.settingsChanged("ABC123", settings, true);
+        journal.groupBound("ABC123", "-100123");
+        journal.lobbyRemoved("ABC123");
+        assertEquals(5, journal.getRecordsWritten());
+
+        List<ByteBuffer> records = replay();
+        assertEquals(5, records.size());
+
+        ByteBuffer created = records.get(0);
+        assertEquals(SessionJournal.Type.LOBBY_CREATED, SessionJournal.readType(created));
+        assertEquals("ABC123", SessionJournal.readString(created));
+        Player restoredOwner = SessionJournal.readPlayer(created);
+        assertEquals(1, restoredOwner.getUserId());
+        assertEquals("owner", restoredOwner.getUsername());
+        assertEquals("Анна", restoredOwner.getFirstName());
+        assertEquals(1_700_000_000_123L, created.getLong());
+        assertFalse(created.hasRemaining());
+
+        ByteBuffer joined = records.get(1);
+        assertEquals(SessionJournal.Type.PLAYER_JOINED, SessionJournal.readType(joined));
+        assertEquals("ABC123", SessionJournal.readString(joined));
+        Player player = SessionJournal.readPlayer(joined);
+        assertEquals(2, player.getUserId());
+        assertNull(player.getUsername());
+        assertEquals("Smith", player.getLastName());
+
+        ByteBuffer changed = records.get(2);
+        assertEquals(SessionJournal.Type.SETTINGS, SessionJournal.readType(changed));
+        SessionJournal.readString(changed);
+        assertEquals(1, changed.get());
+        assertEquals(2, changed.getInt());
+        changed.getInt();
+        changed.getInt();
+        changed.getInt();
+        assertEquals(7, changed.getInt());
+
+        ByteBuffer bound = records.get(3);
+        assertEquals(SessionJournal.Type.GROUP_BOUND, SessionJournal.readType(bound));
+        SessionJournal.readString(bound);
+        assertEquals("-100123", SessionJournal.readString(bound));
+
+        assertEquals(SessionJournal.Type.LOBBY_REMOVED, SessionJournal.readType(records.get(4)));
+    }
+
+    @Test
+    public void tornLastRecordIsDropped() throws IOException {
+        SessionJournal journal = open();
+        journal.lobbyCreated(new GameLobby("ABC123", new Player(1, "owner", "Ann", null)), 42);
+        journal.playerJoined("ABC123", new Player(2, "bob", "Bob", null));
+        journal.playerLeft("ABC123", 2);
+
+        Path segment = EventJournalTest.segments(folder.getRoot().toPath()).get(0);
+        EventJournalTest.corrupt(segment, EventJournalTest.lastFrame(segment) + 8 + 1);
+
+        List<ByteBuffer> records = replay();
+        assertEquals(2, records.size());
+        assertEquals(SessionJournal.Type.PLAYER_JOINED, SessionJournal.readType(records.get(1)));
+    }
+
+    @Test
+    public void recordsNothingBeforeStart() {
+        SessionJournal journal = SessionJournal.open(folder.getRoot().toString(), SEGMENT_BYTES);
+        journal.lobbyCreated(new GameLobby("ABC123", new Player(1, "owner", "Ann", null)), 42);
+        assertEquals(0, journal.getRecordsWritten());
+        assertEquals(0, replay().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAStringPastTheEndOfTheRecord() {
+        ByteBuffer record = ByteBuffer.allocate(8);
+        record.putInt(0, 100);
+        SessionJournal.readString(record);
+    }
+}
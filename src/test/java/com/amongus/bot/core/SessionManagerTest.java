@@ -0,0 +1,96 @@
+package com.amongus.bot.core;
+
+import com.amongus.bot.game.states.GameSession;
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.Player;
+import com.amongus.bot.utils.SecurityManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionManagerTest {
+    private final WheelTimer timer = new WheelTimer(10, 64);
+    private final SessionManager sessionManager = new SessionManager();
+    private AmongUsBot bot;
+
+    @Before
+    public void start() {
+        bot = mock(AmongUsBot.class);
+        when(bot.getTimer()).thenReturn(timer);
+        when(bot.getSecurityManager()).thenReturn(new SecurityManager(timer));
+        // Every lobby is idle long enough to hibernate at the next cleanup
+        sessionManager.enableHibernation(bot, 0);
+    }
+
+    @After
+    public void shutdown() {
+        timer.shutdown();
+    }
+
+    private String lobbyWithTwoPlayers() {
+        String code = sessionManager.createLobby(new Player(1, "owner", "Анна", null), bot);
+        assertTrue(sessionManager.joinLobby(code, new Player(2, "bob", "Bob", null)));
+        sessionManager.updatePlayerChatId(2, "2");
+        return code;
+    }
+
+    private void hibernate(String code) {
+        sessionManager.cleanupInactiveSessions();
+        assertEquals(1, sessionManager.getHibernatedLobbyCount());
+        // The lobby is still there for its players
+        assertEquals(1, sessionManager.getLobbyCount());
+        assertEquals(code, sessionManager.getLobbyCodeForPlayer(1).orElse(null));
+    }
+
+    @Test
+    public void lobbyWakesWhenAPlayerComesBack() {
+        String code = lobbyWithTwoPlayers();
+        long epoch = sessionManager.getCallbackEpoch(code, CallbackAction.Scope.LOBBY);
+        hibernate(code);
+
+        GameSession session = sessionManager.getSessionForPlayer(2).orElseThrow();
+        assertEquals(0, sessionManager.getHibernatedLobbyCount());
+        assertEquals(code, session.getLobbyCode());
+        assertEquals(2, sessionManager.getLobbyByCode(code).orElseThrow().getPlayers().size());
+        assertEquals("2", sessionManager.getPlayerChatId(2));
+        // Buttons sent before the lobby was hibernated stay valid
+        assertEquals(epoch, sessionManager.getCallbackEpoch(code, CallbackAction.Scope.LOBBY));
+    }
+
+    @Test
+    public void lobbyWakesWhenItsCodeIsLookedUp() {
+        String code = lobbyWithTwoPlayers();
+        hibernate(code);
+
+        assertTrue(sessionManager.getLobbyByCode(code).isPresent());
+        assertEquals(0, sessionManager.getHibernatedLobbyCount());
+        assertEquals(code, sessionManager.getLobbyCodeForPlayer(2).orElse(null));
+    }
+
+    @Test
+    public void newPlayerCanJoinAHibernatedLobby() {
+        String code = lobbyWithTwoPlayers();
+        hibernate(code);
+
+        assertTrue(sessionManager.joinLobby(code, new Player(3, "carol", "Carol", null)));
+        assertEquals(3, sessionManager.getLobbyByCode(code).orElseThrow().getPlayers().size());
+    }
+
+    @Test
+    public void hibernatedLobbyCanBeRemoved() {
+        String code = lobbyWithTwoPlayers();
+        hibernate(code);
+
+        assertTrue(sessionManager.removeLobby(code));
+        assertEquals(0, sessionManager.getLobbyCount());
+        assertEquals(0, sessionManager.getHibernatedLobbyCount());
+        assertFalse(sessionManager.getLobbyCodeForPlayer(1).isPresent());
+        assertFalse(sessionManager.getLobbyByCode(code).isPresent());
+    }
+}
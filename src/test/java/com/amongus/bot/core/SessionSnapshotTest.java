@@ -0,0 +1,156 @@
+package com.amongus.bot.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SessionSnapshot.PlayerImage player(long userId, int flags, long chatId) {
+        return new SessionSnapshot.PlayerImage(userId, "user" + userId, "Игрок", null, flags, chatId);
+    }
+
+    private static SessionSnapshot.LobbyImage waitingLobby(String code, long epoch) {
+        return new SessionSnapshot.LobbyImage(code, epoch, player(1, 0, 0), new int[] {1, 60, 30, 25, 5},
+                new int[] {2, 90, 45, 30, 4}, null, null,
+                Arrays.asList(player(1, 1 | 2 | 4, 1), player(2, 1 | 2 | 4, 2)));
+    }
+
+    private static SessionSnapshot.LobbyImage runningLobby() {
+        SessionSnapshot.PlayerImage crewmate = player(1, 1 | 2 | 4, 1);
+        crewmate.roleId = "crewmate";
+        crewmate.meetingsLeft = 1;
+        crewmate.taskTitles = new String[] {"Починить проводку", "Заправить двигатель"};
+        crewmate.taskDone = new boolean[] {true, false};
+        crewmate.taskPhotos = new String[] {"photo-1", null};
+        // Left the lobby during the game and died
+        SessionSnapshot.PlayerImage impostor = player(-2, 2, -1002);
+        impostor.roleId = "impostor";
+        return new SessionSnapshot.LobbyImage("XYZ789", 1_700_000_000_000L, player(1, 0, 0),
+                new int[] {1, 60, 30, 25, 5}, new int[] {1, 60, 30, 25, 2}, "-100500", "RUNNING",
+                Arrays.asList(crewmate, impostor));
+    }
+
+    @Test
+    public void lobbiesRoundTrip() {
+        List<SessionSnapshot.LobbyImage> lobbies = Arrays.asList(waitingLobby("ABC123", 7), runningLobby());
+        SessionSnapshot snapshot = SessionSnapshot.decode(SessionSnapshot.encode(12, lobbies));
+
+        assertEquals(12, snapshot.getFirstSegment());
+        assertEquals(2, snapshot.getLobbies().size());
+
+        SessionSnapshot.LobbyImage waiting = snapshot.getLobbies().get(0);
+        assertEquals("ABC123", waiting.lobbyCode);
+        assertEquals(7, waiting.callbackEpoch);
+        assertEquals(1, waiting.owner.userId);
+        assertArrayEquals(new int[] {1, 60, 30, 25, 5}, waiting.lobbySettings);
+        assertArrayEquals(new int[] {2, 90, 45, 30, 4}, waiting.sessionSettings);
+        assertNull(waiting.groupChatId);
+        assertNull(waiting.stateName);
+        assertEquals(2, waiting.players.size());
+        assertEquals("Игрок", waiting.players.get(1).firstName);
+        assertNull(waiting.players.get(1).lastName);
+        assertEquals(2, waiting.players.get(1).chatId);
+
+        SessionSnapshot.LobbyImage running = snapshot.getLobbies().get(1);
+        assertEquals(1_700_000_000_000L, running.callbackEpoch);
+        assertEquals("-100500", running.groupChatId);
+        assertEquals("RUNNING", running.stateName);
+
+        SessionSnapshot.PlayerImage crewmate = running.players.get(0);
+        assertEquals("crewmate", crewmate.roleId);
+        assertEquals(1, crewmate.meetingsLeft);
+        assertTrue(crewmate.isInLobby());
+        assertTrue(crewmate.isAlive());
+        assertArrayEquals(new String[] {"Починить проводку", "Заправить двигатель"}, crewmate.taskTitles);
+        assertArrayEquals(new boolean[] {true, false}, crewmate.taskDone);
+        assertArrayEquals(new String[] {"photo-1", null}, crewmate.taskPhotos);
+
+        SessionSnapshot.PlayerImage impostor = running.players.get(1);
+        assertEquals(-2, impostor.userId);
+        assertEquals(-1002, impostor.chatId);
+        assertEquals("impostor", impostor.roleId);
+        assertFalse(impostor.isInLobby());
+        assertFalse(impostor.isAlive());
+        assertEquals(0, impostor.taskTitles.length);
+    }
+
+    @Test
+    public void repeatedStringsAreStoredOnce() {
+        SessionSnapshot.LobbyImage lobby = runningLobby();
+        int one = SessionSnapshot.encode(1, Collections.singletonList(lobby)).length;
+        int two = SessionSnapshot.encode(1, Arrays.asList(lobby, lobby)).length;
+        // The second copy only adds table indexes, not the task titles again
+        assertTrue(two - one < one / 2);
+    }
+
+    @Test
+    public void rejectsEveryChangedByte() {
+        byte[] bytes = SessionSnapshot.encode(3, Collections.singletonList(runningLobby()));
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] changed = bytes.clone();
+            changed[i] ^= 0x10;
+            try {
+                SessionSnapshot.decode(changed);
+                fail("byte " + i);
+            } catch (IllegalArgumentException expected) {
+                // Checksum or header mismatch
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsATruncatedSnapshot() {
+        byte[] bytes = SessionSnapshot.encode(3, Collections.singletonList(runningLobby()));
+        SessionSnapshot.decode(Arrays.copyOf(bytes, bytes.length - 5));
+    }
+
+    @Test
+    public void readsTheNewestAndDeletesOlderSnapshots() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        SessionSnapshot.write(directory, 4, Collections.singletonList(waitingLobby("OLD111", 1)));
+        SessionSnapshot.write(directory, 9, Collections.singletonList(waitingLobby("NEW222", 2)));
+
+        SessionSnapshot snapshot = SessionSnapshot.readNewest(directory);
+        assertNotNull(snapshot);
+        assertEquals(9, snapshot.getFirstSegment());
+        assertEquals("NEW222", snapshot.getLobbies().get(0).lobbyCode);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void damagedOrMissingSnapshotReadsAsNone() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        assertNull(SessionSnapshot.readNewest(directory));
+
+        SessionSnapshot.write(directory, 5, Collections.singletonList(runningLobby()));
+        Path file;
+        try (Stream<Path> files = Files.list(directory)) {
+            file = files.findFirst().orElseThrow();
+        }
+        // A crash cannot leave a half-written snapshot under its name, but the disk can damage it
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(SessionSnapshot.readNewest(directory));
+    }
+}
@@ -0,0 +1,143 @@
+package com.amongus.bot.core;
+
+import org.junit.After;
+import org.junit.Test;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UpdateDispatcherTest {
+    private UpdateDispatcher dispatcher;
+
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private UpdateDispatcher start(Consumer<Update> handler, int workers) {
+        dispatcher = new UpdateDispatcher(new SessionManager(), handler, workers, new BotMetrics());
+        return dispatcher;
+    }
+
+    private static Update message(long userId, String text) {
+        User user = new User();
+        user.setId(userId);
+        user.setFirstName("Player" + userId);
+        user.setIsBot(false);
+        Message message = new Message();
+        message.setFrom(user);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    @Test
+    public void chatAndActionsOfOneMailboxKeepTheirOrder() throws InterruptedException {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(41);
+        start(update -> {
+            String text = update.getMessage().getText();
+            if (text.equals("/block")) {
+                awaitQuietly(release);
+            } else {
+                handled.add(text);
+            }
+            done.countDown();
+        }, 2);
+
+        // Everything queues up behind the first update, chat and commands interleaved
+        dispatcher.dispatch(message(1, "/block"));
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String text = i % 3 == 0 ? "/vote" + i : "line" + i;
+            sent.add(text);
+            dispatcher.dispatch(message(1, text));
+        }
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(sent, handled);
+    }
+
+    @Test
+    public void actionsOvertakeChatOfOtherLobbies() throws InterruptedException {
+        int chatPerUser = 200;
+        AtomicInteger chatHandled = new AtomicInteger();
+        CountDownLatch actionDone = new CountDownLatch(1);
+        AtomicInteger chatBeforeAction = new AtomicInteger(-1);
+        start(update -> {
+            if (update.getMessage().getText().startsWith("/")) {
+                chatBeforeAction.set(chatHandled.get());
+                actionDone.countDown();
+            } else {
+                // Each chat line keeps a worker busy for a millisecond
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1);
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                chatHandled.incrementAndGet();
+            }
+        }, 2);
+
+        for (int i = 0; i < chatPerUser; i++) {
+            for (long userId = 1; userId <= 6; userId++) {
+                dispatcher.dispatch(message(userId, "line" + i));
+            }
+        }
+        dispatcher.dispatch(message(100, "/ready"));
+
+        assertTrue(actionDone.await(5, TimeUnit.SECONDS));
+        assertTrue("action waited for " + chatBeforeAction.get() + " chat lines",
+                chatBeforeAction.get() < 6 * chatPerUser / 2);
+    }
+
+    @Test
+    public void lobbyTasksRunOneAtATimeInOrder() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(500);
+        start(update -> { }, 4);
+
+        for (int i = 0; i < 500; i++) {
+            int index = i;
+            dispatcher.submitToLobby("ABC123", () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                order.add(index);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
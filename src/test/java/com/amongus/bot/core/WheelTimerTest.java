@@ -0,0 +1,136 @@
+package com.amongus.bot.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WheelTimerTest {
+    // A small wheel, so that delays of a few hundred milliseconds wrap around it many times
+    private final WheelTimer timer = new WheelTimer(5, 8);
+
+    @After
+    public void shutdown() {
+        timer.shutdown();
+    }
+
+    @Test
+    public void firesEveryTimeoutNoEarlierThanItsDeadline() throws InterruptedException {
+        int count = 500;
+        CountDownLatch fired = new CountDownLatch(count);
+        Queue<String> early = new ConcurrentLinkedQueue<>();
+        Random random = new Random(1);
+        for (int i = 0; i < count; i++) {
+            long delayMillis = random.nextInt(300);
+            long scheduledAt = System.nanoTime();
+            timer.schedule(() -> {
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledAt);
+                if (elapsedMillis < delayMillis) {
+                    early.add(elapsedMillis + " < " + delayMillis);
+                }
+                fired.countDown();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue("not every timeout fired", fired.await(5, TimeUnit.SECONDS));
+        assertTrue("fired early: " + early, early.isEmpty());
+        // A timeout stops counting as pending once its task has returned
+        for (int i = 0; i < 100 && timer.getPendingCount() > 0; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void cancelledTimeoutNeverFires() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        WheelTimer.Timeout timeout = timer.schedule(runs::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        assertEquals(1, timer.getPendingCount());
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timer.getPendingCount());
+
+        Thread.sleep(250);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void firedTimeoutCannotBeCancelled() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        WheelTimer.Timeout timeout = timer.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+
+        // A one-shot timeout is marked expired before its task runs
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isCancelled());
+    }
+
+    @Test
+    public void cancelAllOnlyCancelsTheOwnersTimeouts() throws InterruptedException {
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        CountDownLatch otherRuns = new CountDownLatch(3);
+        for (int i = 0; i < 5; i++) {
+            timer.schedule("A", cancelledRuns::incrementAndGet, 100 + i * 20, TimeUnit.MILLISECONDS);
+        }
+        timer.scheduleAtFixedRate("A", cancelledRuns::incrementAndGet, 100, 20, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i++) {
+            timer.schedule("B", otherRuns::countDown, 100, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(6, timer.cancelAll("A"));
+        assertEquals(0, timer.cancelAll("A"));
+        assertEquals(3, timer.getPendingCount());
+
+        assertTrue(otherRuns.await(1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(0, cancelledRuns.get());
+    }
+
+    @Test
+    public void periodicTimeoutRepeatsUntilCancelled() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch repeated = new CountDownLatch(5);
+        WheelTimer.Timeout timeout = timer.scheduleAtFixedRate(() -> {
+            runs.incrementAndGet();
+            repeated.countDown();
+        }, 0, 15, TimeUnit.MILLISECONDS);
+
+        assertTrue(repeated.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.cancel());
+        // A run already underway may still finish
+        Thread.sleep(50);
+        int afterCancel = runs.get();
+        Thread.sleep(150);
+        assertEquals(afterCancel, runs.get());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheTimer() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(() -> {
+            throw new IllegalStateException("expected");
+        }, 0, TimeUnit.MILLISECONDS);
+        timer.schedule(fired::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTimeoutsAfterShutdown() {
+        timer.shutdown();
+        timer.schedule(() -> { }, 10, TimeUnit.MILLISECONDS);
+    }
+}
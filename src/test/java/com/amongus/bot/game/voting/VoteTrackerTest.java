@@ -0,0 +1,166 @@
+package com.amongus.bot.game.voting;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VoteTrackerTest {
+
+    private static VoteTracker trackerWithVoters(long... voterIds) {
+        VoteTracker tracker = new VoteTracker(voterIds.length);
+        for (long voterId : voterIds) {
+            tracker.addVoter(voterId);
+        }
+        return tracker;
+    }
+
+    @Test
+    public void noVotesHaveNoLeader() {
+        VoteTracker tracker = trackerWithVoters(1, 2, 3);
+        assertEquals(VoteTracker.NONE, tracker.getMostVoted());
+        assertFalse(tracker.isTie());
+        assertEquals(0, tracker.getTotalVotes());
+    }
+
+    @Test
+    public void revoteMovesTheLeader() {
+        VoteTracker tracker = trackerWithVoters(1, 2, 3);
+        tracker.vote(1, 3);
+        tracker.vote(2, 3);
+        assertEquals(3, tracker.getMostVoted());
+
+        // Both change their mind: the leader must follow although no new voter came in
+        tracker.vote(1, 2);
+        assertTrue(tracker.isTie());
+        assertEquals(VoteTracker.NONE, tracker.getMostVoted());
+        tracker.vote(2, 2);
+        assertEquals(2, tracker.getMostVoted());
+        assertEquals(2, tracker.getVotes(2));
+        assertEquals(0, tracker.getVotes(3));
+        assertEquals(2, tracker.getVotedCount());
+    }
+
+    @Test
+    public void repeatedVoteIsCountedOnce() {
+        VoteTracker tracker = trackerWithVoters(1, 2);
+        assertTrue(tracker.vote(1, 2));
+        assertTrue(tracker.vote(1, 2));
+        assertEquals(1, tracker.getVotes(2));
+        assertEquals(1, tracker.getTotalVotes());
+    }
+
+    @Test
+    public void tieBetweenPlayerAndSkipHasNoLeader() {
+        VoteTracker tracker = trackerWithVoters(1, 2, 3, 4);
+        tracker.vote(1, 2);
+        tracker.vote(3, VoteTracker.SKIP);
+        assertTrue(tracker.isTie());
+        assertEquals(VoteTracker.NONE, tracker.getMostVoted());
+
+        tracker.vote(4, VoteTracker.SKIP);
+        assertFalse(tracker.isTie());
+        assertEquals(VoteTracker.SKIP, tracker.getMostVoted());
+        assertEquals(2, tracker.getSkipVotes());
+    }
+
+    @Test
+    public void retractingFromATieLeavesTheOtherLeader() {
+        VoteTracker tracker = trackerWithVoters(1, 2, 3, 4);
+        tracker.vote(1, 3);
+        tracker.vote(2, 4);
+        assertTrue(tracker.isTie());
+
+        tracker.vote(2, VoteTracker.SKIP);
+        assertTrue(tracker.isTie());
+        tracker.vote(4, 3);
+        assertEquals(3, tracker.getMostVoted());
+    }
+
+    @Test
+    public void rejectsUnknownVotersAndTargets() {
+        VoteTracker tracker = trackerWithVoters(1, 2);
+        assertFalse(tracker.vote(9, 1));
+        assertFalse(tracker.vote(1, 9));
+        assertEquals(0, tracker.getTotalVotes());
+        assertEquals(VoteTracker.NONE, tracker.getVoteTargetId(1));
+    }
+
+    @Test
+    public void growsPastTheExpectedVoters() {
+        VoteTracker tracker = new VoteTracker(1);
+        for (long voterId = 1; voterId <= 10; voterId++) {
+            tracker.addVoter(voterId);
+        }
+        for (long voterId = 1; voterId <= 10; voterId++) {
+            tracker.vote(voterId, 10);
+        }
+        assertEquals(10, tracker.getVoterCount());
+        assertTrue(tracker.hasEveryoneVoted());
+        assertEquals(10, tracker.getMostVoted());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsNewVotersOnceVotingStarted() {
+        VoteTracker tracker = trackerWithVoters(1, 2);
+        tracker.vote(1, 2);
+        tracker.addVoter(3);
+    }
+
+    @Test
+    public void clearVotesKeepsTheVoters() {
+        VoteTracker tracker = trackerWithVoters(1, 2);
+        tracker.vote(1, 2);
+        tracker.vote(2, 2);
+        tracker.clearVotes();
+        assertEquals(2, tracker.getVoterCount());
+        assertEquals(0, tracker.getTotalVotes());
+        assertEquals(VoteTracker.NONE, tracker.getMostVoted());
+        assertFalse(tracker.hasVoted(0));
+    }
+
+    @Test
+    public void leaderMatchesAFullRecountAfterEveryVote() {
+        Random random = new Random(7);
+        for (int round = 0; round < 2_000; round++) {
+            int voters = 1 + random.nextInt(10);
+            VoteTracker tracker = new VoteTracker(random.nextInt(4));
+            for (int i = 1; i <= voters; i++) {
+                tracker.addVoter(100 + i);
+            }
+            Map<Long, Long> votes = new HashMap<>();
+            for (int k = 0; k < 30; k++) {
+                long voter = 101 + random.nextInt(voters);
+                long target = random.nextInt(voters + 1) == 0 ? VoteTracker.SKIP : 101 + random.nextInt(voters);
+                tracker.vote(voter, target);
+                votes.put(voter, target);
+
+                assertEquals(recount(votes), tracker.getMostVoted());
+                assertEquals(votes.size(), tracker.getTotalVotes());
+            }
+        }
+    }
+
+    private static long recount(Map<Long, Long> votes) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (long target : votes.values()) {
+            counts.merge(target, 1, Integer::sum);
+        }
+        int most = Collections.max(counts.values());
+        long leader = VoteTracker.NONE;
+        int leaders = 0;
+        for (Map.Entry<Long, Integer> count : counts.entrySet()) {
+            if (count.getValue() == most) {
+                leaders++;
+                leader = count.getKey();
+            }
+        }
+        return leaders > 1 ? VoteTracker.NONE : leader;
+    }
+}
@@ -0,0 +1,99 @@
+package com.amongus.bot.utils;
+
+import com.amongus.bot.models.CallbackAction;
+import com.amongus.bot.models.CallbackData;
+import org.junit.Test;
+
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CallbackCodecTest {
+
+    @Test
+    public void roundTripsEveryAction() {
+        long[] epochs = {0, 1, 127, 128, System.currentTimeMillis(), Long.MAX_VALUE};
+        for (CallbackAction action : CallbackAction.values()) {
+            for (long epoch : epochs) {
+                long[] arguments = new long[action.getArgumentCount()];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = epoch / (i + 2);
+                }
+                CallbackData data = CallbackCodec.decode(CallbackCodec.encode(action, epoch, arguments));
+
+                assertNotNull(action + " at epoch " + epoch, data);
+                assertEquals(action, data.getAction());
+                assertEquals(epoch, data.getEpoch());
+                for (int i = 0; i < arguments.length; i++) {
+                    assertEquals(arguments[i], data.getArgument(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void largestValuesFitTelegramsLimit() {
+        String encoded = CallbackCodec.encode(CallbackAction.VOTE, Long.MAX_VALUE, Long.MAX_VALUE);
+        assertTrue(encoded.length() + " characters", encoded.getBytes().length <= 64);
+    }
+
+    @Test
+    public void voteForAPlayerStaysShort() {
+        String encoded = CallbackCodec.encode(CallbackAction.VOTE, 12_345, 987_654_321L);
+        assertTrue(encoded, encoded.length() <= 16);
+    }
+
+    @Test
+    public void rejectsDataLongerThanTelegramsLimit() {
+        StringBuilder data = new StringBuilder(CallbackCodec.encode(CallbackAction.READY, 1));
+        while (data.length() <= 64) {
+            data.append('A');
+        }
+        assertNull(CallbackCodec.decode(data.toString()));
+    }
+
+    @Test
+    public void rejectsAnotherVersion() {
+        byte[] bytes = Base64.getUrlDecoder().decode(CallbackCodec.encode(CallbackAction.READY, 7));
+        bytes[0] = 2;
+        assertNull(CallbackCodec.decode(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes)));
+    }
+
+    @Test
+    public void rejectsMalformedData() {
+        assertNull(CallbackCodec.decode(null));
+        assertNull(CallbackCodec.decode(""));
+        // The text format used before the binary encoding
+        assertNull(CallbackCodec.decode("vote_123456"));
+        assertNull(CallbackCodec.decode("not base64!"));
+
+        String vote = CallbackCodec.encode(CallbackAction.VOTE, 300, 1_000_000);
+        byte[] bytes = Base64.getUrlDecoder().decode(vote);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        // Cut short inside the argument, and with trailing bytes
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertNull(CallbackCodec.decode(encoder.encodeToString(truncated)));
+        byte[] extended = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, extended, 0, bytes.length);
+        assertNull(CallbackCodec.decode(encoder.encodeToString(extended)));
+
+        // Unknown opcode
+        byte[] unknown = Base64.getUrlDecoder().decode(CallbackCodec.encode(CallbackAction.READY, 1));
+        unknown[1] = (byte) 200;
+        assertNull(CallbackCodec.decode(encoder.encodeToString(unknown)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongArgumentCount() {
+        CallbackCodec.encode(CallbackAction.VOTE, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeValues() {
+        CallbackCodec.encode(CallbackAction.READY, -1);
+    }
+}
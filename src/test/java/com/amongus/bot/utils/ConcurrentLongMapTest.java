@@ -0,0 +1,165 @@
+package com.amongus.bot.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentLongMapTest {
+
+    @Test
+    public void behavesLikeHashMapUnderRandomOperations() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(4);
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5000) - 100;
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    assertEquals(reference.put(key, (long) i), map.put(key, (long) i));
+                    break;
+                case 2:
+                    assertEquals(reference.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(reference.get(key), map.get(key));
+                    break;
+            }
+            if (i % 10_000 == 0) {
+                map.removeIf((k, v) -> k % 7 == 0);
+                reference.keySet().removeIf(k -> k % 7 == 0);
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        map.forEach((key, value) -> assertEquals(reference.get(key), value));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(1);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key * 31, key);
+        }
+        assertEquals(10_000, map.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals(Long.valueOf(key), map.get(key * 31));
+        }
+        // Removing leaves no hole that hides keys probed past it
+        for (long key = 0; key < 10_000; key += 2) {
+            map.remove(key * 31);
+        }
+        for (long key = 1; key < 10_000; key += 2) {
+            assertEquals(Long.valueOf(key), map.get(key * 31));
+        }
+        assertEquals(5_000, map.size());
+    }
+
+    @Test
+    public void conditionalOperationsCompareByIdentity() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        String value = new String("a");
+        assertNull(map.putIfAbsent(1, value));
+        assertSame(value, map.putIfAbsent(1, "b"));
+
+        assertFalse(map.remove(1, new String("a")));
+        assertFalse(map.replace(1, new String("a"), "c"));
+        assertTrue(map.replace(1, value, "c"));
+        assertEquals("c", map.get(1));
+        assertFalse(map.remove(1, value));
+        assertTrue(map.remove(1, map.get(1)));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullValues() {
+        new ConcurrentLongMap<String>().put(1, null);
+    }
+
+    @Test
+    public void concurrentWritersKeepEveryEntry() throws Exception {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(4);
+        int threads = 8;
+        int keysPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                long base = (long) t * keysPerThread;
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    // Every thread grows the map, and removes half of its keys again while others grow it
+                    for (long key = base; key < base + keysPerThread; key++) {
+                        map.put(key, key);
+                    }
+                    for (long key = base; key < base + keysPerThread; key += 2) {
+                        assertEquals(Long.valueOf(key), map.remove(key));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * keysPerThread / 2, map.size());
+        for (long key = 0; key < (long) threads * keysPerThread; key++) {
+            if (key % 2 == 0) {
+                assertNull(map.get(key));
+            } else {
+                assertEquals(Long.valueOf(key), map.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void computeIfAbsentCreatesOneValuePerKey() throws Exception {
+        ConcurrentLongMap<Object> map = new ConcurrentLongMap<>();
+        AtomicInteger created = new AtomicInteger();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (long key = 0; key < 5_000; key++) {
+                        Object value = map.computeIfAbsent(key, k -> {
+                            created.incrementAndGet();
+                            return new Object();
+                        });
+                        assertSame(value, map.get(key));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(5_000, created.get());
+        assertEquals(5_000, map.size());
+    }
+}
@@ -0,0 +1,154 @@
+package com.amongus.bot.utils;
+
+import com.amongus.bot.core.WheelTimer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExpiringStoreTest {
+    private final WheelTimer timer = new WheelTimer(10, 64);
+
+    @After
+    public void shutdown() {
+        timer.shutdown();
+    }
+
+    @Test
+    public void expiredEntryIsNeverReturned() throws InterruptedException {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 100, TimeUnit.MILLISECONDS, 10);
+        store.put(1L, "a");
+        assertEquals("a", store.get(1L));
+
+        Thread.sleep(120);
+        assertNull(store.get(1L));
+        assertNull(store.remove(1L));
+        assertFalse(store.remove(1L, "a"));
+    }
+
+    @Test
+    public void timerRemovesEntriesThatAreNeverRead() throws InterruptedException {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 50, TimeUnit.MILLISECONDS, 100);
+        for (long key = 0; key < 20; key++) {
+            store.put(key, "v" + key);
+        }
+        assertEquals(20, store.size());
+
+        // Counted and no longer pending once each timeout's task has returned
+        for (int i = 0; i < 100 && (store.getExpiredCount() < 20 || timer.getPendingCount() > 0); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, store.size());
+        assertEquals(20, store.getExpiredCount());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void putRestartsTheTimeToLive() throws InterruptedException {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 150, TimeUnit.MILLISECONDS, 10);
+        store.put(1L, "a");
+        Thread.sleep(100);
+        store.put(1L, "b");
+        Thread.sleep(100);
+        assertEquals("b", store.get(1L));
+        // The replaced entry's timeout is cancelled, so only one is pending
+        assertEquals(1, timer.getPendingCount());
+    }
+
+    @Test
+    public void evictsTheOldestEntriesWhenFull() {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 1, TimeUnit.MINUTES, 100);
+        for (long key = 0; key < 250; key++) {
+            store.put(key, "v" + key);
+        }
+        assertEquals(100, store.size());
+        assertEquals(150, store.getEvictedCount());
+        assertNull(store.get(149L));
+        assertEquals("v150", store.get(150L));
+        assertEquals("v249", store.get(249L));
+        assertEquals(100, timer.getPendingCount());
+    }
+
+    @Test
+    public void replacingOneKeyDoesNotEvictOthers() {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 1, TimeUnit.MINUTES, 10);
+        for (long key = 0; key < 10; key++) {
+            store.put(key, "v" + key);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            store.put(5L, "x" + i);
+        }
+        assertEquals(10, store.size());
+        assertEquals(0, store.getEvictedCount());
+        assertEquals("v0", store.get(0L));
+        assertEquals("x999", store.get(5L));
+    }
+
+    @Test
+    public void conditionalRemoveChecksTheValue() {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 1, TimeUnit.MINUTES, 10);
+        store.put(1L, "a");
+        assertFalse(store.remove(1L, "b"));
+        assertTrue(store.remove(1L, "a"));
+        assertNull(store.get(1L));
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void exactlyOneThreadRemovesAValue() throws Exception {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 1, TimeUnit.MINUTES, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger wins = new AtomicInteger();
+        try {
+            for (int round = 0; round < 200; round++) {
+                store.put(1L, "code");
+                CountDownLatch start = new CountDownLatch(1);
+                Future<?>[] futures = new Future<?>[8];
+                for (int t = 0; t < futures.length; t++) {
+                    futures[t] = executor.submit(() -> {
+                        start.await();
+                        if (store.remove(1L, "code")) {
+                            wins.incrementAndGet();
+                        }
+                        return null;
+                    });
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(200, wins.get());
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        ExpiringStore<Long, String> store = new ExpiringStore<>(timer, 1, TimeUnit.MINUTES, 10);
+        store.put(1L, "a");
+        store.put(2L, "b");
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.get(1L));
+        assertEquals(0, store.getExpiredCount());
+        assertEquals(0, store.getEvictedCount());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANonPositiveLimit() {
+        new ExpiringStore<Long, String>(timer, 1, TimeUnit.MINUTES, 0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.amongus.bot.utils;
+
+import com.amongus.bot.core.WheelTimer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SecurityManagerTest {
+    private final WheelTimer timer = new WheelTimer(10, 64);
+    private final SecurityManager securityManager = new SecurityManager(timer);
+
+    @After
+    public void shutdown() {
+        timer.shutdown();
+    }
+
+    @Test
+    public void roleTokensRoundTrip() {
+        for (String roleId : new String[] {"crewmate", "impostor"}) {
+            String token = securityManager.encodeRoleCallback(roleId, "ABC123", 7, 42);
+            assertEquals(roleId, securityManager.decodeRoleCallback(token, "ABC123", 7, 42));
+        }
+    }
+
+    @Test
+    public void roleTokenIsOnlyValidForItsSessionEpochAndPlayer() {
+        String token = securityManager.encodeRoleCallback("impostor", "ABC123", 7, 42);
+        assertNull(securityManager.decodeRoleCallback(token, "ABC124", 7, 42));
+        assertNull(securityManager.decodeRoleCallback(token, "ABC123", 8, 42));
+        assertNull(securityManager.decodeRoleCallback(token, "ABC123", 7, 43));
+        assertNull(securityManager.decodeRoleCallback("not a token!", "ABC123", 7, 42));
+        assertNull(securityManager.decodeRoleCallback("", "ABC123", 7, 42));
+    }
+
+    @Test
+    public void playersWithTheSameRoleGetDifferentTokens() {
+        Set<String> tokens = new HashSet<>();
+        for (long userId = 1; userId <= 50; userId++) {
+            tokens.add(securityManager.encodeRoleCallback("crewmate", "ABC123", 7, userId));
+        }
+        assertEquals(50, tokens.size());
+    }
+
+    @Test
+    public void tokenDoesNotStartWithTheRole() {
+        // With the role in the clear, every crewmate token of a game shared its first characters
+        Set<Character> crewmatePrefixes = new HashSet<>();
+        Set<Character> impostorPrefixes = new HashSet<>();
+        for (long userId = 1; userId <= 200; userId++) {
+            crewmatePrefixes.add(securityManager.encodeRoleCallback("crewmate", "ABC123", 7, userId).charAt(1));
+            impostorPrefixes.add(securityManager.encodeRoleCallback("impostor", "ABC123", 7, userId).charAt(1));
+        }
+        Set<Character> shared = new HashSet<>(crewmatePrefixes);
+        shared.retainAll(impostorPrefixes);
+        assertFalse(shared.isEmpty());
+        assertNotEquals(securityManager.encodeRoleCallback("crewmate", "ABC123", 7, 1),
+                securityManager.encodeRoleCallback("impostor", "ABC123", 7, 1));
+    }
+
+    @Test
+    public void unknownRoleHasNoToken() {
+        assertNull(securityManager.encodeRoleCallback("ghost", "ABC123", 7, 42));
+    }
+
+    @Test
+    public void confirmationCodeWorksOnce() {
+        String code = securityManager.generateConfirmationCode(42);
+        assertFalse(securityManager.verifyConfirmationCode(42, "wrong"));
+        assertFalse(securityManager.verifyConfirmationCode(43, code));
+        assertTrue(securityManager.verifyConfirmationCode(42, code));
+        assertFalse(securityManager.verifyConfirmationCode(42, code));
+    }
+}
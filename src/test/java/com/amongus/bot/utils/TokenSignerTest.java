@@ -0,0 +1,113 @@
+package com.amongus.bot.utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenSignerTest {
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final TokenSigner signer = new TokenSigner(KEY);
+    private final byte[] payload = {3, 1, 4, 1, 5};
+
+    private byte[] tag(String scope, long epoch) {
+        byte[] tag = new byte[TokenSigner.TAG_BYTES];
+        signer.sign(scope, epoch, payload, payload.length, tag, 0);
+        return tag;
+    }
+
+    @Test
+    public void acceptsItsOwnTag() {
+        assertTrue(signer.verify("ABC123", 7, payload, payload.length, tag("ABC123", 7), 0));
+    }
+
+    @Test
+    public void rejectsAnotherSessionOrEpoch() {
+        byte[] tag = tag("ABC123", 7);
+        assertFalse(signer.verify("ABC124", 7, payload, payload.length, tag, 0));
+        assertFalse(signer.verify("ABC123", 8, payload, payload.length, tag, 0));
+        assertFalse(signer.verify("", 7, payload, payload.length, tag, 0));
+    }
+
+    @Test
+    public void rejectsChangedPayloadOrTag() {
+        byte[] tag = tag("ABC123", 7);
+        byte[] changedPayload = payload.clone();
+        changedPayload[0] ^= 1;
+        assertFalse(signer.verify("ABC123", 7, changedPayload, changedPayload.length, tag, 0));
+        // Only the signed length counts, but all of it
+        assertFalse(signer.verify("ABC123", 7, payload, payload.length - 1, tag, 0));
+
+        for (int i = 0; i < tag.length; i++) {
+            byte[] changedTag = tag.clone();
+            changedTag[i] ^= 0x40;
+            assertFalse("byte " + i, signer.verify("ABC123", 7, payload, payload.length, changedTag, 0));
+        }
+        // Too short to hold a tag
+        assertFalse(signer.verify("ABC123", 7, payload, payload.length, new byte[TokenSigner.TAG_BYTES - 1], 0));
+    }
+
+    @Test
+    public void scopeCannotRunIntoPayload() {
+        // "AB" + "C..." and "ABC" + "..." must not sign the same bytes
+        byte[] first = {'C', 1};
+        byte[] second = {1};
+        byte[] tag = new byte[TokenSigner.TAG_BYTES];
+        signer.sign("AB", 7, first, first.length, tag, 0);
+        assertFalse(signer.verify("ABC", 7, second, second.length, tag, 0));
+    }
+
+    @Test
+    public void anotherKeyRejectsTheTag() {
+        TokenSigner other = TokenSigner.withRandomKey();
+        assertFalse(other.verify("ABC123", 7, payload, payload.length, tag("ABC123", 7), 0));
+    }
+
+    @Test
+    public void signsInPlaceAtAnOffset() {
+        // Payload and tag in one buffer, the way role tokens are built
+        byte[] token = new byte[1 + TokenSigner.TAG_BYTES];
+        token[0] = 2;
+        signer.sign("ABC123", 7, token, 1, token, 1);
+        assertTrue(signer.verify("ABC123", 7, token, 1, token, 1));
+        token[0] = 1;
+        assertFalse(signer.verify("ABC123", 7, token, 1, token, 1));
+    }
+
+    @Test
+    public void threadsComputeTheSameTags() throws Exception {
+        byte[] expected = tag("ABC123", 7);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        byte[] tag = tag("ABC123", 7);
+                        assertArrayEquals(expected, tag);
+                        if (!signer.verify("ABC123", 7, payload, payload.length, tag, 0)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            }
+            for (Future<Boolean> result : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}